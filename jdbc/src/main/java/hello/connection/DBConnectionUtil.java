@@ -20,7 +20,9 @@ public class DBConnectionUtil {
     public static Connection getConnection(String url, String username, String password) {
         try {
             Connection conn = DriverManager.getConnection(url, username, password);
-            log.info("connection = {}, class = {}", conn, conn.getClass());
+            if (log.isInfoEnabled()) {
+                log.info("connection = {}, class = {}", conn, conn.getClass());
+            }
             return conn;
         } catch (SQLException e) {
             throw new IllegalStateException(e);
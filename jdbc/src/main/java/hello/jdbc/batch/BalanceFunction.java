@@ -0,0 +1,17 @@
+package hello.jdbc.batch;
+
+import hello.jdbc.domain.Member;
+
+/**
+ * member 한 명의 잔액 변경량을 계산한다.
+ */
+@FunctionalInterface
+public interface BalanceFunction {
+
+    /**
+     * @param member
+     * @return 잔액에 더할 값
+     */
+    int delta(Member member);
+
+}
@@ -0,0 +1,27 @@
+package hello.jdbc.batch;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * batch_checkpoint -> job 의 구간별 진행 상황
+ * -> 구간 경계도 함께 저장해, 재시작 시 표본을 다시 뽑지 않고 같은 구간으로 이어서 처리한다.
+ * -> last_member_id 는 해당 구간에서 마지막으로 커밋된 chunk 의 마지막 member_id 이다.
+ */
+public abstract class BatchCheckpointTables {
+
+    public static void create(DataSource dataSource) {
+        new JdbcTemplate(dataSource).execute("create table if not exists batch_checkpoint (" +
+                "job_id varchar(50) not null, " +
+                "range_index integer not null, " +
+                "low_inclusive varchar(10), " +
+                "high_exclusive varchar(10), " +
+                "last_member_id varchar(10), " +
+                "processed bigint not null default 0, " +
+                "done boolean not null default false, " +
+                "updated_at timestamp not null default current_timestamp, " +
+                "primary key (job_id, range_index))");
+    }
+
+}
@@ -0,0 +1,30 @@
+package hello.jdbc.batch;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@ToString
+public class BatchJobResult {
+
+    private final String jobId;
+    private final int workers;
+    private final int ranges;
+    private final long processed;
+    private final long elapsedNanos;
+
+    public BatchJobResult(String jobId, int workers, int ranges, long processed, long elapsedNanos) {
+        this.jobId = jobId;
+        this.workers = workers;
+        this.ranges = ranges;
+        this.processed = processed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long membersPerSecond() {
+        return processed * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1);
+    }
+
+}
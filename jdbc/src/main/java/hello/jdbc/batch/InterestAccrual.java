@@ -0,0 +1,26 @@
+package hello.jdbc.batch;
+
+import hello.jdbc.domain.Member;
+
+/**
+ * 일 이자 계산
+ * -> 연 이율(basis point)을 365 로 나눈 일 이자를 원 단위 미만은 버린다.
+ * -> 잔액이 0 이하인 경우 이자를 지급하지 않는다.
+ */
+public class InterestAccrual implements BalanceFunction {
+
+    private final int annualRateBps;
+
+    public InterestAccrual(int annualRateBps) {
+        this.annualRateBps = annualRateBps;
+    }
+
+    @Override
+    public int delta(Member member) {
+        if (member.getMoney() <= 0) {
+            return 0;
+        }
+        return (int) ((long) member.getMoney() * annualRateBps / (10_000L * 365));
+    }
+
+}
@@ -0,0 +1,216 @@
+package hello.jdbc.batch;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.scan.KeyRange;
+import hello.jdbc.scan.KeyRangePartitioner;
+import hello.jdbc.scan.ParallelMemberScanner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * member 전체에 BalanceFunction 을 적용하는 재시작 가능한 batch job
+ * 1. 처음 실행하면 KeyRangePartitioner 로 member_id 구간을 나누고 batch_checkpoint 에 저장한다.
+ * 2. ForkJoinPool 에서 구간을 절반씩 나눠 worker 들이 구간별로 처리한다.
+ * 3. 구간 안에서는 chunkSize 개씩 읽어 변경량을 계산하고, 한 트랜잭션에서
+ *    -> batch update 로 잔액을 반영하고
+ *    -> checkpoint 의 last_member_id 를 chunk 의 마지막 member_id 로 옮긴다.
+ *       (chunk 를 시작한 위치에서 움직이지 않은 경우에만 옮기고, 아니면 chunk 를 롤백한다)
+ * -> 잔액 반영과 checkpoint 가 함께 커밋되므로, 중간에 실패해도 같은 jobId 로 다시 실행하면
+ *    커밋된 chunk 이후부터 이어서 처리하고 같은 member 에 두 번 적용하지 않는다.
+ * -> 읽은 이후의 이체와 충돌하지 않도록 money = money + ? 형태의 상대 update 를 사용한다.
+ *    (변경량은 읽은 시점의 잔액으로 계산한다)
+ * -> 모든 구간이 done 이면 같은 jobId 로 다시 실행해도 아무것도 하지 않는다.
+ */
+@Slf4j
+public class MemberBatchJob {
+
+    public static final int PARTITIONS_PER_WORKER = 4;
+    public static final String ADD_MONEY = "update member set money = money + ? where member_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KeyRangePartitioner partitioner;
+    private final BalanceFunction balanceFunction;
+    private final int chunkSize;
+
+    public MemberBatchJob(DataSource dataSource, BalanceFunction balanceFunction, int chunkSize) {
+        this(dataSource, new KeyRangePartitioner(dataSource), balanceFunction, chunkSize);
+    }
+
+    public MemberBatchJob(DataSource dataSource, KeyRangePartitioner partitioner,
+                          BalanceFunction balanceFunction, int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.partitioner = partitioner;
+        this.balanceFunction = balanceFunction;
+        this.chunkSize = chunkSize;
+    }
+
+    public BatchJobResult run(String jobId, int workers) {
+        List<Checkpoint> checkpoints = loadOrCreateCheckpoints(jobId, workers * PARTITIONS_PER_WORKER);
+        List<Checkpoint> pending = checkpoints.stream().filter(checkpoint -> !checkpoint.done).toList();
+        AtomicLong processed = new AtomicLong();
+
+        long start = System.nanoTime();
+        if (!pending.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                pool.invoke(new RangeTask(jobId, pending, processed));
+            } finally {
+                // 실패한 경우에도 worker 가 모두 끝난 뒤에 반환해야 재실행과 겹치지 않는다
+                pool.shutdown();
+                awaitTermination(pool);
+            }
+        }
+        BatchJobResult result = new BatchJobResult(jobId, workers, checkpoints.size(), processed.get(),
+                System.nanoTime() - start);
+        log.info("batch job finished -> {}, members/s = {}", result, result.membersPerSecond());
+        return result;
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) {
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("batch workers did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Checkpoint> loadOrCreateCheckpoints(String jobId, int partitions) {
+        List<Checkpoint> checkpoints = loadCheckpoints(jobId);
+        if (!checkpoints.isEmpty()) {
+            log.info("resume batch job -> jobId = {}, {} of {} ranges remaining", jobId,
+                    checkpoints.stream().filter(checkpoint -> !checkpoint.done).count(), checkpoints.size());
+            return checkpoints;
+        }
+        List<KeyRange> ranges = partitioner.partition(partitions);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "insert into batch_checkpoint(job_id, range_index, low_inclusive, high_exclusive) values (?, ?, ?, ?)",
+                ranges.stream().map(range -> new Object[]{jobId, range.getIndex(),
+                        range.getLowInclusive(), range.getHighExclusive()}).toList()));
+        return loadCheckpoints(jobId);
+    }
+
+    private List<Checkpoint> loadCheckpoints(String jobId) {
+        return jdbcTemplate.query("select * from batch_checkpoint where job_id = ? order by range_index",
+                (rs, rowNum) -> new Checkpoint(
+                        new KeyRange(rs.getInt("range_index"), rs.getString("low_inclusive"),
+                                rs.getString("high_exclusive"), 0),
+                        rs.getString("last_member_id"),
+                        rs.getBoolean("done")), jobId);
+    }
+
+    /**
+     * 구간 하나를 chunk 단위로 끝까지 처리한다.
+     */
+    private void process(String jobId, Checkpoint checkpoint, AtomicLong processed) {
+        String lastMemberId = checkpoint.lastMemberId;
+        boolean done = false;
+        while (!done) {
+            String after = lastMemberId;
+            ChunkResult chunk = transactionTemplate.execute(status -> processChunk(jobId, checkpoint.range, after));
+            processed.addAndGet(chunk.count);
+            lastMemberId = chunk.lastMemberId;
+            done = chunk.done;
+        }
+    }
+
+    private ChunkResult processChunk(String jobId, KeyRange range, String afterExclusive) {
+        List<Object> args = new ArrayList<>(4);
+        String sql = ParallelMemberScanner.rangeSql(range, afterExclusive, args) + " limit ?";
+        args.add(chunkSize);
+        List<Member> members = jdbcTemplate.query(sql, MemberRepositoryV5.MEMBER_ROW_MAPPER, args.toArray());
+
+        List<Object[]> updates = new ArrayList<>(members.size());
+        for (Member member : members) {
+            int delta = balanceFunction.delta(member);
+            if (delta != 0) {
+                updates.add(new Object[]{delta, member.getMemberId()});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_MONEY, updates);
+        }
+
+        String lastMemberId = members.isEmpty() ? afterExclusive : members.get(members.size() - 1).getMemberId();
+        boolean done = members.size() < chunkSize;
+        // chunk 를 시작한 위치에서 checkpoint 가 움직이지 않은 경우에만 옮긴다 (같은 jobId 를 동시에 실행한 경우 롤백한다)
+        int updated = jdbcTemplate.update("update batch_checkpoint set last_member_id = ?, processed = processed + ?, done = ?, " +
+                        "updated_at = current_timestamp " +
+                        "where job_id = ? and range_index = ? and done = false and last_member_id is not distinct from ?",
+                lastMemberId, members.size(), done, jobId, range.getIndex(), afterExclusive);
+        if (updated == 0) {
+            throw new IllegalStateException("checkpoint moved by another run. jobId = " + jobId
+                    + ", range = " + range.getIndex() + ", expected last_member_id = " + afterExclusive);
+        }
+        return new ChunkResult(members.size(), lastMemberId, done);
+    }
+
+    private record Checkpoint(KeyRange range, String lastMemberId, boolean done) {
+    }
+
+    private record ChunkResult(int count, String lastMemberId, boolean done) {
+    }
+
+    /**
+     * 구간 목록을 절반씩 나눠 fork 하고, 구간이 하나 남으면 직접 처리한다.
+     */
+    private class RangeTask extends RecursiveAction {
+
+        private final String jobId;
+        private final List<Checkpoint> checkpoints;
+        private final AtomicLong processed;
+
+        RangeTask(String jobId, List<Checkpoint> checkpoints, AtomicLong processed) {
+            this.jobId = jobId;
+            this.checkpoints = checkpoints;
+            this.processed = processed;
+        }
+
+        @Override
+        protected void compute() {
+            if (checkpoints.size() == 1) {
+                process(jobId, checkpoints.get(0), processed);
+                return;
+            }
+            int mid = checkpoints.size() / 2;
+            RangeTask left = new RangeTask(jobId, checkpoints.subList(0, mid), processed);
+            RangeTask right = new RangeTask(jobId, checkpoints.subList(mid, checkpoints.size()), processed);
+            // invokeAll 은 먼저 실패한 task 의 예외를 바로 던지므로, 다른 task 를 기다리도록 직접 join 한다
+            right.fork();
+            RuntimeException failure = null;
+            try {
+                left.invoke();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            try {
+                right.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package hello.jdbc.bulk;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * member 테이블을 CSV 파일로 내보낸다.
+ * 1. exportStreaming -> 조회 결과를 한 row 씩 고정 크기 버퍼에 기록하고, 버퍼가 차면 파일에 쓴다.
+ *    -> findAll() 처럼 전체 결과를 List 로 만들지 않으므로 row 수와 관계없이 heap 사용량이 일정하다.
+ *    -> h2 는 일정 크기 이상의 결과를 임시 파일에 보관하므로 DB 쪽 메모리도 일정하다.
+ * 2. exportCsvWrite -> h2 의 CSVWRITE 함수로 DB 가 직접 파일을 기록한다. (값은 큰따옴표로 감싸진다)
+ */
+@Slf4j
+public class MemberCsvExporter {
+
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    private static final byte[] HEADER = "MEMBER_ID,MONEY\n".getBytes(StandardCharsets.UTF_8);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MemberCsvExporter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1_000);
+    }
+
+    /**
+     * @return 기록한 row 수
+     */
+    public long exportStreaming(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            buffer.put(HEADER);
+            long[] rows = {0};
+            try {
+                jdbcTemplate.query("select member_id, money from member", (RowCallbackHandler) rs -> {
+                    if (buffer.remaining() < 64) {
+                        flush(channel, buffer);
+                    }
+                    putId(buffer, rs.getString(1));
+                    buffer.put((byte) ',');
+                    putInt(buffer, rs.getInt(2));
+                    buffer.put((byte) '\n');
+                    rows[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            flush(channel, buffer);
+            return rows[0];
+        }
+    }
+
+    /**
+     * @return 기록한 row 수
+     */
+    public int exportCsvWrite(Path path) {
+        return jdbcTemplate.queryForObject("call csvwrite(?, 'select member_id, money from member', 'charset=UTF-8')",
+                Integer.class, path.toAbsolutePath().toString());
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * ASCII 로만 구성된 ID 는 byte[] 변환 없이 바로 기록한다.
+     */
+    private static void putId(ByteBuffer buffer, String memberId) {
+        for (int i = 0; i < memberId.length(); i++) {
+            if (memberId.charAt(i) >= 0x80) {
+                buffer.put(memberId.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < memberId.length(); i++) {
+            buffer.put((byte) memberId.charAt(i));
+        }
+    }
+
+    /**
+     * Integer.toString() 으로 String 을 만들지 않고 숫자를 ASCII 로 기록한다.
+     */
+    private static void putInt(ByteBuffer buffer, int value) {
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        if (v == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        int digits = 0;
+        for (long t = v; t > 0; t /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + v % 10));
+            v /= 10;
+        }
+        buffer.position(end);
+    }
+
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.bulk;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * CSV 파일의 회원을 member 테이블에 일괄 저장한다.
+ * 1. importBatched -> MemberCsvReader 로 읽은 row 를 batch insert 로 저장한다. batch 마다 커밋한다.
+ * 2. importCsvRead -> h2 의 CSVREAD 함수로 DB 가 직접 파일을 읽어 insert ... select 로 저장한다.
+ *    -> 파일은 DB 서버에서 접근할 수 있는 경로여야 하며, 첫 줄은 컬럼 이름(MEMBER_ID,MONEY) 이어야 한다.
+ */
+@Slf4j
+public class MemberCsvImporter {
+
+    private static final String INSERT = "insert into member(member_id, money) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemberCsvImporter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * @param path
+     * @param hasHeader 첫 줄이 컬럼 이름이면 true
+     * @param batchSize 하나의 batch 이자 트랜잭션으로 저장할 row 수
+     * @return 저장한 row 수
+     */
+    public long importBatched(Path path, boolean hasHeader, int batchSize) throws IOException {
+        String[] ids = new String[batchSize];
+        int[] moneys = new int[batchSize];
+        long total = 0;
+        try (MemberCsvReader reader = MemberCsvReader.open(path, hasHeader)) {
+            int count;
+            while ((count = reader.read(ids, moneys)) > 0) {
+                int size = count;
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, ids[i]);
+                        ps.setInt(2, moneys[i]);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return size;
+                    }
+                }));
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return 저장한 row 수
+     */
+    public int importCsvRead(Path path) {
+        String sql = "insert into member(member_id, money) " +
+                "select member_id, cast(money as integer) from csvread(?, null, 'charset=UTF-8')";
+        return jdbcTemplate.update(sql, path.toAbsolutePath().toString());
+    }
+
+}
@@ -0,0 +1,156 @@
+package hello.jdbc.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * "member_id,money" 형식의 CSV 파일을 고정 크기 버퍼로 읽는다.
+ * -> 파일 크기와 관계없이 버퍼 하나와 호출한 쪽이 전달한 batch 배열만 사용하므로 heap 사용량이 일정하다.
+ * -> money 는 바이트에서 바로 숫자로 변환하며, member_id 만 JDBC 바인딩을 위해 String 으로 만든다.
+ * -> 값을 감싼 큰따옴표(CSVWRITE 의 기본 출력 형식)와 CRLF 줄바꿈을 허용한다.
+ */
+public class MemberCsvReader implements Closeable {
+
+    private static final int BUFFER_BYTES = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private boolean eof;
+    private long line;
+
+    private MemberCsvReader(FileChannel channel) {
+        this.channel = channel;
+        this.buffer.flip();
+    }
+
+    public static MemberCsvReader open(Path path, boolean hasHeader) throws IOException {
+        MemberCsvReader reader = new MemberCsvReader(FileChannel.open(path, StandardOpenOption.READ));
+        if (hasHeader) {
+            reader.skipLine();
+        }
+        return reader;
+    }
+
+    /**
+     * 최대 ids.length 개의 row 를 읽어 배열에 채운다.
+     * @return 읽은 row 수, 파일의 끝이면 0
+     */
+    public int read(String[] ids, int[] moneys) throws IOException {
+        int count = 0;
+        while (count < ids.length) {
+            int end = findLineEnd();
+            if (end < 0) {
+                break;
+            }
+            line++;
+            int start = buffer.position();
+            if (parseLine(start, end, ids, moneys, count)) {
+                count++;
+            }
+            buffer.position(Math.min(end + 1, buffer.limit()));
+        }
+        return count;
+    }
+
+    /**
+     * 버퍼에서 다음 줄의 끝('\n' 의 위치, 마지막 줄이면 limit) 을 찾는다. 줄이 버퍼를 넘어가면 더 읽는다.
+     */
+    private int findLineEnd() throws IOException {
+        int from = buffer.position();
+        while (true) {
+            byte[] array = buffer.array();
+            for (int i = from; i < buffer.limit(); i++) {
+                if (array[i] == '\n') {
+                    return i;
+                }
+            }
+            if (eof) {
+                return buffer.hasRemaining() ? buffer.limit() : -1;
+            }
+            int scanned = buffer.limit() - buffer.position();
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                throw new IOException("line is longer than buffer, line=" + (line + 1));
+            }
+            if (channel.read(buffer) < 0) {
+                eof = true;
+            }
+            buffer.flip();
+            from = scanned;
+        }
+    }
+
+    private boolean parseLine(int start, int end, String[] ids, int[] moneys, int index) throws IOException {
+        byte[] array = buffer.array();
+        if (end > start && array[end - 1] == '\r') {
+            end--;
+        }
+        if (start == end) {
+            // 빈 줄
+            return false;
+        }
+        int comma = -1;
+        for (int i = start; i < end; i++) {
+            if (array[i] == ',') {
+                comma = i;
+                break;
+            }
+        }
+        if (comma < 0) {
+            throw new IOException("invalid csv line, line=" + line);
+        }
+        int idStart = start;
+        int idEnd = comma;
+        if (idEnd - idStart >= 2 && array[idStart] == '"' && array[idEnd - 1] == '"') {
+            idStart++;
+            idEnd--;
+        }
+        ids[index] = new String(array, idStart, idEnd - idStart, StandardCharsets.UTF_8);
+        moneys[index] = parseInt(array, comma + 1, end);
+        return true;
+    }
+
+    private int parseInt(byte[] array, int start, int end) throws IOException {
+        if (end - start >= 2 && array[start] == '"' && array[end - 1] == '"') {
+            start++;
+            end--;
+        }
+        boolean negative = start < end && array[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end) {
+            throw new IOException("invalid money, line=" + line);
+        }
+        long limit = negative ? (long) Integer.MAX_VALUE + 1 : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("invalid money, line=" + line);
+            }
+            value = value * 10 + digit;
+            if (value > limit) {
+                throw new IOException("money out of range, line=" + line);
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private void skipLine() throws IOException {
+        int end = findLineEnd();
+        if (end >= 0) {
+            line++;
+            buffer.position(Math.min(end + 1, buffer.limit()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
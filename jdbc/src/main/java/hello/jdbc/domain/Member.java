@@ -1,12 +1,31 @@
 package hello.jdbc.domain;
 
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+/**
+ * JDBC Repository 에서는 일반 객체로, JpaMemberRepository 에서는 엔티티로 사용한다.
+ * -> member_id 는 애플리케이션이 직접 지정하는 키이므로 생성 전략을 사용하지 않는다.
+ * -> findById 결과는 2차 캐시(READ_WRITE)에 보관된다.
+ */
 @Data
+@Entity
+@Table(name = "member")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member")
 public class Member {
 
+    @Id
+    @Column(name = "member_id", length = 10)
     private String memberId;
 
+    @Column(name = "money", nullable = false)
     private int money;
 
     public Member() { }
@@ -0,0 +1,36 @@
+package hello.jdbc.embedded;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * embedded 프로파일
+ * -> spring.datasource.* 대신 EmbeddedH2Properties 로 만든 URL 을 사용하는 DataSource 를 등록한다.
+ * -> DataSource 빈을 직접 등록하므로 스프링 부트의 DataSource 자동 구성은 적용되지 않는다.
+ * -> DataSource 빈은 EmbeddedH2Lifecycle 에 의존하므로, DataSource 를 사용하는 모든 빈보다 먼저 DB 가 열리고 나중에 닫힌다.
+ */
+@Configuration
+@Profile("embedded")
+@EnableConfigurationProperties(EmbeddedH2Properties.class)
+public class EmbeddedH2Config {
+
+    @Bean
+    EmbeddedH2Lifecycle embeddedH2Lifecycle(EmbeddedH2Properties properties) {
+        return new EmbeddedH2Lifecycle(properties);
+    }
+
+    @Bean(destroyMethod = "close")
+    HikariDataSource dataSource(EmbeddedH2Properties properties, EmbeddedH2Lifecycle embeddedH2Lifecycle) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(properties.buildUrl());
+        dataSource.setUsername(properties.getUsername());
+        dataSource.setPassword(properties.getPassword());
+        dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+        dataSource.setPoolName("embedded-h2");
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,76 @@
+package hello.jdbc.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 애플리케이션 컨텍스트와 함께 embedded h2 를 시작 / 종료한다.
+ * -> 시작 시 커넥션 하나를 열어 DB 를 열고, 종료 전까지 유지해 DB 가 닫히지 않도록 한다.
+ * -> 종료 시 SHUTDOWN 으로 변경 사항을 모두 디스크에 기록하고 DB 를 닫는다.
+ * -
+ * SmartLifecycle 의 phase 는 모든 싱글톤 빈을 만든 뒤에 적용되므로, 빈 생성 중에 DB 를 사용하는
+ * SchemaInitializer, 예외 변환기의 error code 조회, JPA EntityManagerFactory 보다 먼저 DB 를 열 수 없다.
+ * -> 빈 초기화(afterPropertiesSet) 시점에 DB 를 열고, DataSource 빈이 이 빈에 의존하도록 등록한다. (EmbeddedH2Config)
+ * -> DataSource 를 사용하는 빈은 이 빈보다 나중에 만들어지고, 종료 시에는 DataSource 를 닫은 뒤에 SHUTDOWN 한다.
+ */
+@Slf4j
+public class EmbeddedH2Lifecycle implements InitializingBean, DisposableBean {
+
+    private final EmbeddedH2Properties properties;
+    private Connection keepAlive;
+    private volatile boolean running;
+
+    public EmbeddedH2Lifecycle(EmbeddedH2Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        start();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    public synchronized void start() {
+        try {
+            keepAlive = DriverManager.getConnection(properties.buildUrl(), properties.getUsername(), properties.getPassword());
+            running = true;
+            log.info("embedded h2 started, url={}", properties.buildUrl());
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to start embedded h2", e);
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute(properties.isShutdownCompact() ? "SHUTDOWN COMPACT" : "SHUTDOWN");
+            log.info("embedded h2 stopped");
+        } catch (SQLException e) {
+            log.error("embedded h2 shutdown failed", e);
+        } finally {
+            try {
+                keepAlive.close();
+            } catch (SQLException e) {
+                log.info("error", e);
+            }
+            running = false;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+}
@@ -0,0 +1,86 @@
+package hello.jdbc.embedded;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * embedded 프로파일에서 애플리케이션 프로세스 안에서 실행할 h2 설정
+ * -> TCP 서버 모드와 달리 SQL 마다 loopback 네트워크 왕복과 직렬화 비용이 발생하지 않는다.
+ * -
+ * MVStore 의 pageSplitSize 는 JDBC URL 설정으로 제공되지 않으므로 설정할 수 없다.
+ * 그 외에 URL 로 전달할 수 있는 설정(ex. MAX_COMPACT_TIME)은 settings 에 지정하면 그대로 전달된다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "hello.h2.embedded")
+public class EmbeddedH2Properties {
+
+    public enum Mode {
+        FILE, MEM
+    }
+
+    private Mode mode = Mode.FILE;
+
+    /**
+     * FILE 모드의 DB 파일 경로 (확장자 제외)
+     */
+    private String path = "~/test-embedded";
+
+    /**
+     * MEM 모드의 DB 이름
+     */
+    private String name = "test";
+
+    private String username = "sa";
+    private String password = "";
+
+    /**
+     * MVStore 의 page cache 크기 (KB) -> CACHE_SIZE
+     */
+    private int cacheSizeKb = 64 * 1024;
+
+    /**
+     * 커밋 이후 변경 사항을 디스크에 기록하기까지의 최대 지연 시간 (ms) -> WRITE_DELAY
+     */
+    private int writeDelayMs = 500;
+
+    /**
+     * row lock 을 기다리는 최대 시간 (ms) -> LOCK_TIMEOUT
+     */
+    private int lockTimeoutMs = 1_000;
+
+    /**
+     * 종료 시 SHUTDOWN COMPACT 로 파일을 압축할지 여부 (종료 시간이 길어진다)
+     */
+    private boolean shutdownCompact = false;
+
+    private int maximumPoolSize = 10;
+
+    /**
+     * URL 에 그대로 추가할 설정
+     */
+    private Map<String, String> settings = new LinkedHashMap<>();
+
+    public String buildUrl() {
+        StringBuilder url = new StringBuilder("jdbc:h2:");
+        if (mode == Mode.MEM) {
+            url.append("mem:").append(name).append(";DB_CLOSE_DELAY=-1");
+        } else {
+            url.append("file:").append(path);
+        }
+        // DB 종료는 JVM shutdown hook 이 아닌 애플리케이션 컨텍스트가 담당한다
+        url.append(";DB_CLOSE_ON_EXIT=FALSE")
+                .append(";CACHE_SIZE=").append(cacheSizeKb)
+                .append(";LOCK_TIMEOUT=").append(lockTimeoutMs);
+        if (mode == Mode.FILE) {
+            url.append(";WRITE_DELAY=").append(writeDelayMs);
+        }
+        settings.forEach((key, value) -> url.append(';').append(key).append('=').append(value));
+        return url.toString();
+    }
+
+}
@@ -0,0 +1,21 @@
+package hello.jdbc.eventsourcing;
+
+/**
+ * 회원 계좌에 발생한 이벤트
+ * -> 이벤트는 변경되지 않으며, 계좌 상태는 이벤트를 순서대로 적용해서 만든다.
+ */
+public sealed interface AccountEvent permits AccountEvent.Deposited, AccountEvent.Withdrawn, AccountEvent.Transferred {
+
+    record Deposited(String memberId, long amount) implements AccountEvent {
+    }
+
+    record Withdrawn(String memberId, long amount) implements AccountEvent {
+    }
+
+    /**
+     * 출금 회원과 입금 회원이 다른 partition 에 있으면 두 partition 에 모두 기록된다.
+     */
+    record Transferred(String fromId, String toId, long amount) implements AccountEvent {
+    }
+
+}
@@ -0,0 +1,68 @@
+package hello.jdbc.eventsourcing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 이벤트의 바이너리 인코딩
+ * -> [int 길이][byte 타입][long 금액][byte ID 길이][ID] ([byte ID 길이][ID] : Transferred 의 입금 회원)
+ * -> 길이를 앞에 두어 마지막 레코드가 잘린 경우를 판단할 수 있고, 리플레이 시 문자열 파싱 없이 바로 읽을 수 있다.
+ */
+abstract class EventCodec {
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+    static final int MAX_RECORD_BYTES = LENGTH_BYTES + 1 + Long.BYTES + 2 * (1 + 255);
+
+    private static final byte DEPOSITED = 1;
+    private static final byte WITHDRAWN = 2;
+    private static final byte TRANSFERRED = 3;
+
+    static void encode(AccountEvent event, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + LENGTH_BYTES);
+        if (event instanceof AccountEvent.Deposited deposited) {
+            buffer.put(DEPOSITED).putLong(deposited.amount());
+            putId(buffer, deposited.memberId());
+        } else if (event instanceof AccountEvent.Withdrawn withdrawn) {
+            buffer.put(WITHDRAWN).putLong(withdrawn.amount());
+            putId(buffer, withdrawn.memberId());
+        } else if (event instanceof AccountEvent.Transferred transferred) {
+            buffer.put(TRANSFERRED).putLong(transferred.amount());
+            putId(buffer, transferred.fromId());
+            putId(buffer, transferred.toId());
+        }
+        buffer.putInt(start, buffer.position() - start - LENGTH_BYTES);
+    }
+
+    /**
+     * 길이 필드 이후의 payload 를 읽는다.
+     */
+    static AccountEvent decodePayload(ByteBuffer buffer) {
+        byte type = buffer.get();
+        long amount = buffer.getLong();
+        String memberId = getId(buffer);
+        switch (type) {
+            case DEPOSITED:
+                return new AccountEvent.Deposited(memberId, amount);
+            case WITHDRAWN:
+                return new AccountEvent.Withdrawn(memberId, amount);
+            case TRANSFERRED:
+                return new AccountEvent.Transferred(memberId, getId(buffer), amount);
+            default:
+                throw new IllegalStateException("unknown event type: " + type);
+        }
+    }
+
+    static void putId(ByteBuffer buffer, String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        buffer.put((byte) bytes.length).put(bytes);
+    }
+
+    static String getId(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
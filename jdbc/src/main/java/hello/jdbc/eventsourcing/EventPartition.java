@@ -0,0 +1,211 @@
+package hello.jdbc.eventsourcing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 하나의 partition 에 속한 계좌의 이벤트 파일과 스냅샷, 메모리 상의 계좌 상태
+ * -> events-{index}.bin : 이벤트를 추가만 하는 파일
+ * -> snapshot-{index}.bin : [long 이벤트 파일 offset][int 계좌 수] 이후 계좌마다 [byte ID 길이][ID][long 잔액][long version]
+ * -> 스냅샷은 임시 파일에 기록한 뒤 교체하므로, 기록 도중 종료되어도 이전 스냅샷이 유지된다.
+ */
+@Slf4j
+class EventPartition implements Closeable {
+
+    private static final int READ_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final int index;
+    private final int partitions;
+    private final int snapshotEvery;
+    private final Path eventFile;
+    private final Path snapshotFile;
+    private final FileChannel channel;
+    private final Map<String, MemberAccount> accounts = new HashMap<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(EventCodec.MAX_RECORD_BYTES);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long eventsSinceSnapshot;
+    private long replayedEvents;
+
+    EventPartition(Path directory, int index, int partitions, int snapshotEvery) throws IOException {
+        this.index = index;
+        this.partitions = partitions;
+        this.snapshotEvery = snapshotEvery;
+        this.eventFile = directory.resolve("events-" + index + ".bin");
+        this.snapshotFile = directory.resolve("snapshot-" + index + ".bin");
+        this.channel = FileChannel.open(eventFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    static int partitionOf(String memberId, int partitions) {
+        return Math.floorMod(memberId.hashCode(), partitions);
+    }
+
+    /**
+     * 스냅샷을 읽고, 스냅샷 이후의 이벤트를 적용해 계좌 상태를 복원한다.
+     * -> 마지막 레코드가 잘린 경우 해당 레코드를 잘라낸다.
+     */
+    void recover() throws IOException {
+        long offset = loadSnapshot();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        long position = offset;
+        long validEnd = offset;
+        channel.position(offset);
+        boolean corrupted = false;
+        while (!corrupted && channel.read(buffer) > 0) {
+            buffer.flip();
+            while (buffer.remaining() >= EventCodec.LENGTH_BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > EventCodec.MAX_RECORD_BYTES) {
+                    corrupted = true;
+                    break;
+                }
+                if (buffer.remaining() < EventCodec.LENGTH_BYTES + length) {
+                    break;
+                }
+                buffer.position(buffer.position() + EventCodec.LENGTH_BYTES);
+                apply(EventCodec.decodePayload(buffer));
+                replayedEvents++;
+                validEnd = position + buffer.position();
+            }
+            // 처리한 바이트만큼 offset 을 옮기고, 남은 바이트는 다음 읽기와 이어서 처리한다
+            position += buffer.position();
+            buffer.compact();
+        }
+        if (validEnd < channel.size()) {
+            log.warn("torn event record truncated, partition={}, bytes={}", index, channel.size() - validEnd);
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        eventsSinceSnapshot = replayedEvents;
+    }
+
+    private long loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        long offset = buffer.getLong();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String memberId = EventCodec.getId(buffer);
+            accounts.put(memberId, new MemberAccount(memberId, buffer.getLong(), buffer.getLong()));
+        }
+        return offset;
+    }
+
+    void append(AccountEvent event) throws IOException {
+        lock.lock();
+        try {
+            writeBuffer.clear();
+            EventCodec.encode(event, writeBuffer);
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            apply(event);
+            if (++eventsSinceSnapshot >= snapshotEvery) {
+                snapshot();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 해당 partition 에 속한 계좌에만 이벤트를 적용한다.
+     */
+    private void apply(AccountEvent event) {
+        if (event instanceof AccountEvent.Transferred transferred) {
+            applyIfOwned(transferred.fromId(), event);
+            if (!transferred.toId().equals(transferred.fromId())) {
+                applyIfOwned(transferred.toId(), event);
+            }
+        } else if (event instanceof AccountEvent.Deposited deposited) {
+            applyIfOwned(deposited.memberId(), event);
+        } else if (event instanceof AccountEvent.Withdrawn withdrawn) {
+            applyIfOwned(withdrawn.memberId(), event);
+        }
+    }
+
+    private void applyIfOwned(String memberId, AccountEvent event) {
+        if (partitionOf(memberId, partitions) == index) {
+            accounts.computeIfAbsent(memberId, MemberAccount::new).apply(event);
+        }
+    }
+
+    void snapshot() throws IOException {
+        lock.lock();
+        try {
+            int size = Long.BYTES + Integer.BYTES;
+            for (String memberId : accounts.keySet()) {
+                size += 1 + memberId.getBytes(StandardCharsets.UTF_8).length + 2 * Long.BYTES;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putLong(channel.position()).putInt(accounts.size());
+            for (MemberAccount account : accounts.values()) {
+                EventCodec.putId(buffer, account.getMemberId());
+                buffer.putLong(account.getBalance()).putLong(account.getVersion());
+            }
+            buffer.flip();
+
+            // 이벤트 파일을 먼저 디스크에 반영해야 스냅샷의 offset 이 가리키는 이벤트가 유실되지 않는다
+            channel.force(false);
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            eventsSinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    MemberAccount find(String memberId) {
+        lock.lock();
+        try {
+            MemberAccount account = accounts.get(memberId);
+            return account == null ? null : account.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    int accountCount() {
+        return accounts.size();
+    }
+
+    long getReplayedEvents() {
+        return replayedEvents;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
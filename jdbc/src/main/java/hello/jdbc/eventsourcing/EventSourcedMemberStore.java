@@ -0,0 +1,191 @@
+package hello.jdbc.eventsourcing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 이벤트 소싱 방식의 회원 계좌 저장소
+ * -> 계좌는 memberId 의 hash 값으로 partition 에 나뉘며, partition 마다 이벤트 파일과 스냅샷을 가진다.
+ * -> 열 때 partition 별로 병렬로 스냅샷을 읽고 이후의 이벤트를 리플레이하여 모든 계좌 상태를 메모리에 복원한다.
+ * -> 조회는 메모리 상의 상태를 사용하므로 이벤트 수와 관계없이 일정한 시간이 걸린다.
+ * -
+ * 이벤트는 OS 의 page cache 까지만 기록되며, 디스크 반영은 스냅샷 시점 또는 flush() 호출 시에 이루어진다.
+ * 서로 다른 partition 간의 이체는 두 partition 에 각각 기록되므로, 두 기록 사이에 프로세스가 종료되면 한쪽만 남을 수 있다.
+ */
+@Slf4j
+public class EventSourcedMemberStore implements Closeable {
+
+    private final List<EventPartition> partitions;
+    private final long replayNanos;
+
+    private EventSourcedMemberStore(List<EventPartition> partitions, long replayNanos) {
+        this.partitions = partitions;
+        this.replayNanos = replayNanos;
+    }
+
+    /**
+     * @param directory 이벤트 파일과 스냅샷을 저장할 디렉토리
+     * @param partitionCount 같은 디렉토리는 항상 같은 partition 수로 열어야 한다
+     * @param snapshotEvery partition 마다 해당 수의 이벤트가 추가될 때마다 스냅샷을 기록한다
+     * @param replayThreads 리플레이에 사용할 쓰레드 수
+     */
+    public static EventSourcedMemberStore open(Path directory, int partitionCount, int snapshotEvery, int replayThreads)
+            throws IOException {
+        Files.createDirectories(directory);
+        List<EventPartition> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new EventPartition(directory, i, partitionCount, snapshotEvery));
+        }
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(replayThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(partitionCount);
+            for (EventPartition partition : partitions) {
+                futures.add(executor.submit(() -> {
+                    partition.recover();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while replaying events", e);
+        } finally {
+            executor.shutdown();
+        }
+        EventSourcedMemberStore store = new EventSourcedMemberStore(partitions, System.nanoTime() - start);
+        log.info("replayed {} events into {} accounts in {} ms",
+                store.getReplayedEvents(), store.accountCount(), store.replayNanos / 1_000_000);
+        return store;
+    }
+
+    public void deposit(String memberId, long amount) {
+        append(partitionOf(memberId), new AccountEvent.Deposited(memberId, amount));
+    }
+
+    public void withdraw(String memberId, long amount) {
+        append(partitionOf(memberId), new AccountEvent.Withdrawn(memberId, amount));
+    }
+
+    public void accountTransfer(String fromId, String toId, long amount) {
+        validation(toId);
+        AccountEvent event = new AccountEvent.Transferred(fromId, toId, amount);
+        EventPartition from = partitionOf(fromId);
+        EventPartition to = partitionOf(toId);
+        if (from == to) {
+            append(from, event);
+            return;
+        }
+        // 교착을 피하기 위해 항상 같은 순서로 잠근다
+        EventPartition first = partitions.indexOf(from) < partitions.indexOf(to) ? from : to;
+        EventPartition second = first == from ? to : from;
+        first.getLock().lock();
+        second.getLock().lock();
+        try {
+            append(from, event);
+            append(to, event);
+        } finally {
+            second.getLock().unlock();
+            first.getLock().unlock();
+        }
+    }
+
+    public MemberAccount findById(String memberId) {
+        MemberAccount account = partitionOf(memberId).find(memberId);
+        if (account == null) {
+            throw new NoSuchElementException("memberId = " + memberId + " does not exist...");
+        }
+        return account;
+    }
+
+    public long getBalance(String memberId) {
+        return findById(memberId).getBalance();
+    }
+
+    public int accountCount() {
+        int count = 0;
+        for (EventPartition partition : partitions) {
+            count += partition.accountCount();
+        }
+        return count;
+    }
+
+    public long getReplayedEvents() {
+        long events = 0;
+        for (EventPartition partition : partitions) {
+            events += partition.getReplayedEvents();
+        }
+        return events;
+    }
+
+    public long getReplayNanos() {
+        return replayNanos;
+    }
+
+    /**
+     * 모든 partition 의 스냅샷을 기록한다. -> 다음에 열 때 리플레이할 이벤트가 없어진다.
+     */
+    public void snapshot() throws IOException {
+        for (EventPartition partition : partitions) {
+            partition.snapshot();
+        }
+    }
+
+    public void flush() throws IOException {
+        for (EventPartition partition : partitions) {
+            partition.force();
+        }
+    }
+
+    private EventPartition partitionOf(String memberId) {
+        return partitions.get(EventPartition.partitionOf(memberId, partitions.size()));
+    }
+
+    private void append(EventPartition partition, AccountEvent event) {
+        try {
+            partition.append(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toId 가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toId
+     */
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (EventPartition partition : partitions) {
+            partition.close();
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package hello.jdbc.eventsourcing;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 이벤트를 적용해서 만드는 회원 계좌 상태 (aggregate)
+ * -> version 은 해당 계좌에 적용된 이벤트 수
+ */
+@Getter
+@ToString
+public class MemberAccount {
+
+    private final String memberId;
+    private long balance;
+    private long version;
+
+    MemberAccount(String memberId) {
+        this.memberId = memberId;
+    }
+
+    MemberAccount(String memberId, long balance, long version) {
+        this.memberId = memberId;
+        this.balance = balance;
+        this.version = version;
+    }
+
+    void apply(AccountEvent event) {
+        if (event instanceof AccountEvent.Deposited deposited) {
+            balance += deposited.amount();
+        } else if (event instanceof AccountEvent.Withdrawn withdrawn) {
+            balance -= withdrawn.amount();
+        } else if (event instanceof AccountEvent.Transferred transferred) {
+            if (memberId.equals(transferred.fromId())) {
+                balance -= transferred.amount();
+            }
+            if (memberId.equals(transferred.toId())) {
+                balance += transferred.amount();
+            }
+        }
+        version++;
+    }
+
+    MemberAccount copy() {
+        return new MemberAccount(memberId, balance, version);
+    }
+
+}
@@ -0,0 +1,114 @@
+package hello.jdbc.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * DB 시퀀스 기반 hi/lo 블록 할당 ID 발급기
+ * -> 시퀀스에서 hi 값을 한 번 조회하면 [hi * blockSize, (hi + 1) * blockSize) 범위의 ID 를 DB 조회 없이 발급한다.
+ * -> 여러 노드가 같은 시퀀스를 공유해도 블록이 겹치지 않으므로 키 중복이 발생하지 않는다.
+ * -> 블록 내 발급은 AtomicLong 으로 lock 없이 처리하고, 블록이 소진된 경우에만 하나의 쓰레드가 시퀀스를 조회한다.
+ * -> 애플리케이션이 재시작되면 사용하지 않은 블록의 나머지 ID 는 버려진다. (ID 에 빈 구간이 생길 수 있음)
+ */
+@Slf4j
+public class HiLoIdGenerator implements MemberIdGenerator {
+
+    public static final String DEFAULT_SEQUENCE = "member_id_seq";
+
+    private static final Pattern SEQUENCE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final int blockSize;
+
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(0, 0));
+    private final Object refillLock = new Object();
+
+    private final LongAdder dbCalls = new LongAdder();
+    private final LongAdder issued = new LongAdder();
+
+    public HiLoIdGenerator(DataSource dataSource, int blockSize) {
+        this(dataSource, DEFAULT_SEQUENCE, blockSize);
+    }
+
+    public HiLoIdGenerator(DataSource dataSource, String sequenceName, int blockSize) {
+        if (!SEQUENCE_NAME.matcher(sequenceName).matches()) {
+            throw new IllegalArgumentException("invalid sequence name : " + sequenceName);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive : " + blockSize);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.nextValueSql = "select next value for " + sequenceName;
+        this.blockSize = blockSize;
+        jdbcTemplate.execute("create sequence if not exists " + sequenceName + " start with 0 minvalue 0");
+    }
+
+    @Override
+    public String nextId() {
+        return String.valueOf(nextLong());
+    }
+
+    public long nextLong() {
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                issued.increment();
+                return value;
+            }
+            refill(block);
+        }
+    }
+
+    /**
+     * 소진된 블록을 새로운 블록으로 교체한다.
+     * -> 여러 쓰레드가 동시에 블록 소진을 발견하더라도 시퀀스는 한 번만 조회한다.
+     * @param exhausted
+     */
+    private void refill(Block exhausted) {
+        synchronized (refillLock) {
+            if (current.get() != exhausted) {
+                return;
+            }
+            Long hi = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+            dbCalls.increment();
+            long start = hi * blockSize;
+            current.set(new Block(start, start + blockSize));
+            log.debug("id block allocated [{}, {})", start, start + blockSize);
+        }
+    }
+
+    public long getDbCalls() {
+        return dbCalls.sum();
+    }
+
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    /**
+     * ID 1건마다 DB 를 조회했을 경우와 비교하여 절약한 DB 조회 수
+     * @return
+     */
+    public long getDbCallsSaved() {
+        return getIssued() - getDbCalls();
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package hello.jdbc.id;
+
+/**
+ * 새로운 memberId 를 발급하는 전략
+ * -> 키 중복이 발생한 뒤 임의의 값을 붙여 재시도하는 방식은 테이블이 커질수록 재시도 횟수가 늘어난다.
+ * -> 충돌하지 않는 ID 를 발급하면 재시도 자체가 필요하지 않다.
+ */
+public interface MemberIdGenerator {
+    String nextId();
+}
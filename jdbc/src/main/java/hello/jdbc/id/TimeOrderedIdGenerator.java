@@ -0,0 +1,88 @@
+package hello.jdbc.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 시간 순서로 정렬되는 ID 발급기 (Snowflake 방식)
+ * -> DB 조회 없이 노드 내부에서 ID 를 발급하므로 키 중복 후 재시도가 발생하지 않는다.
+ * -> 상태(timestamp + sequence)를 하나의 AtomicLong 에 담고 CAS 로 갱신하므로 lock 없이 동작한다.
+ * -> 같은 노드에서 발급된 ID 는 항상 증가한다. (시계가 뒤로 가더라도 이전 값에 이어서 발급)
+ * -
+ * 59 bit 구성 = timestamp(39 bit, epoch 기준 ms) + node(8 bit) + sequence(12 bit)
+ * -> 고정 길이 10자리 base62 문자열로 인코딩하므로 member_id varchar(10) 컬럼에 저장할 수 있고,
+ *    문자열 정렬 순서가 발급 순서와 일치한다.
+ * -> 39 bit timestamp 는 epoch 로부터 약 17년 동안 사용할 수 있다.
+ * -> 1ms 동안 4096 개를 초과하여 발급하면 다음 ms 의 sequence 를 앞당겨 사용한다.
+ */
+public class TimeOrderedIdGenerator implements MemberIdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long DEFAULT_EPOCH = 1_704_067_200_000L;
+
+    private static final int TIMESTAMP_BITS = 39;
+    private static final int NODE_BITS = 8;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_TIMESTAMP = (1L << TIMESTAMP_BITS) - 1;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int ID_LENGTH = 10;
+    // ASCII 순서대로 나열하여 고정 길이 문자열의 정렬 순서가 숫자의 정렬 순서와 같도록 한다
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final long node;
+    private final long epoch;
+    private final LongSupplier clock;
+
+    // (timestamp << SEQUENCE_BITS) | sequence
+    private final AtomicLong state = new AtomicLong();
+
+    public TimeOrderedIdGenerator(int node) {
+        this(node, DEFAULT_EPOCH, System::currentTimeMillis);
+    }
+
+    public TimeOrderedIdGenerator(int node, long epoch, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("node must be between 0 and " + MAX_NODE + " : " + node);
+        }
+        if (clock.getAsLong() < epoch) {
+            throw new IllegalArgumentException("epoch must not be in the future : " + epoch);
+        }
+        this.node = node;
+        this.epoch = epoch;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return encode(nextLong());
+    }
+
+    public long nextLong() {
+        while (true) {
+            long prev = state.get();
+            long now = clock.getAsLong() - epoch;
+            // 새로운 ms 라면 sequence 를 0 부터, 같은 ms(또는 시계가 뒤로 간 경우)라면 이전 값에 이어서 발급한다
+            long next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+            if (state.compareAndSet(prev, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                if (timestamp > MAX_TIMESTAMP) {
+                    throw new IllegalStateException("timestamp bits exhausted, epoch = " + epoch);
+                }
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    static String encode(long value) {
+        char[] buf = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            buf[i] = ALPHABET[(int) (value % ALPHABET.length)];
+            value /= ALPHABET.length;
+        }
+        return new String(buf);
+    }
+
+}
@@ -0,0 +1,22 @@
+package hello.jdbc.lazy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * hello.datasource.lazy-acquisition=true 인 경우 커넥션을 첫 SQL 실행 시점에 가져온다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hello.datasource", name = "lazy-acquisition", havingValue = "true")
+public class LazyConnectionConfig {
+
+    /**
+     * BeanPostProcessor 는 다른 빈보다 먼저 만들어져야 하므로 static 으로 등록한다.
+     */
+    @Bean
+    static LazyConnectionDataSourcePostProcessor lazyConnectionDataSourcePostProcessor() {
+        return new LazyConnectionDataSourcePostProcessor();
+    }
+
+}
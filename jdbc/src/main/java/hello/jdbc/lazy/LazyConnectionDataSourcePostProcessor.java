@@ -0,0 +1,38 @@
+package hello.jdbc.lazy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource 빈을 LazyConnectionDataSourceProxy 로 감싼다.
+ * -> 트랜잭션이 시작되어도 첫 SQL 을 실행하기 전까지 커넥션 풀에서 커넥션을 가져오지 않는다.
+ * -> 트랜잭션 시작 시 지정한 readOnly, 격리 수준, autoCommit 은 기록해 두었다가 실제 커넥션을 가져올 때 적용한다.
+ * -> SQL 없이 끝난 트랜잭션의 commit, rollback 은 아무것도 하지 않는다.
+ * -
+ * 트랜잭션 매니저와 Repository 가 같은 프록시를 사용해야 커넥션 동기화가 동작하므로 DataSource 빈 자체를 교체한다.
+ * 기본 autoCommit, 격리 수준은 지정하지 않고 target 커넥션에서 읽는다.
+ * -> 값을 미리 지정하면 풀이나 DB 설정으로 바뀐 실제 기본값과 어긋날 수 있고, 이 경우 트랜잭션이 지정한 격리 수준이 적용되지 않는다.
+ */
+@Slf4j
+public class LazyConnectionDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LazyConnectionDataSourceProxy)) {
+            log.info("wrap DataSource with LazyConnectionDataSourceProxy, beanName = {}", beanName);
+            return lazy(dataSource);
+        }
+        return bean;
+    }
+
+    public static LazyConnectionDataSourceProxy lazy(DataSource dataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(dataSource);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+}
@@ -0,0 +1,78 @@
+package hello.jdbc.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 스냅샷에 반영되지 않은 원장을 회원별로 합산해 balance_snapshot 에 반영한다.
+ * -> 하나의 트랜잭션에서 (1) 반영할 원장에 새 snapshot_id 를 표시하고 (2) 표시한 원장의 합계를 스냅샷에 더한다.
+ * -> entry_id 기준으로 반영 범위를 정하면 늦게 커밋된 원장(더 작은 entry_id)이 누락될 수 있으므로,
+ *    커밋되어 보이는 원장에 직접 표시하는 방식을 사용한다.
+ * -> 원장의 금액은 변경하지 않으므로 감사 시 전체 이력을 그대로 조회할 수 있다.
+ */
+@Slf4j
+public class LedgerCompactor implements AutoCloseable {
+
+    private static final String MERGE_SNAPSHOT = "merge into balance_snapshot s " +
+            "using (select member_id, sum(delta) as delta from ledger_entry where snapshot_id = ? group by member_id) e " +
+            "on s.member_id = e.member_id " +
+            "when matched then update set balance = s.balance + e.delta, updated_at = current_timestamp " +
+            "when not matched then insert (member_id, balance) values (e.member_id, e.delta)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LedgerCompactor(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compactOnce();
+            } catch (RuntimeException e) {
+                log.error("ledger compaction failed", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 스냅샷에 반영한 원장 수
+     */
+    public int compactOnce() {
+        Integer compacted = transactionTemplate.execute(status -> {
+            long snapshotId = jdbcTemplate.queryForObject("select next value for ledger_snapshot_seq", Long.class);
+            int marked = jdbcTemplate.update("update ledger_entry set snapshot_id = ? where snapshot_id is null", snapshotId);
+            if (marked > 0) {
+                jdbcTemplate.update(MERGE_SNAPSHOT, snapshotId);
+            }
+            return marked;
+        });
+        return compacted == null ? 0 : compacted;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package hello.jdbc.ledger;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class LedgerEntry {
+
+    private final String memberId;
+    private final long delta;
+
+}
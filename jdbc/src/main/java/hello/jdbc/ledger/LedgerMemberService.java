@@ -0,0 +1,60 @@
+package hello.jdbc.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 원장 모드의 계좌이체
+ * -> 잔액을 덮어쓰는 대신 출금(-money), 입금(+money) 두 건의 원장을 같은 tx_id 로 추가한다.
+ * -> 두 원장은 하나의 batch insert 로 하나의 트랜잭션에서 커밋된다.
+ */
+@Slf4j
+public class LedgerMemberService {
+
+    private final LedgerRepository ledgerRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public LedgerMemberService(DataSource dataSource) {
+        this.ledgerRepository = new LedgerRepository(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * 초기 잔액 입금
+     */
+    public String deposit(String memberId, long money) {
+        String txId = UUID.randomUUID().toString();
+        ledgerRepository.append(txId, List.of(new LedgerEntry(memberId, money)));
+        return txId;
+    }
+
+    public String accountTransfer(String fromId, String toId, int money) {
+        validation(toId);
+        String txId = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> ledgerRepository.append(txId, List.of(
+                new LedgerEntry(fromId, -money),
+                new LedgerEntry(toId, money))));
+        return txId;
+    }
+
+    public long getBalance(String memberId) {
+        return ledgerRepository.balanceOf(memberId);
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toId 가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toId
+     */
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package hello.jdbc.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 원장(ledger_entry)에 잔액 변경을 추가하고, 스냅샷 + 원장 tail 의 합계로 잔액을 조회한다.
+ * -> 변경은 insert 만 수행하므로 같은 회원의 잔액을 동시에 변경해도 row lock 을 기다리지 않는다.
+ * -> 조회 비용은 마지막 스냅샷 이후의 원장 수에 비례하므로 LedgerCompactor 로 주기적으로 스냅샷에 반영해야 한다.
+ */
+@Slf4j
+public class LedgerRepository {
+
+    private static final String INSERT_ENTRY = "insert into ledger_entry(member_id, delta, tx_id) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * 하나의 거래에 속한 원장 항목을 batch insert 로 추가한다.
+     * -> 여러 항목을 원자적으로 추가하려면 호출하는 쪽에서 트랜잭션을 시작해야 한다.
+     */
+    public void append(String txId, List<LedgerEntry> entries) {
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (LedgerEntry entry : entries) {
+            args.add(new Object[]{entry.getMemberId(), entry.getDelta(), txId});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, args);
+    }
+
+    public long balanceOf(String memberId) {
+        String sql = "select coalesce((select balance from balance_snapshot where member_id = ?), 0) " +
+                "+ coalesce((select sum(delta) from ledger_entry where member_id = ? and snapshot_id is null), 0)";
+        return jdbcTemplate.queryForObject(sql, Long.class, memberId, memberId);
+    }
+
+    /**
+     * 마지막 스냅샷 이후 추가된 원장 수
+     */
+    public long tailLength(String memberId) {
+        String sql = "select count(*) from ledger_entry where member_id = ? and snapshot_id is null";
+        return jdbcTemplate.queryForObject(sql, Long.class, memberId);
+    }
+
+    public List<LedgerEntry> history(String memberId) {
+        String sql = "select member_id, delta from ledger_entry where member_id = ? order by entry_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new LedgerEntry(rs.getString("member_id"), rs.getLong("delta")), memberId);
+    }
+
+}
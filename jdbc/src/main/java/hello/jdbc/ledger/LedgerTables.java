@@ -0,0 +1,33 @@
+package hello.jdbc.ledger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 원장 모드에 필요한 테이블
+ * 1. ledger_entry -> 잔액 변경(delta)을 추가만 하는 원장. snapshot_id 는 스냅샷에 반영된 이후에 채워진다.
+ * 2. balance_snapshot -> 스냅샷에 반영된 원장 합계
+ * -> 잔액 = balance_snapshot.balance + 아직 스냅샷에 반영되지 않은 원장의 합계
+ */
+public abstract class LedgerTables {
+
+    public static void create(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists ledger_entry (" +
+                "entry_id bigint auto_increment primary key, " +
+                "member_id varchar(10) not null, " +
+                "delta bigint not null, " +
+                "tx_id varchar(36) not null, " +
+                "snapshot_id bigint, " +
+                "created_at timestamp not null default current_timestamp)");
+        jdbcTemplate.execute("create index if not exists idx_ledger_entry_tail on ledger_entry(member_id, snapshot_id)");
+        jdbcTemplate.execute("create index if not exists idx_ledger_entry_snapshot on ledger_entry(snapshot_id)");
+        jdbcTemplate.execute("create table if not exists balance_snapshot (" +
+                "member_id varchar(10) primary key, " +
+                "balance bigint not null, " +
+                "updated_at timestamp not null default current_timestamp)");
+        jdbcTemplate.execute("create sequence if not exists ledger_snapshot_seq");
+    }
+
+}
@@ -0,0 +1,11 @@
+package hello.jdbc.manual;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+
+    T doInConnection(Connection conn) throws SQLException;
+
+}
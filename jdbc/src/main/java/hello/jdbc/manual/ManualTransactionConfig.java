@@ -0,0 +1,45 @@
+package hello.jdbc.manual;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.service.MemberServiceV2_1;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * hello.manual-transaction.enabled=true 인 경우 MemberServiceV2_1 을 autoCommit=false 인 전용 커넥션 풀로 등록한다.
+ * -> 접속 정보는 spring.datasource.* 를 그대로 사용하고, 애플리케이션 전체 풀은 autoCommit=true 로 남겨둔다.
+ * -> 전용 풀은 DataSource 빈으로 등록하지 않는다. 등록하면 스프링 부트의 DataSource 자동 구성이 물러나고,
+ *    JdbcTemplate, 트랜잭션 매니저가 수동 커밋 풀을 사용하게 된다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hello.manual-transaction", name = "enabled", havingValue = "true")
+public class ManualTransactionConfig {
+
+    private final HikariDataSource manualCommitPool;
+
+    public ManualTransactionConfig(DataSourceProperties properties,
+                                   @Value("${hello.manual-transaction.maximum-pool-size:10}") int maximumPoolSize) {
+        // 기본 생성자로 만들어지므로 첫 getConnection() 전까지 풀을 시작하지 않는다
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("manual-commit");
+        pool.setAutoCommit(false);
+        pool.setMaximumPoolSize(maximumPoolSize);
+        this.manualCommitPool = pool;
+    }
+
+    @Bean
+    MemberServiceV2_1 memberServiceV2_1() {
+        return new MemberServiceV2_1(manualCommitPool, new MemberRepositoryV2(manualCommitPool));
+    }
+
+    @PreDestroy
+    void close() {
+        manualCommitPool.close();
+    }
+
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.manual;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection 을 Parameter 로 전달하는 방식(MemberRepositoryV2)의 트랜잭션 시작, 커밋 or 롤백, 반환을 담당한다.
+ * -
+ * MemberServiceV2 는 트랜잭션마다 setAutoCommit(false) 와 setAutoCommit(true) 를 실행한다.
+ * -> TCP 모드에서는 각각이 DB 왕복이고, 커넥션 풀(hikari)은 변경된 상태를 반환 시점에 다시 되돌린다.
+ * -> 이 템플릿 전용으로 autoCommit=false 인 커넥션 풀을 따로 구성하면 (ManualTransactionConfig)
+ *    가져온 커넥션이 이미 수동 커밋 모드이므로 autoCommit 을 바꾸지 않고 commit or rollback 만 실행한다.
+ * -> autoCommit=true 인 풀에서도 동작하며, 이 경우에만 autoCommit 을 바꾸고 반환 전에 원래대로 되돌린다.
+ * -
+ * 애플리케이션 전체 풀(spring.datasource.hikari.auto-commit=false)을 바꾸면 안 된다.
+ * -> JdbcTemplate 등 트랜잭션 없이 실행하는 쓰기는 커밋되지 않는다.
+ * -> hikari 는 커밋되지 않은 autoCommit=false 커넥션을 반환 시 롤백하므로 이 쓰기가 조용히 사라진다.
+ * -
+ * 커넥션 풀의 위생
+ * -> 정상 종료, 예외 모두 commit or rollback 으로 트랜잭션을 끝낸 뒤 반환하므로 다음 사용자에게 진행 중인 트랜잭션이 남지 않는다.
+ * -> rollback 중 예외가 발생하면 원래 예외에 덧붙이고, 커넥션은 그대로 반환한다. (hikari 는 반환 시 롤백한다)
+ */
+@Slf4j
+public class ManualTransactionTemplate {
+
+    private final DataSource dataSource;
+
+    public ManualTransactionTemplate(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public <T> T execute(ConnectionCallback<T> callback) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        boolean restoreAutoCommit = false;
+        try {
+            // 드라이버와 풀이 상태를 보관하므로 조회는 DB 왕복이 아니다
+            if (conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            T result = callback.doInConnection(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            rollback(conn, e);
+            throw e;
+        } finally {
+            release(conn, restoreAutoCommit);
+        }
+    }
+
+    private void rollback(Connection conn, Throwable cause) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void release(Connection conn, boolean restoreAutoCommit) {
+        if (restoreAutoCommit) {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.error("restore auto commit failed... {}", conn, e);
+            }
+        }
+        JdbcUtils.closeConnection(conn);
+    }
+
+}
@@ -0,0 +1,27 @@
+package hello.jdbc.outbox;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * relay 가 outbox 의 이벤트를 전달하는 대상
+ */
+public interface EventSink {
+
+    /**
+     * 반환된 시점에는 전달한 이벤트가 모두 반영되어 있어야 한다.
+     * @param events seq 순서로 정렬된 이벤트
+     * @throws IOException
+     */
+    void publish(List<MemberEvent> events) throws IOException;
+
+    /**
+     * 마지막으로 반영한 batch 의 seq 목록
+     * -> relay 는 batch 를 반영한 뒤 outbox 에서 삭제하므로, 반영은 되었지만 삭제되지 않은 이벤트는 마지막 batch 에만 존재할 수 있다.
+     * -> relay 가 재시작할 때 이 목록에 포함된 이벤트는 다시 발행하지 않는다.
+     * @return
+     */
+    Set<Long> lastPublishedSeqs();
+
+}
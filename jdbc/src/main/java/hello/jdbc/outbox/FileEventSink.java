@@ -0,0 +1,137 @@
+package hello.jdbc.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 이벤트를 파일에 추가한다.
+ * -> 한 줄에 하나의 이벤트를 "E {seq} {type} {memberId} {money}" 형식으로 기록하고, batch 의 끝에 "C {count}" 를 기록한다.
+ * -> 마지막 "C" 이후의 줄은 기록 도중 종료된 batch 이므로 파일을 열 때 잘라낸다. relay 가 해당 batch 를 다시 발행한다.
+ * -> 기록 도중 예외가 발생하면 기록한 일부를 바로 잘라내므로, relay 가 다시 발행한 batch 가 조각난 줄 뒤에 이어 붙지 않는다.
+ */
+@Slf4j
+public class FileEventSink implements EventSink, Closeable {
+
+    private static final String NULL = "-";
+
+    private final FileChannel channel;
+    private Set<Long> lastPublishedSeqs = Set.of();
+
+    FileEventSink(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static FileEventSink open(Path path) throws IOException {
+        FileEventSink sink = new FileEventSink(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        sink.recover(path);
+        return sink;
+    }
+
+    private void recover(Path path) throws IOException {
+        long committedLength = 0;
+        long position = 0;
+        Set<Long> batch = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                position += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (line.startsWith("E ")) {
+                    int end = line.indexOf(' ', 2);
+                    batch.add(Long.parseLong(line.substring(2, end)));
+                } else if (line.startsWith("C ")) {
+                    committedLength = position;
+                    lastPublishedSeqs = batch;
+                    batch = new HashSet<>();
+                }
+            }
+        }
+        if (committedLength < position) {
+            log.warn("incomplete batch truncated, path={}, bytes={}", path, position - committedLength);
+        }
+        channel.truncate(committedLength);
+        channel.position(committedLength);
+    }
+
+    @Override
+    public synchronized void publish(List<MemberEvent> events) throws IOException {
+        StringBuilder sb = new StringBuilder(events.size() * 32);
+        Set<Long> seqs = new HashSet<>(events.size() * 2);
+        for (MemberEvent event : events) {
+            sb.append("E ").append(event.getSeq())
+                    .append(' ').append(event.getType())
+                    .append(' ').append(event.getMemberId() == null ? NULL : event.getMemberId())
+                    .append(' ').append(event.getMoney() == null ? NULL : event.getMoney())
+                    .append('\n');
+            seqs.add(event.getSeq());
+        }
+        sb.append("C ").append(events.size()).append('\n');
+
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        lastPublishedSeqs = seqs;
+    }
+
+    @Override
+    public synchronized Set<Long> lastPublishedSeqs() {
+        return lastPublishedSeqs;
+    }
+
+    /**
+     * 파일에 기록된 이벤트를 순서대로 읽는다. (마지막 "C" 이후의 줄은 제외)
+     */
+    public static List<MemberEvent> readAll(Path path) throws IOException {
+        List<MemberEvent> events = new ArrayList<>();
+        List<MemberEvent> batch = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("E ")) {
+                    String[] fields = line.split(" ");
+                    batch.add(new MemberEvent(
+                            Long.parseLong(fields[1]),
+                            MemberEvent.Type.valueOf(fields[2]),
+                            NULL.equals(fields[3]) ? null : fields[3],
+                            NULL.equals(fields[4]) ? null : Integer.valueOf(fields[4])));
+                } else if (line.startsWith("C ")) {
+                    events.addAll(batch);
+                    batch.clear();
+                }
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+}
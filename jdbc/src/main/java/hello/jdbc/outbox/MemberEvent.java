@@ -0,0 +1,27 @@
+package hello.jdbc.outbox;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 회원 잔액 변경 이벤트
+ * -> money 는 변경 이후의 잔액이며, 삭제 / 전체 삭제 이벤트인 경우 null 이다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class MemberEvent {
+
+    public enum Type {
+        SAVED, UPDATED, DELETED, CLEARED
+    }
+
+    private final long seq;
+    private final Type type;
+    private final String memberId;
+    private final Integer money;
+
+}
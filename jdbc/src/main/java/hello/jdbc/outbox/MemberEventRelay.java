@@ -0,0 +1,233 @@
+package hello.jdbc.outbox;
+
+import hello.jdbc.saga.ClaimMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * member_event 테이블의 이벤트를 EventSink 로 전달하는 relay
+ * -> batch 를 선점(claimed_by, claimed_at 기록 후 커밋) -> sink 에 발행 -> 선점한 row 만 outbox 에서 삭제 한다.
+ *    -> 선점한 row 는 lease 가 만료되기 전까지 다른 relay 가 가져가지 않으므로, 여러 relay 가 동시에 같은 이벤트를 발행하지 않는다.
+ *    -> 발행은 트랜잭션 밖에서 하므로 sink 가 느려도 row 잠금을 오래 잡고 있지 않는다.
+ * -> 발행한 seq 는 batch 마다 기록해 두고, 삭제가 커밋된 뒤에 지운다.
+ *    -> 삭제(커밋)가 실패하면 같은 relay 가 자신이 선점한 row 를 다시 가져가고, 이미 발행한 이벤트는 다시 발행하지 않고 삭제만 한다.
+ *    -> 재시작 시에는 sink 의 마지막 batch seq 목록으로 시작한다.
+ * -> relay 가 발행 이후 삭제 전에 종료되고 lease 가 만료되면 다른 relay 가 해당 batch 를 다시 발행할 수 있다. (at-least-once)
+ */
+@Slf4j
+public class MemberEventRelay implements AutoCloseable {
+
+    public static final Duration DEFAULT_LEASE = Duration.ofMinutes(1);
+
+    public static final String SELECT_CLAIMABLE = "select seq, event_type, member_id, money from member_event " +
+            "where claimed_by is null or claimed_by = ? or claimed_at < ? " +
+            "order by seq limit ?";
+    public static final String CLAIM = "update member_event set claimed_by = ?, claimed_at = ? where seq = ?";
+    public static final String DELETE_CLAIMED = "delete from member_event where seq = ? and claimed_by = ?";
+    public static final String RELEASE = "update member_event set claimed_by = null, claimed_at = null " +
+            "where seq = ? and claimed_by = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClaimMode claimMode;
+    private final String relayId = UUID.randomUUID().toString();
+    private final EventSink sink;
+    private final int batchSize;
+    private final Duration lease;
+    private final Set<Long> publishedNotDeleted = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "member-event-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public MemberEventRelay(DataSource dataSource, EventSink sink, int batchSize) {
+        this(dataSource, sink, batchSize, DEFAULT_LEASE, ClaimMode.detect(dataSource));
+    }
+
+    /**
+     * @param lease 선점 이후 해당 시간이 지나면 다른 relay 가 다시 선점할 수 있다. 한 batch 를 발행하는 시간보다 길어야 한다.
+     */
+    public MemberEventRelay(DataSource dataSource, EventSink sink, int batchSize, Duration lease, ClaimMode claimMode) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.claimMode = claimMode;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.publishedNotDeleted.addAll(sink.lastPublishedSeqs());
+    }
+
+    public void start(Duration pollInterval) {
+        scheduler.scheduleWithFixedDelay(this::drain, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        try {
+            while (relayOnce() == batchSize) {
+                // 가득 찬 batch 를 읽은 경우 남은 이벤트가 있을 수 있으므로 바로 다시 읽는다
+            }
+        } catch (RuntimeException e) {
+            log.error("relay failed", e);
+        }
+    }
+
+    /**
+     * @return outbox 에서 처리한 이벤트 수
+     */
+    public int relayOnce() {
+        List<MemberEvent> events = claim();
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<MemberEvent> toPublish = new ArrayList<>(events.size());
+        for (MemberEvent event : events) {
+            if (publishedNotDeleted.contains(event.getSeq())) {
+                skipped.increment();
+            } else {
+                toPublish.add(event);
+            }
+        }
+        if (!toPublish.isEmpty()) {
+            try {
+                sink.publish(toPublish);
+            } catch (IOException e) {
+                // 일부만 반영된 경우 반영된 이벤트는 기록하고, 나머지는 선점을 풀어 다음 주기에 다시 발행한다
+                publishedNotDeleted.addAll(sink.lastPublishedSeqs());
+                release(toPublish);
+                throw new UncheckedIOException(e);
+            }
+            for (MemberEvent event : toPublish) {
+                publishedNotDeleted.add(event.getSeq());
+            }
+            published.add(toPublish.size());
+        }
+
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (MemberEvent event : events) {
+            args.add(new Object[]{event.getSeq(), relayId});
+        }
+        int[] deleted = jdbcTemplate.batchUpdate(DELETE_CLAIMED, args);
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] == 0) {
+                // lease 가 만료되어 다른 relay 가 다시 선점한 경우
+                log.warn("event seq={} was reclaimed by another relay", events.get(i).getSeq());
+            }
+            publishedNotDeleted.remove(events.get(i).getSeq());
+        }
+        return events.size();
+    }
+
+    /**
+     * 발행할 row 를 최대 batchSize 개 선점하고 커밋한다.
+     * -> 아무도 선점하지 않았거나, 이 relay 가 선점했거나, lease 가 만료된 row 를 가져간다.
+     */
+    private List<MemberEvent> claim() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Timestamp expiredBefore = new Timestamp(now.getTime() - lease.toMillis());
+        if (claimMode == ClaimMode.SKIP_LOCKED) {
+            return transactionTemplate.execute(status -> {
+                List<MemberEvent> events = jdbcTemplate.query(SELECT_CLAIMABLE + " for update skip locked",
+                        eventRowMapper(), relayId, expiredBefore, batchSize);
+                if (!events.isEmpty()) {
+                    List<Object[]> args = new ArrayList<>(events.size());
+                    for (MemberEvent event : events) {
+                        args.add(new Object[]{relayId, now, event.getSeq()});
+                    }
+                    jdbcTemplate.batchUpdate(CLAIM, args);
+                }
+                return events;
+            });
+        }
+
+        // 잠금 없이 후보를 조회한 뒤, 다른 relay 가 먼저 선점하지 않은 row 만 가져간다
+        List<MemberEvent> candidates = jdbcTemplate.query(SELECT_CLAIMABLE, eventRowMapper(), relayId, expiredBefore, batchSize);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<Object[]> args = new ArrayList<>(candidates.size());
+        for (MemberEvent candidate : candidates) {
+            args.add(new Object[]{relayId, now, candidate.getSeq(), relayId, expiredBefore});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(CLAIM + " and (claimed_by is null or claimed_by = ? or claimed_at < ?)", args);
+        List<MemberEvent> claimed = new ArrayList<>(candidates.size());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 1) {
+                claimed.add(candidates.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 발행하지 못한 이벤트의 선점을 푼다.
+     */
+    private void release(List<MemberEvent> events) {
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (MemberEvent event : events) {
+            if (!publishedNotDeleted.contains(event.getSeq())) {
+                args.add(new Object[]{event.getSeq(), relayId});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(RELEASE, args);
+        } catch (RuntimeException e) {
+            // 선점을 풀지 못해도 lease 가 만료되면 다른 relay 가 가져간다
+            log.warn("failed to release claimed events. relayId={}", relayId, e);
+        }
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    private RowMapper<MemberEvent> eventRowMapper() {
+        return (rs, rowNum) -> {
+            String memberId = rs.getString("member_id");
+            int money = rs.getInt("money");
+            boolean moneyIsNull = rs.wasNull();
+            return new MemberEvent(
+                    rs.getLong("seq"),
+                    MemberEvent.Type.valueOf(rs.getString("event_type")),
+                    memberId,
+                    moneyIsNull ? null : money);
+        };
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
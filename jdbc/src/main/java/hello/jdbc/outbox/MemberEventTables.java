@@ -0,0 +1,29 @@
+package hello.jdbc.outbox;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 회원 변경 이벤트를 담는 outbox 테이블
+ * -> seq 는 relay 가 이벤트를 발행하는 순서이자, 재시작 시 중복 발행을 판단하는 기준이 된다.
+ * -> claimed_by, claimed_at 은 발행하기 전에 row 를 선점한 relay 와 선점 시각이다.
+ */
+public abstract class MemberEventTables {
+
+    public static void create(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member_event (" +
+                "seq bigint auto_increment primary key, " +
+                "event_type varchar(16) not null, " +
+                "member_id varchar(10), " +
+                "money integer, " +
+                "created_at timestamp not null default current_timestamp, " +
+                "claimed_by varchar(36), " +
+                "claimed_at timestamp)");
+        // 선점 컬럼이 없던 시점에 만든 테이블
+        jdbcTemplate.execute("alter table member_event add column if not exists claimed_by varchar(36)");
+        jdbcTemplate.execute("alter table member_event add column if not exists claimed_at timestamp");
+    }
+
+}
@@ -0,0 +1,157 @@
+package hello.jdbc.outbox;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 데이터를 변경하는 메서드마다 같은 트랜잭션에서 member_event 테이블에 이벤트를 기록하는 MemberRepository
+ * -> 호출한 쪽의 트랜잭션이 있으면 참여하고, 없으면 변경과 이벤트 기록을 하나의 트랜잭션으로 묶는다.
+ * -> 이벤트는 트랜잭션이 끝날 때까지 모아두었다가 커밋 직전(beforeCommit)에 한 번의 batch insert 로 기록한다.
+ *    따라서 계좌이체처럼 여러 번 변경하는 트랜잭션도 이벤트 기록을 위한 DB 요청은 한 번만 추가된다.
+ * -> 롤백된 트랜잭션의 이벤트는 기록되지 않는다.
+ * -> REQUIRES_NEW 등으로 트랜잭션이 보류(suspend)되면 이벤트 버퍼도 함께 보류되므로, 안쪽 트랜잭션의 이벤트는 안쪽 트랜잭션과 함께 커밋된다.
+ */
+@Slf4j
+public class OutboxMemberRepository implements MemberRepository {
+
+    private static final String INSERT_EVENT = "insert into member_event(event_type, member_id, money) values (?, ?, ?)";
+
+    private final MemberRepository target;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxMemberRepository(DataSource dataSource) {
+        this(new MemberRepositoryV5(dataSource), dataSource);
+    }
+
+    /**
+     * @param target 같은 DataSource 를 사용하며 스프링 트랜잭션에 참여하는 Repository
+     * @param dataSource
+     */
+    public OutboxMemberRepository(MemberRepository target, DataSource dataSource) {
+        this.target = target;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public Member save(Member member) {
+        return inTransaction(() -> {
+            Member saved = target.save(member);
+            append(MemberEvent.Type.SAVED, member.getMemberId(), member.getMoney());
+            return saved;
+        });
+    }
+
+    @Override
+    public int insertIfAbsent(Member member) {
+        return inTransaction(() -> {
+            int inserted = target.insertIfAbsent(member);
+            if (inserted > 0) {
+                append(MemberEvent.Type.SAVED, member.getMemberId(), member.getMoney());
+            }
+            return inserted;
+        });
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return target.findById(memberId);
+    }
+
+    @Override
+    public List<Member> findAll() {
+        return target.findAll();
+    }
+
+    @Override
+    public int updateById(String memberId, int money) {
+        return inTransaction(() -> {
+            int updated = target.updateById(memberId, money);
+            if (updated > 0) {
+                append(MemberEvent.Type.UPDATED, memberId, money);
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        return inTransaction(() -> {
+            int deleted = target.deleteById(memberId);
+            if (deleted > 0) {
+                append(MemberEvent.Type.DELETED, memberId, null);
+            }
+            return deleted;
+        });
+    }
+
+    @Override
+    public int clearAll() {
+        return inTransaction(() -> {
+            int deleted = target.clearAll();
+            append(MemberEvent.Type.CLEARED, null, null);
+            return deleted;
+        });
+    }
+
+    /**
+     * 진행 중인 트랜잭션이 있으면 참여하고 (PROPAGATION_REQUIRED), 없으면 새로 시작한다.
+     */
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    private void append(MemberEvent.Type type, String memberId, Integer money) {
+        EventBuffer buffer = (EventBuffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new EventBuffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        buffer.rows.add(new Object[]{type.name(), memberId, money});
+    }
+
+    /**
+     * 하나의 트랜잭션에서 기록할 이벤트를 모아둔다.
+     */
+    private class EventBuffer implements TransactionSynchronization {
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+            }
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(OutboxMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(OutboxMemberRepository.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutboxMemberRepository.this);
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package hello.jdbc.outbox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 같은 프로세스의 소비자에게 BlockingQueue 로 이벤트를 전달한다.
+ * -> 크기가 제한된 큐를 사용하면 소비자가 느린 경우 relay 가 대기한다. (back pressure)
+ */
+public class QueueEventSink implements EventSink {
+
+    private final BlockingQueue<MemberEvent> queue;
+    private volatile Set<Long> lastPublishedSeqs = Set.of();
+
+    public QueueEventSink(BlockingQueue<MemberEvent> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void publish(List<MemberEvent> events) throws IOException {
+        Set<Long> seqs = new HashSet<>(events.size() * 2);
+        try {
+            for (MemberEvent event : events) {
+                queue.put(event);
+                seqs.add(event.getSeq());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while publishing events");
+        } finally {
+            // 일부만 전달된 경우에도 전달된 이벤트는 다시 발행하지 않도록 기록한다
+            lastPublishedSeqs = seqs;
+        }
+    }
+
+    @Override
+    public Set<Long> lastPublishedSeqs() {
+        return lastPublishedSeqs;
+    }
+
+    public BlockingQueue<MemberEvent> getQueue() {
+        return queue;
+    }
+
+}
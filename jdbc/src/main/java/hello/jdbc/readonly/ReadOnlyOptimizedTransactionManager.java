@@ -0,0 +1,276 @@
+package hello.jdbc.readonly;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * readOnly 트랜잭션을 DB 트랜잭션 없이 처리하는 트랜잭션 매니저
+ * -> DataSourceTransactionManager 는 readOnly 여도 setAutoCommit(false) -> commit -> setAutoCommit(true) 를 실행한다.
+ *    (TCP 모드에서는 각각이 DB 왕복이다)
+ * -> 이 매니저는 readOnly 트랜잭션에서 커넥션에 setReadOnly(true) 만 지정하고 autoCommit 상태 그대로 동기화한다.
+ *    -> Repository 는 DataSourceUtils 를 통해 같은 커넥션을 사용하며, 끝날 때 commit 없이 커넥션을 반환한다.
+ * -> autoCommit 에서는 SQL 마다 커밋된 최신 데이터를 읽는다. 이는 READ_COMMITTED 트랜잭션과 같으므로
+ *    격리 수준이 기본값(h2 는 READ_COMMITTED) 이하인 경우에만 적용한다.
+ *    -> REPEATABLE_READ 이상, timeout 지정, REQUIRED / SUPPORTS 외의 전파 옵션은 DataSourceTransactionManager 에 위임한다.
+ * -
+ * readOnly 구간 안에서 시작한 트랜잭션
+ * 1. readOnly 이면서 REQUIRED / SUPPORTS / MANDATORY / NESTED -> 바깥 구간에 참여한다.
+ * 2. REQUIRES_NEW / NOT_SUPPORTED -> readOnly 구간을 잠시 풀고(suspend) DataSourceTransactionManager 에 위임한 뒤, 끝나면 다시 묶는다.
+ * 3. 그 외(readOnly 가 아닌 트랜잭션, NEVER) -> 바깥 구간은 DB 트랜잭션이 아니므로 참여할 수 없어 IllegalTransactionStateException 이 발생한다.
+ */
+@Slf4j
+public class ReadOnlyOptimizedTransactionManager implements PlatformTransactionManager {
+
+    private final DataSource dataSource;
+    private final DataSourceTransactionManager delegate;
+
+    public ReadOnlyOptimizedTransactionManager(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.delegate = new DataSourceTransactionManager(dataSource);
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) {
+        TransactionDefinition def = definition != null ? definition : TransactionDefinition.withDefaults();
+        Object resource = TransactionSynchronizationManager.getResource(dataSource);
+        if (resource instanceof ReadOnlyConnectionHolder holder) {
+            return handleExistingReadOnly(def, holder);
+        }
+        if (resource != null || !isOptimizable(def)) {
+            return delegate.getTransaction(def);
+        }
+        return begin(def);
+    }
+
+    @Override
+    public void commit(TransactionStatus status) {
+        if (status instanceof ReadOnlyTransactionStatus readOnlyStatus) {
+            end(readOnlyStatus);
+            return;
+        }
+        if (status instanceof SuspendingTransactionStatus suspending) {
+            try {
+                delegate.commit(suspending.target);
+            } finally {
+                resume(suspending);
+            }
+            return;
+        }
+        delegate.commit(status);
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) {
+        if (status instanceof ReadOnlyTransactionStatus readOnlyStatus) {
+            end(readOnlyStatus);
+            return;
+        }
+        if (status instanceof SuspendingTransactionStatus suspending) {
+            try {
+                delegate.rollback(suspending.target);
+            } finally {
+                resume(suspending);
+            }
+            return;
+        }
+        delegate.rollback(status);
+    }
+
+    private TransactionStatus handleExistingReadOnly(TransactionDefinition definition, ReadOnlyConnectionHolder holder) {
+        int propagation = definition.getPropagationBehavior();
+        if (propagation == TransactionDefinition.PROPAGATION_REQUIRES_NEW
+                || propagation == TransactionDefinition.PROPAGATION_NOT_SUPPORTED) {
+            String name = TransactionSynchronizationManager.getCurrentTransactionName();
+            TransactionSynchronizationManager.unbindResource(dataSource);
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setCurrentTransactionName(null);
+            try {
+                return new SuspendingTransactionStatus(delegate.getTransaction(definition), holder, name);
+            } catch (RuntimeException | Error e) {
+                resume(holder, name);
+                throw e;
+            }
+        }
+        if (propagation == TransactionDefinition.PROPAGATION_NEVER) {
+            throw new IllegalTransactionStateException(
+                    "Existing read-only transaction found for transaction marked with propagation 'never'");
+        }
+        if (!definition.isReadOnly()) {
+            throw new IllegalTransactionStateException("Read-write transaction cannot participate in an optimized " +
+                    "read-only transaction. Use PROPAGATION_REQUIRES_NEW or start it outside the read-only transaction");
+        }
+        return new ReadOnlyTransactionStatus(null);
+    }
+
+    private void resume(SuspendingTransactionStatus status) {
+        resume(status.suspended, status.suspendedName);
+    }
+
+    private void resume(ReadOnlyConnectionHolder holder, String name) {
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        TransactionSynchronizationManager.setCurrentTransactionName(name);
+    }
+
+    static boolean isOptimizable(TransactionDefinition definition) {
+        int propagation = definition.getPropagationBehavior();
+        int isolation = definition.getIsolationLevel();
+        return definition.isReadOnly()
+                && (propagation == TransactionDefinition.PROPAGATION_REQUIRED
+                        || propagation == TransactionDefinition.PROPAGATION_SUPPORTS)
+                && (isolation == TransactionDefinition.ISOLATION_DEFAULT
+                        || isolation == TransactionDefinition.ISOLATION_READ_UNCOMMITTED
+                        || isolation == TransactionDefinition.ISOLATION_READ_COMMITTED)
+                && definition.getTimeout() == TransactionDefinition.TIMEOUT_DEFAULT;
+    }
+
+    private TransactionStatus begin(TransactionDefinition definition) {
+        Connection con = null;
+        try {
+            con = dataSource.getConnection();
+            con.setReadOnly(true);
+        } catch (SQLException e) {
+            JdbcUtils.closeConnection(con);
+            throw new CannotCreateTransactionException("Could not open JDBC Connection for read-only transaction", e);
+        }
+        ReadOnlyConnectionHolder holder = new ReadOnlyConnectionHolder(con);
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        TransactionSynchronizationManager.setCurrentTransactionName(definition.getName());
+        return new ReadOnlyTransactionStatus(holder);
+    }
+
+    private void end(ReadOnlyTransactionStatus status) {
+        status.setCompleted();
+        if (status.holder == null) {
+            return;
+        }
+        TransactionSynchronizationManager.unbindResource(dataSource);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setCurrentTransactionName(null);
+        Connection con = status.holder.getConnection();
+        DataSourceUtils.resetConnectionAfterTransaction(con, null, true);
+        status.holder.clear();
+        JdbcUtils.closeConnection(con);
+    }
+
+    private static class ReadOnlyConnectionHolder extends ConnectionHolder {
+
+        ReadOnlyConnectionHolder(Connection connection) {
+            super(connection);
+        }
+
+    }
+
+    /**
+     * holder 가 null 이면 이미 시작한 readOnly 구간에 참여한 것이다.
+     */
+    private static class ReadOnlyTransactionStatus extends SimpleTransactionStatus {
+
+        private final ReadOnlyConnectionHolder holder;
+
+        ReadOnlyTransactionStatus(ReadOnlyConnectionHolder holder) {
+            super(holder != null);
+            this.holder = holder;
+        }
+
+    }
+
+    /**
+     * readOnly 구간을 잠시 풀고 DataSourceTransactionManager 가 시작한 트랜잭션
+     * -> 모든 동작은 target 에 위임하고, 끝나면 suspended 를 다시 묶는다.
+     */
+    private static class SuspendingTransactionStatus implements TransactionStatus {
+
+        private final TransactionStatus target;
+        private final ReadOnlyConnectionHolder suspended;
+        private final String suspendedName;
+
+        SuspendingTransactionStatus(TransactionStatus target, ReadOnlyConnectionHolder suspended, String suspendedName) {
+            this.target = target;
+            this.suspended = suspended;
+            this.suspendedName = suspendedName;
+        }
+
+        @Override
+        public String getTransactionName() {
+            return target.getTransactionName();
+        }
+
+        @Override
+        public boolean hasTransaction() {
+            return target.hasTransaction();
+        }
+
+        @Override
+        public boolean isNewTransaction() {
+            return target.isNewTransaction();
+        }
+
+        @Override
+        public boolean isNested() {
+            return target.isNested();
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return target.isReadOnly();
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            target.setRollbackOnly();
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return target.isRollbackOnly();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return target.isCompleted();
+        }
+
+        @Override
+        public boolean hasSavepoint() {
+            return target.hasSavepoint();
+        }
+
+        @Override
+        public void flush() {
+            target.flush();
+        }
+
+        @Override
+        public Object createSavepoint() {
+            return target.createSavepoint();
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) {
+            target.rollbackToSavepoint(savepoint);
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) {
+            target.releaseSavepoint(savepoint);
+        }
+
+    }
+
+}
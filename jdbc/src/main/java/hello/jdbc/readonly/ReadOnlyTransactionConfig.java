@@ -0,0 +1,23 @@
+package hello.jdbc.readonly;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+
+/**
+ * hello.transaction.read-only-optimized=true 인 경우 스프링 부트가 등록하는 DataSourceTransactionManager 대신
+ * ReadOnlyOptimizedTransactionManager 를 트랜잭션 매니저로 사용한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hello.transaction", name = "read-only-optimized", havingValue = "true")
+public class ReadOnlyTransactionConfig {
+
+    @Bean
+    PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new ReadOnlyOptimizedTransactionManager(dataSource);
+    }
+
+}
@@ -11,8 +11,27 @@ import java.util.List;
  */
 public interface MemberRepository {
     Member save(Member member);
+
+    /**
+     * 이미 같은 memberId 가 존재하면 저장하지 않고 0 을 반환한다. (저장한 경우 1)
+     * -> 키 중복을 예외가 아닌 반환 값으로 알려주므로, 충돌이 빈번한 흐름에서 예외 생성 비용이 발생하지 않는다.
+     */
+    int insertIfAbsent(Member member);
     Member findById(String memberId);
     int updateById(String memberId, int money);
+
+    /**
+     * 여러 Member 의 money 를 member 순서대로 변경하고, Member 별로 변경된 row 수를 반환한다.
+     * -> 기본 구현은 updateById 를 차례로 호출하므로 decorator 의 부가 기능(outbox, metrics)이 그대로 적용된다.
+     * -> JDBC 구현은 한 번의 batch update 로 실행할 수 있다. (MemberRepositoryV5)
+     */
+    default int[] updateAll(List<Member> members) {
+        int[] updated = new int[members.size()];
+        for (int i = 0; i < updated.length; i++) {
+            updated[i] = updateById(members.get(i).getMemberId(), members.get(i).getMoney());
+        }
+        return updated;
+    }
     int deleteById(String memberId);
     List<Member> findAll();
     int clearAll();
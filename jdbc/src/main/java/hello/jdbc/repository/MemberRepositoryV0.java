@@ -31,7 +31,9 @@ public class MemberRepositoryV0 {
             pstmt.setString(1, member.getMemberId()); // parameter binding (1)
             pstmt.setInt(2, member.getMoney());       // parameter binding (2)
             int insertedCount = pstmt.executeUpdate(); // 획득한 커넥션을 통해 DB로 SQL 문 전달, 영향받은 DB row 수를 반환
-            log.info("{} record successfully inserted...", insertedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} record successfully inserted...", insertedCount);
+            }
             return member;
         } catch (SQLException e) {
             log.error("{} member info save failed...", member, e);
@@ -114,7 +116,9 @@ public class MemberRepositoryV0 {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int updatedCount = pstmt.executeUpdate();
-            log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            }
             return updatedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info update failed...", memberId, e);
@@ -134,7 +138,9 @@ public class MemberRepositoryV0 {
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, memberId);
             int deletedCount = pstmt.executeUpdate();
-            log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info deleted failed...", memberId, e);
@@ -154,7 +160,9 @@ public class MemberRepositoryV0 {
             conn = getConnection();
             stmt = conn.createStatement();
             int deletedCount = stmt.executeUpdate(sql);
-            log.info("{} member row cleared...", deletedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} member row cleared...", deletedCount);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("member info clear failed...", e);
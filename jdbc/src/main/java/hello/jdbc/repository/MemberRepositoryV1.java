@@ -33,7 +33,9 @@ public class MemberRepositoryV1 {
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
             int insertedCount = pstmt.executeUpdate();
-            log.info("{} record successfully inserted...", insertedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} record successfully inserted...", insertedCount);
+            }
             return member;
         } catch (SQLException e) {
             log.error("{} member info save failed...", member, e);
@@ -109,7 +111,9 @@ public class MemberRepositoryV1 {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int updatedCount = pstmt.executeUpdate();
-            log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            }
             return updatedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info update failed...", memberId, e);
@@ -129,7 +133,9 @@ public class MemberRepositoryV1 {
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, memberId);
             int deletedCount = pstmt.executeUpdate();
-            log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info deleted failed...", memberId, e);
@@ -148,7 +154,9 @@ public class MemberRepositoryV1 {
             conn = getConnection();
             stmt = conn.createStatement();
             int deletedCount = stmt.executeUpdate(sql);
-            log.info("{} member row cleared...", deletedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} member row cleared...", deletedCount);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("member info clear failed...", e);
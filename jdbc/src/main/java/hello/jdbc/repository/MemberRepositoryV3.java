@@ -37,7 +37,9 @@ public class MemberRepositoryV3 {
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
             int insertedCount = pstmt.executeUpdate();
-            log.info("{} record successfully inserted...", insertedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} record successfully inserted...", insertedCount);
+            }
             return member;
         } catch (SQLException e) {
             log.error("{} member info save failed...", member, e);
@@ -113,7 +115,9 @@ public class MemberRepositoryV3 {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int updatedCount = pstmt.executeUpdate();
-            log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            }
             return updatedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info update failed...", memberId, e);
@@ -133,7 +137,9 @@ public class MemberRepositoryV3 {
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, memberId);
             int deletedCount = pstmt.executeUpdate();
-            log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info deleted failed...", memberId, e);
@@ -152,7 +158,9 @@ public class MemberRepositoryV3 {
             conn = getConnection();
             stmt = conn.createStatement();
             int deletedCount = stmt.executeUpdate(sql);
-            log.info("{} member row cleared...", deletedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} member row cleared...", deletedCount);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("member info clear failed...", e);
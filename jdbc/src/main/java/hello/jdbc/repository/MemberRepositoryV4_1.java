@@ -1,7 +1,8 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
-import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.ExceptionMode;
+import hello.jdbc.repository.translator.MyDbExceptionTranslator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -18,14 +19,25 @@ import java.util.NoSuchElementException;
  * 2. 체크 예외를 런타임 예외로 변경
  * 3. MemberRepository 인터페이스 사용
  * 4. throws SQLException 제거
+ * 5. MyDbExceptionTranslator 를 통해 키 중복 예외는 MyDuplicateKeyException 으로 구분
  */
 @Slf4j
 public class MemberRepositoryV4_1 implements MemberRepository {
 
     private final DataSource dataSource;
+    private final MyDbExceptionTranslator exTranslator;
 
     public MemberRepositoryV4_1(DataSource dataSource) {
+        this(dataSource, ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    /**
+     * @param dataSource
+     * @param duplicateKeyMode 키 중복 예외 생성 방식 (ex. 재시도 흐름에서는 STACKLESS)
+     */
+    public MemberRepositoryV4_1(DataSource dataSource, ExceptionMode duplicateKeyMode) {
         this.dataSource = dataSource;
+        this.exTranslator = MyDbExceptionTranslator.of(dataSource, duplicateKeyMode);
     }
 
     public Member save(Member member) {
@@ -39,11 +51,45 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
             int insertedCount = pstmt.executeUpdate();
-            log.info("{} record successfully inserted...", insertedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} record successfully inserted...", insertedCount);
+            }
             return member;
         } catch (SQLException e) {
             log.error("{} member info save failed...", member, e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    /**
+     * 키 중복을 예외 대신 반환 값(0)으로 알려준다.
+     * -> not exists 조건으로 대부분의 충돌을 SQL 수준에서 걸러내고,
+     *    동시에 같은 memberId 를 저장하는 경쟁 상황에서 발생하는 키 중복 예외도 0 으로 변환한다.
+     * @param member
+     * @return
+     */
+    public int insertIfAbsent(Member member) {
+        String sql = "insert into member(member_id, money) " +
+                "select cast(? as varchar), cast(? as integer) " +
+                "where not exists (select 1 from member where member_id = ?)";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            pstmt.setString(3, member.getMemberId());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            if (exTranslator.isDuplicateKey(e)) {
+                return 0;
+            }
+            log.error("{} member info insert failed...", member, e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, pstmt, null);
         }
@@ -71,7 +117,7 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             }
         } catch (SQLException e) {
             log.error("memberId={} member info find failed...", memberId, e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, pstmt, rs);
         }
@@ -98,7 +144,7 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             return members;
         } catch (SQLException e) {
             log.error("member info find failed...", e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, stmt, rs);
         }
@@ -115,11 +161,13 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int updatedCount = pstmt.executeUpdate();
-            log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            }
             return updatedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info update failed...", memberId, e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, pstmt, null);
         }
@@ -135,11 +183,13 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, memberId);
             int deletedCount = pstmt.executeUpdate();
-            log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info deleted failed...", memberId, e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, pstmt, null);
         }
@@ -154,11 +204,13 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             conn = getConnection();
             stmt = conn.createStatement();
             int deletedCount = stmt.executeUpdate(sql);
-            log.info("{} member row cleared...", deletedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} member row cleared...", deletedCount);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("member info clear failed...", e);
-            throw new MyDbException(e);
+            throw exTranslator.translate(e);
         } finally {
             close(conn, stmt, null);
         }
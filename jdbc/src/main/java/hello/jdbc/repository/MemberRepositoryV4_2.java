@@ -1,12 +1,11 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
-import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.ExceptionMode;
+import hello.jdbc.repository.translator.DataAccessErrorCodeTranslator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
-import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
-import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -16,16 +15,25 @@ import java.util.NoSuchElementException;
 
 /**
  * SQLExceptionTranslator 추가
+ * -> SQLErrorCodeSQLExceptionTranslator 대신 최초 변환 시점에 error code 를 한 번만 구성하는 DataAccessErrorCodeTranslator 사용
  */
 @Slf4j
 public class MemberRepositoryV4_2 implements MemberRepository {
 
     private final DataSource dataSource;
-    private final SQLExceptionTranslator exTranslator;
+    private final DataAccessErrorCodeTranslator exTranslator;
 
     public MemberRepositoryV4_2(DataSource dataSource) {
+        this(dataSource, ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    /**
+     * @param dataSource
+     * @param duplicateKeyMode 키 중복 예외 생성 방식 (STACKLESS, PREALLOCATED 모두 stack trace 없이 생성한다)
+     */
+    public MemberRepositoryV4_2(DataSource dataSource, ExceptionMode duplicateKeyMode) {
         this.dataSource = dataSource;
-        this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.exTranslator = DataAccessErrorCodeTranslator.of(dataSource, duplicateKeyMode);
     }
 
     @Override
@@ -40,7 +48,9 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
             int insertedCount = pstmt.executeUpdate();
-            log.info("{} record successfully inserted...", insertedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} record successfully inserted...", insertedCount);
+            }
             return member;
         } catch (SQLException e) {
             log.error("{} member info save failed...", member, e);
@@ -50,6 +60,33 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    @Override
+    public int insertIfAbsent(Member member) {
+        String sql = "insert into member(member_id, money) " +
+                "select cast(? as varchar), cast(? as integer) " +
+                "where not exists (select 1 from member where member_id = ?)";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            pstmt.setString(3, member.getMemberId());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // 키 중복은 흐름 제어이므로 예외를 변환(생성)하지 않고 error code 만 확인한다
+            if (exTranslator.isDuplicateKey(e)) {
+                return 0;
+            }
+            log.error("{} member info insert failed...", member, e);
+            throw exTranslator.translate("insertIfAbsent", sql, e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
     @Override
     public Member findById(String memberId) {
         String sql = "select * from member where member_id = ?";
@@ -119,7 +156,9 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int updatedCount = pstmt.executeUpdate();
-            log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row updated by memberId = {}", updatedCount, memberId);
+            }
             return updatedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info update failed...", memberId, e);
@@ -140,7 +179,9 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, memberId);
             int deletedCount = pstmt.executeUpdate();
-            log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            if (log.isInfoEnabled()) {
+                log.info("{} row deleted by memberId = {}", deletedCount, memberId);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("memberId={} member info deleted failed...", memberId, e);
@@ -160,7 +201,9 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             conn = getConnection();
             stmt = conn.createStatement();
             int deletedCount = stmt.executeUpdate(sql);
-            log.info("{} member row cleared...", deletedCount);
+            if (log.isInfoEnabled()) {
+                log.info("{} member row cleared...", deletedCount);
+            }
             return deletedCount;
         } catch (SQLException e) {
             log.error("member info clear failed...", e);
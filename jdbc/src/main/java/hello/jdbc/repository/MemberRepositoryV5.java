@@ -1,7 +1,10 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.repository.exception.ExceptionMode;
+import hello.jdbc.repository.translator.DataAccessErrorCodeTranslator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import javax.sql.DataSource;
@@ -25,56 +28,94 @@ import java.util.List;
 @Slf4j
 public class MemberRepositoryV5 implements MemberRepository {
 
+    public static final String INSERT = "insert into member(member_id, money) values (?, ?)";
+    public static final String INSERT_IF_ABSENT = "insert into member(member_id, money) " +
+            "select cast(? as varchar), cast(? as integer) " +
+            "where not exists (select 1 from member where member_id = ?)";
+    public static final String SELECT_BY_ID = "select * from member where member_id = ?";
+    public static final String SELECT_ALL = "select * from member";
+    public static final String UPDATE_MONEY = "update member set money = ? where member_id = ?";
+    public static final String DELETE_BY_ID = "delete from member where member_id = ?";
+    public static final String DELETE_ALL = "delete from member";
+
+    /**
+     * 이 Repository 가 실행하는 SQL (실행 계획 검사에 사용한다 -> MemberSchema)
+     */
+    public static final List<String> SQLS = List.of(
+            INSERT, INSERT_IF_ABSENT, SELECT_BY_ID, SELECT_ALL, UPDATE_MONEY, DELETE_BY_ID, DELETE_ALL);
+
+    /**
+     * member 테이블의 row 를 Member 로 변환한다. (member 를 직접 조회하는 검색, scan, batch 에서도 같이 사용한다)
+     */
+    public static final RowMapper<Member> MEMBER_ROW_MAPPER = (rs, rowNum) -> {
+        Member member = new Member();
+        member.setMemberId(rs.getString("member_id"));
+        member.setMoney(rs.getInt("money"));
+        return member;
+    };
+
     private final JdbcTemplate jdbcTemplate;
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    /**
+     * @param dataSource
+     * @param duplicateKeyMode 키 중복 예외 생성 방식 (STACKLESS, PREALLOCATED 모두 stack trace 없이 생성한다)
+     */
+    public MemberRepositoryV5(DataSource dataSource, ExceptionMode duplicateKeyMode) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // 기본 예외 변환기 대신 error code 를 미리 구성한 변환기를 사용한다
+        this.jdbcTemplate.setExceptionTranslator(DataAccessErrorCodeTranslator.of(dataSource, duplicateKeyMode));
     }
 
     @Override
     public Member save(Member member) {
-        String sql = "insert into member(member_id, money) values (?, ?)";
-        jdbcTemplate.update(sql, member.getMemberId(), member.getMoney());
+        jdbcTemplate.update(INSERT, member.getMemberId(), member.getMoney());
         return member;
     }
 
+    @Override
+    public int insertIfAbsent(Member member) {
+        try {
+            return jdbcTemplate.update(INSERT_IF_ABSENT, member.getMemberId(), member.getMoney(), member.getMemberId());
+        } catch (DuplicateKeyException e) {
+            // not exists 검사 이후 다른 트랜잭션이 먼저 저장한 경우
+            return 0;
+        }
+    }
+
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
-        return jdbcTemplate.queryForObject(sql, memberRowMapper(), memberId);
+        return jdbcTemplate.queryForObject(SELECT_BY_ID, MEMBER_ROW_MAPPER, memberId);
     }
 
     @Override
     public List<Member> findAll() {
-        String sql = "select * from member";
-        return jdbcTemplate.query(sql, memberRowMapper());
+        return jdbcTemplate.query(SELECT_ALL, MEMBER_ROW_MAPPER);
     }
 
     @Override
     public int updateById(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
-        return jdbcTemplate.update(sql, money, memberId);
+        return jdbcTemplate.update(UPDATE_MONEY, money, memberId);
     }
 
     @Override
-    public int deleteById(String memberId) {
-        String sql = "delete from member where member_id = ?";
-        return jdbcTemplate.update(sql, memberId);
+    public int[] updateAll(List<Member> members) {
+        return jdbcTemplate.batchUpdate(UPDATE_MONEY, members.stream()
+                .map(member -> new Object[]{member.getMoney(), member.getMemberId()})
+                .toList());
     }
 
     @Override
-    public int clearAll() {
-        String sql = "delete from member";
-        return jdbcTemplate.update(sql);
+    public int deleteById(String memberId) {
+        return jdbcTemplate.update(DELETE_BY_ID, memberId);
     }
 
-    private RowMapper<Member> memberRowMapper() {
-        return (rs, rowNum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-            return member;
-        };
+    @Override
+    public int clearAll() {
+        return jdbcTemplate.update(DELETE_ALL);
     }
 
 }
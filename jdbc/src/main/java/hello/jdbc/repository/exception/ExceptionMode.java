@@ -0,0 +1,24 @@
+package hello.jdbc.repository.exception;
+
+/**
+ * 예상된 충돌(키 중복)을 나타내는 예외의 생성 방식
+ * -> ID 충돌 후 재시도와 같이 예외가 정상 흐름의 일부로 빈번하게 발생하는 경우,
+ *    예외 생성 비용의 대부분을 차지하는 fillInStackTrace() 를 생략할 수 있다.
+ */
+public enum ExceptionMode {
+
+    /**
+     * 매번 새로운 예외를 생성하고 stack trace 를 수집한다. (기본값)
+     */
+    FULL_STACK_TRACE,
+
+    /**
+     * 매번 새로운 예외를 생성하지만 stack trace 는 수집하지 않는다. 원인 예외(cause)는 보존된다.
+     */
+    STACKLESS,
+
+    /**
+     * 미리 생성해둔 하나의 예외 인스턴스를 재사용한다. 생성 비용이 없지만 원인 예외(cause)를 담을 수 없다.
+     */
+    PREALLOCATED
+}
@@ -19,4 +19,12 @@ public class MyDbException extends RuntimeException {
     public MyDbException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * writableStackTrace 를 false 로 전달하면 stack trace 를 수집하지 않는다.
+     * -> 예상된 흐름 제어에 사용되는 하위 예외에서 사용한다.
+     */
+    protected MyDbException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -7,6 +7,14 @@ package hello.jdbc.repository.exception;
  * -> 따라서 이 예외를 사용하더라도 서비스 계층의 순수성을 유지할 수 있게 된다.
  */
 public class MyDuplicateKeyException extends MyDbException {
+
+    /**
+     * PREALLOCATED 모드에서 재사용되는 인스턴스
+     * -> stack trace, suppressed 예외를 모두 비활성화 했으므로 여러 쓰레드에서 공유해도 상태가 변하지 않는다.
+     */
+    private static final MyDuplicateKeyException PREALLOCATED =
+            new MyDuplicateKeyException("duplicate key (preallocated)", null, false, false);
+
     public MyDuplicateKeyException() {
     }
 
@@ -21,4 +29,25 @@ public class MyDuplicateKeyException extends MyDbException {
     public MyDuplicateKeyException(Throwable cause) {
         super(cause);
     }
+
+    protected MyDuplicateKeyException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    /**
+     * 생성 방식(ExceptionMode)에 맞게 키 중복 예외를 반환한다.
+     * @param mode
+     * @param cause
+     * @return
+     */
+    public static MyDuplicateKeyException of(ExceptionMode mode, Throwable cause) {
+        switch (mode) {
+            case STACKLESS:
+                return new MyDuplicateKeyException(cause == null ? null : cause.toString(), cause, false, false);
+            case PREALLOCATED:
+                return PREALLOCATED;
+            default:
+                return new MyDuplicateKeyException(cause);
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package hello.jdbc.repository.jpa;
+
+import hello.jdbc.domain.Member;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+
+/**
+ * jpa 프로파일
+ * -> MemberJpaSettings 를 적용한 EntityManagerFactory 와 JpaTransactionManager, JpaMemberRepository 를 등록한다.
+ * -> 스프링 부트의 JPA 자동 구성은 제외했으므로(application.properties) 프로파일을 활성화하지 않으면 hibernate 를 시작하지 않고,
+ *    트랜잭션 매니저도 자동 구성되는 DataSourceTransactionManager 를 그대로 사용한다.
+ * -> 프로파일을 활성화하면 JpaTransactionManager 가 애플리케이션의 트랜잭션 매니저가 된다.
+ *    -> 같은 DataSource 의 JDBC 커넥션도 트랜잭션에 참여시키므로 JDBC Repository 와 함께 사용할 수 있다.
+ */
+@Configuration
+@Profile("jpa")
+public class JpaConfig {
+
+    @Bean
+    LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(Member.class.getPackageName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(MemberJpaSettings.hibernateProperties());
+        return factory;
+    }
+
+    @Bean
+    JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @Bean
+    JpaMemberRepository jpaMemberRepository(EntityManagerFactory entityManagerFactory,
+                                            PlatformTransactionManager transactionManager) {
+        return new JpaMemberRepository(entityManagerFactory, transactionManager);
+    }
+
+}
@@ -0,0 +1,176 @@
+package hello.jdbc.repository.jpa;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.translator.DataAccessErrorCodeTranslator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JPA(hibernate) 를 사용하는 MemberRepository
+ * -> 호출한 쪽의 트랜잭션이 있으면 참여하고, 없으면 메서드마다 트랜잭션을 시작한다.
+ *    -> 애플리케이션의 트랜잭션 매니저를 전달받으며, 같은 EntityManagerFactory 의 JpaTransactionManager 여야 한다. (JpaConfig)
+ *    -> DataSourceTransactionManager 의 트랜잭션에는 EntityManager 가 참여하지 못하므로 생성 시점에 거부한다.
+ * -> save, updateById, deleteById 는 영속성 컨텍스트에만 반영되고, flush 시점에 JDBC batch 로 실행된다.
+ *    -> 키 중복 같은 제약 조건 위반은 호출 시점이 아니라 flush(커밋) 시점에 DataIntegrityViolationException 으로 드러난다.
+ * -> findById, updateById 는 2차 캐시에 있으면 조회 SQL 을 실행하지 않는다.
+ * -> findAll, clearAll 은 StatelessSession 으로 처리해 영속성 컨텍스트에 엔티티를 쌓지 않는다.
+ *    -> 같은 트랜잭션의 커넥션을 사용하며, 실행 전에 지연된 변경을 flush 한다.
+ */
+@Slf4j
+public class JpaMemberRepository implements MemberRepository {
+
+    private static final int FETCH_SIZE = 1_000;
+
+    private final EntityManager em;
+    private final SessionFactory sessionFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final DataAccessErrorCodeTranslator errorCodeTranslator;
+
+    public JpaMemberRepository(EntityManagerFactory emf, PlatformTransactionManager transactionManager) {
+        if (!(transactionManager instanceof JpaTransactionManager jpaTransactionManager)
+                || jpaTransactionManager.getEntityManagerFactory() != emf
+                || jpaTransactionManager.getDataSource() == null) {
+            throw new IllegalArgumentException(
+                    "transactionManager must be a JpaTransactionManager of the given EntityManagerFactory : " + transactionManager);
+        }
+        this.em = SharedEntityManagerCreator.createSharedEntityManager(emf);
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.errorCodeTranslator = DataAccessErrorCodeTranslator.of(jpaTransactionManager.getDataSource());
+    }
+
+    @Override
+    public Member save(Member member) {
+        return inTransaction(() -> {
+            em.persist(member);
+            return member;
+        });
+    }
+
+    /**
+     * 동시에 같은 memberId 를 저장하는 경우에도 0 을 반환하도록 JDBC Repository 와 같은 조건부 insert 를 사용한다.
+     * -> EntityManager 로 실행한 SQL 이 실패하면 트랜잭션이 rollback-only 가 되므로, 같은 커넥션에서 JDBC 로 직접 실행한다.
+     */
+    @Override
+    public int insertIfAbsent(Member member) {
+        return inTransaction(() -> {
+            Session session = em.unwrap(Session.class);
+            session.flush();
+            int inserted = session.doReturningWork(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(MemberRepositoryV5.INSERT_IF_ABSENT)) {
+                    pstmt.setString(1, member.getMemberId());
+                    pstmt.setInt(2, member.getMoney());
+                    pstmt.setString(3, member.getMemberId());
+                    return pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    // not exists 검사 이후 다른 트랜잭션이 먼저 저장한 경우. 키 중복 이외의 제약 조건 위반은 그대로 던진다
+                    if (errorCodeTranslator.isDuplicateKey(e)) {
+                        return 0;
+                    }
+                    throw e;
+                }
+            });
+            sessionFactory.getCache().evict(Member.class, member.getMemberId());
+            return inserted;
+        });
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return inTransaction(() -> {
+            Member member = em.find(Member.class, memberId);
+            if (member == null) {
+                throw new EmptyResultDataAccessException("memberId = " + memberId + " does not exist...", 1);
+            }
+            return member;
+        });
+    }
+
+    @Override
+    public List<Member> findAll() {
+        return inTransaction(() -> withStatelessSession(session -> session
+                .createSelectionQuery("from Member", Member.class)
+                .setFetchSize(FETCH_SIZE)
+                .list()));
+    }
+
+    /**
+     * 변경 감지로 update 한다.
+     */
+    @Override
+    public int updateById(String memberId, int money) {
+        return inTransaction(() -> {
+            Member member = em.find(Member.class, memberId);
+            if (member == null) {
+                return 0;
+            }
+            member.setMoney(money);
+            return 1;
+        });
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        return inTransaction(() -> {
+            Member member = em.find(Member.class, memberId);
+            if (member == null) {
+                return 0;
+            }
+            em.remove(member);
+            return 1;
+        });
+    }
+
+    /**
+     * bulk delete 는 영속성 컨텍스트와 2차 캐시를 거치지 않으므로 둘 다 비운다.
+     */
+    @Override
+    public int clearAll() {
+        return inTransaction(() -> {
+            int deleted = withStatelessSession(session -> session
+                    .createMutationQuery("delete from Member")
+                    .executeUpdate());
+            em.clear();
+            sessionFactory.getCache().evict(Member.class);
+            return deleted;
+        });
+    }
+
+    /**
+     * 현재 트랜잭션의 커넥션으로 StatelessSession 을 연다.
+     */
+    private <T> T withStatelessSession(Function<StatelessSession, T> work) {
+        Session session = em.unwrap(Session.class);
+        session.flush();
+        return session.doReturningWork(connection -> {
+            try (StatelessSession statelessSession = sessionFactory.openStatelessSession(connection)) {
+                return work.apply(statelessSession);
+            }
+        });
+    }
+
+    /**
+     * 진행 중인 트랜잭션이 있으면 참여하고 (PROPAGATION_REQUIRED), 없으면 새로 시작한다.
+     */
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+}
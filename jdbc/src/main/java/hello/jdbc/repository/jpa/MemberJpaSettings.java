@@ -0,0 +1,32 @@
+package hello.jdbc.repository.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JpaMemberRepository 가 사용하는 hibernate 설정
+ * 1. JDBC batch -> 같은 SQL 의 insert / update 를 batch_size 개씩 묶어 한 번에 실행한다.
+ *    -> order_inserts, order_updates 로 엔티티 종류별로 정렬해야 batch 가 끊기지 않는다.
+ * 2. 2차 캐시 -> 프로세스 안의 ehcache 를 JCache 로 사용한다. findById 는 캐시에 있으면 DB 에 요청하지 않는다.
+ *    -> READ_WRITE 전략이므로 JPA 로 변경한 값은 커밋 시점에 캐시에도 반영된다.
+ *    -> JDBC Repository 로 직접 변경한 값은 캐시에 반영되지 않으므로 같은 테이블을 함께 변경하는 경우 주의해야 한다.
+ * 3. 스키마 -> JDBC Repository 가 스키마를 관리하므로 hibernate 는 스키마를 만들거나 검증하지 않는다.
+ */
+public abstract class MemberJpaSettings {
+
+    public static final int BATCH_SIZE = 50;
+
+    public static Map<String, Object> hibernateProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.jdbc.batch_size", BATCH_SIZE);
+        properties.put("hibernate.order_inserts", true);
+        properties.put("hibernate.order_updates", true);
+        properties.put("hibernate.cache.use_second_level_cache", true);
+        properties.put("hibernate.cache.region.factory_class", "jcache");
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        properties.put("hibernate.javax.cache.missing_cache_strategy", "create");
+        properties.put("hibernate.hbm2ddl.auto", "none");
+        return properties;
+    }
+
+}
@@ -0,0 +1,92 @@
+package hello.jdbc.repository.metrics;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static hello.jdbc.repository.metrics.RepositoryOperation.*;
+
+/**
+ * MemberRepository 의 각 메서드 호출을 측정하는 decorator
+ * -> 실제 동작은 전달받은 MemberRepository 에 위임하고, 호출 전후로 지연시간 / row 수 / 예외 타입을 기록한다.
+ * -> 예외는 변환된 이후의 타입(ex. DuplicateKeyException, MyDuplicateKeyException)으로 집계된다.
+ * -> TimedDataSource 와 함께 사용하면 전체 지연시간 중 커넥션 획득(풀)에 걸린 시간을 구분할 수 있다.
+ */
+public class InstrumentedMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final RepositoryMetrics metrics;
+
+    public InstrumentedMemberRepository(MemberRepository target, RepositoryMetrics metrics) {
+        this.target = target;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Member save(Member member) {
+        return measure(SAVE, () -> target.save(member), saved -> 1);
+    }
+
+    @Override
+    public int insertIfAbsent(Member member) {
+        return measure(INSERT_IF_ABSENT, () -> target.insertIfAbsent(member), inserted -> inserted);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return measure(FIND_BY_ID, () -> target.findById(memberId), found -> 1);
+    }
+
+    @Override
+    public int updateById(String memberId, int money) {
+        return measure(UPDATE_BY_ID, () -> target.updateById(memberId, money), updated -> updated);
+    }
+
+    /**
+     * target 의 updateAll 에 그대로 위임하여 batch update 를 유지하고, 전체를 한 번의 호출로 측정한다.
+     * -> 드라이버가 건별 결과를 알 수 없는 경우(SUCCESS_NO_INFO)는 row 수에서 제외한다.
+     */
+    @Override
+    public int[] updateAll(List<Member> members) {
+        return measure(UPDATE_ALL, () -> target.updateAll(members),
+                updated -> Arrays.stream(updated).filter(count -> count > 0).sum());
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        return measure(DELETE_BY_ID, () -> target.deleteById(memberId), deleted -> deleted);
+    }
+
+    @Override
+    public List<Member> findAll() {
+        return measure(FIND_ALL, target::findAll, List::size);
+    }
+
+    @Override
+    public int clearAll() {
+        return measure(CLEAR_ALL, target::clearAll, cleared -> cleared);
+    }
+
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <T> T measure(RepositoryOperation operation, Supplier<T> call, ToLongFunction<T> rowCount) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            metrics.recordRows(operation, rowCount.applyAsLong(result));
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(operation, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(operation, System.nanoTime() - start);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package hello.jdbc.repository.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock 없이 기록할 수 있는 지연시간(ns) 히스토그램 (HdrHistogram 방식의 log-linear bucket)
+ * -> 2의 거듭제곱 구간마다 32개의 하위 bucket 으로 나누므로 기록 값의 상대 오차는 약 3% 이내이다.
+ * -> 기록은 bucket 하나에 대한 atomic increment 뿐이므로 여러 쓰레드에서 동시에 기록해도 경합이 적다.
+ * -> 약 18분(2^40 ns)을 넘는 값은 마지막 bucket 에 기록된다.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * 현재까지 기록된 값의 분포를 복사하여 백분위 수를 계산한다.
+     * -> 복사하는 동안에도 기록은 계속될 수 있으므로 snapshot 은 근사값이다.
+     * @return
+     */
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long mean = count == 0 ? 0 : totalNanos.sum() / Math.max(totalCount.sum(), 1);
+        return new LatencySnapshot(count,
+                percentile(copy, count, 0.50),
+                percentile(copy, count, 0.99),
+                percentile(copy, count, 0.999),
+                maxNanos.get(),
+                mean);
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * bucket 에 포함되는 가장 큰 값 -> 백분위 수를 보수적으로(크게) 보고하기 위해 사용한다.
+     * @param index
+     * @return
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = SUB_BUCKET_COUNT + (index % SUB_BUCKET_COUNT);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+}
@@ -0,0 +1,20 @@
+package hello.jdbc.repository.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 특정 시점의 지연시간 분포 (단위 : ns)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class LatencySnapshot {
+    private final long count;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+    private final long mean;
+}
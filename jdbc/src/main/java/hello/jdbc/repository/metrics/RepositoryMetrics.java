@@ -0,0 +1,132 @@
+package hello.jdbc.repository.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Repository 메서드별 지연시간 / 처리한 row 수 / 예외 타입별 발생 횟수를 보관한다.
+ * -> 모든 기록은 lock 없이 처리된다. (LatencyHistogram, LongAdder)
+ * -> 예외 타입별 카운터는 처음 발생한 타입에 대해서만 생성되며, 이후에는 조회만 수행한다.
+ */
+@Slf4j
+public class RepositoryMetrics implements RepositoryMetricsMXBean {
+
+    private final Map<RepositoryOperation, LatencyHistogram> latencies = new EnumMap<>(RepositoryOperation.class);
+    private final Map<RepositoryOperation, LongAdder> rows = new EnumMap<>(RepositoryOperation.class);
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public RepositoryMetrics() {
+        // 생성 이후에는 구조가 변하지 않으므로 EnumMap 을 여러 쓰레드에서 읽기 전용으로 공유한다
+        for (RepositoryOperation operation : RepositoryOperation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            rows.put(operation, new LongAdder());
+        }
+    }
+
+    public void recordLatency(RepositoryOperation operation, long nanos) {
+        latencies.get(operation).record(nanos);
+    }
+
+    public void recordRows(RepositoryOperation operation, long count) {
+        rows.get(operation).add(count);
+    }
+
+    public void recordError(RepositoryOperation operation, Throwable e) {
+        errors.computeIfAbsent(operation.name() + ":" + e.getClass().getSimpleName(), key -> new LongAdder())
+                .increment();
+    }
+
+    public LatencySnapshot snapshot(RepositoryOperation operation) {
+        return latencies.get(operation).snapshot();
+    }
+
+    public long rows(RepositoryOperation operation) {
+        return rows.get(operation).sum();
+    }
+
+    /**
+     * 플랫폼 MBeanServer 에 "hello.jdbc:type=RepositoryMetrics,name={name}" 으로 등록한다.
+     * @param name
+     * @return 등록된 ObjectName (해제 시 사용)
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("hello.jdbc:type=RepositoryMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register repository metrics mbean : " + name, e);
+        }
+    }
+
+    public static void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("failed to unregister repository metrics mbean : {}", objectName, e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return collect(LatencySnapshot::getCount, false);
+    }
+
+    @Override
+    public Map<String, Long> getP50Micros() {
+        return collect(LatencySnapshot::getP50, true);
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return collect(LatencySnapshot::getP99, true);
+    }
+
+    @Override
+    public Map<String, Long> getP999Micros() {
+        return collect(LatencySnapshot::getP999, true);
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        return collect(LatencySnapshot::getMax, true);
+    }
+
+    @Override
+    public Map<String, Long> getRows() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        rows.forEach((operation, adder) -> result.put(operation.name(), adder.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((key, adder) -> result.put(key, adder.sum()));
+        return result;
+    }
+
+    private Map<String, Long> collect(ToLongFunction<LatencySnapshot> value, boolean toMicros) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> {
+            long v = value.applyAsLong(histogram.snapshot());
+            result.put(operation.name(), toMicros ? TimeUnit.NANOSECONDS.toMicros(v) : v);
+        });
+        return result;
+    }
+
+}
@@ -0,0 +1,21 @@
+package hello.jdbc.repository.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX 로 노출되는 Repository 지표
+ * -> 각 Map 의 key 는 RepositoryOperation 이름이며, 지연시간 단위는 μs 이다.
+ */
+public interface RepositoryMetricsMXBean {
+    Map<String, Long> getCounts();
+    Map<String, Long> getP50Micros();
+    Map<String, Long> getP99Micros();
+    Map<String, Long> getP999Micros();
+    Map<String, Long> getMaxMicros();
+    Map<String, Long> getRows();
+
+    /**
+     * key = "{operation}:{변환된 예외 타입}"
+     */
+    Map<String, Long> getErrorCounts();
+}
@@ -0,0 +1,56 @@
+package hello.jdbc.repository.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 일정 주기로 Repository 지표를 로그로 출력한다.
+ * -> 호출이 한 번도 없었던 메서드는 출력하지 않는다.
+ * -> 별도의 daemon 쓰레드에서 동작하므로 요청 처리 쓰레드에 영향을 주지 않는다.
+ */
+@Slf4j
+public class RepositoryMetricsReporter implements AutoCloseable {
+
+    private final RepositoryMetrics metrics;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "repository-metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RepositoryMetricsReporter(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RepositoryMetricsReporter start(long period, TimeUnit unit) {
+        scheduler.scheduleAtFixedRate(this::report, period, period, unit);
+        return this;
+    }
+
+    public void report() {
+        for (RepositoryOperation operation : RepositoryOperation.values()) {
+            LatencySnapshot snapshot = metrics.snapshot(operation);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            log.info("[{}] count = {}, rows = {}, p50 = {}μs, p99 = {}μs, p999 = {}μs, max = {}μs",
+                    operation, snapshot.getCount(), metrics.rows(operation),
+                    TimeUnit.NANOSECONDS.toMicros(snapshot.getP50()),
+                    TimeUnit.NANOSECONDS.toMicros(snapshot.getP99()),
+                    TimeUnit.NANOSECONDS.toMicros(snapshot.getP999()),
+                    TimeUnit.NANOSECONDS.toMicros(snapshot.getMax()));
+        }
+        if (!metrics.getErrorCounts().isEmpty()) {
+            log.info("errors = {}", metrics.getErrorCounts());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.repository.metrics;
+
+/**
+ * 지연시간을 측정하는 MemberRepository 의 각 메서드
+ * -> CONNECTION_ACQUIRE 는 메서드가 아닌 커넥션 풀에서 커넥션을 얻는 데 걸린 시간이다. (TimedDataSource 가 기록)
+ */
+public enum RepositoryOperation {
+    SAVE,
+    INSERT_IF_ABSENT,
+    FIND_BY_ID,
+    FIND_ALL,
+    UPDATE_BY_ID,
+    UPDATE_ALL,
+    DELETE_BY_ID,
+    CLEAR_ALL,
+    CONNECTION_ACQUIRE
+}
@@ -0,0 +1,49 @@
+package hello.jdbc.repository.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 커넥션 획득 시간을 측정하는 DataSource
+ * -> 커넥션 풀(HikariCP 등)을 감싸서 getConnection() 에 걸린 시간을 CONNECTION_ACQUIRE 로 기록한다.
+ * -> Repository 메서드의 지연시간에서 해당 시간을 제외하면 드라이버 + 애플리케이션 코드에서 사용한 시간을 알 수 있다.
+ */
+public class TimedDataSource extends DelegatingDataSource {
+
+    private final RepositoryMetrics metrics;
+
+    public TimedDataSource(DataSource targetDataSource, RepositoryMetrics metrics) {
+        super(targetDataSource);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            metrics.recordError(RepositoryOperation.CONNECTION_ACQUIRE, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(RepositoryOperation.CONNECTION_ACQUIRE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection(username, password);
+        } catch (SQLException e) {
+            metrics.recordError(RepositoryOperation.CONNECTION_ACQUIRE, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(RepositoryOperation.CONNECTION_ACQUIRE, System.nanoTime() - start);
+        }
+    }
+
+}
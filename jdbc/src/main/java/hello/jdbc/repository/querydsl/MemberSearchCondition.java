@@ -0,0 +1,31 @@
+package hello.jdbc.repository.querydsl;
+
+import lombok.Data;
+
+/**
+ * member 검색 조건
+ * -> null 인 조건은 검색에 사용하지 않는다.
+ * -> minMoney, maxMoney 는 경계 값을 포함한다.
+ * -> order 가 null 이면 MEMBER_ID_ASC, limit 이 null 이면 개수를 제한하지 않는다.
+ */
+@Data
+public class MemberSearchCondition {
+
+    private Integer minMoney;
+    private Integer maxMoney;
+    private String memberIdPrefix;
+    private MemberSearchOrder order;
+    private Integer limit;
+
+    public MemberSearchCondition() { }
+
+    public MemberSearchCondition(Integer minMoney, Integer maxMoney, String memberIdPrefix,
+                                 MemberSearchOrder order, Integer limit) {
+        this.minMoney = minMoney;
+        this.maxMoney = maxMoney;
+        this.memberIdPrefix = memberIdPrefix;
+        this.order = order;
+        this.limit = limit;
+    }
+
+}
@@ -0,0 +1,25 @@
+package hello.jdbc.repository.querydsl;
+
+import com.querydsl.core.types.OrderSpecifier;
+
+/**
+ * 검색 결과 정렬 순서
+ * -> money 가 같은 member 의 순서가 매번 달라지지 않도록 member_id 를 마지막 정렬 기준으로 사용한다.
+ */
+public enum MemberSearchOrder {
+
+    MEMBER_ID_ASC,
+    MONEY_ASC,
+    MONEY_DESC;
+
+    OrderSpecifier<?>[] specifiers(QMember member) {
+        switch (this) {
+            case MONEY_ASC:
+                return new OrderSpecifier<?>[]{member.money.asc(), member.memberId.asc()};
+            case MONEY_DESC:
+                return new OrderSpecifier<?>[]{member.money.desc(), member.memberId.asc()};
+            default:
+                return new OrderSpecifier<?>[]{member.memberId.asc()};
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package hello.jdbc.repository.querydsl;
+
+import com.querydsl.core.types.PathMetadataFactory;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+import hello.jdbc.domain.Member;
+
+import java.sql.Types;
+
+/**
+ * member 테이블의 Querydsl SQL 메타 모델
+ * -> 테이블이 하나뿐이므로 코드 생성(MetaDataExporter) 대신 직접 작성한다.
+ * -> 컬럼이 바뀌면 MemberSchema 의 마이그레이션과 함께 수정해야 한다.
+ */
+public class QMember extends RelationalPathBase<Member> {
+
+    public static final QMember member = new QMember("member");
+
+    public final StringPath memberId = createString("memberId");
+
+    public final NumberPath<Integer> money = createNumber("money", Integer.class);
+
+    public final PrimaryKey<Member> primary = createPrimaryKey(memberId);
+
+    public QMember(String variable) {
+        super(Member.class, PathMetadataFactory.forVariable(variable), "PUBLIC", "member");
+        addMetadata(memberId, ColumnMetadata.named("member_id").withIndex(1).ofType(Types.VARCHAR).withSize(10).notNull());
+        addMetadata(money, ColumnMetadata.named("money").withIndex(2).ofType(Types.INTEGER).notNull());
+    }
+
+}
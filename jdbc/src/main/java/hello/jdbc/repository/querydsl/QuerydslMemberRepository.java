@@ -0,0 +1,261 @@
+package hello.jdbc.repository.querydsl;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLBindings;
+import com.querydsl.sql.SQLQuery;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static hello.jdbc.repository.querydsl.QMember.member;
+
+/**
+ * MemberRepository 에 조건 검색(search)을 추가하는 decorator
+ * -> 검색 이외의 동작은 전달받은 MemberRepository 에 위임한다.
+ * -> 검색 조건은 Querydsl SQL 로 조합하므로 SQL 문자열을 직접 이어 붙이지 않고, 값은 항상 파라미터로 바인딩한다.
+ * -
+ * 검색 조건의 값이 달라도 어떤 조건을 사용하는지(shape)가 같으면 만들어지는 SQL 은 같다.
+ * -> cacheEnabled 이면 shape 별로 처음 한 번만 Querydsl 로 SQL 을 만들고, 이후에는 캐시한 SQL 에 값만 바인딩한다.
+ * -> shape 는 minMoney / maxMoney / memberIdPrefix 사용 여부와 정렬 순서의 조합이므로 최대 24 개로 제한된다.
+ * -> SQL 문자열이 shape 별로 고정되므로, 같은 세션에서 같은 SQL 을 다시 준비할 때 h2 의 쿼리 캐시(QUERY_CACHE_SIZE)가 파싱 결과를 재사용한다.
+ */
+@Slf4j
+public class QuerydslMemberRepository implements MemberRepository {
+
+    private static final int MIN_MONEY = 1;
+    private static final int MAX_MONEY = 1 << 1;
+    private static final int MEMBER_ID_PREFIX = 1 << 2;
+    private static final int ORDER_SHIFT = 3;
+
+    private static final Configuration CONFIGURATION = new Configuration(new H2Templates());
+
+    private final MemberRepository target;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean cacheEnabled;
+    private final ConcurrentMap<Integer, String> sqlByShape = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public QuerydslMemberRepository(DataSource dataSource) {
+        this(new MemberRepositoryV5(dataSource), dataSource, true);
+    }
+
+    /**
+     * @param target 같은 DataSource 를 사용하며 스프링 트랜잭션에 참여하는 Repository
+     * @param dataSource
+     * @param cacheEnabled false 이면 검색할 때마다 Querydsl 로 SQL 을 만든다. (비교 측정용)
+     */
+    public QuerydslMemberRepository(MemberRepository target, DataSource dataSource, boolean cacheEnabled) {
+        this.target = target;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public List<Member> search(MemberSearchCondition condition) {
+        SearchQuery query = prepare(condition);
+        return jdbcTemplate.query(con -> {
+            PreparedStatement pstmt = con.prepareStatement(query.getSql());
+            new ArgumentPreparedStatementSetter(query.getArgs()).setValues(pstmt);
+            if (query.getLimit() != null) {
+                pstmt.setMaxRows(query.getLimit());
+            }
+            return pstmt;
+        }, MemberRepositoryV5.MEMBER_ROW_MAPPER);
+    }
+
+    /**
+     * 검색 조건으로 실행할 SQL 과 파라미터를 만든다. (SQL 은 실행하지 않는다)
+     */
+    public SearchQuery prepare(MemberSearchCondition condition) {
+        validate(condition);
+        if (!cacheEnabled) {
+            SQLBindings bindings = build(condition);
+            return new SearchQuery(bindings.getSQL(), bindings.getNullFriendlyBindings().toArray(), condition.getLimit());
+        }
+
+        Object[] args = args(condition);
+        String sql = sqlByShape.get(shape(condition));
+        if (sql != null) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+            sql = sqlByShape.computeIfAbsent(shape(condition), shape -> compile(condition, args));
+        }
+        return new SearchQuery(sql, args, condition.getLimit());
+    }
+
+    /**
+     * 검색이 만들 수 있는 shape 별 SQL (실행 계획 검사에 사용한다 -> MemberSchema)
+     * @param moneyCondition true 이면 money 조건을 포함한 shape, false 이면 money 조건이 없는 shape
+     * @return
+     */
+    public static List<String> searchSqls(boolean moneyCondition) {
+        List<String> sqls = new ArrayList<>();
+        Integer[] moneyValues = {null, 0};
+        String[] prefixValues = {null, "m"};
+        for (MemberSearchOrder order : MemberSearchOrder.values()) {
+            for (Integer minMoney : moneyValues) {
+                for (Integer maxMoney : moneyValues) {
+                    if ((minMoney != null || maxMoney != null) != moneyCondition) {
+                        continue;
+                    }
+                    for (String prefix : prefixValues) {
+                        sqls.add(build(new MemberSearchCondition(minMoney, maxMoney, prefix, order, null)).getSQL());
+                    }
+                }
+            }
+        }
+        return sqls;
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMissCount() {
+        return cacheMisses.sum();
+    }
+
+    public int getCachedShapeCount() {
+        return sqlByShape.size();
+    }
+
+    /**
+     * 캐시한 SQL 에는 args(condition) 의 순서로 값을 바인딩하므로, Querydsl 이 만든 바인딩 순서와 같은지 확인한다.
+     */
+    private String compile(MemberSearchCondition condition, Object[] args) {
+        SQLBindings bindings = build(condition);
+        if (!bindings.getNullFriendlyBindings().equals(Arrays.asList(args))) {
+            throw new IllegalStateException("binding order mismatch. sql = " + bindings.getSQL()
+                    + ", bindings = " + bindings.getNullFriendlyBindings() + ", args = " + Arrays.toString(args));
+        }
+        log.info("compiled search shape={}, sql={}", shape(condition), bindings.getSQL());
+        return bindings.getSQL();
+    }
+
+    private static SQLBindings build(MemberSearchCondition condition) {
+        BooleanBuilder where = new BooleanBuilder();
+        if (condition.getMinMoney() != null) {
+            where.and(member.money.goe(condition.getMinMoney()));
+        }
+        if (condition.getMaxMoney() != null) {
+            where.and(member.money.loe(condition.getMaxMoney()));
+        }
+        if (condition.getMemberIdPrefix() != null) {
+            where.and(member.memberId.like(likePrefix(condition.getMemberIdPrefix())));
+        }
+        return new SQLQuery<Void>(CONFIGURATION)
+                .select(member.memberId, member.money)
+                .from(member)
+                .where(where)
+                .orderBy(order(condition).specifiers(member))
+                .getSQL();
+    }
+
+    /**
+     * build 에서 조건을 추가하는 순서와 같아야 한다.
+     */
+    private Object[] args(MemberSearchCondition condition) {
+        List<Object> args = new ArrayList<>(3);
+        if (condition.getMinMoney() != null) {
+            args.add(condition.getMinMoney());
+        }
+        if (condition.getMaxMoney() != null) {
+            args.add(condition.getMaxMoney());
+        }
+        if (condition.getMemberIdPrefix() != null) {
+            args.add(likePrefix(condition.getMemberIdPrefix()));
+        }
+        return args.toArray();
+    }
+
+    private int shape(MemberSearchCondition condition) {
+        int shape = order(condition).ordinal() << ORDER_SHIFT;
+        if (condition.getMinMoney() != null) {
+            shape |= MIN_MONEY;
+        }
+        if (condition.getMaxMoney() != null) {
+            shape |= MAX_MONEY;
+        }
+        if (condition.getMemberIdPrefix() != null) {
+            shape |= MEMBER_ID_PREFIX;
+        }
+        return shape;
+    }
+
+    private static MemberSearchOrder order(MemberSearchCondition condition) {
+        return condition.getOrder() == null ? MemberSearchOrder.MEMBER_ID_ASC : condition.getOrder();
+    }
+
+    /**
+     * prefix 에 포함된 like 특수문자(%, _)가 와일드카드로 동작하지 않도록 escape 한다. (H2Templates 의 escape 문자는 '\')
+     */
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static void validate(MemberSearchCondition condition) {
+        if (condition.getLimit() != null && condition.getLimit() <= 0) {
+            throw new IllegalArgumentException("limit must be positive : " + condition.getLimit());
+        }
+        if (condition.getMinMoney() != null && condition.getMaxMoney() != null
+                && condition.getMinMoney() > condition.getMaxMoney()) {
+            throw new IllegalArgumentException("minMoney must not be greater than maxMoney : " + condition);
+        }
+    }
+
+    @Override
+    public Member save(Member member) {
+        return target.save(member);
+    }
+
+    @Override
+    public int insertIfAbsent(Member member) {
+        return target.insertIfAbsent(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return target.findById(memberId);
+    }
+
+    @Override
+    public List<Member> findAll() {
+        return target.findAll();
+    }
+
+    @Override
+    public int updateById(String memberId, int money) {
+        return target.updateById(memberId, money);
+    }
+
+    @Override
+    public int[] updateAll(List<Member> members) {
+        return target.updateAll(members);
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        return target.deleteById(memberId);
+    }
+
+    @Override
+    public int clearAll() {
+        return target.clearAll();
+    }
+
+}
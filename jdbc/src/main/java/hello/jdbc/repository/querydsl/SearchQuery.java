@@ -0,0 +1,18 @@
+package hello.jdbc.repository.querydsl;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 실행할 검색 SQL 과 바인딩할 파라미터
+ * -> limit 은 SQL 에 포함하지 않고 Statement.setMaxRows 로 적용한다. (null 이면 제한하지 않음)
+ */
+@Getter
+@RequiredArgsConstructor
+public class SearchQuery {
+
+    private final String sql;
+    private final Object[] args;
+    private final Integer limit;
+
+}
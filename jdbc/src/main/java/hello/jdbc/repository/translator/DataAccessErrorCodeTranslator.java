@@ -0,0 +1,147 @@
+package hello.jdbc.repository.translator;
+
+import hello.jdbc.repository.exception.ExceptionMode;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.InvalidResultSetAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 미리 구성한 error code 테이블을 사용하는 SQLExceptionTranslator
+ * -> SQLErrorCodeSQLExceptionTranslator(dataSource) 는 최초 변환 시점에 커넥션을 얻어 DB 메타데이터를 조회하고,
+ *    변환할 때마다 sql-error-codes.xml 에 정의된 코드 목록을 순서대로 탐색한다.
+ * -> 해당 변환기는 최초 변환 시점에 vendor error code 를 한 번만 조회하여 ErrorCodeTable 로 구성하고, 이후에는 재사용한다.
+ *    -> Repository 를 생성할 때 커넥션을 얻지 않는다.
+ *    -> DB 에 접근할 수 없어 조회에 실패하면 결과를 저장하지 않고, 다음 변환 시점에 다시 조회한다. (LazyErrorCodeTable)
+ * -> 테이블에 없는 error code 는 SQLException 하위 타입 기반 변환기로 위임하며, 그래도 변환되지 않으면 UncategorizedSQLException 을 반환한다.
+ * -
+ * 키 중복처럼 흐름 제어 용도로 사용되는 예외는 stackless 옵션을 통해 stack trace 수집 비용을 생략할 수 있다.
+ */
+public class DataAccessErrorCodeTranslator implements SQLExceptionTranslator {
+
+    private final LazyErrorCodeTable<DataAccessException> table;
+    private final ExceptionFactory<DataAccessException> duplicateKey;
+    private final SQLExceptionTranslator fallbackTranslator = new SQLExceptionSubclassTranslator();
+
+    public DataAccessErrorCodeTranslator(SQLErrorCodes errorCodes, boolean stacklessDuplicateKey) {
+        this(() -> errorCodes, stacklessDuplicateKey);
+    }
+
+    private DataAccessErrorCodeTranslator(Supplier<SQLErrorCodes> errorCodes, boolean stacklessDuplicateKey) {
+        this.duplicateKey = stacklessDuplicateKey
+                ? (task, sql, ex) -> new StacklessDuplicateKeyException(buildMessage(task, sql, ex), ex)
+                : (task, sql, ex) -> new DuplicateKeyException(buildMessage(task, sql, ex), ex);
+        this.table = new LazyErrorCodeTable<>(errorCodes, this::buildTable);
+    }
+
+    /**
+     * DataSource 의 메타데이터를 통해 DB 종류를 확인하고 error code 를 구성한다.
+     * -> 메타데이터 조회는 최초 변환 시점에 발생하며, 성공한 이후에는 다시 조회하지 않는다.
+     * @param dataSource
+     * @return
+     */
+    public static DataAccessErrorCodeTranslator of(DataSource dataSource) {
+        return of(dataSource, false);
+    }
+
+    public static DataAccessErrorCodeTranslator of(DataSource dataSource, boolean stacklessDuplicateKey) {
+        return new DataAccessErrorCodeTranslator(
+                () -> SQLErrorCodesFactory.getInstance().resolveErrorCodes(dataSource), stacklessDuplicateKey);
+    }
+
+    /**
+     * Repository 의 키 중복 예외 생성 방식(ExceptionMode)에 맞는 변환기를 반환한다.
+     * -> DuplicateKeyException 은 변환할 때마다 메시지와 원인 예외가 달라지므로 PREALLOCATED 는 STACKLESS 로 처리한다.
+     * @param dataSource
+     * @param duplicateKeyMode
+     * @return
+     */
+    public static DataAccessErrorCodeTranslator of(DataSource dataSource, ExceptionMode duplicateKeyMode) {
+        return of(dataSource, duplicateKeyMode != ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    /**
+     * DB 이름(ex. "H2")으로 error code 를 구성한다. 커넥션을 얻지 않는다.
+     * @param databaseName
+     * @return
+     */
+    public static DataAccessErrorCodeTranslator of(String databaseName) {
+        return of(databaseName, false);
+    }
+
+    public static DataAccessErrorCodeTranslator of(String databaseName, boolean stacklessDuplicateKey) {
+        SQLErrorCodes errorCodes = SQLErrorCodesFactory.getInstance().getErrorCodes(databaseName);
+        return new DataAccessErrorCodeTranslator(errorCodes, stacklessDuplicateKey);
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        return table.obtain().translate(task, sql, ex);
+    }
+
+    /**
+     * 예외를 생성하지 않고 키 중복 여부만 확인한다.
+     * -> 키 중복을 흐름 제어에 사용하는 경우(ex. insertIfAbsent) 변환 비용 없이 분기할 수 있다.
+     * @param ex
+     * @return
+     */
+    public boolean isDuplicateKey(SQLException ex) {
+        return table.obtain().lookup(ex.getErrorCode()) == duplicateKey;
+    }
+
+    public int mappedErrorCodeCount() {
+        return table.obtain().size();
+    }
+
+    /**
+     * SQLErrorCodeSQLExceptionTranslator 와 동일한 우선순위로 코드 목록을 등록한다.
+     * @param codes
+     * @return
+     */
+    private ErrorCodeTable<DataAccessException> buildTable(SQLErrorCodes codes) {
+        return ErrorCodeTable.<DataAccessException>builder(this::fallback)
+                .register(codes.getBadSqlGrammarCodes(), BadSqlGrammarException::new)
+                .register(codes.getInvalidResultSetAccessCodes(), InvalidResultSetAccessException::new)
+                .register(codes.getDuplicateKeyCodes(), duplicateKey)
+                .register(codes.getDataIntegrityViolationCodes(),
+                        (task, sql, ex) -> new DataIntegrityViolationException(buildMessage(task, sql, ex), ex))
+                .register(codes.getPermissionDeniedCodes(),
+                        (task, sql, ex) -> new PermissionDeniedDataAccessException(buildMessage(task, sql, ex), ex))
+                .register(codes.getDataAccessResourceFailureCodes(),
+                        (task, sql, ex) -> new DataAccessResourceFailureException(buildMessage(task, sql, ex), ex))
+                .register(codes.getTransientDataAccessResourceCodes(),
+                        (task, sql, ex) -> new TransientDataAccessResourceException(buildMessage(task, sql, ex), ex))
+                .register(codes.getCannotAcquireLockCodes(),
+                        (task, sql, ex) -> new CannotAcquireLockException(buildMessage(task, sql, ex), ex))
+                .register(codes.getDeadlockLoserCodes(),
+                        (task, sql, ex) -> new PessimisticLockingFailureException(buildMessage(task, sql, ex), ex))
+                .register(codes.getCannotSerializeTransactionCodes(),
+                        (task, sql, ex) -> new PessimisticLockingFailureException(buildMessage(task, sql, ex), ex))
+                .build();
+    }
+
+    private DataAccessException fallback(String task, String sql, SQLException ex) {
+        DataAccessException dae = fallbackTranslator.translate(task, sql, ex);
+        return dae != null ? dae : new UncategorizedSQLException(task, sql, ex);
+    }
+
+    static String buildMessage(String task, String sql, SQLException ex) {
+        return task + "; " + (sql != null ? "SQL [" + sql + "]; " : "") + ex.getMessage();
+    }
+
+}
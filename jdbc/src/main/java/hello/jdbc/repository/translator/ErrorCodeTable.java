@@ -0,0 +1,152 @@
+package hello.jdbc.repository.translator;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * vendor error code(int) -> ExceptionFactory 매핑을 보관하는 읽기 전용 테이블
+ * -> SQLErrorCodeSQLExceptionTranslator 는 변환할 때마다 error code 를 문자열로 바꾼 뒤 각 코드 목록을 순서대로 탐색한다.
+ * -> 해당 테이블은 한 번만 구성되며, 이후에는 primitive int 배열에 대한 open addressing 조회만 수행한다.
+ * -> 구성 이후에는 변경되지 않으므로 별도의 동기화 없이 여러 쓰레드에서 공유할 수 있다.
+ * @param <E> 변환 결과 예외 타입
+ */
+public final class ErrorCodeTable<E extends RuntimeException> {
+
+    // 빈 슬롯 표시용 값 -> 실제 vendor error code 로 사용되지 않는 값을 사용한다
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final int[] keys;
+    private final ExceptionFactory<? extends E>[] factories;
+    private final ExceptionFactory<? extends E> defaultFactory;
+    private final int mask;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    private ErrorCodeTable(Map<Integer, ExceptionFactory<? extends E>> mappings,
+                           ExceptionFactory<? extends E> defaultFactory) {
+        int capacity = tableSizeFor(mappings.size() * 2);
+        this.keys = new int[capacity];
+        this.factories = (ExceptionFactory<? extends E>[]) new ExceptionFactory[capacity];
+        this.defaultFactory = defaultFactory;
+        this.mask = capacity - 1;
+        this.size = mappings.size();
+        Arrays.fill(keys, EMPTY);
+        for (Map.Entry<Integer, ExceptionFactory<? extends E>> entry : mappings.entrySet()) {
+            int idx = mix(entry.getKey()) & mask;
+            while (keys[idx] != EMPTY) {
+                idx = (idx + 1) & mask;
+            }
+            keys[idx] = entry.getKey();
+            factories[idx] = entry.getValue();
+        }
+    }
+
+    public static <E extends RuntimeException> Builder<E> builder(ExceptionFactory<? extends E> defaultFactory) {
+        return new Builder<>(defaultFactory);
+    }
+
+    /**
+     * SQLException 의 error code 에 해당하는 예외를 생성한다.
+     * -> 배치 실행 중 발생한 BatchUpdateException 은 실제 원인이 next exception 에 담겨있으므로 이를 기준으로 조회한다.
+     * @param task
+     * @param sql
+     * @param ex
+     * @return
+     */
+    public E translate(String task, String sql, SQLException ex) {
+        SQLException sqlEx = ex;
+        if (sqlEx instanceof BatchUpdateException && sqlEx.getNextException() != null) {
+            sqlEx = sqlEx.getNextException();
+        }
+        return lookup(sqlEx.getErrorCode()).create(task, sql, sqlEx);
+    }
+
+    public ExceptionFactory<? extends E> lookup(int errorCode) {
+        if (errorCode == EMPTY) {
+            return defaultFactory;
+        }
+        int idx = mix(errorCode) & mask;
+        while (true) {
+            int key = keys[idx];
+            if (key == errorCode) {
+                return factories[idx];
+            }
+            if (key == EMPTY) {
+                return defaultFactory;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    public boolean contains(int errorCode) {
+        return lookup(errorCode) != defaultFactory;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // error code 는 연속된 값이 많으므로 하위 비트가 고르게 분포되도록 섞어준다
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expected) {
+        int capacity = 8;
+        while (capacity < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    public static final class Builder<E extends RuntimeException> {
+
+        private final Map<Integer, ExceptionFactory<? extends E>> mappings = new LinkedHashMap<>();
+        private final ExceptionFactory<? extends E> defaultFactory;
+
+        private Builder(ExceptionFactory<? extends E> defaultFactory) {
+            this.defaultFactory = defaultFactory;
+        }
+
+        /**
+         * 먼저 등록된 매핑이 우선한다.
+         * -> SQLErrorCodeSQLExceptionTranslator 가 코드 목록을 탐색하는 순서와 동일한 우선순위를 유지하기 위함
+         * @param errorCode
+         * @param factory
+         * @return
+         */
+        public Builder<E> register(int errorCode, ExceptionFactory<? extends E> factory) {
+            if (errorCode != EMPTY) {
+                mappings.putIfAbsent(errorCode, factory);
+            }
+            return this;
+        }
+
+        /**
+         * sql-error-codes.xml 에 정의된 문자열 코드 목록을 그대로 등록한다.
+         * -> 숫자로 해석할 수 없는 코드는 error code 가 아닌 SQL State 이므로 무시한다.
+         * @param errorCodes
+         * @param factory
+         * @return
+         */
+        public Builder<E> register(String[] errorCodes, ExceptionFactory<? extends E> factory) {
+            for (String errorCode : errorCodes) {
+                try {
+                    register(Integer.parseInt(errorCode.trim()), factory);
+                } catch (NumberFormatException ignored) {
+                    // SQL State 기반 코드는 error code 테이블의 대상이 아니다
+                }
+            }
+            return this;
+        }
+
+        public ErrorCodeTable<E> build() {
+            return new ErrorCodeTable<>(mappings, defaultFactory);
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package hello.jdbc.repository.translator;
+
+import java.sql.SQLException;
+
+/**
+ * SQLException 을 특정 런타임 예외로 변환하는 생성 함수
+ * -> ErrorCodeTable 에 error code 별로 등록되어 사용된다.
+ * @param <E> 변환 결과 예외 타입
+ */
+@FunctionalInterface
+public interface ExceptionFactory<E extends RuntimeException> {
+    E create(String task, String sql, SQLException ex);
+}
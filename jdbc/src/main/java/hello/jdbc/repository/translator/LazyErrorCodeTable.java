@@ -0,0 +1,40 @@
+package hello.jdbc.repository.translator;
+
+import org.springframework.jdbc.support.SQLErrorCodes;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 처음 사용할 때 error code 를 조회하여 ErrorCodeTable 을 구성하고, 이후에는 재사용한다.
+ * -> 조회에 실패하면(null) 결과를 저장하지 않고 error code 가 없는 테이블로 변환하며, 다음 변환 시점에 다시 조회한다.
+ *    (SQLErrorCodeSQLExceptionTranslator 가 SQLErrorCodesFactory.resolveErrorCodes 를 사용하는 방식과 같다)
+ */
+class LazyErrorCodeTable<E extends RuntimeException> {
+
+    private final Supplier<SQLErrorCodes> errorCodes;
+    private final Function<SQLErrorCodes, ErrorCodeTable<E>> builder;
+    private final ErrorCodeTable<E> unresolved;
+    private volatile ErrorCodeTable<E> table;
+
+    LazyErrorCodeTable(Supplier<SQLErrorCodes> errorCodes, Function<SQLErrorCodes, ErrorCodeTable<E>> builder) {
+        this.errorCodes = errorCodes;
+        this.builder = builder;
+        this.unresolved = builder.apply(new SQLErrorCodes());
+    }
+
+    ErrorCodeTable<E> obtain() {
+        ErrorCodeTable<E> resolved = table;
+        if (resolved != null) {
+            return resolved;
+        }
+        SQLErrorCodes codes = errorCodes.get();
+        if (codes == null) {
+            return unresolved;
+        }
+        resolved = builder.apply(codes);
+        table = resolved;
+        return resolved;
+    }
+
+}
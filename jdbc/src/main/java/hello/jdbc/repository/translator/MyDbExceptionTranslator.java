@@ -0,0 +1,67 @@
+package hello.jdbc.repository.translator;
+
+import hello.jdbc.repository.exception.ExceptionMode;
+import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * SQLException 을 직접 정의한 MyDbException 계층으로 변환하는 변환기
+ * -> ExTranslatorV1Test 에서는 h2 의 error code(23505)를 코드에 직접 작성했지만,
+ *    해당 변환기는 최초 변환 시점에 DB 종류에 맞는 키 중복 error code 를 한 번만 조회하여 ErrorCodeTable 로 구성한다.
+ *    -> Repository 를 생성할 때 커넥션을 얻지 않는다. (조회에 실패하면 저장하지 않고 다음 변환 시점에 다시 조회한다)
+ * -> 따라서 DB 가 바뀌어도 코드 수정 없이 MyDuplicateKeyException 으로 변환할 수 있다.
+ * -> ExceptionMode 를 통해 키 중복 예외를 stack trace 없이 생성하거나, 미리 생성한 인스턴스를 재사용할 수 있다.
+ */
+public class MyDbExceptionTranslator {
+
+    private final LazyErrorCodeTable<MyDbException> table;
+
+    public MyDbExceptionTranslator(SQLErrorCodes errorCodes, ExceptionMode duplicateKeyMode) {
+        this(() -> errorCodes, duplicateKeyMode);
+    }
+
+    private MyDbExceptionTranslator(Supplier<SQLErrorCodes> errorCodes, ExceptionMode duplicateKeyMode) {
+        this.table = new LazyErrorCodeTable<>(errorCodes, codes -> ErrorCodeTable.<MyDbException>builder((task, sql, ex) -> new MyDbException(ex))
+                .register(codes.getDuplicateKeyCodes(),
+                        (task, sql, ex) -> MyDuplicateKeyException.of(duplicateKeyMode, ex))
+                .build());
+    }
+
+    public static MyDbExceptionTranslator of(DataSource dataSource) {
+        return of(dataSource, ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    public static MyDbExceptionTranslator of(DataSource dataSource, ExceptionMode duplicateKeyMode) {
+        return new MyDbExceptionTranslator(
+                () -> SQLErrorCodesFactory.getInstance().resolveErrorCodes(dataSource), duplicateKeyMode);
+    }
+
+    public static MyDbExceptionTranslator of(String databaseName) {
+        return of(databaseName, ExceptionMode.FULL_STACK_TRACE);
+    }
+
+    public static MyDbExceptionTranslator of(String databaseName, ExceptionMode duplicateKeyMode) {
+        return new MyDbExceptionTranslator(SQLErrorCodesFactory.getInstance().getErrorCodes(databaseName), duplicateKeyMode);
+    }
+
+    public MyDbException translate(SQLException ex) {
+        return table.obtain().translate(null, null, ex);
+    }
+
+    /**
+     * 예외를 생성하지 않고 키 중복 여부만 확인한다.
+     * -> 테이블에는 키 중복 error code 만 등록되어 있다.
+     * @param ex
+     * @return
+     */
+    public boolean isDuplicateKey(SQLException ex) {
+        return table.obtain().contains(ex.getErrorCode());
+    }
+
+}
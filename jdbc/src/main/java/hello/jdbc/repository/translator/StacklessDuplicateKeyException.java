@@ -0,0 +1,21 @@
+package hello.jdbc.repository.translator;
+
+import org.springframework.dao.DuplicateKeyException;
+
+/**
+ * stack trace 를 수집하지 않는 DuplicateKeyException
+ * -> 키 중복 후 재시도와 같이 예상된 흐름 제어에 사용되는 예외는 stack trace 가 필요하지 않다.
+ * -> 예외 생성 비용의 대부분은 fillInStackTrace() 에서 발생하므로 이를 생략한다.
+ * -> 원인 예외(SQLException)는 그대로 보존된다.
+ */
+public class StacklessDuplicateKeyException extends DuplicateKeyException {
+
+    public StacklessDuplicateKeyException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,338 @@
+package hello.jdbc.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 읽기 요청은 replica, 그 외의 요청은 primary 로 보내는 DataSource
+ * 1. 트랜잭션 내부 -> readOnly 트랜잭션이면 replica, 그렇지 않으면 primary
+ * 2. 트랜잭션 외부 -> 실행하는 SQL 이 select 이면 replica, 그렇지 않으면 primary
+ * 3. ReadYourWritesWindow 에 기록된 쓰기 이후 일정 시간 동안은 읽기 요청도 primary
+ * -
+ * 트랜잭션 매니저는 트랜잭션 시작 시점에 커넥션을 얻지만, readOnly 여부는 그 이후에 트랜잭션 동기화 매니저에 기록된다.
+ * -> 따라서 getConnection() 은 실제 커넥션 대신 프록시를 반환하고, 첫 SQL 을 준비하는 시점에 대상 DataSource 를 결정한다.
+ * -> createStatement() 는 SQL 을 알 수 없으므로 Statement 프록시를 반환하고, 첫 SQL 을 실행(execute*, addBatch)하는 시점에 결정한다.
+ *    -> Statement 를 준비하는 중에 호출된 setFetchSize / setMaxRows 등은 기록해두었다가 실제 Statement 를 만든 뒤 적용한다.
+ * -> 실제 커넥션을 얻기 전에 호출된 setAutoCommit / setReadOnly / setTransactionIsolation 은 기록해두었다가 커넥션을 얻은 뒤 적용한다.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    public enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private static final Object NOT_HANDLED = new Object();
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReadYourWritesWindow readYourWrites;
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+
+    private volatile boolean defaultsResolved;
+    private boolean defaultAutoCommit;
+    private int defaultIsolation;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWritesWindow readYourWrites) {
+        this.primary = primary;
+        this.replica = replica;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return routingConnection(null, null);
+    }
+
+    /**
+     * getConnection() 과 같은 방식으로 라우팅하며, 대상 DataSource 에도 같은 username / password 로 커넥션을 요청한다.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return routingConnection(username, password);
+    }
+
+    private Connection routingConnection(String username, String password) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, new RoutingConnectionHandler(username, password));
+    }
+
+    /**
+     * @param sql 첫번째로 준비하거나 실행하는 SQL (알 수 없는 경우 null)
+     * @param statement SQL 실행을 위한 호출인지 여부 (getMetaData() 등은 false)
+     * @return
+     */
+    Target route(String sql, boolean statement) {
+        boolean read;
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            read = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        } else if (statement) {
+            read = isRead(sql);
+        } else {
+            // 메타데이터 조회 등은 primary 에서 처리하되 쓰기로 기록하지 않는다
+            return Target.PRIMARY;
+        }
+        if (read && !readYourWrites.isSticky()) {
+            return Target.REPLICA;
+        }
+        if (!read) {
+            readYourWrites.markWrite();
+        }
+        return Target.PRIMARY;
+    }
+
+    static boolean isRead(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String normalized = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return (normalized.startsWith("select") || normalized.startsWith("with"))
+                && !normalized.contains("for update");
+    }
+
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.sum();
+    }
+
+    public long getReplicaConnectionCount() {
+        return replicaConnections.sum();
+    }
+
+    private static Object invokeTarget(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 실제 커넥션을 얻기 전에 getAutoCommit() 등을 호출하는 경우를 위해 primary 커넥션의 기본값을 한 번만 조회한다.
+     */
+    private void resolveDefaults() throws SQLException {
+        if (defaultsResolved) {
+            return;
+        }
+        synchronized (this) {
+            if (!defaultsResolved) {
+                try (Connection conn = primary.getConnection()) {
+                    defaultAutoCommit = conn.getAutoCommit();
+                    defaultIsolation = conn.getTransactionIsolation();
+                }
+                defaultsResolved = true;
+            }
+        }
+    }
+
+    private class RoutingConnectionHandler implements InvocationHandler {
+
+        private final String username;
+        private final String password;
+        private Connection target;
+        private boolean closed;
+        private Boolean autoCommit;
+        private Boolean readOnly;
+        private Integer isolation;
+
+        private RoutingConnectionHandler(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "RoutingConnection[" + (target != null ? target : "not acquired") + "]";
+                case "isClosed":
+                    return closed;
+                case "close":
+                    closed = true;
+                    if (target != null) {
+                        target.close();
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Illegal operation: connection is closed");
+            }
+            if (target == null) {
+                Object result = handleBeforeAcquire(method, args);
+                if (result != NOT_HANDLED) {
+                    return result;
+                }
+                String name = method.getName();
+                if (name.equals("createStatement")) {
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                            new LazyStatementHandler((Connection) proxy, method, args));
+                }
+                if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                    acquire(route((String) args[0], true));
+                } else {
+                    acquire(route(null, false));
+                }
+            }
+            return invokeTarget(method, target, args);
+        }
+
+        /**
+         * 실제 커넥션 없이 처리할 수 있는 호출은 기록만 해둔다.
+         */
+        private Object handleBeforeAcquire(Method method, Object[] args) throws SQLException {
+            switch (method.getName()) {
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getAutoCommit":
+                    resolveDefaults();
+                    return autoCommit != null ? autoCommit : defaultAutoCommit;
+                case "setReadOnly":
+                    readOnly = (Boolean) args[0];
+                    return null;
+                case "isReadOnly":
+                    return readOnly != null ? readOnly : Boolean.FALSE;
+                case "setTransactionIsolation":
+                    isolation = (Integer) args[0];
+                    return null;
+                case "getTransactionIsolation":
+                    resolveDefaults();
+                    return isolation != null ? isolation : defaultIsolation;
+                case "commit":
+                case "rollback":
+                case "clearWarnings":
+                case "getWarnings":
+                    // 실행한 SQL 이 없으므로 처리할 것이 없다
+                    return null;
+                default:
+                    return NOT_HANDLED;
+            }
+        }
+
+        private void acquire(Target route) throws SQLException {
+            if (route == Target.REPLICA) {
+                target = connect(replica);
+                replicaConnections.increment();
+            } else {
+                target = connect(primary);
+                primaryConnections.increment();
+            }
+            if (autoCommit != null && target.getAutoCommit() != autoCommit) {
+                target.setAutoCommit(autoCommit);
+            }
+            if (readOnly != null) {
+                target.setReadOnly(readOnly);
+            }
+            if (isolation != null) {
+                target.setTransactionIsolation(isolation);
+            }
+        }
+
+        private Connection connect(DataSource dataSource) throws SQLException {
+            return username != null ? dataSource.getConnection(username, password) : dataSource.getConnection();
+        }
+
+        /**
+         * 첫 SQL 을 실행하는 시점에 커넥션을 얻고(아직 얻지 않은 경우) 실제 Statement 를 만든다.
+         */
+        private class LazyStatementHandler implements InvocationHandler {
+
+            private final Connection connection;
+            private final Method createStatement;
+            private final Object[] createArgs;
+            private final List<Object[]> settings = new ArrayList<>();
+            private Statement statement;
+            private boolean statementClosed;
+
+            private LazyStatementHandler(Connection connection, Method createStatement, Object[] createArgs) {
+                this.connection = connection;
+                this.createStatement = createStatement;
+                this.createArgs = createArgs;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                switch (name) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "RoutingStatement[" + (statement != null ? statement : "not created") + "]";
+                    case "getConnection":
+                        return connection;
+                    case "isClosed":
+                        return statement != null ? statement.isClosed() : statementClosed;
+                    case "close":
+                        statementClosed = true;
+                        if (statement != null) {
+                            statement.close();
+                        }
+                        return null;
+                    default:
+                        break;
+                }
+                if (statement == null) {
+                    if (statementClosed) {
+                        throw new SQLException("Illegal operation: statement is closed");
+                    }
+                    if (name.startsWith("set") && method.getReturnType() == void.class) {
+                        settings.add(new Object[]{method, args});
+                        return null;
+                    }
+                    if (name.equals("getWarnings") || name.equals("clearWarnings")) {
+                        return null;
+                    }
+                    statement = open(sql(method, args));
+                }
+                return invokeTarget(method, statement, args);
+            }
+
+            private Statement open(String sql) throws Throwable {
+                if (closed) {
+                    throw new SQLException("Illegal operation: connection is closed");
+                }
+                if (target == null) {
+                    acquire(route(sql, sql != null));
+                }
+                Statement created = (Statement) invokeTarget(createStatement, target, createArgs);
+                for (Object[] setting : settings) {
+                    invokeTarget((Method) setting[0], created, (Object[]) setting[1]);
+                }
+                return created;
+            }
+
+            private String sql(Method method, Object[] args) {
+                String name = method.getName();
+                if ((name.startsWith("execute") || name.equals("addBatch"))
+                        && args != null && args.length > 0 && args[0] instanceof String sql) {
+                    return sql;
+                }
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package hello.jdbc.routing;
+
+import org.springframework.core.task.TaskDecorator;
+
+import java.time.Duration;
+
+/**
+ * 쓰기 이후 일정 시간 동안 읽기 요청도 primary 로 보내기 위한 쓰레드(요청) 단위의 상태
+ * -> replica 는 primary 의 변경 사항을 늦게 반영하므로, 방금 쓴 데이터를 바로 읽으면 이전 값이 보일 수 있다.
+ * -> 하나의 요청을 하나의 쓰레드가 처리한다고 가정하며, 요청이 끝나면 상태를 정리해야 한다.
+ *    (쓰레드 풀에서 다음 요청이 이전 요청의 상태를 이어받지 않도록)
+ *    1. 요청을 처리하는 쓰레드 풀 -> TaskDecorator 로 등록한다. (ex. ThreadPoolTaskExecutor.setTaskDecorator)
+ *    2. 그 외 -> 요청 처리 경계(ex. 서블릿 필터)에서 scope() 로 감싸거나 clear() 를 호출한다.
+ */
+public class ReadYourWritesWindow implements TaskDecorator {
+
+    private final long windowNanos;
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    public ReadYourWritesWindow(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void markWrite() {
+        if (windowNanos > 0) {
+            lastWriteNanos.set(System.nanoTime());
+        }
+    }
+
+    public boolean isSticky() {
+        Long last = lastWriteNanos.get();
+        if (last == null) {
+            return false;
+        }
+        if (System.nanoTime() - last < windowNanos) {
+            return true;
+        }
+        lastWriteNanos.remove();
+        return false;
+    }
+
+    public void clear() {
+        lastWriteNanos.remove();
+    }
+
+    /**
+     * 작업 전후로 상태를 비워, 작업이 이전 작업의 쓰기 기록을 이어받거나 다음 작업에 남기지 않도록 한다.
+     */
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return () -> scope(runnable);
+    }
+
+    public void scope(Runnable request) {
+        clear();
+        try {
+            request.run();
+        } finally {
+            clear();
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package hello.jdbc.saga;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * relay 가 처리할 outbox row 를 선점하는 방식
+ * 1. SKIP_LOCKED -> select ... for update skip locked 로 다른 relay 가 잠근 row 를 건너뛰고 잠근다.
+ * 2. OPTIMISTIC -> 잠금 없이 후보를 조회한 뒤, status 조건을 포함한 update 에 성공한 row 만 처리한다.
+ */
+public enum ClaimMode {
+
+    SKIP_LOCKED, OPTIMISTIC;
+
+    /**
+     * DB 종류와 버전으로 SKIP LOCKED 지원 여부를 판단한다.
+     * -> h2 2.2, PostgreSQL 9.5, MySQL 8.0, Oracle 부터 지원한다.
+     * @param dataSource
+     * @return
+     */
+    public static ClaimMode detect(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, ClaimMode::of);
+        } catch (MetaDataAccessException e) {
+            return OPTIMISTIC;
+        }
+    }
+
+    private static ClaimMode of(DatabaseMetaData metaData) throws SQLException {
+        String product = metaData.getDatabaseProductName();
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        boolean supported = switch (product) {
+            case "H2" -> major > 2 || (major == 2 && minor >= 2);
+            case "PostgreSQL" -> major > 9 || (major == 9 && minor >= 5);
+            case "MySQL" -> major >= 8;
+            case "Oracle" -> true;
+            default -> false;
+        };
+        return supported ? SKIP_LOCKED : OPTIMISTIC;
+    }
+
+}
@@ -0,0 +1,19 @@
+package hello.jdbc.saga;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class OutboxMessage {
+
+    private final long id;
+    private final String transferId;
+    private final String fromId;
+    private final String toId;
+    private final int money;
+    private final int attempts;
+
+}
@@ -0,0 +1,49 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.shard.Shard;
+import hello.jdbc.shard.ShardedMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * saga 방식의 계좌이체
+ * -> 출금과 입금 요청(outbox row)을 출금 회원이 있는 DB 의 로컬 트랜잭션 하나로 커밋하고 바로 반환한다.
+ * -> 입금은 TransferRelay 가 비동기로 처리하며, 입금이 실패하면 출금을 되돌리는 보상 트랜잭션을 실행한다.
+ * -> 따라서 호출한 쪽은 입금 DB 의 커밋을 기다리지 않지만, 입금이 반영되기 전까지 잠시 합계가 맞지 않는 상태가 보일 수 있다.
+ */
+@Slf4j
+public class SagaMemberService {
+
+    private final ShardedMemberRepository memberRepository;
+    private final List<TransferOutboxRepository> outboxes = new ArrayList<>();
+
+    public SagaMemberService(ShardedMemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+        for (Shard shard : memberRepository.getShards()) {
+            outboxes.add(new TransferOutboxRepository(shard.getDataSource()));
+        }
+    }
+
+    /**
+     * @return 입금 처리 상태를 추적할 수 있는 transfer_id (= idempotency key)
+     */
+    public String accountTransfer(String fromId, String toId, int money) {
+        Shard fromShard = memberRepository.shardOf(fromId);
+        String transferId = UUID.randomUUID().toString();
+        fromShard.getTransactionTemplate().executeWithoutResult(status -> {
+            // 조회한 값이 아닌 현재 값에서 차감하여 동시에 처리되는 다른 출금 / 보상과 충돌하지 않도록 한다
+            int updated = fromShard.getJdbcTemplate()
+                    .update("update member set money = money - ? where member_id = ?", money, fromId);
+            if (updated == 0) {
+                throw new NoSuchElementException("memberId = " + fromId + " does not exist...");
+            }
+            outboxes.get(fromShard.getIndex()).insert(transferId, fromId, toId, money);
+        });
+        return transferId;
+    }
+
+}
@@ -0,0 +1,34 @@
+package hello.jdbc.saga;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * saga 기반 이체에 필요한 테이블
+ * 1. transfer_outbox -> 출금과 같은 로컬 트랜잭션에서 기록하는 입금 요청. relay 가 읽어서 처리한다.
+ * 2. processed_transfer -> 입금을 처리한 transfer_id 를 기록해 같은 요청이 두 번 반영되지 않도록 한다. (idempotency key)
+ * -> shard 를 사용하는 경우 모든 shard 에 생성한다.
+ */
+public abstract class SagaTables {
+
+    public static void create(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists transfer_outbox (" +
+                "id bigint auto_increment primary key, " +
+                "transfer_id varchar(36) not null unique, " +
+                "from_id varchar(10) not null, " +
+                "to_id varchar(10) not null, " +
+                "money integer not null, " +
+                "status varchar(16) not null default 'PENDING', " +
+                "attempts integer not null default 0, " +
+                "claimed_by varchar(36), " +
+                "claimed_at timestamp, " +
+                "created_at timestamp not null default current_timestamp)");
+        jdbcTemplate.execute("create index if not exists idx_transfer_outbox_status on transfer_outbox(status, id)");
+        jdbcTemplate.execute("create table if not exists processed_transfer (" +
+                "transfer_id varchar(36) primary key, " +
+                "processed_at timestamp not null default current_timestamp)");
+    }
+
+}
@@ -0,0 +1,136 @@
+package hello.jdbc.saga;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 하나의 DB 에 있는 transfer_outbox 테이블을 다룬다.
+ * -
+ * 상태 전이
+ * PENDING -> CLAIMED (relay 가 선점) -> DONE (입금 완료) / COMPENSATED (출금 보상 완료)
+ * CLAIMED -> PENDING (일시적 오류로 재시도)
+ * -> relay 가 처리 도중 종료되어 lease 가 만료된 CLAIMED row 는 다른 relay 가 다시 선점할 수 있다.
+ * -> 상태 변경은 선점한 relay 의 claimed_by 가 일치하는 경우에만 반영한다.
+ */
+@Slf4j
+public class TransferOutboxRepository {
+
+    private static final String SELECT_CLAIMABLE = "select id, transfer_id, from_id, to_id, money, attempts " +
+            "from transfer_outbox " +
+            "where status = 'PENDING' or (status = 'CLAIMED' and claimed_at < ?) " +
+            "order by id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    @Getter
+    private final ClaimMode claimMode;
+
+    public TransferOutboxRepository(DataSource dataSource) {
+        this(dataSource, ClaimMode.detect(dataSource));
+    }
+
+    public TransferOutboxRepository(DataSource dataSource, ClaimMode claimMode) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.claimMode = claimMode;
+    }
+
+    /**
+     * 호출하는 쪽에서 시작한 트랜잭션에 참여하여 출금과 함께 커밋된다.
+     */
+    public void insert(String transferId, String fromId, String toId, int money) {
+        String sql = "insert into transfer_outbox(transfer_id, from_id, to_id, money) values (?, ?, ?, ?)";
+        jdbcTemplate.update(sql, transferId, fromId, toId, money);
+    }
+
+    /**
+     * 처리할 row 를 최대 batchSize 개 선점한다.
+     * @param relayId 선점하는 relay 의 ID
+     * @param batchSize
+     * @param lease 선점 이후 해당 시간이 지나면 다른 relay 가 다시 선점할 수 있다
+     * @return
+     */
+    public List<OutboxMessage> claim(String relayId, int batchSize, Duration lease) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Timestamp expiredBefore = new Timestamp(now.getTime() - lease.toMillis());
+        if (claimMode == ClaimMode.SKIP_LOCKED) {
+            return transactionTemplate.execute(status -> {
+                List<OutboxMessage> messages = jdbcTemplate.query(SELECT_CLAIMABLE + " for update skip locked",
+                        messageRowMapper(), expiredBefore, batchSize);
+                if (!messages.isEmpty()) {
+                    List<Object[]> args = new ArrayList<>(messages.size());
+                    for (OutboxMessage message : messages) {
+                        args.add(new Object[]{relayId, now, message.getId()});
+                    }
+                    jdbcTemplate.batchUpdate("update transfer_outbox set status = 'CLAIMED', claimed_by = ?, claimed_at = ? " +
+                            "where id = ?", args);
+                }
+                return messages;
+            });
+        }
+
+        // 잠금 없이 후보를 조회한 뒤, 다른 relay 가 먼저 선점하지 않은 row 만 가져간다
+        List<OutboxMessage> candidates = jdbcTemplate.query(SELECT_CLAIMABLE, messageRowMapper(), expiredBefore, batchSize);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<Object[]> args = new ArrayList<>(candidates.size());
+        for (OutboxMessage candidate : candidates) {
+            args.add(new Object[]{relayId, now, candidate.getId(), expiredBefore});
+        }
+        int[] updated = jdbcTemplate.batchUpdate("update transfer_outbox set status = 'CLAIMED', claimed_by = ?, claimed_at = ? " +
+                "where id = ? and (status = 'PENDING' or (status = 'CLAIMED' and claimed_at < ?))", args);
+        List<OutboxMessage> claimed = new ArrayList<>(candidates.size());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 1) {
+                claimed.add(candidates.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    public int markDone(long id, String relayId) {
+        String sql = "update transfer_outbox set status = 'DONE' where id = ? and status = 'CLAIMED' and claimed_by = ?";
+        return jdbcTemplate.update(sql, id, relayId);
+    }
+
+    /**
+     * 보상 트랜잭션 안에서 호출하며, 1 을 반환한 경우에만 출금을 되돌려야 한다.
+     */
+    public int markCompensated(long id, String relayId) {
+        String sql = "update transfer_outbox set status = 'COMPENSATED' where id = ? and status = 'CLAIMED' and claimed_by = ?";
+        return jdbcTemplate.update(sql, id, relayId);
+    }
+
+    public int release(long id, String relayId) {
+        String sql = "update transfer_outbox set status = 'PENDING', attempts = attempts + 1, claimed_by = null, claimed_at = null " +
+                "where id = ? and status = 'CLAIMED' and claimed_by = ?";
+        return jdbcTemplate.update(sql, id, relayId);
+    }
+
+    public int countByStatus(String status) {
+        String sql = "select count(*) from transfer_outbox where status = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, status);
+    }
+
+    private RowMapper<OutboxMessage> messageRowMapper() {
+        return (rs, rowNum) -> new OutboxMessage(
+                rs.getLong("id"),
+                rs.getString("transfer_id"),
+                rs.getString("from_id"),
+                rs.getString("to_id"),
+                rs.getInt("money"),
+                rs.getInt("attempts"));
+    }
+
+}
@@ -0,0 +1,210 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.shard.Shard;
+import hello.jdbc.shard.ShardedMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 모든 shard 의 transfer_outbox 를 주기적으로 읽어 입금을 처리하는 relay
+ * 1. outbox row 를 batchSize 단위로 선점한다.
+ * 2. 입금 회원의 DB 에서 processed_transfer 기록과 입금을 하나의 로컬 트랜잭션으로 커밋한다.
+ *    -> 이미 기록된 transfer_id 라면 (이전 relay 가 입금 후 종료된 경우) 입금하지 않고 완료 처리만 한다.
+ * 3. outbox row 를 DONE 으로 변경한다.
+ * -
+ * 입금이 실패한 경우
+ * -> 일시적인 오류 : 선점을 해제해 다음 주기에 다시 시도한다. maxAttempts 를 넘으면 보상한다.
+ * -> 그 외의 오류 : outbox row 를 COMPENSATED 로 변경하면서 같은 트랜잭션에서 출금을 되돌린다.
+ * -> 커밋 응답 timeout 처럼 입금이 커밋되었는지 알 수 없는 실패도 있으므로, 보상하기 전에 입금 회원의 DB 에서 processed_transfer 를 확인한다.
+ *    -> 기록되어 있으면 보상하지 않고 완료 처리하며, 확인할 수 없으면 선점을 해제해 다음 주기에 다시 시도한다.
+ */
+@Slf4j
+public class TransferRelay implements AutoCloseable {
+
+    private final ShardedMemberRepository memberRepository;
+    private final List<TransferOutboxRepository> outboxes = new ArrayList<>();
+    private final String relayId = UUID.randomUUID().toString();
+    private final int batchSize;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transfer-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder credited = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder compensated = new LongAdder();
+
+    public TransferRelay(ShardedMemberRepository memberRepository, int batchSize, Duration lease, int maxAttempts) {
+        this.memberRepository = memberRepository;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        for (Shard shard : memberRepository.getShards()) {
+            outboxes.add(new TransferOutboxRepository(shard.getDataSource()));
+        }
+    }
+
+    public void start(Duration pollInterval) {
+        scheduler.scheduleWithFixedDelay(this::drain, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 처리할 row 가 없을 때까지 반복한다.
+     * -> 예외가 밖으로 던져지면 다음 주기가 실행되지 않으므로 로그만 남긴다.
+     */
+    private void drain() {
+        try {
+            while (relayOnce() > 0) {
+                // 선점한 row 가 없을 때까지 반복
+            }
+        } catch (RuntimeException e) {
+            log.error("relay failed", e);
+        }
+    }
+
+    /**
+     * 모든 shard 에서 한 번씩 선점하여 처리한다.
+     * @return 처리한 outbox row 수
+     */
+    public int relayOnce() {
+        int processed = 0;
+        for (Shard shard : memberRepository.getShards()) {
+            TransferOutboxRepository outbox = outboxes.get(shard.getIndex());
+            for (OutboxMessage message : outbox.claim(relayId, batchSize, lease)) {
+                process(shard, outbox, message);
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    private void process(Shard fromShard, TransferOutboxRepository outbox, OutboxMessage message) {
+        try {
+            credit(message);
+            credited.increment();
+        } catch (DuplicateKeyException e) {
+            duplicates.increment();
+        } catch (TransientDataAccessException | CannotGetJdbcConnectionException e) {
+            if (message.getAttempts() + 1 < maxAttempts) {
+                log.warn("credit failed, will retry. transferId={}", message.getTransferId(), e);
+                outbox.release(message.getId(), relayId);
+                retried.increment();
+                return;
+            }
+            compensateIfNotCredited(fromShard, outbox, message, e);
+            return;
+        } catch (RuntimeException e) {
+            compensateIfNotCredited(fromShard, outbox, message, e);
+            return;
+        }
+        outbox.markDone(message.getId(), relayId);
+    }
+
+    private void credit(OutboxMessage message) {
+        Shard toShard = memberRepository.shardOf(message.getToId());
+        toShard.getTransactionTemplate().executeWithoutResult(status -> {
+            toShard.getJdbcTemplate()
+                    .update("insert into processed_transfer(transfer_id) values (?)", message.getTransferId());
+            validation(message.getToId());
+            int updated = toShard.getJdbcTemplate()
+                    .update("update member set money = money + ? where member_id = ?", message.getMoney(), message.getToId());
+            if (updated == 0) {
+                throw new NoSuchElementException("memberId = " + message.getToId() + " does not exist...");
+            }
+        });
+    }
+
+    private void compensateIfNotCredited(Shard fromShard, TransferOutboxRepository outbox, OutboxMessage message,
+                                         RuntimeException cause) {
+        boolean alreadyCredited;
+        try {
+            alreadyCredited = isCredited(message);
+        } catch (DataAccessException e) {
+            log.warn("credit state unknown, will retry. transferId={}, cause={}", message.getTransferId(), cause.toString(), e);
+            outbox.release(message.getId(), relayId);
+            retried.increment();
+            return;
+        }
+        if (alreadyCredited) {
+            log.warn("credit committed despite failure, marking done. transferId={}, cause={}",
+                    message.getTransferId(), cause.toString());
+            credited.increment();
+            outbox.markDone(message.getId(), relayId);
+            return;
+        }
+        compensate(fromShard, outbox, message, cause);
+    }
+
+    private boolean isCredited(OutboxMessage message) {
+        Integer count = memberRepository.shardOf(message.getToId()).getJdbcTemplate().queryForObject(
+                "select count(*) from processed_transfer where transfer_id = ?", Integer.class, message.getTransferId());
+        return count != null && count > 0;
+    }
+
+    private void compensate(Shard fromShard, TransferOutboxRepository outbox, OutboxMessage message, RuntimeException cause) {
+        log.warn("credit failed, compensating. transferId={}, cause={}", message.getTransferId(), cause.toString());
+        fromShard.getTransactionTemplate().executeWithoutResult(status -> {
+            // 이미 다른 relay 가 처리한 경우에는 출금을 되돌리지 않는다
+            if (outbox.markCompensated(message.getId(), relayId) == 1) {
+                fromShard.getJdbcTemplate().update("update member set money = money + ? where member_id = ?",
+                        message.getMoney(), message.getFromId());
+                compensated.increment();
+            }
+        });
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toId 가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toId
+     */
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+    public long getCredited() {
+        return credited.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getCompensated() {
+        return compensated.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
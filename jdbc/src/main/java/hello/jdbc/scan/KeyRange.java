@@ -0,0 +1,31 @@
+package hello.jdbc.scan;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * member_id 의 [lowInclusive, highExclusive) 구간
+ * -> null 은 해당 방향으로 끝이 없음을 의미한다.
+ */
+@Getter
+@ToString
+public class KeyRange {
+
+    private final int index;
+    private final String lowInclusive;
+    private final String highExclusive;
+    private final long estimatedRows;
+
+    public KeyRange(int index, String lowInclusive, String highExclusive, long estimatedRows) {
+        this.index = index;
+        this.lowInclusive = lowInclusive;
+        this.highExclusive = highExclusive;
+        this.estimatedRows = estimatedRows;
+    }
+
+    public boolean contains(String memberId) {
+        return (lowInclusive == null || lowInclusive.compareTo(memberId) <= 0)
+                && (highExclusive == null || highExclusive.compareTo(memberId) > 0);
+    }
+
+}
@@ -0,0 +1,82 @@
+package hello.jdbc.scan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * member_id 를 표본 추출해 row 수가 비슷한 N 개의 구간으로 나눈다.
+ * 1. count(*) 로 전체 row 수를 구한다. (h2 는 row 수를 관리하므로 전체를 읽지 않는다)
+ * 2. sampleSize 개 정도가 나오도록 확률적으로 member_id 를 추출해 정렬한다.
+ * 3. 표본의 i * size / N 번째 값을 구간의 경계로 사용한다.
+ * -> 키 분포를 가정하지 않으므로 member_id 가 특정 prefix 에 몰려 있어도 구간별 row 수가 고르게 나뉜다.
+ * -> 표본은 추정치이므로 구간별 row 수는 약간의 오차가 있다.
+ */
+@Slf4j
+public class KeyRangePartitioner {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int sampleSize;
+
+    public KeyRangePartitioner(DataSource dataSource) {
+        this(dataSource, DEFAULT_SAMPLE_SIZE);
+    }
+
+    public KeyRangePartitioner(DataSource dataSource, int sampleSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.sampleSize = sampleSize;
+    }
+
+    public List<KeyRange> partition(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive, partitions = " + partitions);
+        }
+        long total = jdbcTemplate.queryForObject("select count(*) from member", Long.class);
+        if (partitions == 1 || total == 0) {
+            return List.of(new KeyRange(0, null, null, total));
+        }
+
+        List<String> samples = sample(total);
+        Collections.sort(samples);
+
+        List<String> boundaries = new ArrayList<>();
+        for (int i = 1; i < partitions; i++) {
+            String boundary = samples.get((int) ((long) i * samples.size() / partitions));
+            // 같은 경계가 반복되면 빈 구간이 생기므로 제외한다
+            if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                boundaries.add(boundary);
+            }
+        }
+
+        List<KeyRange> ranges = new ArrayList<>(boundaries.size() + 1);
+        long estimatedRows = total / (boundaries.size() + 1);
+        String low = null;
+        for (String boundary : boundaries) {
+            ranges.add(new KeyRange(ranges.size(), low, boundary, estimatedRows));
+            low = boundary;
+        }
+        ranges.add(new KeyRange(ranges.size(), low, null, estimatedRows));
+        log.info("{} rows partitioned into {} ranges by {} samples", total, ranges.size(), samples.size());
+        return ranges;
+    }
+
+    private List<String> sample(long total) {
+        if (total <= sampleSize) {
+            return jdbcTemplate.queryForList("select member_id from member", String.class);
+        }
+        double rate = (double) sampleSize / total;
+        List<String> samples = jdbcTemplate.queryForList("select member_id from member where rand() < ?",
+                String.class, rate);
+        if (samples.isEmpty()) {
+            return jdbcTemplate.queryForList("select member_id from member limit ?", String.class, sampleSize);
+        }
+        return samples;
+    }
+
+}
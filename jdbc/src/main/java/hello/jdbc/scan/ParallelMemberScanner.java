@@ -0,0 +1,184 @@
+package hello.jdbc.scan;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * findAll() 을 대신해 member 전체를 여러 스레드가 나눠 읽는 병렬 scan
+ * -> KeyRangePartitioner 가 나눈 member_id 구간마다 별도의 커넥션으로 primary key 범위 조회를 수행한다.
+ * -> 구간 목록을 Spliterator 로 제공하므로 parallelStream() 이나 ForkJoinPool 로 처리할 수 있다.
+ * -> 병렬도는 스트림을 실행하는 ForkJoinPool 의 크기를 따르며, 커넥션 풀은 그 이상이어야 한다.
+ */
+public class ParallelMemberScanner {
+
+    private static final int FETCH_SIZE = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KeyRangePartitioner partitioner;
+
+    public ParallelMemberScanner(DataSource dataSource) {
+        this(dataSource, new KeyRangePartitioner(dataSource));
+    }
+
+    public ParallelMemberScanner(DataSource dataSource, KeyRangePartitioner partitioner) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.partitioner = partitioner;
+    }
+
+    public List<KeyRange> partition(int partitions) {
+        return partitioner.partition(partitions);
+    }
+
+    public Stream<Member> parallelStream(int partitions) {
+        return StreamSupport.stream(spliterator(partition(partitions)), true);
+    }
+
+    public Spliterator<Member> spliterator(List<KeyRange> ranges) {
+        return new RangeSpliterator(new ArrayList<>(ranges));
+    }
+
+    /**
+     * 구간 하나를 커넥션 하나로 순서대로 읽는다.
+     * -> 결과를 List 로 모으지 않고 row 를 읽는 즉시 전달한다.
+     */
+    public void scan(KeyRange range, Consumer<? super Member> action) {
+        scan(range, null, action);
+    }
+
+    private void scan(KeyRange range, String afterExclusive, Consumer<? super Member> action) {
+        List<Object> args = new ArrayList<>(3);
+        String sql = rangeSql(range, afterExclusive, args);
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> action.accept(MemberRepositoryV5.MEMBER_ROW_MAPPER.mapRow(rs, 0)), args.toArray());
+    }
+
+    /**
+     * afterExclusive 이후의 row 를 최대 limit 개 읽는다.
+     */
+    private List<Member> page(KeyRange range, String afterExclusive, int limit) {
+        List<Object> args = new ArrayList<>(4);
+        String sql = rangeSql(range, afterExclusive, args) + " limit ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, MemberRepositoryV5.MEMBER_ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * 구간(range) 안에서 afterExclusive 이후의 row 를 member_id 순서로 읽는 SQL
+     * @param args 바인딩할 값이 순서대로 추가된다
+     */
+    public static String rangeSql(KeyRange range, String afterExclusive, List<Object> args) {
+        StringBuilder sql = new StringBuilder("select member_id, money from member where 1 = 1");
+        if (range.getLowInclusive() != null) {
+            sql.append(" and member_id >= ?");
+            args.add(range.getLowInclusive());
+        }
+        if (range.getHighExclusive() != null) {
+            sql.append(" and member_id < ?");
+            args.add(range.getHighExclusive());
+        }
+        if (afterExclusive != null) {
+            sql.append(" and member_id > ?");
+            args.add(afterExclusive);
+        }
+        return sql.append(" order by member_id").toString();
+    }
+
+    /**
+     * trySplit() 은 구간 목록을 절반씩 나눈다.
+     * -> forEachRemaining() 은 구간마다 커넥션 하나로 끝까지 읽는다. (병렬 스트림은 대부분 이 경로를 사용한다)
+     * -> tryAdvance() 는 커넥션을 잡은 채로 멈추지 않도록 keyset 방식으로 FETCH_SIZE 개씩 읽는다.
+     *    -> findFirst() 처럼 중간에 끝나는 연산에서도 커넥션이 남지 않는다.
+     */
+    private class RangeSpliterator implements Spliterator<Member> {
+
+        private final List<KeyRange> ranges;
+        private int next;
+        private final Deque<Member> buffer = new ArrayDeque<>();
+        private String lastMemberId;
+        private boolean rangeExhausted;
+
+        RangeSpliterator(List<KeyRange> ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Member> action) {
+            while (buffer.isEmpty()) {
+                if (next >= ranges.size()) {
+                    return false;
+                }
+                if (rangeExhausted) {
+                    next++;
+                    lastMemberId = null;
+                    rangeExhausted = false;
+                    continue;
+                }
+                List<Member> members = page(ranges.get(next), lastMemberId, FETCH_SIZE);
+                buffer.addAll(members);
+                rangeExhausted = members.size() < FETCH_SIZE;
+                if (!members.isEmpty()) {
+                    lastMemberId = members.get(members.size() - 1).getMemberId();
+                }
+            }
+            action.accept(buffer.poll());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Member> action) {
+            while (!buffer.isEmpty()) {
+                action.accept(buffer.poll());
+            }
+            if (next < ranges.size() && (lastMemberId != null || rangeExhausted)) {
+                // tryAdvance() 로 읽던 구간은 남은 부분만 읽는다
+                if (!rangeExhausted) {
+                    scan(ranges.get(next), lastMemberId, action);
+                }
+                next++;
+            }
+            for (; next < ranges.size(); next++) {
+                scan(ranges.get(next), action);
+            }
+        }
+
+        @Override
+        public Spliterator<Member> trySplit() {
+            int remaining = ranges.size() - next;
+            if (remaining < 2 || lastMemberId != null || rangeExhausted || !buffer.isEmpty()) {
+                return null;
+            }
+            int mid = next + remaining / 2;
+            List<KeyRange> prefix = new ArrayList<>(ranges.subList(next, mid));
+            next = mid;
+            return new RangeSpliterator(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = buffer.size();
+            for (int i = next; i < ranges.size(); i++) {
+                size += ranges.get(i).getEstimatedRows();
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+
+    }
+
+}
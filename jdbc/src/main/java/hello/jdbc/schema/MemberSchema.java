@@ -0,0 +1,99 @@
+package hello.jdbc.schema;
+
+import hello.jdbc.batch.MemberBatchJob;
+import hello.jdbc.outbox.MemberEventRelay;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.querydsl.QuerydslMemberRepository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * member 테이블의 버전별 DDL 과 Repository 가 실행하는 SQL 목록
+ * 1. member_id 에 primary key
+ * 2. top-N, 범위 조회를 위한 money 인덱스
+ * 3. (선택) member_id 로 잔액만 조회할 때 테이블을 읽지 않도록 하는 covering 인덱스
+ * -> 버전 번호는 한 번 배포되면 바꾸지 않고, 변경이 필요하면 새 버전을 추가한다.
+ */
+public abstract class MemberSchema {
+
+    public static final int COVERING_INDEX_VERSION = 3;
+
+    public static final String OUTBOX_TABLE = "member_event";
+
+    /**
+     * member 테이블에 SQL 을 실행하는 구현체들의 SQL 상수를 모은다. (직접 복사하지 않는다)
+     * -> UnitOfWorkMemberRepository, JpaMemberRepository 의 조건부 insert 는 MemberRepositoryV5 의 SQL 을 그대로 사용한다.
+     * -> JpaMemberRepository 의 엔티티 SQL 은 hibernate 가 만들며, member_id 로 조회 / 변경 / 삭제하거나 전체를 대상으로 한다.
+     */
+    public static final List<String> REPOSITORY_SQLS = distinct(
+            MemberRepositoryV5.SQLS,
+            List.of(MemberBatchJob.ADD_MONEY),
+            QuerydslMemberRepository.searchSqls(true),
+            QuerydslMemberRepository.searchSqls(false));
+
+    /**
+     * 전체를 읽는 것이 목적인 findAll(), clearAll() 과 money 조건이 없는 검색은 full scan 을 허용한다
+     * -> EXPLAIN 은 파라미터를 null 로 바인딩하므로 memberIdPrefix 의 like 는 인덱스 조건으로 바뀌지 않는다.
+     */
+    public static final Set<String> FULL_SCAN_ALLOWED = Set.copyOf(union(
+            List.of(MemberRepositoryV5.SELECT_ALL, MemberRepositoryV5.DELETE_ALL),
+            QuerydslMemberRepository.searchSqls(false)));
+
+    /**
+     * outbox(member_event) 를 사용하는 경우에만 검사한다. (MemberEventTables)
+     */
+    public static final List<String> OUTBOX_SQLS = List.of(
+            MemberEventRelay.SELECT_CLAIMABLE,
+            MemberEventRelay.CLAIM,
+            MemberEventRelay.DELETE_CLAIMED,
+            MemberEventRelay.RELEASE);
+
+    /**
+     * 선점할 이벤트는 seq 순서로 앞에서부터 읽는다
+     */
+    public static final Set<String> OUTBOX_FULL_SCAN_ALLOWED = Set.of(MemberEventRelay.SELECT_CLAIMABLE);
+
+    /**
+     * migration 1 이 기록되기 전에, 이미 있던 member 테이블에도 member_id primary key 가 있는지 확인한다
+     */
+    static final String MEMBER_PRIMARY_KEY_EXISTS = "select count(*) from information_schema.table_constraints c " +
+            "join information_schema.key_column_usage k " +
+            "on k.constraint_schema = c.constraint_schema and k.constraint_name = c.constraint_name " +
+            "where c.table_schema = current_schema and c.table_name = 'MEMBER' " +
+            "and c.constraint_type = 'PRIMARY KEY' and k.column_name = 'MEMBER_ID'";
+
+    public static List<SchemaMigration> migrations(boolean coveringIndex) {
+        List<SchemaMigration> migrations = new ArrayList<>();
+        migrations.add(new SchemaMigration(1, "create member",
+                "create table if not exists member (" +
+                        "member_id varchar(10) not null, " +
+                        "money integer not null default 0, " +
+                        "constraint pk_member primary key (member_id))")
+                .verifiedBy(MEMBER_PRIMARY_KEY_EXISTS));
+        migrations.add(new SchemaMigration(2, "index member money",
+                "create index if not exists idx_member_money on member(money)"));
+        if (coveringIndex) {
+            migrations.add(new SchemaMigration(COVERING_INDEX_VERSION, "covering index member balance",
+                    "create index if not exists idx_member_id_money on member(member_id, money)"));
+        }
+        return migrations;
+    }
+
+    @SafeVarargs
+    private static List<String> distinct(List<String>... sqls) {
+        return List.copyOf(union(sqls));
+    }
+
+    @SafeVarargs
+    private static Set<String> union(List<String>... sqls) {
+        Set<String> union = new LinkedHashSet<>();
+        for (List<String> list : sqls) {
+            union.addAll(list);
+        }
+        return union;
+    }
+
+}
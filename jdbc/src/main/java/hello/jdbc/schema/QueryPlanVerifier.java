@@ -0,0 +1,77 @@
+package hello.jdbc.schema;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQL 마다 EXPLAIN 을 실행해 full scan 이 발생하는 SQL 이 있으면 시작을 중단한다.
+ * -> 인덱스를 수동으로 삭제하거나 변경한 뒤 배포하면, 운영 트래픽을 받기 전에 알 수 있다.
+ * -> h2 는 인덱스 없이 테이블 전체를 읽는 경우 실행 계획에 "테이블명.tableScan" 을 표시한다.
+ * -> EXPLAIN 은 SQL 을 실행하지 않으므로 파라미터는 모두 null 로 바인딩한다.
+ */
+@Slf4j
+public class QueryPlanVerifier {
+
+    static final String FULL_SCAN_MARKER = ".tablescan";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public QueryPlanVerifier(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param sqls
+     * @param fullScanAllowed full scan 을 허용할 SQL
+     * @return SQL 별 실행 계획
+     * @throws IllegalStateException 허용되지 않은 full scan 이 있는 경우
+     */
+    public Map<String, String> verify(List<String> sqls, Set<String> fullScanAllowed) {
+        Map<String, String> plans = new LinkedHashMap<>();
+        List<String> violations = new ArrayList<>();
+        for (String sql : sqls) {
+            String plan = explain(sql);
+            plans.put(sql, plan);
+            if (isFullScan(plan) && !fullScanAllowed.contains(sql)) {
+                violations.add(sql + " -> " + plan);
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("full scan detected -> " + String.join(", ", violations));
+        }
+        log.info("{} query plans verified", plans.size());
+        return plans;
+    }
+
+    public String explain(String sql) {
+        return jdbcTemplate.execute(conn -> conn.prepareStatement("explain " + sql),
+                (PreparedStatementCallback<String>) pstmt -> {
+                    int parameterCount = pstmt.getParameterMetaData().getParameterCount();
+                    for (int i = 1; i <= parameterCount; i++) {
+                        pstmt.setObject(i, null);
+                    }
+                    StringBuilder plan = new StringBuilder();
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            plan.append(rs.getString(1));
+                        }
+                    }
+                    return plan.toString();
+                });
+    }
+
+    static boolean isFullScan(String plan) {
+        return plan.toLowerCase(Locale.ROOT).contains(FULL_SCAN_MARKER);
+    }
+
+}
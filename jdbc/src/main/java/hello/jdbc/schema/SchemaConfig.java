@@ -0,0 +1,24 @@
+package hello.jdbc.schema;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * hello.schema.enabled=true 인 경우에만 시작 시 스키마를 관리한다.
+ * -> 기본 설정(TCP 서버)은 DB 를 수동으로 관리하므로 명시적으로 켜야 한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hello.schema", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SchemaProperties.class)
+public class SchemaConfig {
+
+    @Bean
+    SchemaInitializer schemaInitializer(DataSource dataSource, SchemaProperties properties) {
+        return new SchemaInitializer(dataSource, properties);
+    }
+
+}
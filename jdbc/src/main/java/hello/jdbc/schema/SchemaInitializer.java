@@ -0,0 +1,57 @@
+package hello.jdbc.schema;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 애플리케이션 시작 시 member 스키마를 migration 하고 Repository SQL 의 실행 계획을 검사한다.
+ * -> 빈 초기화 단계에서 실행되므로 검사에 실패하면 컨텍스트가 뜨지 않는다.
+ * -> outbox 테이블(member_event)은 사용하는 경우에만 만들어지므로, 테이블이 있을 때만 outbox SQL 을 검사한다.
+ */
+@Slf4j
+public class SchemaInitializer implements InitializingBean {
+
+    private final DataSource dataSource;
+    private final SchemaProperties properties;
+
+    public SchemaInitializer(DataSource dataSource, SchemaProperties properties) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        new SchemaMigrator(dataSource).migrate(MemberSchema.migrations(properties.isCoveringIndex()));
+
+        List<String> sqls = new ArrayList<>(MemberSchema.REPOSITORY_SQLS);
+        Set<String> fullScanAllowed = new HashSet<>(MemberSchema.FULL_SCAN_ALLOWED);
+        fullScanAllowed.addAll(properties.getFullScanAllowed());
+        if (tableExists(MemberSchema.OUTBOX_TABLE)) {
+            sqls.addAll(MemberSchema.OUTBOX_SQLS);
+            fullScanAllowed.addAll(MemberSchema.OUTBOX_FULL_SCAN_ALLOWED);
+        }
+        try {
+            new QueryPlanVerifier(dataSource).verify(sqls, fullScanAllowed);
+        } catch (IllegalStateException e) {
+            if (properties.isFailOnFullScan()) {
+                throw e;
+            }
+            log.warn("query plan verification failed", e);
+        }
+    }
+
+    private boolean tableExists(String tableName) {
+        Integer count = new JdbcTemplate(dataSource).queryForObject("select count(*) from information_schema.tables " +
+                "where table_schema = current_schema and table_name = ?", Integer.class, tableName.toUpperCase(Locale.ROOT));
+        return count != null && count > 0;
+    }
+
+}
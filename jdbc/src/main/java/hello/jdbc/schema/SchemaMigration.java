@@ -0,0 +1,43 @@
+package hello.jdbc.schema;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 버전 하나에 해당하는 DDL 묶음
+ * -> 적용된 버전은 schema_version 테이블에 기록되어 다시 적용되지 않는다.
+ * -> DDL 은 트랜잭션으로 묶이지 않으므로(h2 는 DDL 실행 시 암묵적으로 커밋한다), 중간에 실패한 뒤 다시 실행해도
+ *    되도록 모든 statement 는 if not exists 처럼 여러 번 실행해도 결과가 같아야 한다.
+ */
+@Getter
+@ToString(exclude = {"statements", "verification"})
+public class SchemaMigration {
+
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    /**
+     * statement 실행 후 버전을 기록하기 전에 실행하는 count 쿼리 (0 이면 버전을 기록하지 않고 실패한다)
+     * -> if not exists 는 같은 이름의 객체가 있으면 정의가 달라도 건너뛰므로, 기대한 정의인지 확인하는 데 사용한다.
+     */
+    private final String verification;
+
+    public SchemaMigration(int version, String description, String... statements) {
+        this(version, description, List.of(statements), null);
+    }
+
+    private SchemaMigration(int version, String description, List<String> statements, String verification) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+        this.verification = verification;
+    }
+
+    public SchemaMigration verifiedBy(String verification) {
+        return new SchemaMigration(version, description, statements, verification);
+    }
+
+}
@@ -0,0 +1,80 @@
+package hello.jdbc.schema;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * schema_version 에 기록되지 않은 migration 을 버전 순서대로 적용한다.
+ * -> 가장 큰 버전이 아니라 적용된 버전 목록과 비교하므로, 선택 migration 을 나중에 켜도 적용된다.
+ * -> DDL 은 if not exists 로 작성하므로, 수동으로 만든 테이블이 이미 있어도 버전만 기록된다.
+ *    -> 이미 있던 객체가 기대한 정의와 다를 수 있으므로, verification 이 있으면 확인한 뒤에 기록한다.
+ * -> h2 는 DDL 을 실행할 때 진행 중인 트랜잭션을 암묵적으로 커밋하므로 migration 을 트랜잭션으로 묶지 않는다.
+ *    -> statement 는 하나씩 커밋되고, 버전은 모든 statement 가 성공한 뒤에 기록한다.
+ *    -> 중간에 실패하면 버전이 기록되지 않으므로 다음 시작 시 같은 migration 을 처음부터 다시 실행한다. (SchemaMigration)
+ * -> 여러 인스턴스가 동시에 시작해 같은 버전을 기록하려 하면 먼저 기록한 쪽을 따른다.
+ */
+@Slf4j
+public class SchemaMigrator {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param migrations
+     * @return 이번에 적용한 migration 수
+     */
+    public int migrate(List<SchemaMigration> migrations) {
+        jdbcTemplate.execute("create table if not exists schema_version (" +
+                "version integer primary key, " +
+                "description varchar(100) not null, " +
+                "installed_at timestamp not null default current_timestamp)");
+
+        Set<Integer> installed = installedVersions();
+        int applied = 0;
+        for (SchemaMigration migration : migrations.stream()
+                .sorted((a, b) -> Integer.compare(a.getVersion(), b.getVersion())).toList()) {
+            if (installed.contains(migration.getVersion())) {
+                continue;
+            }
+            if (apply(migration)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    public Set<Integer> installedVersions() {
+        return new HashSet<>(jdbcTemplate.queryForList("select version from schema_version", Integer.class));
+    }
+
+    /**
+     * @throws IllegalStateException verification 결과가 0 인 경우 (버전은 기록되지 않는다)
+     */
+    private boolean apply(SchemaMigration migration) {
+        migration.getStatements().forEach(jdbcTemplate::execute);
+        if (migration.getVerification() != null
+                && jdbcTemplate.queryForObject(migration.getVerification(), Integer.class) == 0) {
+            throw new IllegalStateException("schema verification failed -> " + migration
+                    + ", verification = " + migration.getVerification());
+        }
+        try {
+            jdbcTemplate.update("insert into schema_version(version, description) values (?, ?)",
+                    migration.getVersion(), migration.getDescription());
+            log.info("schema migration applied -> {}", migration);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.info("schema migration already applied by another instance -> {}", migration);
+            return false;
+        }
+    }
+
+}
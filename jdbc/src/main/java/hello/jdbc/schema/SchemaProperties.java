@@ -0,0 +1,35 @@
+package hello.jdbc.schema;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "hello.schema")
+public class SchemaProperties {
+
+    /**
+     * 시작 시 migration 과 실행 계획 검사를 수행할지 여부
+     */
+    private boolean enabled = false;
+
+    /**
+     * member_id, money covering 인덱스 생성 여부
+     */
+    private boolean coveringIndex = false;
+
+    /**
+     * full scan 이 발견되면 시작을 중단할지 여부 (false 면 경고 로그만 남긴다)
+     */
+    private boolean failOnFullScan = true;
+
+    /**
+     * 기본 허용 목록(findAll, clearAll) 외에 full scan 을 허용할 SQL
+     */
+    private Set<String> fullScanAllowed = new HashSet<>();
+
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.manual.ManualTransactionTemplate;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Parameter 를 통한 Connection 연동 + ManualTransactionTemplate
+ * -> 트랜잭션 시작, 커밋 or 롤백, 커넥션 반환은 ManualTransactionTemplate 이 담당한다.
+ * -> autoCommit=false 로 구성한 전용 커넥션 풀을 사용하면 트랜잭션마다 autoCommit 을 바꾸는 DB 왕복이 사라진다.
+ *    (ManualTransactionConfig 참고, 애플리케이션 전체 풀을 autoCommit=false 로 바꾸지 않는다)
+ */
+@Slf4j
+public class MemberServiceV2_1 {
+
+    private final ManualTransactionTemplate transactionTemplate;
+    private final MemberRepositoryV2 memberRepository;
+
+    public MemberServiceV2_1(DataSource dataSource, MemberRepositoryV2 memberRepository) {
+        this.transactionTemplate = new ManualTransactionTemplate(dataSource);
+        this.memberRepository = memberRepository;
+    }
+
+    /**
+     * 예외가 발생하면 롤백 후 MemberServiceV2 와 같이 IllegalStateException 으로 감싸서 던진다.
+     * @param fromId
+     * @param toId
+     * @param money
+     * @throws SQLException
+     */
+    public void accountTransfer(String fromId, String toId, int money) throws SQLException {
+        try {
+            transactionTemplate.execute(conn -> {
+                bizLogic(conn, fromId, toId, money);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 조회도 트랜잭션 커넥션으로 수행한다.
+     * @param conn
+     * @param fromId
+     * @param toId
+     * @param money
+     */
+    private void bizLogic(Connection conn, String fromId, String toId, int money) throws SQLException {
+        Member fromMember = memberRepository.findById(conn, fromId);
+        Member toMember = memberRepository.findById(conn, toId);
+
+        // 다음 과정이 하나의 연결된 프로세스로서 동작해야 한다.
+        memberRepository.updateById(conn, fromId, fromMember.getMoney() - money);
+        validation(toMember);
+        memberRepository.updateById(conn, toId, toMember.getMoney() + money);
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toMember 의 ID가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toMember
+     */
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+}
@@ -36,6 +36,18 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
+    /**
+     * 잔액 조회
+     * -> readOnly 트랜잭션은 커넥션에 setReadOnly(true) 를 전달해 DB 가 읽기 전용으로 처리할 수 있게 한다.
+     * -> ReadOnlyOptimizedTransactionManager 를 사용하면 autoCommit 변경과 commit 도 생략한다.
+     * @param memberId
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public int getBalance(String memberId) {
+        return memberRepository.findById(memberId).getMoney();
+    }
+
     /**
      * 실질적인 계좌이체 동작을 수행하는 비즈니스 로직을 담는 메서드
      * @param fromId
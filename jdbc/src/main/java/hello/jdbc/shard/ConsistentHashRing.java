@@ -0,0 +1,76 @@
+package hello.jdbc.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 가상 노드를 사용하는 consistent hashing ring
+ * -> 노드마다 virtualNodes 개의 지점을 ring 위에 배치하고, key 의 hash 값 이후 처음 만나는 지점의 노드를 선택한다.
+ * -> 노드가 추가/제거되어도 인접한 구간의 key 만 이동하며, 가상 노드 수가 많을수록 key 가 고르게 분산된다.
+ * -> 생성 이후에는 변경되지 않으므로 여러 쓰레드가 동기화 없이 사용할 수 있다.
+ * @param <T>
+ */
+public class ConsistentHashRing<T> {
+
+    private final long[] points;
+    private final int[] owners;
+    private final List<T> nodes;
+
+    public ConsistentHashRing(List<T> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("nodes must not be empty and virtualNodes must be positive");
+        }
+        this.nodes = List.copyOf(nodes);
+        int size = nodes.size() * virtualNodes;
+        long[][] entries = new long[size][];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[node * virtualNodes + v] = new long[]{hash("node-" + node + "#" + v), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    public T route(String key) {
+        return nodes.get(indexOf(key));
+    }
+
+    public int indexOf(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        // ring 의 끝을 넘어가면 처음 지점으로 돌아간다
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * FNV-1a 64 bit hash 에 murmur3 의 finalizer 를 적용해 짧은 key 도 고르게 분산시킨다.
+     * -> String.hashCode() 는 32 bit 이며 비슷한 key 의 hash 값이 몰리는 경향이 있다.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
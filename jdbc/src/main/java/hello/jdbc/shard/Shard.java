@@ -0,0 +1,37 @@
+package hello.jdbc.shard;
+
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.Getter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 하나의 shard 를 구성하는 DataSource 와 이를 사용하는 Repository, 트랜잭션 템플릿을 묶어둔다.
+ */
+@Getter
+public class Shard {
+
+    private final int index;
+    private final DataSource dataSource;
+    private final MemberRepository memberRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public Shard(int index, DataSource dataSource) {
+        this.index = index;
+        this.dataSource = dataSource;
+        this.memberRepository = new MemberRepositoryV5(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public String toString() {
+        return "Shard[" + index + "]";
+    }
+
+}
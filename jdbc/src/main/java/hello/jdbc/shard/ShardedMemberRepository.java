@@ -0,0 +1,163 @@
+package hello.jdbc.shard;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * member_id 의 hash 값으로 shard 를 선택하는 MemberRepository
+ * 1. 단건 조회 / 수정 -> consistent hashing 으로 선택한 하나의 shard 에서 처리
+ * 2. findAll, clearAll, 집계 -> 모든 shard 에 병렬로 요청한 뒤 결과를 합친다
+ * -
+ * 각 shard 는 MemberRepositoryV5 를 사용하므로 shard 의 DataSource 로 시작한 트랜잭션에 참여할 수 있다.
+ * -> shard 를 넘나드는 트랜잭션은 지원하지 않으며, 이는 ShardedMemberService 에서 별도의 전략으로 처리한다.
+ */
+@Slf4j
+public class ShardedMemberRepository implements MemberRepository, AutoCloseable {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final ConsistentHashRing<Shard> ring;
+    private final ExecutorService fanOutExecutor;
+
+    public ShardedMemberRepository(List<DataSource> dataSources) {
+        this(dataSources, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedMemberRepository(List<DataSource> dataSources, int virtualNodes) {
+        List<Shard> shards = new ArrayList<>(dataSources.size());
+        for (int i = 0; i < dataSources.size(); i++) {
+            shards.add(new Shard(i, dataSources.get(i)));
+        }
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+        this.fanOutExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Shard shardOf(String memberId) {
+        return ring.route(memberId);
+    }
+
+    public List<Shard> getShards() {
+        return ring.getNodes();
+    }
+
+    @Override
+    public Member save(Member member) {
+        return shardOf(member.getMemberId()).getMemberRepository().save(member);
+    }
+
+    @Override
+    public int insertIfAbsent(Member member) {
+        return shardOf(member.getMemberId()).getMemberRepository().insertIfAbsent(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return shardOf(memberId).getMemberRepository().findById(memberId);
+    }
+
+    @Override
+    public List<Member> findAll() {
+        List<List<Member>> results = fanOut(shard -> shard.getMemberRepository().findAll());
+        List<Member> merged = new ArrayList<>(results.stream().mapToInt(List::size).sum());
+        results.forEach(merged::addAll);
+        return merged;
+    }
+
+    @Override
+    public int updateById(String memberId, int money) {
+        return shardOf(memberId).getMemberRepository().updateById(memberId, money);
+    }
+
+    /**
+     * member 를 shard 별로 나누어 각 shard 의 updateAll(batch update) 에 위임한다.
+     * -> 반환하는 결과는 전달받은 members 의 순서를 따른다.
+     * -> 호출한 쓰레드에서 shard 순서대로 실행하므로 shard 의 DataSource 로 시작한 트랜잭션에 참여할 수 있다.
+     */
+    @Override
+    public int[] updateAll(List<Member> members) {
+        Map<Shard, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            indexesByShard.computeIfAbsent(shardOf(members.get(i).getMemberId()), shard -> new ArrayList<>()).add(i);
+        }
+
+        int[] updated = new int[members.size()];
+        indexesByShard.forEach((shard, indexes) -> {
+            List<Member> shardMembers = new ArrayList<>(indexes.size());
+            indexes.forEach(index -> shardMembers.add(members.get(index)));
+            int[] shardUpdated = shard.getMemberRepository().updateAll(shardMembers);
+            for (int i = 0; i < shardUpdated.length; i++) {
+                updated[indexes.get(i)] = shardUpdated[i];
+            }
+        });
+        return updated;
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        return shardOf(memberId).getMemberRepository().deleteById(memberId);
+    }
+
+    @Override
+    public int clearAll() {
+        return fanOut(shard -> shard.getMemberRepository().clearAll()).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * 모든 shard 에 저장된 잔액의 합계
+     * @return
+     */
+    public long totalMoney() {
+        return fanOut(shard -> shard.getJdbcTemplate()
+                .queryForObject("select coalesce(sum(money), 0) from member", Long.class)).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    /**
+     * 모든 shard 에 같은 작업을 병렬로 요청하고 shard 순서대로 결과를 반환한다.
+     * -> 하나의 shard 라도 실패하면 해당 예외를 그대로 던진다.
+     */
+    private <R> List<R> fanOut(Function<Shard, R> task) {
+        List<Shard> shards = ring.getNodes();
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(shard), fanOutExecutor));
+        }
+        List<R> results = new ArrayList<>(shards.size());
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        fanOutExecutor.shutdown();
+    }
+
+}
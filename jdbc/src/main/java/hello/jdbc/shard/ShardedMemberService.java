@@ -0,0 +1,80 @@
+package hello.jdbc.shard;
+
+import hello.jdbc.domain.Member;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * shard 가 나뉜 환경에서의 계좌이체
+ * 1. 두 회원이 같은 shard 에 있으면 -> 해당 shard 의 로컬 트랜잭션 하나로 처리한다.
+ * 2. 서로 다른 shard 에 있으면 -> 출금과 입금을 각 shard 의 로컬 트랜잭션으로 나누어 커밋하고,
+ *    입금이 실패하면 이미 커밋된 출금을 되돌리는 보상 트랜잭션을 실행한다.
+ * -
+ * 2번의 경우 출금 커밋 이후 보상 전까지 다른 요청이 중간 상태를 볼 수 있으며,
+ * 보상 트랜잭션 도중 프로세스가 종료되면 출금만 반영된 상태로 남는다.
+ * -> 원자성이 필요한 경우 2PC 코디네이터나 outbox 기반의 saga 를 사용해야 한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardedMemberService {
+
+    private final ShardedMemberRepository memberRepository;
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        Shard fromShard = memberRepository.shardOf(fromId);
+        Shard toShard = memberRepository.shardOf(toId);
+        if (fromShard == toShard) {
+            fromShard.getTransactionTemplate().executeWithoutResult(status -> bizLogic(fromId, toId, money));
+            return;
+        }
+        crossShardTransfer(fromShard, toShard, fromId, toId, money);
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        Member fromMember = memberRepository.findById(fromId);
+        Member toMember = memberRepository.findById(toId);
+
+        // 다음 과정이 하나의 연결된 프로세스로서 동작해야 한다.
+        memberRepository.updateById(fromId, fromMember.getMoney() - money);
+        validation(toMember);
+        memberRepository.updateById(toId, toMember.getMoney() + money);
+    }
+
+    private void crossShardTransfer(Shard fromShard, Shard toShard, String fromId, String toId, int money) {
+        fromShard.getTransactionTemplate().executeWithoutResult(status -> {
+            Member fromMember = memberRepository.findById(fromId);
+            memberRepository.updateById(fromId, fromMember.getMoney() - money);
+        });
+        try {
+            toShard.getTransactionTemplate().executeWithoutResult(status -> {
+                Member toMember = memberRepository.findById(toId);
+                validation(toMember);
+                memberRepository.updateById(toId, toMember.getMoney() + money);
+            });
+        } catch (RuntimeException e) {
+            log.warn("입금 실패, 출금 보상 실행 fromId={}, toId={}, money={}", fromId, toId, money);
+            compensate(fromShard, fromId, money);
+            throw e;
+        }
+    }
+
+    /**
+     * 출금 이후 다른 요청이 잔액을 변경했을 수 있으므로 조회한 값이 아닌 현재 값에 더한다.
+     */
+    private void compensate(Shard shard, String memberId, int money) {
+        shard.getTransactionTemplate().executeWithoutResult(status -> shard.getJdbcTemplate()
+                .update("update member set money = money + ? where member_id = ?", money, memberId));
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toMember 의 ID가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toMember
+     */
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package hello.jdbc.trace;
+
+import java.util.regex.Pattern;
+
+/**
+ * SQL 을 정규화하여 같은 형태의 SQL 을 하나의 fingerprint 로 묶는다.
+ * 1. 문자열 / 숫자 리터럴은 ? 로 치환
+ * 2. 연속된 공백은 하나의 공백으로 치환
+ * 3. 대소문자 구분 없음 (소문자로 통일)
+ * 4. in (?, ?, ?) 와 같은 파라미터 목록은 길이와 관계없이 (?+) 로 치환
+ */
+public abstract class SqlFingerprint {
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "<unknown>";
+        }
+        int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipStringLiteral(sql, i + 1);
+                sb.append('?');
+            } else if (Character.isDigit(c) && !isIdentifierPart(lastChar(sb))) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                sb.append('?');
+            } else if (Character.isWhitespace(c)) {
+                if (sb.length() > 0 && lastChar(sb) != ' ') {
+                    sb.append(' ');
+                }
+                i++;
+            } else {
+                sb.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        if (sb.length() > 0 && lastChar(sb) == ' ') {
+            sb.setLength(sb.length() - 1);
+        }
+        return PARAMETER_LIST.matcher(sb).replaceAll("(?+)");
+    }
+
+    /**
+     * 문자열 리터럴의 끝 다음 위치를 반환한다. ('' 는 이스케이프된 따옴표)
+     */
+    private static int skipStringLiteral(String sql, int start) {
+        int i = start;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static char lastChar(StringBuilder sb) {
+        return sb.length() == 0 ? ' ' : sb.charAt(sb.length() - 1);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,226 @@
+package hello.jdbc.trace;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL fingerprint 별 실행 수 / 실행 시간을 집계하고, 한 트랜잭션에서 같은 fingerprint 가 반복 실행되는 경우
+ * (N+1, 단건 update 반복 등) 배치 처리 후보로 기록한다.
+ * -> StatementInterceptingDataSource 의 listener 로 등록하여 사용한다.
+ * -
+ * 운영 환경에서 상시 사용할 수 있도록 다음과 같이 비용을 줄인다.
+ * 1. sampleRate 로 일부 트랜잭션(트랜잭션 밖의 SQL 은 SQL 단위)만 집계한다.
+ * 2. 같은 SQL 문자열에 대한 fingerprint 계산 결과를 캐시한다. (PreparedStatement 는 SQL 문자열이 반복된다)
+ * 3. 트랜잭션 내 집계는 트랜잭션 쓰레드만 접근하는 HashMap 에 기록하고, 트랜잭션 종료 시점에 한 번만 분석한다.
+ */
+@Slf4j
+public class SqlProfiler implements StatementListener {
+
+    static final int MAX_CACHED_FINGERPRINTS = 10_000;
+
+    private final double sampleRate;
+    private final int repeatThreshold;
+
+    private final ConcurrentMap<String, String> fingerprintCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FingerprintStats> stats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> batchingCandidates = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampleRate 집계 대상 비율 (0.0 ~ 1.0)
+     * @param repeatThreshold 한 트랜잭션에서 같은 fingerprint 가 해당 횟수 이상 실행되면 배치 처리 후보로 기록
+     */
+    public SqlProfiler(double sampleRate, int repeatThreshold) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1 : " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    public void afterExecute(String sql, long elapsedNanos, boolean failed) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (sampled()) {
+                record(fingerprint(sql), elapsedNanos, failed);
+            }
+            return;
+        }
+        TransactionProfile profile = currentTransactionProfile();
+        if (profile.sampled) {
+            String fingerprint = fingerprint(sql);
+            record(fingerprint, elapsedNanos, failed);
+            profile.record(fingerprint, elapsedNanos);
+        }
+    }
+
+    /**
+     * 실행 시간 합계가 큰 순서로 상위 limit 개의 fingerprint 를 반환한다.
+     * @param limit
+     * @return
+     */
+    public List<FingerprintReport> topByTotalTime(int limit) {
+        List<FingerprintReport> reports = new ArrayList<>();
+        stats.forEach((fingerprint, s) -> reports.add(s.report(fingerprint)));
+        reports.sort(Comparator.comparingLong(FingerprintReport::getTotalNanos).reversed());
+        return reports.subList(0, Math.min(limit, reports.size()));
+    }
+
+    /**
+     * key = 배치 처리 후보 fingerprint, value = 반복 실행이 감지된 트랜잭션 수
+     * @return
+     */
+    public Map<String, Long> getBatchingCandidates() {
+        Map<String, Long> result = new HashMap<>();
+        batchingCandidates.forEach((fingerprint, adder) -> result.put(fingerprint, adder.sum()));
+        return result;
+    }
+
+    public void reset() {
+        stats.clear();
+        batchingCandidates.clear();
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private String fingerprint(String sql) {
+        if (sql == null) {
+            return SqlFingerprint.of(null);
+        }
+        String cached = fingerprintCache.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String fingerprint = SqlFingerprint.of(sql);
+        // 리터럴이 포함된 SQL 이 계속 새로 들어오는 경우 캐시가 무한히 커지지 않도록 크기를 제한한다
+        if (fingerprintCache.size() < MAX_CACHED_FINGERPRINTS) {
+            fingerprintCache.putIfAbsent(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private void record(String fingerprint, long elapsedNanos, boolean failed) {
+        stats.computeIfAbsent(fingerprint, key -> new FingerprintStats()).record(elapsedNanos, failed);
+    }
+
+    /**
+     * 현재 트랜잭션에 바인딩된 집계 정보를 반환한다.
+     * -> 트랜잭션의 첫 SQL 실행 시점에 sampling 여부를 결정하고, 트랜잭션 종료 시점에 반복 실행을 분석한다.
+     * -> REQUIRES_NEW 등으로 트랜잭션이 보류되면 바인딩을 풀어서, 내부 트랜잭션은 자신의 집계 정보를 따로 만든다.
+     */
+    private TransactionProfile currentTransactionProfile() {
+        TransactionProfile profile = (TransactionProfile) TransactionSynchronizationManager.getResource(this);
+        if (profile != null) {
+            return profile;
+        }
+        TransactionProfile newProfile = new TransactionProfile(sampled());
+        TransactionSynchronizationManager.bindResource(this, newProfile);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(SqlProfiler.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(SqlProfiler.this, newProfile);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(SqlProfiler.this);
+                analyze(newProfile);
+            }
+        });
+        return newProfile;
+    }
+
+    private void analyze(TransactionProfile profile) {
+        if (!profile.sampled) {
+            return;
+        }
+        profile.executions.forEach((fingerprint, execution) -> {
+            if (execution[0] >= repeatThreshold) {
+                batchingCandidates.computeIfAbsent(fingerprint, key -> new LongAdder()).increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("batching candidate -> {} executed {} times ({} ns) in one transaction",
+                            fingerprint, execution[0], execution[1]);
+                }
+            }
+        });
+    }
+
+    private static final class TransactionProfile {
+        private final boolean sampled;
+        // 트랜잭션 쓰레드에서만 접근한다 -> {실행 수, 실행 시간 합계}
+        private final Map<String, long[]> executions = new HashMap<>();
+
+        private TransactionProfile(boolean sampled) {
+            this.sampled = sampled;
+        }
+
+        private void record(String fingerprint, long elapsedNanos) {
+            long[] execution = executions.computeIfAbsent(fingerprint, key -> new long[2]);
+            execution[0]++;
+            execution[1] += elapsedNanos;
+        }
+    }
+
+    private static final class FingerprintStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long elapsedNanos, boolean failed) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        private FingerprintReport report(String fingerprint) {
+            return new FingerprintReport(fingerprint, count.sum(), failures.sum(), totalNanos.sum(), maxNanos.get());
+        }
+    }
+
+    @Getter
+    public static class FingerprintReport {
+        private final String fingerprint;
+        private final long count;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        public FingerprintReport(String fingerprint, long count, long failures, long totalNanos, long maxNanos) {
+            this.fingerprint = fingerprint;
+            this.count = count;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return fingerprint + " -> count=" + count + ", failures=" + failures +
+                    ", totalNanos=" + totalNanos + ", maxNanos=" + maxNanos;
+        }
+    }
+
+}
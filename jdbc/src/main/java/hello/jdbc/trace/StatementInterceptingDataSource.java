@@ -0,0 +1,136 @@
+package hello.jdbc.trace;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 커넥션에서 생성한 Statement 의 execute* 호출을 가로채서 StatementListener 에 전달하는 DataSource
+ * -> Connection, Statement 를 JDK 동적 프록시로 감싸며, 그 외의 호출은 그대로 위임한다.
+ * -> 커넥션 풀을 감싸서 사용하며, 트랜잭션 매니저와 Repository 가 같은 DataSource 를 사용해야 한다.
+ *    (DataSourceUtils 는 DataSource 를 기준으로 트랜잭션 커넥션을 찾기 때문)
+ */
+public class StatementInterceptingDataSource extends DelegatingDataSource {
+
+    private final StatementListener listener;
+
+    public StatementInterceptingDataSource(DataSource targetDataSource, StatementListener listener) {
+        super(targetDataSource);
+        this.listener = listener;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(target));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * equals / hashCode / toString 은 프록시 자신을 기준으로 동작해야 한다.
+     * -> DataSourceUtils 는 트랜잭션에 바인딩된 커넥션과 전달받은 커넥션을 equals 로 비교한다.
+     * @return 처리한 경우 결과 값, 처리하지 않은 경우 null
+     */
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args, Object target) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Intercepted[" + target + "]";
+            default:
+                return null;
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object objectMethodResult = handleObjectMethod(proxy, method, args, target);
+            if (objectMethodResult != null) {
+                return objectMethodResult;
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement) {
+                // prepareStatement / prepareCall 은 첫번째 인자가 SQL, createStatement 는 execute 시점에 SQL 을 전달받는다
+                String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                return Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler((Statement) result, sql));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private String lastBatchSql;
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object objectMethodResult = handleObjectMethod(proxy, method, args, target);
+            if (objectMethodResult != null) {
+                return objectMethodResult;
+            }
+            String name = method.getName();
+            if (name.equals("addBatch") && args != null && args.length == 1) {
+                lastBatchSql = (String) args[0];
+            }
+            if (!name.startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            if (sql == null) {
+                sql = lastBatchSql;
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invokeTarget(target, method, args);
+                failed = false;
+                return result;
+            } finally {
+                listener.afterExecute(sql, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package hello.jdbc.trace;
+
+/**
+ * StatementInterceptingDataSource 를 통해 실행된 SQL 을 전달받는 listener
+ * -> SQL 을 실행한 쓰레드에서 호출되므로 구현체는 가볍게 동작해야 한다.
+ */
+@FunctionalInterface
+public interface StatementListener {
+
+    /**
+     * @param sql 실행한 SQL (PreparedStatement 의 경우 파라미터가 바인딩되기 전의 SQL)
+     * @param elapsedNanos 실행에 걸린 시간
+     * @param failed 실행 중 예외 발생 여부
+     */
+    void afterExecute(String sql, long elapsedNanos, boolean failed);
+}
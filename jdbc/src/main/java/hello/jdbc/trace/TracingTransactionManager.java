@@ -0,0 +1,53 @@
+package hello.jdbc.trace;
+
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.sql.DataSource;
+
+/**
+ * 물리 트랜잭션의 시작 / 커넥션 획득 / 커넥션 반환 시점을 TransactionTracer 에 알려주는 트랜잭션 매니저
+ * -> @Transactional, TransactionTemplate, PlatformTransactionManager 직접 사용 방식 모두에 동일하게 적용된다.
+ * -> 기존 트랜잭션에 참여하는 경우(REQUIRED)에는 새로운 기록을 만들지 않는다.
+ */
+public class TracingTransactionManager extends DataSourceTransactionManager {
+
+    private final TransactionTracer tracer;
+
+    public TracingTransactionManager(DataSource dataSource, TransactionTracer tracer) {
+        super(dataSource);
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        String name = definition.getName() != null ? definition.getName() : "anonymous";
+        tracer.begin(name, definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException e) {
+            tracer.abandon();
+            throw e;
+        }
+        tracer.connectionAcquired();
+    }
+
+    @Override
+    protected void prepareSynchronization(DefaultTransactionStatus status, TransactionDefinition definition) {
+        super.prepareSynchronization(status, definition);
+        if (status.isNewSynchronization() && status.isNewTransaction()) {
+            tracer.registerSynchronization();
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            tracer.released();
+        }
+    }
+
+}
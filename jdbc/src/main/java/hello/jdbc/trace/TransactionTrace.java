@@ -0,0 +1,102 @@
+package hello.jdbc.trace;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 하나의 물리 트랜잭션에 대한 기록
+ * -> 트랜잭션을 시작한 쓰레드에서만 갱신되며, 종료된 이후에는 변경되지 않는다.
+ * -> 기록하는 SQL 은 최대 MAX_RECORDED_SQL 개까지만 보관한다. (실행 횟수는 모두 집계)
+ */
+@Getter
+public class TransactionTrace {
+
+    public enum Outcome {
+        COMMITTED, ROLLED_BACK, UNKNOWN
+    }
+
+    static final int MAX_RECORDED_SQL = 50;
+
+    private final String name;
+    private final boolean readOnly;
+    private final long beginNanos;
+    private long connectionAcquiredNanos;
+    private long completedNanos;
+    private long releasedNanos;
+    private int statementCount;
+    private long statementNanos;
+    private Outcome outcome = Outcome.UNKNOWN;
+    private final List<String> sqls = new ArrayList<>();
+
+    TransactionTrace(String name, boolean readOnly, long beginNanos) {
+        this.name = name;
+        this.readOnly = readOnly;
+        this.beginNanos = beginNanos;
+    }
+
+    void connectionAcquired(long nanos) {
+        this.connectionAcquiredNanos = nanos;
+    }
+
+    void recordStatement(String sql, long elapsedNanos) {
+        statementCount++;
+        statementNanos += elapsedNanos;
+        if (sqls.size() < MAX_RECORDED_SQL) {
+            sqls.add(sql);
+        }
+    }
+
+    void completed(Outcome outcome, long nanos) {
+        this.outcome = outcome;
+        this.completedNanos = nanos;
+    }
+
+    void released(long nanos) {
+        this.releasedNanos = nanos;
+        if (completedNanos == 0) {
+            completedNanos = nanos;
+        }
+    }
+
+    public List<String> getSqls() {
+        return Collections.unmodifiableList(sqls);
+    }
+
+    /**
+     * 트랜잭션 시작(커넥션 획득 요청)부터 커밋 / 롤백 완료까지 걸린 시간
+     */
+    public long getDurationNanos() {
+        return completedNanos - beginNanos;
+    }
+
+    /**
+     * 커넥션 풀에서 커넥션을 얻는 데 걸린 시간
+     */
+    public long getConnectionAcquireNanos() {
+        return connectionAcquiredNanos - beginNanos;
+    }
+
+    /**
+     * 커넥션을 획득한 뒤 풀에 반환할 때까지 커넥션을 점유한 시간
+     */
+    public long getConnectionHoldNanos() {
+        return releasedNanos - connectionAcquiredNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionTrace{name=" + name +
+                ", outcome=" + outcome +
+                ", readOnly=" + readOnly +
+                ", durationMs=" + TimeUnit.NANOSECONDS.toMillis(getDurationNanos()) +
+                ", connectionAcquireMs=" + TimeUnit.NANOSECONDS.toMillis(getConnectionAcquireNanos()) +
+                ", connectionHoldMs=" + TimeUnit.NANOSECONDS.toMillis(getConnectionHoldNanos()) +
+                ", statementCount=" + statementCount +
+                ", statementMs=" + TimeUnit.NANOSECONDS.toMillis(statementNanos) +
+                ", sqls=" + sqls + "}";
+    }
+}
@@ -0,0 +1,148 @@
+package hello.jdbc.trace;
+
+import hello.jdbc.repository.metrics.LatencyHistogram;
+import hello.jdbc.repository.metrics.LatencySnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 단위로 지속시간 / SQL 실행 수 / 커넥션 점유 시간 / 커밋 or 롤백 결과를 기록한다.
+ * -> TracingTransactionManager 가 트랜잭션 시작과 커넥션 반환 시점을 알려주고,
+ *    TransactionSynchronization 을 통해 커밋 / 롤백 결과를 전달받는다.
+ * -> StatementInterceptingDataSource 의 listener 로 등록하면 현재 쓰레드의 트랜잭션에 실행한 SQL 이 기록된다.
+ * -> 임계값을 넘는 트랜잭션은 실행한 SQL 순서와 함께 WARN 로그로 남기고, 최근 MAX_SLOW_TRACES 개를 보관한다.
+ * -
+ * REQUIRES_NEW 와 같이 트랜잭션이 중첩되는 경우를 위해 쓰레드별로 트랜잭션 기록을 stack 으로 관리한다.
+ */
+@Slf4j
+public class TransactionTracer implements StatementListener {
+
+    static final int MAX_SLOW_TRACES = 100;
+
+    private final long slowThresholdNanos;
+    private final ThreadLocal<Deque<TransactionTrace>> activeTraces = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private final LatencyHistogram connectionHolds = new LatencyHistogram();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder slowTransactions = new LongAdder();
+    private final ConcurrentLinkedDeque<TransactionTrace> recentSlowTraces = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger recentSlowTraceCount = new AtomicInteger();
+
+    public TransactionTracer(Duration slowThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    void begin(String name, boolean readOnly) {
+        activeTraces.get().push(new TransactionTrace(name, readOnly, System.nanoTime()));
+    }
+
+    void connectionAcquired() {
+        TransactionTrace trace = activeTraces.get().peek();
+        if (trace != null) {
+            trace.connectionAcquired(System.nanoTime());
+        }
+    }
+
+    /**
+     * 트랜잭션 시작에 실패한 경우 (ex. 커넥션 획득 실패) 기록을 버린다.
+     */
+    void abandon() {
+        activeTraces.get().poll();
+    }
+
+    /**
+     * 현재 트랜잭션의 커밋 / 롤백 결과를 전달받기 위해 TransactionSynchronization 을 등록한다.
+     * -> 트랜잭션 동기화가 활성화된 경우에만 등록할 수 있다.
+     */
+    void registerSynchronization() {
+        TransactionTrace trace = activeTraces.get().peek();
+        if (trace == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionTrace.Outcome outcome = status == STATUS_COMMITTED ? TransactionTrace.Outcome.COMMITTED
+                        : status == STATUS_ROLLED_BACK ? TransactionTrace.Outcome.ROLLED_BACK
+                        : TransactionTrace.Outcome.UNKNOWN;
+                trace.completed(outcome, System.nanoTime());
+            }
+        });
+    }
+
+    /**
+     * 커넥션이 반환되어 트랜잭션이 완전히 종료된 시점에 호출된다.
+     */
+    void released() {
+        TransactionTrace trace = activeTraces.get().poll();
+        if (trace == null) {
+            return;
+        }
+        trace.released(System.nanoTime());
+        finish(trace);
+    }
+
+    @Override
+    public void afterExecute(String sql, long elapsedNanos, boolean failed) {
+        TransactionTrace trace = activeTraces.get().peek();
+        if (trace != null) {
+            trace.recordStatement(sql, elapsedNanos);
+        }
+    }
+
+    private void finish(TransactionTrace trace) {
+        durations.record(trace.getDurationNanos());
+        connectionHolds.record(trace.getConnectionHoldNanos());
+        if (trace.getOutcome() == TransactionTrace.Outcome.COMMITTED) {
+            commits.increment();
+        } else if (trace.getOutcome() == TransactionTrace.Outcome.ROLLED_BACK) {
+            rollbacks.increment();
+        }
+
+        if (trace.getDurationNanos() >= slowThresholdNanos) {
+            slowTransactions.increment();
+            recentSlowTraces.addLast(trace);
+            if (recentSlowTraceCount.incrementAndGet() > MAX_SLOW_TRACES && recentSlowTraces.pollFirst() != null) {
+                recentSlowTraceCount.decrementAndGet();
+            }
+            log.warn("slow transaction detected -> {}", trace);
+        }
+    }
+
+    public List<TransactionTrace> getRecentSlowTraces() {
+        return new ArrayList<>(recentSlowTraces);
+    }
+
+    public LatencySnapshot getDurationSnapshot() {
+        return durations.snapshot();
+    }
+
+    public LatencySnapshot getConnectionHoldSnapshot() {
+        return connectionHolds.snapshot();
+    }
+
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    public long getRollbackCount() {
+        return rollbacks.sum();
+    }
+
+    public long getSlowTransactionCount() {
+        return slowTransactions.sum();
+    }
+
+}
@@ -0,0 +1,245 @@
+package hello.jdbc.uow;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 트랜잭션 단위로 조회한 Member 를 관리하는 unit of work (JPA 의 영속성 컨텍스트와 flush 를 흉내낸다)
+ * 1. identity map -> 트랜잭션 안에서 같은 memberId 를 다시 조회하면 DB 에 요청하지 않고 같은 인스턴스를 반환한다.
+ * 2. 변경 감지 -> updateById 는 관리 중인 Member 의 money 만 바꾸고, 조회 시점의 값(snapshot)과 비교해 변경 여부를 판단한다.
+ *    -> 반환한 Member 를 setMoney 로 직접 바꿔도 변경으로 감지한다.
+ * 3. 쓰기 지연 -> 커밋 직전(beforeCommit)에 변경된 Member 를 target.updateAll 로 한 번에 반영한다.
+ *    -> MemberRepositoryV5 는 한 번의 batch update 로, decorator(outbox, metrics)는 각자의 updateById 로 반영한다.
+ *    -> 같은 Member 를 여러 번 바꿔도 update 는 한 번만 실행된다.
+ *    -> member_id 순서로 반영하므로 여러 트랜잭션이 같은 row 들을 바꿔도 lock 획득 순서가 같다.
+ * -> save, insertIfAbsent, deleteById, findAll, clearAll 은 지연된 변경을 먼저 반영한 뒤 바로 실행한다.
+ * -> 진행 중인 트랜잭션이 없으면 target 에 그대로 위임한다.
+ * -> 롤백되면 관리 중인 Member 와 지연된 변경은 버려진다.
+ * -> REQUIRES_NEW 등으로 트랜잭션이 보류(suspend)되면 unit of work 도 함께 보류되므로, 안쪽 트랜잭션은 별도의 unit of work 를 사용한다.
+ * -> 읽기 전용 트랜잭션에서 변경한 Member 가 있으면 커밋하지 않고 예외가 발생한다.
+ * -
+ * target 은 스프링 트랜잭션에 참여하는 Repository 여야 한다. (ex. MemberRepositoryV5, OutboxMemberRepository)
+ */
+@Slf4j
+public class UnitOfWorkMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+
+    public UnitOfWorkMemberRepository(MemberRepository target) {
+        this.target = target;
+    }
+
+    @Override
+    public Member save(Member member) {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.save(member);
+        }
+        unitOfWork.flush();
+        Member saved = target.save(member);
+        unitOfWork.register(new Member(member.getMemberId(), member.getMoney()));
+        return saved;
+    }
+
+    @Override
+    public int insertIfAbsent(Member member) {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.insertIfAbsent(member);
+        }
+        unitOfWork.flush();
+        return target.insertIfAbsent(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.findById(memberId);
+        }
+        Managed managed = unitOfWork.identityMap.get(memberId);
+        if (managed != null) {
+            unitOfWork.hits++;
+            return managed.member;
+        }
+        return unitOfWork.register(target.findById(memberId));
+    }
+
+    @Override
+    public List<Member> findAll() {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.findAll();
+        }
+        unitOfWork.flush();
+        List<Member> members = target.findAll();
+        List<Member> result = new ArrayList<>(members.size());
+        for (Member member : members) {
+            Managed managed = unitOfWork.identityMap.get(member.getMemberId());
+            result.add(managed != null ? managed.member : member);
+        }
+        return result;
+    }
+
+    @Override
+    public int updateById(String memberId, int money) {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.updateById(memberId, money);
+        }
+        Managed managed = unitOfWork.identityMap.get(memberId);
+        if (managed == null) {
+            try {
+                findById(memberId);
+            } catch (EmptyResultDataAccessException | NoSuchElementException e) {
+                return 0;
+            }
+            managed = unitOfWork.identityMap.get(memberId);
+        }
+        managed.member.setMoney(money);
+        return 1;
+    }
+
+    @Override
+    public int deleteById(String memberId) {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.deleteById(memberId);
+        }
+        unitOfWork.flush();
+        unitOfWork.identityMap.remove(memberId);
+        return target.deleteById(memberId);
+    }
+
+    @Override
+    public int clearAll() {
+        UnitOfWork unitOfWork = current();
+        if (unitOfWork == null) {
+            return target.clearAll();
+        }
+        unitOfWork.identityMap.clear();
+        return target.clearAll();
+    }
+
+    /**
+     * 진행 중인 트랜잭션의 unit of work, 트랜잭션이 없으면 null
+     */
+    private UnitOfWork current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        UnitOfWork unitOfWork = (UnitOfWork) TransactionSynchronizationManager.getResource(this);
+        if (unitOfWork == null) {
+            unitOfWork = new UnitOfWork();
+            TransactionSynchronizationManager.bindResource(this, unitOfWork);
+            TransactionSynchronizationManager.registerSynchronization(unitOfWork);
+        }
+        return unitOfWork;
+    }
+
+    private static class Managed {
+
+        private final Member member;
+        private int snapshot;
+
+        private Managed(Member member) {
+            this.member = member;
+            this.snapshot = member.getMoney();
+        }
+
+        private boolean isDirty() {
+            return member.getMoney() != snapshot;
+        }
+    }
+
+    private class UnitOfWork implements TransactionSynchronization {
+
+        private final Map<String, Managed> identityMap = new HashMap<>();
+        private int hits;
+
+        private Member register(Member member) {
+            identityMap.put(member.getMemberId(), new Managed(member));
+            return member;
+        }
+
+        /**
+         * 변경된 Member 를 member_id 순서로 target.updateAll 에 한 번에 전달한다.
+         */
+        private void flush() {
+            List<Managed> dirty = identityMap.values().stream()
+                    .filter(Managed::isDirty)
+                    .sorted(Comparator.comparing(managed -> managed.member.getMemberId()))
+                    .toList();
+            if (dirty.isEmpty()) {
+                return;
+            }
+            target.updateAll(dirty.stream().map(managed -> managed.member).toList());
+            dirty.forEach(managed -> managed.snapshot = managed.member.getMoney());
+        }
+
+        private boolean isDirty() {
+            return identityMap.values().stream().anyMatch(Managed::isDirty);
+        }
+
+        /**
+         * 다른 synchronization 의 beforeCommit 보다 먼저 flush 해서, 그 결과가 커밋 직전 작업에 포함되도록 한다.
+         */
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        /**
+         * beforeCommit 을 호출할 synchronization 목록은 이미 정해져 있으므로,
+         * flush 중에 target 이 새로 등록한 synchronization(ex. OutboxMemberRepository 의 이벤트 버퍼)은 여기서 직접 호출한다.
+         */
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (readOnly) {
+                if (isDirty()) {
+                    throw new IllegalTransactionStateException("read-only transaction has modified members");
+                }
+                return;
+            }
+            List<TransactionSynchronization> registered = TransactionSynchronizationManager.getSynchronizations();
+            flush();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                if (!registered.contains(synchronization)) {
+                    synchronization.beforeCommit(readOnly);
+                }
+            }
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(UnitOfWorkMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(UnitOfWorkMemberRepository.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWorkMemberRepository.this);
+            if (log.isDebugEnabled()) {
+                log.debug("unit of work completed, managed = {}, identity map hits = {}", identityMap.size(), hits);
+            }
+        }
+    }
+
+}
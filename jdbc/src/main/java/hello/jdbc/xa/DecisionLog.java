@@ -0,0 +1,112 @@
+package hello.jdbc.xa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 2PC 코디네이터의 커밋 결정을 기록하는 append-only 로그 파일
+ * -> 한 줄에 하나의 레코드를 기록한다. "C {gtxId}" = 커밋 결정, "E {gtxId}" = 모든 참여자의 커밋 완료
+ * -> 커밋 결정은 참여자에게 커밋을 요청하기 전에 디스크에 강제로 기록(force)해야 재시작 후에도 결정을 잃지 않는다.
+ * -> 완료 레코드는 유실되더라도 재시작 시 커밋을 한 번 더 시도할 뿐이므로 force 하지 않는다.
+ * -> 롤백은 기록하지 않는다. 커밋 결정이 없는 트랜잭션은 롤백된 것으로 간주한다. (presumed abort)
+ */
+@Slf4j
+public class DecisionLog implements Closeable {
+
+    private static final char COMMIT = 'C';
+    private static final char END = 'E';
+
+    private final FileChannel channel;
+    private final Set<String> pendingCommits = new LinkedHashSet<>();
+
+    private DecisionLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static DecisionLog open(Path path) throws IOException {
+        DecisionLog decisionLog = new DecisionLog(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        decisionLog.replay(path);
+        return decisionLog;
+    }
+
+    /**
+     * 기존 로그를 읽어 완료되지 않은 커밋 결정을 복원한다.
+     * -> 기록 도중 종료되어 마지막 줄이 잘린 경우 해당 줄은 무시한다.
+     */
+    private void replay(Path path) throws IOException {
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            start = end + 1;
+            if (line.length() < 3) {
+                continue;
+            }
+            String gtxId = line.substring(2);
+            if (line.charAt(0) == COMMIT) {
+                pendingCommits.add(gtxId);
+            } else if (line.charAt(0) == END) {
+                pendingCommits.remove(gtxId);
+            }
+        }
+        channel.truncate(start);
+        channel.position(start);
+        log.info("decision log replayed, pending commits = {}", pendingCommits.size());
+    }
+
+    public synchronized void logCommit(String gtxId) throws IOException {
+        append(COMMIT, gtxId);
+        channel.force(false);
+        pendingCommits.add(gtxId);
+    }
+
+    public synchronized void logEnd(String gtxId) throws IOException {
+        append(END, gtxId);
+        pendingCommits.remove(gtxId);
+    }
+
+    public synchronized boolean isCommitted(String gtxId) {
+        return pendingCommits.contains(gtxId);
+    }
+
+    public synchronized Set<String> getPendingCommits() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(pendingCommits));
+    }
+
+    /**
+     * 완료되지 않은 커밋 결정이 없으면 로그 파일을 비운다.
+     * -> 로그 파일이 계속 커지지 않도록 복구 이후 등 한가한 시점에 호출한다.
+     */
+    public synchronized void compact() throws IOException {
+        if (pendingCommits.isEmpty()) {
+            channel.truncate(0);
+            channel.force(false);
+        }
+    }
+
+    private void append(char type, String gtxId) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((type + " " + gtxId + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+package hello.jdbc.xa;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 여러 DB 에 걸친 하나의 전역 트랜잭션
+ * -> DB 마다 하나의 커넥션(branch)을 수동 커밋 모드로 열고, 코디네이터가 커밋 / 롤백을 결정한다.
+ * -> 하나의 쓰레드에서만 사용한다.
+ */
+@Slf4j
+public class GlobalTransaction {
+
+    @Getter
+    private final String id;
+    private final List<Branch> branches = new ArrayList<>(2);
+
+    GlobalTransaction(String id) {
+        this.id = id;
+    }
+
+    /**
+     * 해당 DB 의 branch 커넥션을 반환한다. 처음 요청한 DB 라면 커넥션을 얻어 트랜잭션을 시작한다.
+     * @param dataSource
+     * @return
+     * @throws SQLException
+     */
+    public Connection connection(DataSource dataSource) throws SQLException {
+        for (Branch branch : branches) {
+            if (branch.dataSource == dataSource) {
+                return branch.connection;
+            }
+        }
+        Connection conn = dataSource.getConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            JdbcUtils.closeConnection(conn);
+            throw e;
+        }
+        branches.add(new Branch(dataSource, conn, id + "_" + branches.size()));
+        return conn;
+    }
+
+    List<Branch> getBranches() {
+        return branches;
+    }
+
+    void rollbackAll() {
+        for (Branch branch : branches) {
+            try {
+                branch.connection.rollback();
+            } catch (SQLException e) {
+                log.error("branch rollback failed, branch={}", branch.name, e);
+            }
+        }
+    }
+
+    void releaseAll() {
+        for (Branch branch : branches) {
+            try {
+                // 커넥션 풀에 반환되는 경우를 위해 자동커밋 모드로 복구한다
+                branch.connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.error("release connection failed... {}", branch.connection, e);
+            }
+            JdbcUtils.closeConnection(branch.connection);
+        }
+    }
+
+    static class Branch {
+
+        final DataSource dataSource;
+        final Connection connection;
+        final String name;
+
+        Branch(DataSource dataSource, Connection connection, String name) {
+            this.dataSource = dataSource;
+            this.connection = connection;
+            this.name = name;
+        }
+
+        void prepare() throws SQLException {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PREPARE COMMIT " + name);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package hello.jdbc.xa;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface GlobalTransactionCallback<T> {
+
+    T doInTransaction(GlobalTransaction transaction) throws SQLException;
+
+}
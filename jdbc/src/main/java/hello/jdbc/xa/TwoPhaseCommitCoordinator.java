@@ -0,0 +1,172 @@
+package hello.jdbc.xa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * h2 의 PREPARE COMMIT 을 사용하는 2PC 코디네이터
+ * 1. 콜백에서 사용한 DB 마다 branch 커넥션을 열어 트랜잭션을 수행한다.
+ * 2. (1단계) 모든 branch 에 PREPARE COMMIT 을 요청한다. 하나라도 실패하면 모든 branch 를 롤백한다.
+ * 3. 모든 branch 가 prepare 되면 커밋 결정을 DecisionLog 에 강제로 기록한다. -> 이 시점 이후에는 반드시 커밋되어야 한다.
+ * 4. (2단계) 모든 branch 를 커밋하고 완료 레코드를 기록한다.
+ * -
+ * 3 ~ 4 사이에 코디네이터나 DB 가 종료되면 prepare 된 branch 는 DB 재시작 후 INFORMATION_SCHEMA.IN_DOUBT 에 남는다.
+ * -> 코디네이터를 재시작한 뒤 execute() 전에 recover() 를 직접 호출해, 커밋 결정이 있는 branch 는 커밋, 나머지는 롤백한다.
+ * -> branch 이름에 coordinatorId 를 포함하며, recover() 는 자신의 coordinatorId 로 시작하는 branch 만 정리한다.
+ *    같은 DB 를 사용하는 다른 코디네이터가 prepare 중인 branch 를 롤백하지 않기 위함이다.
+ *    -> coordinatorId 는 재시작해도 바뀌지 않아야 하며, 동시에 실행 중인 코디네이터끼리는 달라야 한다. (DecisionLog 도 coordinatorId 마다 따로 사용)
+ * -> branch 가 하나뿐이면 prepare 와 결정 기록을 생략하고 바로 커밋한다. (one-phase commit)
+ */
+@Slf4j
+public class TwoPhaseCommitCoordinator {
+
+    static final String GTX_PREFIX = "GTX_";
+    private static final Pattern COORDINATOR_ID = Pattern.compile("[A-Z0-9]+");
+
+    private final String ownerPrefix;
+    private final DecisionLog decisionLog;
+    private final List<DataSource> resources;
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36).toUpperCase(Locale.ROOT);
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param coordinatorId 영문 대문자와 숫자로 구성한 코디네이터 식별자 (h2 는 따옴표 없는 트랜잭션 이름을 대문자로 저장한다)
+     * @param decisionLog 해당 코디네이터만 사용하는 커밋 결정 로그
+     * @param resources
+     */
+    public TwoPhaseCommitCoordinator(String coordinatorId, DecisionLog decisionLog, List<DataSource> resources) {
+        if (!COORDINATOR_ID.matcher(coordinatorId).matches()) {
+            throw new IllegalArgumentException("coordinatorId must match [A-Z0-9]+ : " + coordinatorId);
+        }
+        this.ownerPrefix = GTX_PREFIX + coordinatorId + "_";
+        this.decisionLog = decisionLog;
+        this.resources = List.copyOf(resources);
+    }
+
+    public <T> T execute(GlobalTransactionCallback<T> callback) throws SQLException {
+        GlobalTransaction transaction = new GlobalTransaction(ownerPrefix + instanceId + "_" + sequence.incrementAndGet());
+        try {
+            T result;
+            try {
+                result = callback.doInTransaction(transaction);
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollbackAll();
+                throw e;
+            }
+            commit(transaction);
+            return result;
+        } finally {
+            transaction.releaseAll();
+        }
+    }
+
+    private void commit(GlobalTransaction transaction) throws SQLException {
+        List<GlobalTransaction.Branch> branches = transaction.getBranches();
+        if (branches.size() == 1) {
+            branches.get(0).connection.commit();
+            return;
+        }
+        if (branches.isEmpty()) {
+            return;
+        }
+
+        // 1단계 - prepare
+        try {
+            for (GlobalTransaction.Branch branch : branches) {
+                branch.prepare();
+            }
+        } catch (SQLException e) {
+            transaction.rollbackAll();
+            throw e;
+        }
+
+        // 커밋 결정
+        try {
+            decisionLog.logCommit(transaction.getId());
+        } catch (IOException e) {
+            transaction.rollbackAll();
+            throw new SQLException("failed to write commit decision, gtxId=" + transaction.getId(), e);
+        }
+
+        // 2단계 - commit
+        // -> 커밋 결정 이후의 실패는 롤백할 수 없으므로 기록만 남기고 복구에 맡긴다
+        boolean completed = true;
+        for (GlobalTransaction.Branch branch : branches) {
+            try {
+                branch.connection.commit();
+            } catch (SQLException e) {
+                completed = false;
+                log.error("branch commit failed, will be resolved by recovery, branch={}", branch.name, e);
+            }
+        }
+        if (completed) {
+            try {
+                decisionLog.logEnd(transaction.getId());
+            } catch (IOException e) {
+                log.warn("failed to write end record, gtxId={}", transaction.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 해당 코디네이터가 남긴 모든 참여 DB 의 in-doubt 트랜잭션을 커밋 결정에 따라 정리한다.
+     * -> 다른 coordinatorId 의 branch 는 건드리지 않는다.
+     * -> 모든 DB 를 정리한 경우에만 완료 레코드를 기록하며, 접근할 수 없는 DB 가 있으면 다음 복구 시 다시 시도한다.
+     * @return 정리한 branch 수
+     */
+    public int recover() {
+        int resolved = 0;
+        boolean allReachable = true;
+        for (DataSource dataSource : resources) {
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                for (String branchName : inDoubtBranches(stmt)) {
+                    String gtxId = branchName.substring(0, branchName.lastIndexOf('_'));
+                    boolean commit = decisionLog.isCommitted(gtxId);
+                    stmt.execute((commit ? "COMMIT TRANSACTION " : "ROLLBACK TRANSACTION ") + branchName);
+                    log.info("in-doubt branch resolved, branch={}, commit={}", branchName, commit);
+                    resolved++;
+                }
+            } catch (SQLException e) {
+                allReachable = false;
+                log.error("recovery failed for dataSource={}", dataSource, e);
+            }
+        }
+        if (allReachable) {
+            try {
+                for (String gtxId : decisionLog.getPendingCommits()) {
+                    decisionLog.logEnd(gtxId);
+                }
+                decisionLog.compact();
+            } catch (IOException e) {
+                log.warn("failed to update decision log after recovery", e);
+            }
+        }
+        return resolved;
+    }
+
+    private List<String> inDoubtBranches(Statement stmt) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("select transaction_name from information_schema.in_doubt")) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                if (name.startsWith(ownerPrefix)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,68 @@
+package hello.jdbc.xa;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.shard.Shard;
+import hello.jdbc.shard.ShardedMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 서로 다른 shard(DB) 에 있는 회원 간의 계좌이체를 2PC 로 처리한다.
+ * -> 커넥션을 파라미터로 전달받는 MemberRepositoryV2 의 메서드를 사용해 각 branch 커넥션에서 SQL 을 실행한다.
+ */
+@Slf4j
+public class TwoPhaseCommitMemberService {
+
+    private final TwoPhaseCommitCoordinator coordinator;
+    private final ShardedMemberRepository shardedRepository;
+    private final List<MemberRepositoryV2> repositories = new ArrayList<>();
+
+    public TwoPhaseCommitMemberService(TwoPhaseCommitCoordinator coordinator, ShardedMemberRepository shardedRepository) {
+        this.coordinator = coordinator;
+        this.shardedRepository = shardedRepository;
+        for (Shard shard : shardedRepository.getShards()) {
+            repositories.add(new MemberRepositoryV2(shard.getDataSource()));
+        }
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) throws SQLException {
+        coordinator.execute(transaction -> {
+            bizLogic(transaction, fromId, toId, money);
+            return null;
+        });
+    }
+
+    private void bizLogic(GlobalTransaction transaction, String fromId, String toId, int money) throws SQLException {
+        Shard fromShard = shardedRepository.shardOf(fromId);
+        Shard toShard = shardedRepository.shardOf(toId);
+        Connection fromConn = transaction.connection(fromShard.getDataSource());
+        Connection toConn = transaction.connection(toShard.getDataSource());
+        MemberRepositoryV2 fromRepository = repositories.get(fromShard.getIndex());
+        MemberRepositoryV2 toRepository = repositories.get(toShard.getIndex());
+
+        Member fromMember = fromRepository.findById(fromConn, fromId);
+        Member toMember = toRepository.findById(toConn, toId);
+
+        // 다음 과정이 하나의 연결된 프로세스로서 동작해야 한다.
+        fromRepository.updateById(fromConn, fromId, fromMember.getMoney() - money);
+        validation(toMember);
+        toRepository.updateById(toConn, toId, toMember.getMoney() + money);
+    }
+
+    /**
+     * 계좌 이체 중에 예외가 발생한 상황을 만들기 위해 작성한 메서드
+     * toMember 의 ID가 'ex' 인 경우 IllegalStateException 을 일으킨다.
+     * @param toMember
+     */
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package hello.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 테스트에서 target DataSource 의 커넥션 사용을 기록한다.
+ * -> 커넥션을 가져간 횟수와, 가져간 뒤 close 하기까지 점유한 시간의 합계
+ * -> 커넥션에 호출된 메서드 이름별 횟수와, 호출 순서 (인자가 하나이고 문자열이 아니면 "setAutoCommit(false)" 처럼 인자를 포함한다)
+ * -> 커넥션 풀을 감싸면 풀에서 가져간 커넥션을, 풀이 감싸면 드라이버 커넥션에 대한 호출을 기록한다.
+ */
+public class RecordingDataSource extends DelegatingDataSource {
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong holdNanos = new AtomicLong();
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    public RecordingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return record(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return record(super.getConnection(username, password));
+    }
+
+    private Connection record(Connection target) {
+        acquireCount.incrementAndGet();
+        long acquiredAt = System.nanoTime();
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    counts.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+                    calls.add(args != null && args.length == 1 && !(args[0] instanceof String)
+                            ? name + "(" + args[0] + ")" : name);
+                    if (name.equals("close") && closed.compareAndSet(false, true)) {
+                        holdNanos.addAndGet(System.nanoTime() - acquiredAt);
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    public long getHoldNanos() {
+        return holdNanos.get();
+    }
+
+    public long count(String methodName) {
+        AtomicLong count = counts.get(methodName);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 지금까지 기록한 호출 순서의 복사본
+     */
+    public List<String> getCalls() {
+        synchronized (calls) {
+            return new ArrayList<>(calls);
+        }
+    }
+
+    public void reset() {
+        acquireCount.set(0);
+        holdNanos.set(0);
+        counts.clear();
+        calls.clear();
+    }
+
+}
@@ -0,0 +1,133 @@
+package hello.jdbc.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberBatchJobTest {
+
+    static final String URL = "jdbc:h2:mem:batch;DB_CLOSE_DELAY=-1";
+    static final int MEMBERS = 5_000;
+    // 연 10% -> 잔액 365,000 의 일 이자는 100
+    static final InterestAccrual INTEREST = new InterestAccrual(1_000);
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        BatchCheckpointTables.create(dataSource);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from batch_checkpoint");
+    }
+
+    @Test
+    @DisplayName("모든 member 에 이자를 한 번씩 반영하고, 같은 jobId 로 다시 실행하면 아무것도 하지 않는다")
+    void accrual_test() {
+        insertMembers(MEMBERS, 365_000);
+        MemberBatchJob job = new MemberBatchJob(dataSource, INTEREST, 200);
+
+        BatchJobResult result = job.run("interest-20261018", 4);
+        BatchJobResult rerun = job.run("interest-20261018", 4);
+
+        assertThat(result.getProcessed()).isEqualTo(MEMBERS);
+        assertThat(rerun.getProcessed()).isZero();
+        assertThat(countByMoney(365_100)).isEqualTo(MEMBERS);
+    }
+
+    @Test
+    @DisplayName("중간에 실패한 job 을 다시 실행하면 커밋된 chunk 이후부터 이어서 처리한다")
+    void resume_test() {
+        insertMembers(MEMBERS, 365_000);
+        // 실행 순서와 관계없이 같은 member 에서 실패하도록 member_id 로 정한다
+        String failingMemberId = String.format("m%06d", MEMBERS / 2);
+        BalanceFunction failing = member -> {
+            if (member.getMemberId().equals(failingMemberId)) {
+                throw new IllegalStateException("batch 중 예외 발생");
+            }
+            return INTEREST.delta(member);
+        };
+
+        assertThatThrownBy(() -> new MemberBatchJob(dataSource, failing, 200).run("interest-resume", 4))
+                .isInstanceOf(IllegalStateException.class);
+        // run 은 모든 worker 가 끝난 뒤에 반환하므로, 이후에는 커밋된 수가 바뀌지 않는다
+        long committed = countByMoney(365_100);
+        assertThat(committed).isPositive().isLessThan(MEMBERS);
+        assertThat(jdbcTemplate.queryForObject(
+                "select sum(processed) from batch_checkpoint where job_id = 'interest-resume'", Long.class))
+                .isEqualTo(committed);
+
+        BatchJobResult result = new MemberBatchJob(dataSource, INTEREST, 200).run("interest-resume", 4);
+
+        assertThat(result.getProcessed()).isEqualTo(MEMBERS - committed);
+        assertThat(countByMoney(365_100)).isEqualTo(MEMBERS);
+        assertThat(jdbcTemplate.queryForObject(
+                "select sum(processed) from batch_checkpoint where job_id = 'interest-resume'", Long.class))
+                .isEqualTo(MEMBERS);
+    }
+
+    @Test
+    @DisplayName("chunk 를 처리하는 동안 다른 실행이 checkpoint 를 옮기면 chunk 를 롤백한다")
+    void checkpoint_guard_test() {
+        insertMembers(MEMBERS, 365_000);
+        AtomicBoolean moved = new AtomicBoolean();
+        BalanceFunction concurrentRun = member -> {
+            if (moved.compareAndSet(false, true)) {
+                jdbcTemplate.update("update batch_checkpoint set last_member_id = 'm999999' where job_id = 'interest-guard'");
+            }
+            return INTEREST.delta(member);
+        };
+
+        assertThatThrownBy(() -> new MemberBatchJob(dataSource, concurrentRun, 200).run("interest-guard", 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("checkpoint moved");
+        assertThat(countByMoney(365_100)).isZero();
+    }
+
+    /**
+     * worker 수를 1 ~ N 으로 늘리며 초당 처리한 member 수를 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("이자 batch 처리량 비교 - 1 ~ N workers")
+    void workers_benchmark() {
+        int members = 20_000;
+        int max = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= max; workers *= 2) {
+            jdbcTemplate.update("delete from member");
+            insertMembers(members, 365_000);
+
+            BatchJobResult result = new MemberBatchJob(dataSource, INTEREST, 500).run("bench-" + workers, workers);
+
+            assertThat(result.getProcessed()).isEqualTo(members);
+            log.info("workers={}, ranges={} -> {} members/s", workers, result.getRanges(), result.membersPerSecond());
+        }
+    }
+
+    private void insertMembers(int count, int money) {
+        jdbcTemplate.update("insert into member select 'm' || lpad(x, 6, '0'), ? from system_range(1, ?)", money, count);
+    }
+
+    private long countByMoney(int money) {
+        return jdbcTemplate.queryForObject("select count(*) from member where money = ?", Long.class, money);
+    }
+
+}
@@ -0,0 +1,139 @@
+package hello.jdbc.bulk;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class MemberCsvTest {
+
+    static final String URL = "jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    Path tempDir;
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    MemberCsvImporter importer;
+    MemberCsvExporter exporter;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        importer = new MemberCsvImporter(dataSource);
+        exporter = new MemberCsvExporter(dataSource);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("큰따옴표, CRLF, 음수, 빈 줄, 마지막 줄바꿈 누락을 처리한다")
+    void reader_format_test() throws Exception {
+        Path path = tempDir.resolve("members.csv");
+        Files.writeString(path, "MEMBER_ID,MONEY\r\n\"memberA\",\"1000\"\r\n\r\nmemberB,-20\nmemberC,2147483647");
+
+        String[] ids = new String[2];
+        int[] moneys = new int[2];
+        try (MemberCsvReader reader = MemberCsvReader.open(path, true)) {
+            assertThat(reader.read(ids, moneys)).isEqualTo(2);
+            assertThat(ids).containsExactly("memberA", "memberB");
+            assertThat(moneys).containsExactly(1_000, -20);
+            assertThat(reader.read(ids, moneys)).isOne();
+            assertThat(ids[0]).isEqualTo("memberC");
+            assertThat(moneys[0]).isEqualTo(Integer.MAX_VALUE);
+            assertThat(reader.read(ids, moneys)).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("내보낸 파일을 다시 가져오면 같은 데이터가 된다 - streaming / CSVWRITE")
+    void round_trip_test() throws Exception {
+        Path source = writeCsv(1_000);
+        importer.importBatched(source, true, 100);
+
+        Path streamed = tempDir.resolve("streamed.csv");
+        Path csvWrite = tempDir.resolve("csvwrite.csv");
+        assertThat(exporter.exportStreaming(streamed)).isEqualTo(1_000);
+        assertThat(exporter.exportCsvWrite(csvWrite)).isEqualTo(1_000);
+        long sum = totalMoney();
+
+        jdbcTemplate.update("delete from member");
+        assertThat(importer.importCsvRead(streamed)).isEqualTo(1_000);
+        assertThat(totalMoney()).isEqualTo(sum);
+
+        jdbcTemplate.update("delete from member");
+        assertThat(importer.importBatched(csvWrite, true, 300)).isEqualTo(1_000);
+        assertThat(totalMoney()).isEqualTo(sum);
+    }
+
+    /**
+     * 경로별 처리량을 측정한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("가져오기 / 내보내기 처리량 비교 - batch insert vs CSVREAD, streaming vs CSVWRITE")
+    void bulk_throughput_benchmark() throws Exception {
+        int rows = 500_000;
+        Path source = writeCsv(rows);
+
+        long start = System.nanoTime();
+        importer.importBatched(source, true, 5_000);
+        long batched = rowsPerSecond(rows, start);
+
+        jdbcTemplate.update("delete from member");
+        start = System.nanoTime();
+        importer.importCsvRead(source);
+        long csvRead = rowsPerSecond(rows, start);
+
+        start = System.nanoTime();
+        exporter.exportStreaming(tempDir.resolve("streamed.csv"));
+        long streaming = rowsPerSecond(rows, start);
+
+        start = System.nanoTime();
+        exporter.exportCsvWrite(tempDir.resolve("csvwrite.csv"));
+        long csvWrite = rowsPerSecond(rows, start);
+
+        log.info("import rows/s -> batch insert = {}, CSVREAD = {}", batched, csvRead);
+        log.info("export rows/s -> streaming = {}, CSVWRITE = {}", streaming, csvWrite);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from member", Integer.class)).isEqualTo(rows);
+    }
+
+    private long rowsPerSecond(int rows, long start) {
+        return rows * TimeUnit.SECONDS.toNanos(1) / Math.max(System.nanoTime() - start, 1);
+    }
+
+    private long totalMoney() {
+        return jdbcTemplate.queryForObject("select coalesce(sum(money), 0) from member", Long.class);
+    }
+
+    private Path writeCsv(int rows) throws Exception {
+        Path path = tempDir.resolve("source.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("MEMBER_ID,MONEY\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("m" + i + "," + (i % 100_000) + "\n");
+            }
+        }
+        return path;
+    }
+
+}
@@ -0,0 +1,116 @@
+package hello.jdbc.embedded;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 Repository 연산을 TCP 서버 모드와 embedded 모드(mem, file)에서 실행해 연산별 처리량을 비교한다.
+ * -> TCP 서버는 테스트 안에서 임의의 포트로 직접 띄운다.
+ * -> 커넥션 생성 비용이 섞이지 않도록 모든 모드에서 같은 크기의 커넥션 풀을 사용한다.
+ * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+ */
+@Slf4j
+class EmbeddedH2BenchmarkTest {
+
+    static final int COUNT = 2_000;
+
+    @TempDir
+    Path tempDir;
+
+    Server tcpServer;
+    Map<String, HikariDataSource> dataSources = new LinkedHashMap<>();
+
+    @BeforeEach
+    void init() throws SQLException {
+        tcpServer = Server.createTcpServer("-tcpPort", "0", "-ifNotExists", "-baseDir", tempDir.toString()).start();
+
+        dataSources.put("tcp", dataSource("jdbc:h2:tcp://localhost:" + tcpServer.getPort() + "/mem:bench_tcp"));
+
+        EmbeddedH2Properties mem = new EmbeddedH2Properties();
+        mem.setMode(EmbeddedH2Properties.Mode.MEM);
+        mem.setName("bench_embedded");
+        dataSources.put("embedded-mem", dataSource(mem.buildUrl()));
+
+        EmbeddedH2Properties file = new EmbeddedH2Properties();
+        file.setPath(tempDir.resolve("bench_embedded").toString());
+        dataSources.put("embedded-file", dataSource(file.buildUrl()));
+
+        dataSources.values().forEach(dataSource -> new JdbcTemplate(dataSource).execute(
+                "create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)"));
+    }
+
+    @AfterEach
+    void close() {
+        dataSources.values().forEach(dataSource -> {
+            new JdbcTemplate(dataSource).execute("shutdown");
+            dataSource.close();
+        });
+        tcpServer.stop();
+    }
+
+    @Test
+    @DisplayName("Repository 연산별 처리량 비교 - TCP vs embedded(mem, file)")
+    void tcp_vs_embedded_benchmark() {
+        Map<String, Map<String, Long>> matrix = new LinkedHashMap<>();
+        dataSources.forEach((mode, dataSource) -> matrix.put(mode, measure(new MemberRepositoryV5(dataSource))));
+
+        matrix.forEach((mode, result) -> log.info("{} ops/s -> {}", String.format("%-13s", mode), result));
+        matrix.values().forEach(result -> assertThat(result.values()).allMatch(opsPerSecond -> opsPerSecond > 0));
+    }
+
+    private Map<String, Long> measure(MemberRepository memberRepository) {
+        // 워밍업
+        for (int i = 0; i < 500; i++) {
+            memberRepository.save(new Member("w" + i, 0));
+            memberRepository.findById("w" + i);
+        }
+        memberRepository.clearAll();
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("save", opsPerSecond(COUNT, i -> memberRepository.save(new Member("m" + i, 10_000))));
+        result.put("findById", opsPerSecond(COUNT, i -> memberRepository.findById("m" + i)));
+        result.put("updateById", opsPerSecond(COUNT, i -> memberRepository.updateById("m" + i, i)));
+        result.put("findAll", opsPerSecond(20, i -> memberRepository.findAll()));
+        result.put("deleteById", opsPerSecond(COUNT, i -> memberRepository.deleteById("m" + i)));
+        return result;
+    }
+
+    private long opsPerSecond(int count, IntConsumer operation) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            operation.accept(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaximumPoolSize(1);
+        return dataSource;
+    }
+
+}
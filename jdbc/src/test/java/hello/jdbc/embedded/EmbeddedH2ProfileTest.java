@@ -0,0 +1,107 @@
+package hello.jdbc.embedded;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * embedded 프로파일을 활성화하면 외부 h2 서버 없이 애플리케이션 프로세스 안의 h2 를 사용한다.
+ * -> 테스트에서는 파일을 남기지 않도록 메모리 모드로 실행한다.
+ */
+@SpringBootTest(properties = {
+        "hello.h2.embedded.mode=mem",
+        "hello.h2.embedded.name=embedded_profile",
+        "hello.h2.embedded.settings.DEFAULT_NULL_ORDERING=HIGH"
+})
+@ActiveProfiles("embedded")
+class EmbeddedH2ProfileTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EmbeddedH2Properties properties;
+
+    @Autowired
+    EmbeddedH2Lifecycle lifecycle;
+
+    @Autowired
+    ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("embedded 프로파일의 DataSource 는 설정 값을 포함한 in-process URL 을 사용한다")
+    void embedded_datasource_test() {
+        assertThat(dataSource).isInstanceOf(HikariDataSource.class);
+        assertThat(((HikariDataSource) dataSource).getJdbcUrl())
+                .startsWith("jdbc:h2:mem:embedded_profile;DB_CLOSE_DELAY=-1")
+                .contains(";CACHE_SIZE=65536", ";LOCK_TIMEOUT=1000", ";DEFAULT_NULL_ORDERING=HIGH")
+                .doesNotContain("tcp");
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+        memberRepository.clearAll();
+        memberRepository.save(new Member("memberA", 10_000));
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("DataSource 빈은 embedded h2 를 연 뒤에 만들어진다")
+    void open_before_datasource_test() {
+        assertThat(lifecycle.isRunning()).isTrue();
+        assertThat(beanFactory.getDependenciesForBean("dataSource")).contains("embeddedH2Lifecycle");
+    }
+
+    @Test
+    @DisplayName("jpa 프로파일이 아니면 hibernate 를 시작하지 않고 DataSourceTransactionManager 를 사용한다")
+    void no_jpa_test() {
+        assertThat(beanFactory.getBeanNamesForType(EntityManagerFactory.class)).isEmpty();
+        assertThat(transactionManager).isInstanceOf(DataSourceTransactionManager.class);
+    }
+
+    @Test
+    @DisplayName("lifecycle 이 종료되면 SHUTDOWN 으로 DB 가 닫히고 메모리 DB 의 내용도 사라진다")
+    void lifecycle_shutdown_test() throws SQLException {
+        EmbeddedH2Properties props = new EmbeddedH2Properties();
+        props.setMode(EmbeddedH2Properties.Mode.MEM);
+        props.setName("embedded_lifecycle");
+        EmbeddedH2Lifecycle lifecycle = new EmbeddedH2Lifecycle(props);
+
+        lifecycle.start();
+        try (Connection conn = DriverManager.getConnection(props.buildUrl(), "sa", "")) {
+            conn.createStatement().execute("create table lifecycle_check (id int)");
+        }
+        lifecycle.stop();
+
+        assertThat(lifecycle.isRunning()).isFalse();
+        try (Connection conn = DriverManager.getConnection(props.buildUrl(), "sa", "")) {
+            assertThatThrownBy(() -> conn.createStatement().executeQuery("select * from lifecycle_check"))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+
+}
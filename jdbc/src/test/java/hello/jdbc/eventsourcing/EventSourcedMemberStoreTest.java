@@ -0,0 +1,118 @@
+package hello.jdbc.eventsourcing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class EventSourcedMemberStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("다시 열면 이벤트를 리플레이하여 같은 잔액과 version 을 복원한다")
+    void replay_test() throws Exception {
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 4, 1_000, 4)) {
+            store.deposit("memberA", 10_000);
+            store.deposit("memberB", 10_000);
+            store.withdraw("memberA", 1_000);
+            store.accountTransfer("memberA", "memberB", 2_000);
+            assertThatThrownBy(() -> store.accountTransfer("memberA", "ex", 2_000))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 4, 1_000, 4)) {
+            assertThat(store.getBalance("memberA")).isEqualTo(7_000);
+            assertThat(store.getBalance("memberB")).isEqualTo(12_000);
+            assertThat(store.findById("memberA").getVersion()).isEqualTo(3);
+            assertThatThrownBy(() -> store.findById("ex")).isInstanceOf(NoSuchElementException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("스냅샷 이후의 이벤트만 리플레이한다")
+    void snapshot_test() throws Exception {
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 1, 10, 1)) {
+            for (int i = 0; i < 25; i++) {
+                store.deposit("memberA", 100);
+            }
+        }
+
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 1, 10, 1)) {
+            assertThat(store.getReplayedEvents()).isEqualTo(5);
+            assertThat(store.getBalance("memberA")).isEqualTo(2_500);
+            assertThat(store.findById("memberA").getVersion()).isEqualTo(25);
+        }
+    }
+
+    @Test
+    @DisplayName("기록 도중 잘린 마지막 이벤트는 잘라내고 이전 이벤트까지 복원한다")
+    void torn_record_test() throws Exception {
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 1, 1_000, 1)) {
+            store.deposit("memberA", 100);
+            store.deposit("memberA", 100);
+        }
+        Files.write(tempDir.resolve("events-0.bin"), new byte[]{0, 0, 0, 20, 1, 0}, StandardOpenOption.APPEND);
+
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 1, 1_000, 1)) {
+            assertThat(store.getBalance("memberA")).isEqualTo(200);
+            store.deposit("memberA", 100);
+        }
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, 1, 1_000, 1)) {
+            assertThat(store.getBalance("memberA")).isEqualTo(300);
+        }
+    }
+
+    /**
+     * 20만 계좌, 100만 이벤트를 리플레이하는 속도를 측정한다.
+     * -> 계좌 수에 비례한다고 가정하고 1,000만 계좌의 리플레이 시간을 추정한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("리플레이 속도 비교 - 단일 쓰레드 vs partition 병렬")
+    void replay_rate_benchmark() throws Exception {
+        int partitions = 8;
+        int accounts = 200_000;
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, partitions, Integer.MAX_VALUE, 1)) {
+            for (int i = 0; i < accounts; i++) {
+                String memberId = "m" + i;
+                store.deposit(memberId, 10_000);
+                store.withdraw(memberId, 100);
+                store.deposit(memberId, 100);
+                store.accountTransfer(memberId, "m" + ((i + 1) % accounts), 1);
+            }
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long single = replayNanos(partitions, 1);
+        long parallel = replayNanos(partitions, threads);
+
+        long events;
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, partitions, Integer.MAX_VALUE, threads)) {
+            events = store.getReplayedEvents();
+            assertThat(store.accountCount()).isEqualTo(accounts);
+            assertThat(store.getBalance("m0")).isEqualTo(10_000);
+        }
+        log.info("replay {} events -> 1 thread = {} ms ({} events/s), {} threads = {} ms ({} events/s)",
+                events, single / 1_000_000, events * 1_000_000_000L / single,
+                threads, parallel / 1_000_000, events * 1_000_000_000L / parallel);
+        log.info("estimated replay time for 10M accounts = {} ms", parallel / 1_000_000 * (10_000_000 / accounts));
+    }
+
+    private long replayNanos(int partitions, int threads) throws Exception {
+        try (EventSourcedMemberStore store = EventSourcedMemberStore.open(tempDir, partitions, Integer.MAX_VALUE, threads)) {
+            return store.getReplayNanos();
+        }
+    }
+
+}
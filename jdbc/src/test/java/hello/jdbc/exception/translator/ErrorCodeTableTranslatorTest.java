@@ -0,0 +1,160 @@
+package hello.jdbc.exception.translator;
+
+import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import hello.jdbc.repository.translator.DataAccessErrorCodeTranslator;
+import hello.jdbc.repository.translator.MyDbExceptionTranslator;
+import hello.jdbc.repository.translator.StacklessDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 미리 구성한 error code 테이블 기반 예외 변환기
+ * -> DB 이름("H2")으로 구성한 변환기는 DB 커넥션 없이 동작한다.
+ */
+@Slf4j
+class ErrorCodeTableTranslatorTest {
+
+    static final String SQL = "insert into member(member_id, money) values (?, ?)";
+    static final SQLException DUPLICATE_KEY = new SQLException("duplicate key", "23505", 23505);
+    static final SQLException BAD_GRAMMAR = new SQLException("bad syntax", "42S22", 42122);
+
+    @Test
+    @DisplayName("SQLErrorCodeSQLExceptionTranslator 와 동일한 Spring 데이터 접근 예외로 변환한다")
+    void same_translation_as_spring_translator_test() {
+        SQLExceptionTranslator springTranslator = new SQLErrorCodeSQLExceptionTranslator("H2");
+        DataAccessErrorCodeTranslator tableTranslator = DataAccessErrorCodeTranslator.of("H2");
+
+        for (SQLException e : new SQLException[]{DUPLICATE_KEY, BAD_GRAMMAR}) {
+            DataAccessException expected = springTranslator.translate("save", SQL, e);
+            DataAccessException actual = tableTranslator.translate("save", SQL, e);
+            assertThat(actual).isExactlyInstanceOf(expected.getClass());
+            assertThat(actual.getCause()).isSameAs(e);
+        }
+        assertThat(tableTranslator.translate("save", SQL, BAD_GRAMMAR)).isInstanceOf(BadSqlGrammarException.class);
+    }
+
+    @Test
+    @DisplayName("stackless 옵션을 사용하면 키 중복 예외의 stack trace 를 수집하지 않는다")
+    void stackless_duplicate_key_test() {
+        DataAccessErrorCodeTranslator translator = DataAccessErrorCodeTranslator.of("H2", true);
+
+        DataAccessException ex = translator.translate("save", SQL, DUPLICATE_KEY);
+
+        assertThat(ex).isInstanceOf(DuplicateKeyException.class).isInstanceOf(StacklessDuplicateKeyException.class);
+        assertThat(ex.getStackTrace()).isEmpty();
+        assertThat(ex.getCause()).isSameAs(DUPLICATE_KEY);
+    }
+
+    @Test
+    @DisplayName("키 중복 error code 는 MyDuplicateKeyException, 그 외는 MyDbException 으로 변환한다")
+    void my_db_exception_translation_test() {
+        MyDbExceptionTranslator translator = MyDbExceptionTranslator.of("H2");
+
+        assertThat(translator.translate(DUPLICATE_KEY)).isInstanceOf(MyDuplicateKeyException.class);
+        assertThat(translator.translate(BAD_GRAMMAR))
+                .isExactlyInstanceOf(MyDbException.class)
+                .hasCause(BAD_GRAMMAR);
+    }
+
+    @Test
+    @DisplayName("DataSource 로 생성한 변환기는 최초 변환 시점에 한 번만 커넥션을 얻어 error code 를 조회한다")
+    void lazy_error_code_lookup_test() {
+        AtomicInteger acquired = new AtomicInteger();
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:translator;DB_CLOSE_DELAY=-1", "sa", "") {
+            @Override
+            public Connection getConnection() throws SQLException {
+                acquired.incrementAndGet();
+                return super.getConnection();
+            }
+        };
+
+        MyDbExceptionTranslator translator = MyDbExceptionTranslator.of(dataSource);
+        DataAccessErrorCodeTranslator dataAccessTranslator = DataAccessErrorCodeTranslator.of(dataSource);
+        assertThat(acquired).hasValue(0);
+
+        assertThat(translator.translate(DUPLICATE_KEY)).isInstanceOf(MyDuplicateKeyException.class);
+        assertThat(dataAccessTranslator.isDuplicateKey(DUPLICATE_KEY)).isTrue();
+        assertThat(dataAccessTranslator.isDuplicateKey(BAD_GRAMMAR)).isFalse();
+        int afterFirstTranslation = acquired.get();
+        translator.translate(DUPLICATE_KEY);
+        dataAccessTranslator.translate("save", SQL, DUPLICATE_KEY);
+        assertThat(acquired).hasValue(afterFirstTranslation);
+    }
+
+    @Test
+    @DisplayName("DB 에 접근할 수 없어 error code 조회에 실패하면 저장하지 않고 다음 변환 시점에 다시 조회한다")
+    void retry_failed_error_code_lookup_test() {
+        AtomicBoolean available = new AtomicBoolean(false);
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:translator_retry;DB_CLOSE_DELAY=-1", "sa", "") {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (!available.get()) {
+                    throw new SQLException("connection refused", "08001");
+                }
+                return super.getConnection();
+            }
+        };
+        MyDbExceptionTranslator translator = MyDbExceptionTranslator.of(dataSource);
+        DataAccessErrorCodeTranslator dataAccessTranslator = DataAccessErrorCodeTranslator.of(dataSource);
+
+        assertThat(translator.translate(DUPLICATE_KEY)).isExactlyInstanceOf(MyDbException.class);
+        assertThat(dataAccessTranslator.isDuplicateKey(DUPLICATE_KEY)).isFalse();
+
+        available.set(true);
+        assertThat(translator.translate(DUPLICATE_KEY)).isInstanceOf(MyDuplicateKeyException.class);
+        assertThat(dataAccessTranslator.translate("save", SQL, DUPLICATE_KEY)).isInstanceOf(DuplicateKeyException.class);
+    }
+
+    /**
+     * 예외 1건을 변환하는 데 걸리는 평균 시간(ns)을 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 warm-up 이후의 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("예외 변환 비용 비교 - SQLErrorCodeSQLExceptionTranslator vs ErrorCodeTable (full / stackless)")
+    void translation_cost_benchmark() {
+        SQLExceptionTranslator springTranslator = new SQLErrorCodeSQLExceptionTranslator("H2");
+        DataAccessErrorCodeTranslator tableTranslator = DataAccessErrorCodeTranslator.of("H2");
+        DataAccessErrorCodeTranslator stacklessTranslator = DataAccessErrorCodeTranslator.of("H2", true);
+
+        int iterations = 200_000;
+        long spring = measure(iterations, () -> springTranslator.translate("save", SQL, DUPLICATE_KEY));
+        long table = measure(iterations, () -> tableTranslator.translate("save", SQL, DUPLICATE_KEY));
+        long stackless = measure(iterations, () -> stacklessTranslator.translate("save", SQL, DUPLICATE_KEY));
+
+        log.info("translation cost per exception -> spring = {} ns, table = {} ns, table(stackless) = {} ns",
+                spring, table, stackless);
+    }
+
+    private long measure(int iterations, Supplier<DataAccessException> translation) {
+        // warm-up
+        for (int i = 0; i < iterations; i++) {
+            translation.get();
+        }
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += translation.get().hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        log.debug("sink = {}", sink);
+        return elapsed / iterations;
+    }
+
+}
@@ -1,6 +1,8 @@
 package hello.jdbc.exception.translator;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.id.MemberIdGenerator;
+import hello.jdbc.id.TimeOrderedIdGenerator;
 import hello.jdbc.repository.MemberRepository;
 import hello.jdbc.repository.MemberRepositoryV4_1;
 import hello.jdbc.repository.exception.MyDbException;
@@ -18,7 +20,6 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.Random;
 
 import static hello.connection.ConnectionConst.*;
 
@@ -38,7 +39,7 @@ public class ExTranslatorV1Test {
     void init() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
         repository = new Repository(dataSource);
-        service = new Service(repository);
+        service = new Service(repository, new TimeOrderedIdGenerator(1));
         memberRepository = new MemberRepositoryV4_1(dataSource);
     }
 
@@ -53,6 +54,7 @@ public class ExTranslatorV1Test {
     static class Service {
 
         private final Repository repository;
+        private final MemberIdGenerator idGenerator;
 
         public void create(String memberId) {
             try {
@@ -69,8 +71,11 @@ public class ExTranslatorV1Test {
             }
         }
 
+        /**
+         * 임의의 값을 붙이는 방식은 다시 충돌할 수 있으므로 충돌하지 않는 ID 발급기를 사용한다.
+         */
         private String generateNewId(String memberId) {
-            return memberId + new Random().nextInt(10_000);
+            return idGenerator.nextId();
         }
     }
 
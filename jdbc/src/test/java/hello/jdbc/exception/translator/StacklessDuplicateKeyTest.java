@@ -0,0 +1,145 @@
+package hello.jdbc.exception.translator;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.exception.ExceptionMode;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import hello.jdbc.repository.translator.StacklessDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 키 중복이 정상 흐름의 일부인 경우 (ex. ID 충돌 후 재시도)
+ * 1. ExceptionMode 를 통해 stack trace 수집 비용을 생략할 수 있다.
+ * 2. insertIfAbsent 를 사용하면 예외 없이 반환 값으로 충돌을 확인할 수 있다.
+ */
+@Slf4j
+class StacklessDuplicateKeyTest {
+
+    static final String URL = "jdbc:h2:mem:stackless;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("STACKLESS 모드에서는 stack trace 없이 원인 예외만 보존한다")
+    void stackless_mode_test() {
+        MemberRepositoryV4_1 repository = new MemberRepositoryV4_1(dataSource, ExceptionMode.STACKLESS);
+        repository.save(new Member("idA", 0));
+
+        assertThatThrownBy(() -> repository.save(new Member("idA", 0)))
+                .isInstanceOf(MyDuplicateKeyException.class)
+                .satisfies(e -> {
+                    assertThat(e.getStackTrace()).isEmpty();
+                    assertThat(e.getCause()).isInstanceOf(SQLException.class);
+                });
+    }
+
+    @Test
+    @DisplayName("스프링 예외를 사용하는 Repository 도 STACKLESS 모드에서는 stack trace 없이 키 중복 예외를 생성한다")
+    void stackless_spring_exception_test() {
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource, ExceptionMode.STACKLESS);
+        repository.save(new Member("idA", 0));
+
+        assertThatThrownBy(() -> repository.save(new Member("idA", 0)))
+                .isInstanceOf(StacklessDuplicateKeyException.class)
+                .satisfies(e -> {
+                    assertThat(e.getStackTrace()).isEmpty();
+                    assertThat(e.getCause()).isInstanceOf(SQLException.class);
+                });
+    }
+
+    @Test
+    @DisplayName("PREALLOCATED 모드에서는 미리 생성한 하나의 인스턴스를 재사용한다")
+    void preallocated_mode_test() {
+        MyDuplicateKeyException first = MyDuplicateKeyException.of(ExceptionMode.PREALLOCATED, new SQLException());
+        MyDuplicateKeyException second = MyDuplicateKeyException.of(ExceptionMode.PREALLOCATED, new SQLException());
+
+        assertThat(first).isSameAs(second);
+        assertThat(first.getStackTrace()).isEmpty();
+        // suppressed 예외가 비활성화 되어 있으므로 공유 인스턴스의 상태가 변하지 않는다
+        first.addSuppressed(new IllegalStateException());
+        assertThat(first.getSuppressed()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("insertIfAbsent - 이미 존재하는 memberId 인 경우 예외 대신 0 을 반환한다")
+    void insert_if_absent_test() {
+        MemberRepositoryV4_1 repository = new MemberRepositoryV4_1(dataSource);
+
+        int first = repository.insertIfAbsent(new Member("idA", 10_000));
+        int second = repository.insertIfAbsent(new Member("idA", 20_000));
+
+        assertThat(first).isOne();
+        assertThat(second).isZero();
+        assertThat(repository.findById("idA").getMoney()).isEqualTo(10_000);
+    }
+
+    /**
+     * 예외 1건을 생성하고 던지는 비용을 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 warm-up 이후의 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("키 중복 예외 생성 비용 비교 - FULL_STACK_TRACE vs STACKLESS vs PREALLOCATED")
+    void exception_mode_cost_benchmark() {
+        SQLException cause = new SQLException("duplicate key", "23505", 23505);
+        int iterations = 200_000;
+
+        long full = measure(iterations, mode -> MyDuplicateKeyException.of(mode, cause), ExceptionMode.FULL_STACK_TRACE);
+        long stackless = measure(iterations, mode -> MyDuplicateKeyException.of(mode, cause), ExceptionMode.STACKLESS);
+        long preallocated = measure(iterations, mode -> MyDuplicateKeyException.of(mode, cause), ExceptionMode.PREALLOCATED);
+
+        log.info("throw + catch cost per exception -> full = {} ns, stackless = {} ns, preallocated = {} ns",
+                full, stackless, preallocated);
+        assertThat(stackless).isLessThanOrEqualTo(full);
+    }
+
+    private long measure(int iterations, Function<ExceptionMode, MyDuplicateKeyException> factory, ExceptionMode mode) {
+        long sink = 0;
+        // warm-up
+        for (int i = 0; i < iterations; i++) {
+            sink += throwAndCatch(factory, mode);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += throwAndCatch(factory, mode);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.debug("sink = {}", sink);
+        return elapsed / iterations;
+    }
+
+    private int throwAndCatch(Function<ExceptionMode, MyDuplicateKeyException> factory, ExceptionMode mode) {
+        try {
+            throw factory.apply(mode);
+        } catch (MyDuplicateKeyException e) {
+            return e.hashCode() & 1;
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package hello.jdbc.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class MemberIdGeneratorTest {
+
+    static final String URL = "jdbc:h2:mem:idgen;DB_CLOSE_DELAY=-1";
+
+    @Test
+    @DisplayName("시간 순서 ID - 발급 순서대로 증가하며 10자리 문자열의 정렬 순서도 동일하다")
+    void time_ordered_monotonic_test() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1);
+
+        String prev = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            String next = generator.nextId();
+            assertThat(next).hasSize(10).isGreaterThan(prev);
+            prev = next;
+        }
+    }
+
+    @Test
+    @DisplayName("시간 순서 ID - 시계가 뒤로 가더라도 이전 ID 보다 큰 값을 발급한다")
+    void time_ordered_clock_regression_test() {
+        long[] now = {TimeOrderedIdGenerator.DEFAULT_EPOCH + 10_000};
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1, TimeOrderedIdGenerator.DEFAULT_EPOCH, () -> now[0]);
+
+        long before = generator.nextLong();
+        now[0] -= 5_000;
+        long after = generator.nextLong();
+
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    @DisplayName("시간 순서 ID - 여러 쓰레드에서 동시에 발급해도 중복되지 않는다")
+    void time_ordered_concurrent_unique_test() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1);
+        Set<String> ids = generateConcurrently(generator, 8, 50_000);
+        assertThat(ids).hasSize(8 * 50_000);
+    }
+
+    @Test
+    @DisplayName("hi/lo ID - 블록 크기만큼 DB 조회가 줄어들고 여러 쓰레드에서도 중복되지 않는다")
+    void hi_lo_concurrent_unique_test() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        HiLoIdGenerator generator = new HiLoIdGenerator(dataSource, "member_id_seq_test", 1_000);
+
+        Set<String> ids = generateConcurrently(generator, 8, 10_000);
+
+        assertThat(ids).hasSize(8 * 10_000);
+        assertThat(generator.getDbCalls()).isLessThanOrEqualTo(8 * 10_000 / 1_000 + 8);
+        log.info("hi/lo -> issued = {}, db calls = {}, db calls saved = {}",
+                generator.getIssued(), generator.getDbCalls(), generator.getDbCallsSaved());
+    }
+
+    /**
+     * 초당 발급 가능한 ID 수를 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("ID 발급 처리량 비교 - time ordered vs hi/lo")
+    void ids_per_second_benchmark() {
+        int count = 1_000_000;
+        TimeOrderedIdGenerator timeOrdered = new TimeOrderedIdGenerator(1);
+        HiLoIdGenerator hiLo = new HiLoIdGenerator(new DriverManagerDataSource(URL, "sa", ""), "member_id_seq_bench", 10_000);
+
+        long timeOrderedRate = idsPerSecond(timeOrdered, count);
+        long hiLoRate = idsPerSecond(hiLo, count);
+
+        log.info("ids/s -> time ordered = {}, hi/lo = {} (db calls = {}, saved = {})",
+                timeOrderedRate, hiLoRate, hiLo.getDbCalls(), hiLo.getDbCallsSaved());
+        assertThat(hiLo.getDbCallsSaved()).isGreaterThan(hiLo.getDbCalls());
+    }
+
+    private long idsPerSecond(MemberIdGenerator generator, int count) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < count; i++) {
+            sink += generator.nextId().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        log.debug("sink = {}", sink);
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+    private Set<String> generateConcurrently(MemberIdGenerator generator, int threads, int perThread) throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(generator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,239 @@
+package hello.jdbc.lazy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.RecordingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 스프링 컨텍스트 없이 @Transactional 을 적용하기 위해 TransactionInterceptor 로 직접 AOP 프록시를 만든다.
+ */
+@Slf4j
+class LazyConnectionAcquisitionTest {
+
+    static final String URL = "jdbc:h2:mem:lazy;DB_CLOSE_DELAY=-1";
+
+    HikariDataSource pool;
+    RecordingDataSource tracked;
+    DataSource lazy;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl(URL);
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setMaximumPoolSize(4);
+        tracked = new RecordingDataSource(pool);
+        lazy = LazyConnectionDataSourcePostProcessor.lazy(tracked);
+        // 프록시를 만들 때 기본 autoCommit, 격리 수준을 읽기 위해 가져간 커넥션은 트랜잭션과 관계없으므로 제외한다
+        tracked.reset();
+
+        jdbcTemplate = new JdbcTemplate(pool);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 1000000), " +
+                "('memberB', 1000000), ('ex', 1000000)");
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("SQL 실행 전에 거절된 이체는 지연 획득 모드에서 커넥션 풀을 사용하지 않는다")
+    void rejected_transfer_test() {
+        ValidatingTransferService eagerService = validatingService(tracked);
+        ValidatingTransferService lazyService = validatingService(lazy);
+
+        assertThatThrownBy(() -> lazyService.accountTransfer("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(tracked.getAcquireCount()).isZero();
+
+        assertThatThrownBy(() -> eagerService.accountTransfer("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(tracked.getAcquireCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("지연 획득 모드에서도 이체와 롤백은 기존과 같이 동작한다")
+    void transfer_test() {
+        MemberServiceV4 lazyService = memberService(lazy);
+        MemberRepository memberRepository = new MemberRepositoryV4_1(pool);
+
+        lazyService.accountTransfer("memberA", "memberB", 2_000);
+        assertThatThrownBy(() -> lazyService.accountTransfer("memberA", "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(998_000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(1_002_000);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(1_000_000);
+        assertThat(tracked.getAcquireCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("트랜잭션의 readOnly, 격리 수준은 실제 커넥션을 가져올 때 적용된다")
+    void replay_connection_settings_test() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(lazy));
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+
+        int isolation = transactionTemplate.execute(status -> {
+            assertThat(tracked.getAcquireCount()).isZero();
+            new JdbcTemplate(lazy).queryForObject("select count(*) from member", Integer.class);
+            Connection target = ((ConnectionProxy) DataSourceUtils.getConnection(lazy)).getTargetConnection();
+            try {
+                return target.getTransactionIsolation();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(isolation).isEqualTo(Connection.TRANSACTION_SERIALIZABLE);
+        assertThat(tracked.getAcquireCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("기본 격리 수준은 target 커넥션에서 읽으므로, 풀의 기본값과 다른 격리 수준을 지정하면 적용된다")
+    void default_isolation_from_target_test() {
+        try (HikariDataSource repeatableReadPool = new HikariDataSource()) {
+            repeatableReadPool.setJdbcUrl(URL);
+            repeatableReadPool.setUsername("sa");
+            repeatableReadPool.setPassword("");
+            repeatableReadPool.setTransactionIsolation("TRANSACTION_REPEATABLE_READ");
+            DataSource lazyRepeatableRead = LazyConnectionDataSourcePostProcessor.lazy(repeatableReadPool);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(lazyRepeatableRead));
+            transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+            int isolation = transactionTemplate.execute(status -> {
+                new JdbcTemplate(lazyRepeatableRead).queryForObject("select count(*) from member", Integer.class);
+                Connection target = ((ConnectionProxy) DataSourceUtils.getConnection(lazyRepeatableRead)).getTargetConnection();
+                try {
+                    return target.getTransactionIsolation();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            assertThat(isolation).isEqualTo(Connection.TRANSACTION_READ_COMMITTED);
+        }
+    }
+
+    /**
+     * 거절(금액 0, 자기 자신에게 이체), 실패(ex), 성공 이체가 섞인 요청을 처리하며
+     * 커넥션 풀에서 커넥션을 가져간 횟수와 점유 시간을 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("커넥션 풀 점유 비교 - 즉시 획득 vs 지연 획득")
+    void pool_occupancy_benchmark() {
+        int count = 4_000;
+        ValidatingTransferService eagerService = validatingService(tracked);
+        ValidatingTransferService lazyService = validatingService(lazy);
+
+        // 워밍업
+        mixedWorkload(eagerService, 500);
+        mixedWorkload(lazyService, 500);
+
+        tracked.reset();
+        long eagerElapsed = mixedWorkload(eagerService, count);
+        long eagerAcquire = tracked.getAcquireCount();
+        long eagerHold = tracked.getHoldNanos();
+
+        tracked.reset();
+        long lazyElapsed = mixedWorkload(lazyService, count);
+        long lazyAcquire = tracked.getAcquireCount();
+        long lazyHold = tracked.getHoldNanos();
+
+        log.info("eager -> acquire = {}, hold = {} ms, elapsed = {} ms", eagerAcquire,
+                TimeUnit.NANOSECONDS.toMillis(eagerHold), TimeUnit.NANOSECONDS.toMillis(eagerElapsed));
+        log.info("lazy  -> acquire = {}, hold = {} ms, elapsed = {} ms", lazyAcquire,
+                TimeUnit.NANOSECONDS.toMillis(lazyHold), TimeUnit.NANOSECONDS.toMillis(lazyElapsed));
+        assertThat(eagerAcquire).isEqualTo(count);
+        assertThat(lazyAcquire).isEqualTo(count / 2);
+    }
+
+    private long mixedWorkload(ValidatingTransferService memberService, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            try {
+                switch (i % 4) {
+                    case 0 -> memberService.accountTransfer("memberA", "memberB", 1);
+                    case 1 -> memberService.accountTransfer("memberA", "memberB", 0);
+                    case 2 -> memberService.accountTransfer("memberA", "memberA", 1);
+                    default -> memberService.accountTransfer("memberA", "ex", 1);
+                }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // 거절, 실패한 이체
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static MemberServiceV4 memberService(DataSource dataSource) {
+        return transactional(new MemberServiceV4(new MemberRepositoryV4_1(dataSource)), dataSource);
+    }
+
+    private static ValidatingTransferService validatingService(DataSource dataSource) {
+        return transactional(new ValidatingTransferService(new MemberServiceV4(new MemberRepositoryV4_1(dataSource))), dataSource);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T transactional(T target, DataSource dataSource) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    /**
+     * SQL 을 실행하기 전에 요청을 거절한 뒤 MemberServiceV4 의 이체 로직을 같은 트랜잭션에서 실행한다.
+     * -> 거절된 요청의 트랜잭션이 커넥션 풀을 사용하는지 비교하기 위한 테스트용 서비스
+     */
+    static class ValidatingTransferService {
+
+        private final MemberServiceV4 memberService;
+
+        ValidatingTransferService(MemberServiceV4 memberService) {
+            this.memberService = memberService;
+        }
+
+        @Transactional
+        public void accountTransfer(String fromId, String toId, int money) {
+            if (money <= 0 || fromId.equals(toId)) {
+                throw new IllegalArgumentException("rejected transfer. fromId = " + fromId + ", toId = " + toId + ", money = " + money);
+            }
+            memberService.accountTransfer(fromId, toId, money);
+        }
+
+    }
+
+}
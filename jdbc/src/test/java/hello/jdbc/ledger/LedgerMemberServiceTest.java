@@ -0,0 +1,167 @@
+package hello.jdbc.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class LedgerMemberServiceTest {
+
+    static final String URL = "jdbc:h2:mem:ledger;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    LedgerMemberService memberService;
+    LedgerRepository ledgerRepository;
+    LedgerCompactor compactor;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        LedgerTables.create(dataSource);
+        memberService = new LedgerMemberService(dataSource);
+        ledgerRepository = new LedgerRepository(dataSource);
+        compactor = new LedgerCompactor(dataSource);
+    }
+
+    @AfterEach
+    void clearAll() {
+        compactor.close();
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from ledger_entry");
+        jdbcTemplate.update("delete from balance_snapshot");
+    }
+
+    @Test
+    @DisplayName("이체는 같은 tx_id 의 출금 / 입금 원장을 추가하고, 예외가 발생하면 아무것도 추가하지 않는다")
+    void ledger_transfer_test() {
+        memberService.deposit("memberA", 10_000);
+        memberService.deposit("memberB", 10_000);
+        memberService.deposit("ex", 10_000);
+
+        String txId = memberService.accountTransfer("memberA", "memberB", 2_000);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberService.getBalance("memberA")).isEqualTo(8_000);
+        assertThat(memberService.getBalance("memberB")).isEqualTo(12_000);
+        assertThat(memberService.getBalance("ex")).isEqualTo(10_000);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from ledger_entry where tx_id = ?", Integer.class, txId))
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("스냅샷에 반영해도 잔액과 원장 이력은 유지되고, 조회할 tail 만 줄어든다")
+    void compaction_test() {
+        memberService.deposit("memberA", 10_000);
+        memberService.deposit("memberB", 10_000);
+        for (int i = 0; i < 10; i++) {
+            memberService.accountTransfer("memberA", "memberB", 100);
+        }
+
+        assertThat(compactor.compactOnce()).isEqualTo(22);
+        memberService.accountTransfer("memberB", "memberA", 500);
+
+        assertThat(memberService.getBalance("memberA")).isEqualTo(9_500);
+        assertThat(memberService.getBalance("memberB")).isEqualTo(10_500);
+        assertThat(ledgerRepository.tailLength("memberA")).isOne();
+        assertThat(ledgerRepository.history("memberA")).hasSize(12);
+        assertThat(compactor.compactOnce()).isEqualTo(2);
+        assertThat(compactor.compactOnce()).isZero();
+    }
+
+    /**
+     * 여러 쓰레드가 같은 두 회원 간에 이체할 때의 처리량을 비교한다.
+     * 1. 잔액을 직접 변경 -> 같은 row 의 lock 을 기다린다.
+     * 2. 원장 추가 -> insert 만 수행하므로 lock 을 기다리지 않는다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("같은 회원에 대한 동시 이체 처리량 비교 - 잔액 변경 vs 원장 추가")
+    void hot_row_contention_benchmark() throws Exception {
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 1000000), ('memberB', 1000000)");
+        memberService.deposit("memberA", 1_000_000);
+        memberService.deposit("memberB", 1_000_000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        int threads = 8;
+        int perThread = 500;
+
+        long inPlace = transfersPerSecond(threads, perThread, () -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("update member set money = money - 1 where member_id = 'memberA'");
+            jdbcTemplate.update("update member set money = money + 1 where member_id = 'memberB'");
+        }));
+        long ledger = transfersPerSecond(threads, perThread, () -> memberService.accountTransfer("memberA", "memberB", 1));
+
+        log.info("transfers/s -> update in place = {}, ledger append = {}", inPlace, ledger);
+        assertThat(memberService.getBalance("memberA") + memberService.getBalance("memberB")).isEqualTo(2_000_000);
+        assertThat(memberService.getBalance("memberB")).isEqualTo(1_000_000 + threads * perThread);
+    }
+
+    /**
+     * 원장이 쌓인 상태에서 스냅샷 반영 전후의 잔액 조회 시간을 비교한다.
+     */
+    @Test
+    @DisplayName("잔액 조회 시간 비교 - 스냅샷 반영 전 vs 후")
+    void balance_read_benchmark() {
+        memberService.deposit("memberA", 1_000_000);
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            entries.add(new LedgerEntry("memberA", -1));
+        }
+        ledgerRepository.append("bulk", entries);
+
+        long before = averageReadMicros(200);
+        compactor.compactOnce();
+        long after = averageReadMicros(200);
+
+        log.info("balance read -> tail 50000 = {} us, after compaction = {} us", before, after);
+        assertThat(memberService.getBalance("memberA")).isEqualTo(950_000);
+    }
+
+    private long averageReadMicros(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            memberService.getBalance("memberA");
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / count;
+    }
+
+    private long transfersPerSecond(int threads, int perThread, Runnable transfer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    transfer.run();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return threads * perThread * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+}
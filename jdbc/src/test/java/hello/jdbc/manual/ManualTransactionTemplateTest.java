@@ -0,0 +1,181 @@
+package hello.jdbc.manual;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.RecordingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.service.MemberServiceV2;
+import hello.jdbc.service.MemberServiceV2_1;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ManualTransactionTemplateTest {
+
+    static final String URL = "jdbc:h2:mem:manual;DB_CLOSE_DELAY=-1";
+
+    RecordingDataSource counter;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        counter = new RecordingDataSource(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000), " +
+                "('memberB', 10000), ('ex', 10000)");
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("autoCommit=false 풀에서는 autoCommit 을 바꾸지 않고 이체, 롤백이 동작한다")
+    void no_auto_commit_toggle_test() throws SQLException {
+        try (HikariDataSource pool = pool(counter, false)) {
+            MemberServiceV2_1 memberService = new MemberServiceV2_1(pool, new MemberRepositoryV2(pool));
+            counter.reset();
+
+            memberService.accountTransfer("memberA", "memberB", 2_000);
+            assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2_000))
+                    .isInstanceOf(IllegalStateException.class);
+
+            assertThat(counter.count("setAutoCommit")).isZero();
+            assertThat(counter.count("commit")).isEqualTo(1);
+            assertThat(money("memberA")).isEqualTo(8_000);
+            assertThat(money("memberB")).isEqualTo(12_000);
+            assertThat(money("ex")).isEqualTo(10_000);
+        }
+    }
+
+    @Test
+    @DisplayName("예외로 끝난 트랜잭션의 변경은 다음에 같은 커넥션을 가져간 사용자에게 남지 않는다")
+    void pool_hygiene_test() throws SQLException {
+        try (HikariDataSource pool = pool(counter, false)) {
+            ManualTransactionTemplate transactionTemplate = new ManualTransactionTemplate(pool);
+            MemberRepositoryV2 memberRepository = new MemberRepositoryV2(pool);
+
+            assertThatThrownBy(() -> transactionTemplate.execute(conn -> {
+                memberRepository.updateById(conn, "memberA", 0);
+                throw new IllegalStateException("트랜잭션 중 예외 발생");
+            })).isInstanceOf(IllegalStateException.class);
+
+            // 풀 크기가 1 이므로 같은 커넥션을 다시 가져온다
+            Integer money = transactionTemplate.execute(conn -> {
+                assertThat(conn.getAutoCommit()).isFalse();
+                return memberRepository.findById(conn, "memberA").getMoney();
+            });
+            assertThat(money).isEqualTo(10_000);
+        }
+    }
+
+    @Test
+    @DisplayName("autoCommit=true 풀에서는 autoCommit 을 바꾸고 반환 전에 되돌린다")
+    void restore_auto_commit_test() throws SQLException {
+        try (HikariDataSource pool = pool(counter, true)) {
+            ManualTransactionTemplate transactionTemplate = new ManualTransactionTemplate(pool);
+            transactionTemplate.execute(conn -> new MemberRepositoryV2(pool).updateById(conn, "memberA", 5_000));
+
+            try (Connection conn = pool.getConnection()) {
+                assertThat(conn.getAutoCommit()).isTrue();
+            }
+            assertThat(money("memberA")).isEqualTo(5_000);
+        }
+    }
+
+    /**
+     * TCP 서버 모드에서 이체 처리량과 이체당 드라이버 호출 수를 비교한다.
+     * 1. MemberServiceV2 -> autoCommit=true 풀, 트랜잭션마다 autoCommit 변경 및 복구
+     * 2. MemberServiceV2_1 + autoCommit=true 풀
+     * 3. MemberServiceV2_1 + autoCommit=false 풀
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("이체 처리량 비교 - autoCommit 변경 vs autoCommit=false 풀")
+    void auto_commit_round_trip_benchmark() throws SQLException {
+        Server server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        RecordingDataSource tcpCounter = new RecordingDataSource(new DriverManagerDataSource(
+                "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:manual_bench", "sa", ""));
+        // MemberServiceV2 는 조회에 별도의 커넥션을 사용하므로 풀 크기가 2 이상이어야 한다
+        try (HikariDataSource autoCommitPool = pool(tcpCounter, true, 2);
+             HikariDataSource manualCommitPool = pool(tcpCounter, false, 2)) {
+            JdbcTemplate template = new JdbcTemplate(autoCommitPool);
+            template.execute("create table member (member_id varchar(10) primary key, money integer not null default 0)");
+            template.update("insert into member(member_id, money) values ('memberA', 100000000), ('memberB', 0)");
+
+            int count = 2_000;
+            benchmark("V2   + autoCommit=true ", tcpCounter, count,
+                    new MemberServiceV2(autoCommitPool, new MemberRepositoryV2(autoCommitPool))::accountTransfer);
+            benchmark("V2_1 + autoCommit=true ", tcpCounter, count,
+                    new MemberServiceV2_1(autoCommitPool, new MemberRepositoryV2(autoCommitPool))::accountTransfer);
+            benchmark("V2_1 + autoCommit=false", tcpCounter, count,
+                    new MemberServiceV2_1(manualCommitPool, new MemberRepositoryV2(manualCommitPool))::accountTransfer);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void benchmark(String name, RecordingDataSource tcpCounter, int count, Transfer transfer)
+            throws SQLException {
+        for (int i = 0; i < 200; i++) {
+            transfer.accountTransfer("memberA", "memberB", 1);
+        }
+        tcpCounter.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            transfer.accountTransfer("memberA", "memberB", 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("{} -> {} ops/s, per transfer setAutoCommit = {}, commit = {}, rollback = {}", name,
+                count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1),
+                (double) tcpCounter.count("setAutoCommit") / count,
+                (double) tcpCounter.count("commit") / count,
+                (double) tcpCounter.count("rollback") / count);
+    }
+
+    @FunctionalInterface
+    interface Transfer {
+        void accountTransfer(String fromId, String toId, int money) throws SQLException;
+    }
+
+    private int money(String memberId) {
+        return jdbcTemplate.queryForObject("select money from member where member_id = ?", Integer.class, memberId);
+    }
+
+    private static HikariDataSource pool(RecordingDataSource dataSource, boolean autoCommit)
+            throws SQLException {
+        return pool(dataSource, autoCommit, 1);
+    }
+
+    /**
+     * 풀이 커넥션을 만들 때 실행하는 초기 설정은 집계에서 제외하도록 미리 커넥션을 만들어 둔다.
+     */
+    private static HikariDataSource pool(RecordingDataSource dataSource, boolean autoCommit, int size)
+            throws SQLException {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setDataSource(dataSource);
+        pool.setAutoCommit(autoCommit);
+        pool.setMaximumPoolSize(size);
+        pool.setMinimumIdle(size);
+        pool.getConnection().close();
+        return pool;
+    }
+
+}
@@ -0,0 +1,435 @@
+package hello.jdbc.outbox;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.saga.ClaimMode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberEventRelayTest {
+
+    static final String URL = "jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    Path tempDir;
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    OutboxMemberRepository memberRepository;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        MemberEventTables.create(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        memberRepository = new OutboxMemberRepository(dataSource);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from member_event");
+    }
+
+    @Test
+    @DisplayName("커밋된 변경만 이벤트로 기록되고, 롤백된 변경의 이벤트는 기록되지 않는다")
+    void transactional_outbox_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.updateById("memberA", 8_000);
+            memberRepository.updateById("memberA", 6_000);
+        });
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.updateById("memberA", 0);
+            throw new IllegalStateException("이체 중 예외 발생");
+        })).isInstanceOf(IllegalStateException.class);
+
+        QueueEventSink sink = new QueueEventSink(new LinkedBlockingQueue<>());
+        try (MemberEventRelay relay = new MemberEventRelay(dataSource, sink, 100)) {
+            assertThat(relay.relayOnce()).isEqualTo(3);
+        }
+
+        List<MemberEvent> events = new ArrayList<>(sink.getQueue());
+        assertThat(events).extracting(MemberEvent::getType)
+                .containsExactly(MemberEvent.Type.SAVED, MemberEvent.Type.UPDATED, MemberEvent.Type.UPDATED);
+        assertThat(events).extracting(MemberEvent::getMoney).containsExactly(10_000, 8_000, 6_000);
+        assertThat(countEvents()).isZero();
+    }
+
+    @Test
+    @DisplayName("REQUIRES_NEW 트랜잭션의 이벤트는 바깥 트랜잭션이 아닌 자신의 트랜잭션과 함께 커밋된다")
+    void requires_new_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 10_000));
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.updateById("memberA", 8_000);
+            requiresNew.executeWithoutResult(innerStatus -> memberRepository.updateById("memberB", 1_000));
+            assertThat(jdbcTemplate.queryForList("select member_id from member_event where event_type = 'UPDATED'",
+                    String.class)).containsExactly("memberB");
+            status.setRollbackOnly();
+        });
+
+        assertThat(jdbcTemplate.queryForList("select member_id from member_event where event_type = 'UPDATED'",
+                String.class)).containsExactly("memberB");
+        assertThat(jdbcTemplate.queryForObject("select money from member where member_id = 'memberB'", Integer.class))
+                .isEqualTo(1_000);
+    }
+
+    /**
+     * 파일에 batch 를 기록한 뒤 outbox 에서 삭제하기 전에 relay 가 종료된 상황을 재현한다.
+     */
+    @Test
+    @DisplayName("재시작 시 이미 발행한 batch 는 다시 발행하지 않는다")
+    void dedupe_on_restart_test() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            memberRepository.save(new Member("m" + i, i));
+        }
+        Path path = tempDir.resolve("events.log");
+        List<MemberEvent> firstBatch = jdbcTemplate.query(
+                "select seq, event_type, member_id, money from member_event order by seq limit 4",
+                (rs, rowNum) -> new MemberEvent(rs.getLong("seq"), MemberEvent.Type.valueOf(rs.getString("event_type")),
+                        rs.getString("member_id"), rs.getInt("money")));
+        try (FileEventSink crashed = FileEventSink.open(path)) {
+            crashed.publish(firstBatch);
+        }
+
+        try (FileEventSink sink = FileEventSink.open(path);
+             MemberEventRelay relay = new MemberEventRelay(dataSource, sink, 100)) {
+            relay.relayOnce();
+            assertThat(relay.getSkipped()).isEqualTo(4);
+            assertThat(relay.getPublished()).isEqualTo(6);
+        }
+
+        List<MemberEvent> events = FileEventSink.readAll(path);
+        assertThat(events).hasSize(10);
+        assertThat(events).extracting(MemberEvent::getSeq).doesNotHaveDuplicates().isSorted();
+    }
+
+    /**
+     * sink 에 발행한 뒤 outbox 에서 삭제하다 실패한 상황을 재현한다.
+     * -> 발행한 이벤트를 참조하는 row 를 만들어 member_event 의 삭제가 제약 조건 위반으로 실패하게 한다.
+     */
+    @Test
+    @DisplayName("발행 이후 삭제가 실패하면 같은 relay 는 다음 주기에 다시 발행하지 않고 삭제만 한다")
+    void dedupe_after_failed_delete_test() {
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("m" + i, i));
+        }
+        jdbcTemplate.execute("create table member_event_ref (seq bigint references member_event(seq))");
+        try {
+            QueueEventSink queueSink = new QueueEventSink(new LinkedBlockingQueue<>());
+            EventSink sink = new EventSink() {
+                @Override
+                public void publish(List<MemberEvent> events) throws IOException {
+                    queueSink.publish(events);
+                    for (MemberEvent event : events) {
+                        jdbcTemplate.update("insert into member_event_ref(seq) values (?)", event.getSeq());
+                    }
+                }
+
+                @Override
+                public Set<Long> lastPublishedSeqs() {
+                    return queueSink.lastPublishedSeqs();
+                }
+            };
+
+            try (MemberEventRelay relay = new MemberEventRelay(dataSource, sink, 100)) {
+                assertThatThrownBy(relay::relayOnce).isInstanceOf(DataIntegrityViolationException.class);
+                assertThat(countEvents()).isEqualTo(5);
+
+                jdbcTemplate.update("delete from member_event_ref");
+                assertThat(relay.relayOnce()).isEqualTo(5);
+                assertThat(relay.getPublished()).isEqualTo(5);
+                assertThat(relay.getSkipped()).isEqualTo(5);
+            }
+            assertThat(queueSink.getQueue()).extracting(MemberEvent::getSeq).hasSize(5).doesNotHaveDuplicates();
+            assertThat(countEvents()).isZero();
+        } finally {
+            jdbcTemplate.execute("drop table member_event_ref");
+        }
+    }
+
+    @Test
+    @DisplayName("여러 relay 가 동시에 발행해도 같은 이벤트를 중복으로 발행하지 않는다 - SKIP_LOCKED / OPTIMISTIC")
+    void concurrent_relay_test() throws Exception {
+        for (ClaimMode mode : ClaimMode.values()) {
+            int events = 2_000;
+            List<Object[]> rows = new ArrayList<>(events);
+            for (int i = 0; i < events; i++) {
+                rows.add(new Object[]{"UPDATED", "m" + (i % 100), i});
+            }
+            jdbcTemplate.batchUpdate("insert into member_event(event_type, member_id, money) values (?, ?, ?)", rows);
+
+            BlockingQueue<MemberEvent> queue = new LinkedBlockingQueue<>();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                futures.add(executor.submit(() -> {
+                    try (MemberEventRelay relay = new MemberEventRelay(dataSource, new QueueEventSink(queue), 20,
+                            MemberEventRelay.DEFAULT_LEASE, mode)) {
+                        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+                        // OPTIMISTIC 은 다른 relay 가 후보를 먼저 선점하면 0 을 반환할 수 있으므로 outbox 가 빌 때까지 반복한다
+                        while (countEvents() > 0 && System.nanoTime() < deadline) {
+                            relay.relayOnce();
+                        }
+                        return relay.getPublished();
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            executor.shutdown();
+
+            log.info("claim mode = {}, published = {}", mode, total);
+            assertThat(countEvents()).isZero();
+            assertThat(total).isEqualTo(events);
+            assertThat(queue).extracting(MemberEvent::getSeq).hasSize(events).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    @DisplayName("기록 도중 종료되어 완료 표시가 없는 batch 는 파일을 열 때 잘라낸다")
+    void truncate_incomplete_batch_test() throws Exception {
+        Path path = tempDir.resolve("events.log");
+        try (FileEventSink sink = FileEventSink.open(path)) {
+            sink.publish(List.of(new MemberEvent(1, MemberEvent.Type.SAVED, "memberA", 1_000)));
+        }
+        Files.writeString(path, "E 2 UPDATED memberA 2000\n", StandardOpenOption.APPEND);
+
+        try (FileEventSink sink = FileEventSink.open(path)) {
+            assertThat(sink.lastPublishedSeqs()).containsExactly(1L);
+        }
+        assertThat(FileEventSink.readAll(path)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("기록 도중 예외가 발생하면 기록한 일부를 잘라내므로 다시 발행한 batch 가 온전히 기록된다")
+    void truncate_failed_write_test() throws Exception {
+        Path path = tempDir.resolve("events.log");
+        List<MemberEvent> batch = List.of(
+                new MemberEvent(1, MemberEvent.Type.SAVED, "memberA", 1_000),
+                new MemberEvent(2, MemberEvent.Type.SAVED, "memberB", 2_000));
+        try (FailingWriteChannel channel = new FailingWriteChannel(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+             FileEventSink sink = new FileEventSink(channel)) {
+            assertThatThrownBy(() -> sink.publish(batch)).isInstanceOf(IOException.class);
+            assertThat(Files.size(path)).isZero();
+
+            sink.publish(batch);
+        }
+
+        assertThat(FileEventSink.readAll(path)).extracting(MemberEvent::getSeq).containsExactly(1L, 2L);
+        try (FileEventSink sink = FileEventSink.open(path)) {
+            assertThat(sink.lastPublishedSeqs()).containsExactlyInAnyOrder(1L, 2L);
+        }
+    }
+
+    /**
+     * 처음 write 는 절반만 기록하고, 이어지는 write 에서 한 번 예외를 던지는 FileChannel
+     */
+    static class FailingWriteChannel extends FileChannel {
+
+        private final FileChannel target;
+        private int writes;
+
+        FailingWriteChannel(FileChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            writes++;
+            if (writes == 1) {
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                int written = target.write(half);
+                src.position(src.position() + written);
+                return written;
+            }
+            if (writes == 2) {
+                throw new IOException("disk full");
+            }
+            return target.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return target.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return target.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return target.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return target.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            target.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return target.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            target.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            target.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return this.target.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return target.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return target.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return target.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return target.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return target.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return target.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            target.close();
+        }
+    }
+
+    /**
+     * relay 가 outbox 의 이벤트를 발행하는 처리량과, outbox 기록이 변경 처리량에 주는 영향을 측정한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("relay 처리량과 변경 처리량 비교 - outbox on vs off")
+    void relay_throughput_benchmark() throws Exception {
+        int events = 200_000;
+        List<Object[]> rows = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            rows.add(new Object[]{"UPDATED", "m" + (i % 1_000), i});
+        }
+        jdbcTemplate.batchUpdate("insert into member_event(event_type, member_id, money) values (?, ?, ?)", rows);
+
+        long start = System.nanoTime();
+        try (FileEventSink sink = FileEventSink.open(tempDir.resolve("bench.log"));
+             MemberEventRelay relay = new MemberEventRelay(dataSource, sink, 2_000)) {
+            while (relay.relayOnce() > 0) {
+                // 모두 발행할 때까지 반복
+            }
+            assertThat(relay.getPublished()).isEqualTo(events);
+        }
+        long relayPerSecond = events * TimeUnit.SECONDS.toNanos(1) / Math.max(System.nanoTime() - start, 1);
+
+        MemberRepository plain = new MemberRepositoryV5(dataSource);
+        plain.save(new Member("memberA", 1_000_000));
+        plain.save(new Member("memberB", 1_000_000));
+        long withoutOutbox = transfersPerSecond(plain, 2_000);
+        long withOutbox = transfersPerSecond(memberRepository, 2_000);
+
+        log.info("relay = {} events/s", relayPerSecond);
+        log.info("transfer path -> outbox off = {} tx/s, outbox on = {} tx/s", withoutOutbox, withOutbox);
+        assertThat(countEvents()).isEqualTo(2_000 * 2);
+    }
+
+    private long transfersPerSecond(MemberRepository repository, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Member fromMember = repository.findById("memberA");
+                Member toMember = repository.findById("memberB");
+                repository.updateById("memberA", fromMember.getMoney() - 1);
+                repository.updateById("memberB", toMember.getMoney() + 1);
+            });
+        }
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(System.nanoTime() - start, 1);
+    }
+
+    private int countEvents() {
+        return jdbcTemplate.queryForObject("select count(*) from member_event", Integer.class);
+    }
+
+}
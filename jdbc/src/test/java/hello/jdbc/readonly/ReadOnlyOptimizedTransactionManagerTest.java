@@ -0,0 +1,231 @@
+package hello.jdbc.readonly;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.RecordingDataSource;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.MatchAlwaysTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 스프링 컨텍스트 없이 @Transactional 을 적용하기 위해 TransactionInterceptor 로 직접 AOP 프록시를 만든다.
+ */
+@Slf4j
+class ReadOnlyOptimizedTransactionManagerTest {
+
+    static final String URL = "jdbc:h2:mem:readonly;DB_CLOSE_DELAY=-1";
+
+    RecordingDataSource recorder;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        recorder = new RecordingDataSource(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000)");
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("readOnly 잔액 조회는 setReadOnly 만 전달하고 autoCommit 변경과 commit 을 생략한다")
+    void read_only_balance_test() {
+        MemberServiceV4 memberService = memberService(recorder, new ReadOnlyOptimizedTransactionManager(recorder),
+                new AnnotationTransactionAttributeSource());
+
+        assertThat(memberService.getBalance("memberA")).isEqualTo(10_000);
+
+        log.info("calls = {}", recorder.getCalls());
+        assertThat(recorder.getCalls())
+                .contains("setReadOnly(true)", "prepareStatement", "setReadOnly(false)", "close")
+                .doesNotContain("setAutoCommit(false)", "commit");
+    }
+
+    @Test
+    @DisplayName("DataSourceTransactionManager 의 readOnly 트랜잭션은 autoCommit 변경과 commit 을 실행한다")
+    void default_read_only_transaction_test() {
+        MemberServiceV4 memberService = memberService(recorder, new DataSourceTransactionManager(recorder),
+                new AnnotationTransactionAttributeSource());
+
+        assertThat(memberService.getBalance("memberA")).isEqualTo(10_000);
+
+        log.info("calls = {}", recorder.getCalls());
+        assertThat(recorder.getCalls()).contains("setReadOnly(true)", "setAutoCommit(false)", "commit");
+    }
+
+    @Test
+    @DisplayName("readOnly 구간 안에서는 같은 커넥션을 사용하며, 안쪽 트랜잭션은 바깥 구간에 참여한다")
+    void participate_test() {
+        ReadOnlyOptimizedTransactionManager transactionManager = new ReadOnlyOptimizedTransactionManager(recorder);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        MemberRepositoryV4_1 memberRepository = new MemberRepositoryV4_1(recorder);
+
+        readOnly.executeWithoutResult(outer -> {
+            assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isTrue();
+            memberRepository.findById("memberA");
+            readOnly.executeWithoutResult(inner -> {
+                assertThat(inner.isNewTransaction()).isFalse();
+                memberRepository.findById("memberA");
+            });
+            assertThat(TransactionSynchronizationManager.hasResource(recorder)).isTrue();
+        });
+
+        assertThat(TransactionSynchronizationManager.hasResource(recorder)).isFalse();
+        assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isFalse();
+        // Repository 생성 시 error code 를 조회하지 않으므로 커넥션은 readOnly 구간의 하나뿐이다
+        assertThat(recorder.getCalls().stream().filter("close"::equals).count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("readOnly 구간 안의 REQUIRES_NEW, NOT_SUPPORTED 는 구간을 잠시 풀고 위임한 뒤 다시 묶는다")
+    void suspend_test() {
+        ReadOnlyOptimizedTransactionManager transactionManager = new ReadOnlyOptimizedTransactionManager(recorder);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        TransactionTemplate notSupported = new TransactionTemplate(transactionManager);
+        notSupported.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        MemberRepositoryV4_1 memberRepository = new MemberRepositoryV4_1(recorder);
+
+        readOnly.executeWithoutResult(outer -> {
+            Object holder = TransactionSynchronizationManager.getResource(recorder);
+            requiresNew.executeWithoutResult(inner -> {
+                assertThat(inner.isNewTransaction()).isTrue();
+                assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isFalse();
+                memberRepository.updateById("memberA", 20_000);
+            });
+            notSupported.executeWithoutResult(inner ->
+                    assertThat(TransactionSynchronizationManager.hasResource(recorder)).isFalse());
+
+            assertThat(TransactionSynchronizationManager.getResource(recorder)).isSameAs(holder);
+            assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isTrue();
+        });
+
+        assertThat(TransactionSynchronizationManager.hasResource(recorder)).isFalse();
+        assertThat(recorder.getCalls()).contains("setAutoCommit(false)", "commit");
+        assertThat(jdbcTemplate.queryForObject("select money from member where member_id = 'memberA'", Integer.class))
+                .isEqualTo(20_000);
+    }
+
+    @Test
+    @DisplayName("readOnly 구간 안에서 readOnly 가 아닌 트랜잭션에 참여하려 하면 예외가 발생한다")
+    void read_write_participation_test() {
+        ReadOnlyOptimizedTransactionManager transactionManager = new ReadOnlyOptimizedTransactionManager(recorder);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate mandatory = new TransactionTemplate(transactionManager);
+        mandatory.setReadOnly(true);
+        mandatory.setPropagationBehavior(TransactionDefinition.PROPAGATION_MANDATORY);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        readOnly.executeWithoutResult(outer -> {
+            mandatory.executeWithoutResult(inner -> assertThat(inner.isNewTransaction()).isFalse());
+            assertThatThrownBy(() -> readWrite.executeWithoutResult(inner -> { }))
+                    .isInstanceOf(IllegalTransactionStateException.class);
+            assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isTrue();
+        });
+
+        assertThat(TransactionSynchronizationManager.hasResource(recorder)).isFalse();
+    }
+
+    @Test
+    @DisplayName("격리 수준을 높이거나 readOnly 가 아니면 DataSourceTransactionManager 에 위임한다")
+    void delegate_test() {
+        TransactionTemplate repeatableRead = new TransactionTemplate(new ReadOnlyOptimizedTransactionManager(recorder));
+        repeatableRead.setReadOnly(true);
+        repeatableRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        repeatableRead.executeWithoutResult(status -> new JdbcTemplate(recorder).queryForList("select * from member"));
+
+        assertThat(recorder.getCalls()).contains("setAutoCommit(false)", "commit");
+    }
+
+    /**
+     * TCP 서버 모드에서 잔액 조회 처리량을 비교한다.
+     * -> autoCommit 변경, commit 이 각각 DB 왕복이므로 TCP 모드에서 차이가 드러난다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("잔액 조회 처리량 비교 - 트랜잭션 없음 vs read-write vs readOnly vs readOnly 최적화")
+    void balance_inquiry_benchmark() throws SQLException {
+        Server server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:readonly_bench");
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setMaximumPoolSize(1);
+        try {
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("create table member (member_id varchar(10) primary key, money integer not null default 0)");
+            template.update("insert into member(member_id, money) values ('memberA', 10000)");
+
+            Map<String, MemberServiceV4> services = new LinkedHashMap<>();
+            services.put("no transaction", new MemberServiceV4(new MemberRepositoryV4_1(pool)));
+            services.put("read-write", memberService(pool, new DataSourceTransactionManager(pool),
+                    new MatchAlwaysTransactionAttributeSource()));
+            services.put("readOnly", memberService(pool, new DataSourceTransactionManager(pool),
+                    new AnnotationTransactionAttributeSource()));
+            services.put("readOnly optimized", memberService(pool, new ReadOnlyOptimizedTransactionManager(pool),
+                    new AnnotationTransactionAttributeSource()));
+
+            services.values().forEach(memberService -> opsPerSecond(memberService, 1_000));
+            services.forEach((name, memberService) ->
+                    log.info("{} -> {} ops/s", String.format("%-18s", name), opsPerSecond(memberService, 5_000)));
+        } finally {
+            pool.close();
+            server.stop();
+        }
+    }
+
+    private long opsPerSecond(MemberServiceV4 memberService, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            memberService.getBalance("memberA");
+        }
+        long elapsed = System.nanoTime() - start;
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+    private static MemberServiceV4 memberService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                                 TransactionAttributeSource attributeSource) {
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(new MemberRepositoryV4_1(dataSource)));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, attributeSource));
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+}
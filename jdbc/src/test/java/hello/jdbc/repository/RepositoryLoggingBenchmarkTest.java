@@ -0,0 +1,133 @@
+package hello.jdbc.repository;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.joran.spi.JoranException;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Repository 호출마다 남기는 INFO 로그가 처리량에 주는 영향을 비교한다.
+ * 1. logback.xml (콘솔에 동기 출력)
+ * 2. logback-prod.xml (prod 프로필의 AsyncAppender)
+ * 3. 로그 off
+ * -> 측정 후에는 logback.xml 설정으로 되돌린다.
+ * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+ */
+@Slf4j
+class RepositoryLoggingBenchmarkTest {
+
+    static final String URL = "jdbc:h2:mem:logging;DB_CLOSE_DELAY=-1";
+
+    MemberRepository memberRepository;
+    JdbcTemplate jdbcTemplate;
+    Logger repositoryLogger = (Logger) LoggerFactory.getLogger(MemberRepositoryV4_1.class);
+    Level originalLevel;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        memberRepository = new MemberRepositoryV4_1(dataSource);
+        originalLevel = repositoryLogger.getLevel();
+    }
+
+    @AfterEach
+    void clearAll() throws JoranException {
+        configure("/logback.xml");
+        repositoryLogger.setLevel(originalLevel);
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("Repository 처리량 비교 - 동기 콘솔 로그 vs prod 비동기 로그 vs 로그 off")
+    void logging_benchmark() throws JoranException {
+        int count = 1_000;
+
+        AtomicLong syncEvents = configure("/logback.xml");
+        repositoryLogger.setLevel(Level.INFO);
+        opsPerSecond(count / 10); // 워밍업
+        syncEvents.set(0);
+        long sync = opsPerSecond(count);
+
+        AtomicLong asyncEvents = configure("/logback-prod.xml");
+        repositoryLogger.setLevel(Level.INFO);
+        Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        assertThat(root.getAppender("ASYNC")).isInstanceOf(AsyncAppender.class);
+        long async = opsPerSecond(count);
+
+        AtomicLong offEvents = configure("/logback-prod.xml");
+        repositoryLogger.setLevel(Level.WARN);
+        long off = opsPerSecond(count);
+
+        log.info("repository ops/s -> sync = {}, async(prod) = {}, off = {}", sync, async, off);
+        log.info("repository log events -> sync = {}, async(prod) = {}, off = {}",
+                syncEvents.get(), asyncEvents.get(), offEvents.get());
+        // 같은 작업이면 출력 방식과 관계없이 같은 수의 이벤트를 남긴다. (AsyncAppender 가 버리는 것은 출력 단계)
+        assertThat(syncEvents.get()).isPositive().isEqualTo(asyncEvents.get());
+        assertThat(offEvents.get()).isZero();
+    }
+
+    /**
+     * logback 설정을 다시 읽고, Repository 로거가 남긴 이벤트 수를 세는 appender 를 추가한다.
+     * @param resource
+     * @return Repository 로거의 이벤트 수
+     */
+    private AtomicLong configure(String resource) throws JoranException {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(getClass().getResource(resource));
+
+        AtomicLong events = new AtomicLong();
+        AppenderBase<ILoggingEvent> counter = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                events.incrementAndGet();
+            }
+        };
+        counter.setContext(context);
+        counter.start();
+        repositoryLogger.addAppender(counter);
+        return events;
+    }
+
+    /**
+     * save -> findById -> updateById -> deleteById 를 한 묶음으로 반복 수행한다.
+     * @param count
+     * @return
+     */
+    private long opsPerSecond(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String memberId = "m" + i;
+            memberRepository.save(new Member(memberId, 10_000));
+            Member findMember = memberRepository.findById(memberId);
+            memberRepository.updateById(memberId, findMember.getMoney() + 1_000);
+            memberRepository.deleteById(memberId);
+        }
+        long elapsed = System.nanoTime() - start;
+        return count * 4L * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+}
@@ -0,0 +1,252 @@
+package hello.jdbc.repository.jpa;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.trace.StatementInterceptingDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.JDBCException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 스프링 컨텍스트 없이 EntityManagerFactory 를 직접 만든다.
+ */
+@Slf4j
+class JpaMemberRepositoryTest {
+
+    static final String URL = "jdbc:h2:mem:jpa;DB_CLOSE_DELAY=-1";
+
+    static HikariDataSource pool;
+    static DataSource dataSource;
+    static List<String> executedSqls = new CopyOnWriteArrayList<>();
+    static EntityManagerFactory emf;
+    static JpaTransactionManager transactionManager;
+
+    JpaMemberRepository memberRepository;
+    TransactionTemplate transactionTemplate;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void createEntityManagerFactory() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl(URL);
+        pool.setUsername("sa");
+        pool.setPassword("");
+        new JdbcTemplate(pool).execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+
+        Map<String, Object> properties = MemberJpaSettings.hibernateProperties();
+        properties.put("hibernate.generate_statistics", true);
+
+        dataSource = new StatementInterceptingDataSource(pool, (sql, elapsedNanos, failed) -> executedSqls.add(sql));
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("hello.jdbc.domain");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        factory.afterPropertiesSet();
+        emf = factory.getObject();
+        transactionManager = new JpaTransactionManager(emf);
+    }
+
+    @AfterAll
+    static void close() {
+        emf.close();
+        pool.close();
+    }
+
+    @BeforeEach
+    void init() {
+        memberRepository = new JpaMemberRepository(emf, transactionManager);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate = new JdbcTemplate(pool);
+    }
+
+    @AfterEach
+    void clearAll() {
+        memberRepository.clearAll();
+        executedSqls.clear();
+        statistics().clear();
+    }
+
+    @Test
+    @DisplayName("JDBC Repository 와 같은 MemberRepository 계약을 지킨다")
+    void crud_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 20_000));
+
+        assertThat(memberRepository.insertIfAbsent(new Member("memberA", 0))).isZero();
+        assertThat(memberRepository.insertIfAbsent(new Member("memberC", 30_000))).isEqualTo(1);
+        assertThat(memberRepository.updateById("memberA", 5_000)).isEqualTo(1);
+        assertThat(memberRepository.updateById("none", 5_000)).isZero();
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(5_000);
+        assertThat(memberRepository.deleteById("memberB")).isEqualTo(1);
+        assertThat(memberRepository.findAll()).extracting(Member::getMemberId)
+                .containsExactlyInAnyOrder("memberA", "memberC");
+        assertThatThrownBy(() -> memberRepository.findById("memberB"))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+
+        assertThat(memberRepository.clearAll()).isEqualTo(2);
+        assertThat(memberRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("insertIfAbsent 는 키 중복만 0 으로 반환하고, 다른 제약 조건 위반은 예외로 던진다")
+    void insert_if_absent_constraint_test() {
+        assertThatThrownBy(() -> memberRepository.insertIfAbsent(new Member(null, 0)))
+                .isInstanceOf(JDBCException.class);
+        assertThat(memberRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("같은 EntityManagerFactory 의 JpaTransactionManager 가 아니면 생성할 수 없다")
+    void transaction_manager_test() {
+        assertThatThrownBy(() -> new JpaMemberRepository(emf, new DataSourceTransactionManager(dataSource)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("한 트랜잭션의 insert 는 batch_size 개씩 묶어서 실행한다")
+    void jdbc_batch_test() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 120; i++) {
+                memberRepository.save(new Member("m" + i, 1_000));
+            }
+        });
+
+        long insertExecutions = executedSqls.stream().filter(sql -> sql.startsWith("insert into member")).count();
+        assertThat(insertExecutions).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from member", Integer.class)).isEqualTo(120);
+    }
+
+    @Test
+    @DisplayName("findById 는 2차 캐시에 있으면 조회 SQL 을 실행하지 않는다")
+    void second_level_cache_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        executedSqls.clear();
+
+        memberRepository.findById("memberA");
+        memberRepository.findById("memberA");
+        memberRepository.updateById("memberA", 9_000);
+
+        assertThat(executedSqls).noneMatch(sql -> sql.startsWith("select"));
+        assertThat(statistics().getSecondLevelCacheHitCount()).isEqualTo(3);
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(9_000);
+    }
+
+    @Test
+    @DisplayName("@Transactional 서비스의 이체와 롤백이 JDBC Repository 와 같이 동작한다")
+    void account_transfer_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 10_000));
+        memberRepository.save(new Member("ex", 10_000));
+        MemberServiceV4 memberService = memberService(memberRepository);
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(money("memberA")).isEqualTo(8_000);
+        assertThat(money("memberB")).isEqualTo(12_000);
+        assertThat(money("ex")).isEqualTo(10_000);
+    }
+
+    /**
+     * 같은 작업을 MemberRepositoryV5 와 JpaMemberRepository 로 수행해 처리량을 비교한다.
+     * 1. save -> 호출마다 트랜잭션 (ORM 비용이 그대로 드러난다)
+     * 2. save batch -> 한 트랜잭션에서 저장 (JDBC batch)
+     * 3. findById -> 같은 member 들을 반복 조회 (2차 캐시)
+     * 4. updateById -> 호출마다 트랜잭션
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("MemberRepositoryV5 vs JpaMemberRepository 처리량 비교")
+    void jdbc_vs_jpa_benchmark() {
+        // SQL 가로채기 비용이 같도록 두 Repository 모두 같은 DataSource 를 사용한다
+        benchmark("jdbc", new MemberRepositoryV5(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        benchmark("jpa ", memberRepository, transactionTemplate);
+    }
+
+    private void benchmark(String name, MemberRepository repository, TransactionTemplate transaction) {
+        int count = 2_000;
+        // 워밍업
+        measure(500, i -> repository.save(new Member("w" + i, i)));
+        measure(500, i -> repository.findById("w" + i));
+        repository.clearAll();
+
+        long save = measure(count, i -> repository.save(new Member("m" + i, i)));
+        long saveBatch = measure(count, i -> {
+            if (i % 100 == 0) {
+                transaction.executeWithoutResult(status -> {
+                    for (int j = i; j < i + 100; j++) {
+                        repository.save(new Member("b" + j, j));
+                    }
+                });
+            }
+        });
+        long findById = measure(count * 5, i -> repository.findById("m" + (i % 100)));
+        long updateById = measure(count, i -> repository.updateById("m" + i, i + 1));
+        repository.clearAll();
+        executedSqls.clear();
+
+        log.info("{} ops/s -> save = {}, save batch = {}, findById = {}, updateById = {}",
+                name, save, saveBatch, findById, updateById);
+    }
+
+    private long measure(int count, IntConsumer operation) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            operation.accept(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+    private MemberServiceV4 memberService(MemberRepository memberRepository) {
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+    private int money(String memberId) {
+        return jdbcTemplate.queryForObject("select money from member where member_id = ?", Integer.class, memberId);
+    }
+
+    private static Statistics statistics() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+}
@@ -0,0 +1,58 @@
+package hello.jdbc.repository.jpa;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * jpa 프로파일을 활성화하면 JpaConfig 가 등록한 JpaTransactionManager 가 애플리케이션의 트랜잭션 매니저가 된다.
+ * -> 외부 h2 서버 없이 실행하도록 embedded 프로파일을 메모리 모드로 함께 사용한다.
+ */
+@SpringBootTest(properties = {
+        "hello.h2.embedded.mode=mem",
+        "hello.h2.embedded.name=jpa_profile"
+})
+@ActiveProfiles({"embedded", "jpa"})
+class JpaProfileTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JpaMemberRepository memberRepository;
+
+    @Test
+    @DisplayName("JpaMemberRepository 와 JDBC 코드가 애플리케이션의 JpaTransactionManager 로 같은 트랜잭션에 참여한다")
+    void jpa_transaction_manager_test() {
+        assertThat(transactionManager).isInstanceOf(JpaTransactionManager.class);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        memberRepository.clearAll();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.insertIfAbsent(new Member("memberA", 10_000));
+            // 커밋 전이므로 같은 트랜잭션의 커넥션으로 조회해야 보인다
+            assertThat(jdbcTemplate.queryForObject("select count(*) from member", Integer.class)).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberRepository.findAll()).isEmpty();
+    }
+
+}
@@ -0,0 +1,143 @@
+package hello.jdbc.repository.metrics;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class InstrumentedMemberRepositoryTest {
+
+    static final String URL = "jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1";
+
+    RepositoryMetrics metrics;
+    InstrumentedMemberRepository memberRepository;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+
+        metrics = new RepositoryMetrics();
+        MemberRepository target = new MemberRepositoryV5(new TimedDataSource(dataSource, metrics));
+        memberRepository = new InstrumentedMemberRepository(target, metrics);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("메서드별 호출 수, 처리한 row 수, 커넥션 획득 시간을 기록한다")
+    void record_latency_and_rows_test() {
+        // 예외 변환기의 error code 조회처럼 Repository 메서드 밖에서 얻는 커넥션은 제외하고 센다
+        long acquiredBefore = metrics.snapshot(RepositoryOperation.CONNECTION_ACQUIRE).getCount();
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 20_000));
+        memberRepository.findById("memberA");
+        memberRepository.updateById("memberA", 5_000);
+        memberRepository.findAll();
+
+        assertThat(metrics.snapshot(RepositoryOperation.SAVE).getCount()).isEqualTo(2);
+        assertThat(metrics.rows(RepositoryOperation.SAVE)).isEqualTo(2);
+        assertThat(metrics.rows(RepositoryOperation.UPDATE_BY_ID)).isEqualTo(1);
+        assertThat(metrics.rows(RepositoryOperation.FIND_ALL)).isEqualTo(2);
+        assertThat(metrics.snapshot(RepositoryOperation.CONNECTION_ACQUIRE).getCount() - acquiredBefore).isEqualTo(5);
+        assertThat(metrics.snapshot(RepositoryOperation.FIND_BY_ID).getP99()).isPositive();
+    }
+
+    @Test
+    @DisplayName("updateAll 은 target 의 batch update 를 한 번의 호출로 기록한다")
+    void record_update_all_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 20_000));
+        long acquiredBefore = metrics.snapshot(RepositoryOperation.CONNECTION_ACQUIRE).getCount();
+
+        int[] updated = memberRepository.updateAll(List.of(
+                new Member("memberA", 1_000), new Member("memberB", 2_000), new Member("memberC", 3_000)));
+
+        assertThat(updated).containsExactly(1, 1, 0);
+        assertThat(metrics.snapshot(RepositoryOperation.UPDATE_ALL).getCount()).isEqualTo(1);
+        assertThat(metrics.rows(RepositoryOperation.UPDATE_ALL)).isEqualTo(2);
+        assertThat(metrics.snapshot(RepositoryOperation.UPDATE_BY_ID).getCount()).isZero();
+        // batch update 이므로 커넥션도 한 번만 얻는다
+        assertThat(metrics.snapshot(RepositoryOperation.CONNECTION_ACQUIRE).getCount() - acquiredBefore).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("변환된 예외 타입별로 발생 횟수를 기록한다")
+    void record_error_by_type_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+
+        assertThatThrownBy(() -> memberRepository.save(new Member("memberA", 10_000)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        assertThat(metrics.getErrorCounts()).containsEntry("SAVE:DuplicateKeyException", 1L);
+    }
+
+    @Test
+    @DisplayName("JMX 를 통해 백분위 수 지표를 조회할 수 있다")
+    void jmx_test() throws Exception {
+        memberRepository.save(new Member("memberA", 10_000));
+        ObjectName objectName = metrics.registerMBean("jmx_test");
+        try {
+            TabularData counts = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(objectName, "Counts");
+            TabularData p99 = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(objectName, "P99Micros");
+            assertThat(counts.size()).isEqualTo(RepositoryOperation.values().length);
+            assertThat(p99.size()).isEqualTo(RepositoryOperation.values().length);
+        } finally {
+            RepositoryMetrics.unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    @DisplayName("히스토그램 백분위 수는 약 3% 이내의 오차로 기록된다")
+    void histogram_percentile_test() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(100_000);
+        assertThat((double) snapshot.getP50()).isBetween(50_000_000 * 0.97, 50_000_000 * 1.04);
+        assertThat((double) snapshot.getP99()).isBetween(99_000_000 * 0.97, 99_000_000 * 1.04);
+        assertThat(snapshot.getMax()).isEqualTo(100_000_000);
+        log.info("snapshot = {}", snapshot);
+    }
+
+    @Test
+    @DisplayName("주기적 reporter 는 지표를 로그로 출력한다")
+    void reporter_test() {
+        memberRepository.save(new Member("memberA", 10_000));
+        try (RepositoryMetricsReporter reporter = new RepositoryMetricsReporter(metrics)) {
+            reporter.report();
+        }
+        Map<String, Long> rows = metrics.getRows();
+        assertThat(rows).containsEntry("SAVE", 1L);
+    }
+
+}
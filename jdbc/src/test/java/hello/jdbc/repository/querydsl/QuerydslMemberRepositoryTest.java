@@ -0,0 +1,176 @@
+package hello.jdbc.repository.querydsl;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class QuerydslMemberRepositoryTest {
+
+    static final String URL = "jdbc:h2:mem:querydsl;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    QuerydslMemberRepository cachedRepository;
+    QuerydslMemberRepository uncachedRepository;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        cachedRepository = new QuerydslMemberRepository(dataSource);
+        uncachedRepository = new QuerydslMemberRepository(new MemberRepositoryV5(dataSource), dataSource, false);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Object[]{"m" + i, (i % 10) * 1_000});
+        }
+        jdbcTemplate.batchUpdate("insert into member(member_id, money) values (?, ?)", rows);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("검색 결과는 캐시 사용 여부와 관계없이 조건으로 직접 거른 결과와 같다")
+    void search_test() {
+        List<MemberSearchCondition> conditions = List.of(
+                new MemberSearchCondition(),
+                new MemberSearchCondition(3_000, null, null, null, null),
+                new MemberSearchCondition(null, 2_000, "m1", MemberSearchOrder.MONEY_DESC, null),
+                new MemberSearchCondition(2_000, 5_000, "m", MemberSearchOrder.MONEY_ASC, 7),
+                new MemberSearchCondition(5_000, 5_000, null, MemberSearchOrder.MEMBER_ID_ASC, 3));
+
+        for (MemberSearchCondition condition : conditions) {
+            List<Member> expected = filter(cachedRepository.findAll(), condition);
+            assertThat(cachedRepository.search(condition)).as("%s", condition).isEqualTo(expected);
+            assertThat(uncachedRepository.search(condition)).as("%s", condition).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("같은 shape 의 검색은 처음 한 번만 SQL 을 만들고, 캐시한 SQL 은 매번 만든 SQL 과 같다")
+    void shape_cache_test() {
+        for (int i = 0; i < 10; i++) {
+            MemberSearchCondition condition = new MemberSearchCondition(i * 100, null, "m" + i, MemberSearchOrder.MONEY_DESC, i + 1);
+
+            SearchQuery cached = cachedRepository.prepare(condition);
+            SearchQuery uncached = uncachedRepository.prepare(condition);
+
+            assertThat(cached.getSql()).isEqualTo(uncached.getSql());
+            assertThat(cached.getArgs()).containsExactly(uncached.getArgs());
+        }
+        cachedRepository.prepare(new MemberSearchCondition(null, 1_000, null, null, null));
+
+        assertThat(cachedRepository.getCachedShapeCount()).isEqualTo(2);
+        assertThat(cachedRepository.getCacheMissCount()).isEqualTo(2);
+        assertThat(cachedRepository.getCacheHitCount()).isEqualTo(9);
+        assertThat(uncachedRepository.getCachedShapeCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("memberIdPrefix 의 like 특수문자는 와일드카드가 아닌 문자로 검색한다")
+    void prefix_escape_test() {
+        jdbcTemplate.update("insert into member(member_id, money) values ('x_1', 0), ('xa1', 0), ('x%1', 0)");
+
+        assertThat(cachedRepository.search(new MemberSearchCondition(null, null, "x_", null, null)))
+                .extracting(Member::getMemberId).containsExactly("x_1");
+        assertThat(cachedRepository.search(new MemberSearchCondition(null, null, "x%", null, null)))
+                .extracting(Member::getMemberId).containsExactly("x%1");
+    }
+
+    @Test
+    @DisplayName("limit 이 0 이하이거나 minMoney 가 maxMoney 보다 크면 예외가 발생한다")
+    void invalid_condition_test() {
+        assertThatThrownBy(() -> cachedRepository.search(new MemberSearchCondition(null, null, null, null, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cachedRepository.search(new MemberSearchCondition(2_000, 1_000, null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 임의의 검색 조건으로 요청마다 SQL 을 만드는 비용(prepare)과 검색 전체(search)의 처리 시간을 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("캐시 사용 여부에 따른 요청당 쿼리 생성 비용 비교")
+    void query_construction_benchmark() {
+        List<MemberSearchCondition> conditions = randomConditions(10_000);
+
+        for (int round = 0; round < 2; round++) {
+            // 첫번째 라운드는 워밍업
+            long uncachedPrepare = nanosPerRequest(conditions, uncachedRepository::prepare);
+            long cachedPrepare = nanosPerRequest(conditions, cachedRepository::prepare);
+            long uncachedSearch = nanosPerRequest(conditions.subList(0, 2_000), uncachedRepository::search);
+            long cachedSearch = nanosPerRequest(conditions.subList(0, 2_000), cachedRepository::search);
+
+            log.info("round={} prepare ns/request -> uncached = {}, cached = {}", round, uncachedPrepare, cachedPrepare);
+            log.info("round={} search  ns/request -> uncached = {}, cached = {}", round, uncachedSearch, cachedSearch);
+        }
+        log.info("cached shapes = {}, hits = {}, misses = {}", cachedRepository.getCachedShapeCount(),
+                cachedRepository.getCacheHitCount(), cachedRepository.getCacheMissCount());
+        assertThat(cachedRepository.getCachedShapeCount()).isLessThanOrEqualTo(24);
+    }
+
+    private long nanosPerRequest(List<MemberSearchCondition> conditions, Function<MemberSearchCondition, ?> request) {
+        long start = System.nanoTime();
+        for (MemberSearchCondition condition : conditions) {
+            request.apply(condition);
+        }
+        return (System.nanoTime() - start) / conditions.size();
+    }
+
+    private List<MemberSearchCondition> randomConditions(int count) {
+        Random random = new Random(42);
+        MemberSearchOrder[] orders = MemberSearchOrder.values();
+        List<MemberSearchCondition> conditions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Integer minMoney = random.nextBoolean() ? random.nextInt(5) * 1_000 : null;
+            Integer maxMoney = random.nextBoolean() ? 5_000 + random.nextInt(5) * 1_000 : null;
+            String prefix = random.nextBoolean() ? "m" + random.nextInt(10) : null;
+            Integer limit = random.nextBoolean() ? 1 + random.nextInt(20) : null;
+            conditions.add(new MemberSearchCondition(minMoney, maxMoney, prefix, orders[random.nextInt(orders.length)], limit));
+        }
+        return conditions;
+    }
+
+    private List<Member> filter(List<Member> members, MemberSearchCondition condition) {
+        Comparator<Member> byMemberId = Comparator.comparing(Member::getMemberId);
+        Comparator<Member> comparator;
+        if (condition.getOrder() == MemberSearchOrder.MONEY_ASC) {
+            comparator = Comparator.comparingInt(Member::getMoney).thenComparing(byMemberId);
+        } else if (condition.getOrder() == MemberSearchOrder.MONEY_DESC) {
+            comparator = Comparator.comparingInt(Member::getMoney).reversed().thenComparing(byMemberId);
+        } else {
+            comparator = byMemberId;
+        }
+        return members.stream()
+                .filter(m -> condition.getMinMoney() == null || m.getMoney() >= condition.getMinMoney())
+                .filter(m -> condition.getMaxMoney() == null || m.getMoney() <= condition.getMaxMoney())
+                .filter(m -> condition.getMemberIdPrefix() == null || m.getMemberId().startsWith(condition.getMemberIdPrefix()))
+                .sorted(comparator)
+                .limit(condition.getLimit() == null ? Long.MAX_VALUE : condition.getLimit())
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,30 @@
+package hello.jdbc.routing;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * 테스트에서 replica 를 흉내내기 위해 primary 의 member 테이블을 replica 로 복사한다.
+ * -> replicate() 를 호출하기 전까지 replica 는 이전 상태를 유지하므로 복제 지연을 재현할 수 있다.
+ */
+class MemberTableReplicator {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+
+    MemberTableReplicator(DataSource primary, DataSource replica) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+    }
+
+    void replicate() {
+        List<Object[]> rows = primary.query("select member_id, money from member",
+                (rs, rowNum) -> new Object[]{rs.getString("member_id"), rs.getInt("money")});
+        replica.update("delete from member");
+        replica.batchUpdate("insert into member(member_id, money) values (?, ?)", rows);
+    }
+
+
+}
@@ -0,0 +1,218 @@
+package hello.jdbc.routing;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 메모리 모드의 h2 두 개를 각각 primary, replica 로 사용한다.
+ * -> replica 는 MemberTableReplicator 를 호출할 때만 primary 의 내용을 반영한다.
+ */
+@Slf4j
+class ReadWriteRoutingDataSourceTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource primary = new DriverManagerDataSource(PRIMARY_URL, "sa", "");
+    DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+    MemberTableReplicator replicator = new MemberTableReplicator(primary, replica);
+
+    ReadYourWritesWindow readYourWrites;
+    ReadWriteRoutingDataSource routingDataSource;
+    MemberRepository memberRepository;
+
+    void init(Duration window) {
+        for (DriverManagerDataSource dataSource : new DriverManagerDataSource[]{primary, replica}) {
+            new JdbcTemplate(dataSource).execute("create table if not exists member (" +
+                    "member_id varchar(10) primary key, money integer not null default 0)");
+        }
+        readYourWrites = new ReadYourWritesWindow(window);
+        routingDataSource = new ReadWriteRoutingDataSource(primary, replica, readYourWrites);
+        memberRepository = new MemberRepositoryV5(routingDataSource);
+    }
+
+    @AfterEach
+    void clearAll() {
+        readYourWrites.clear();
+        new JdbcTemplate(primary).update("delete from member");
+        new JdbcTemplate(replica).update("delete from member");
+    }
+
+    @Test
+    @DisplayName("트랜잭션 밖의 select 는 replica, 그 외의 SQL 은 primary 에서 실행한다")
+    void non_transactional_routing_test() {
+        init(Duration.ZERO);
+        memberRepository.save(new Member("memberA", 10_000));
+        replicator.replicate();
+        long primaryBefore = routingDataSource.getPrimaryConnectionCount();
+
+        Member findMember = memberRepository.findById("memberA");
+        memberRepository.findAll();
+
+        assertThat(findMember.getMoney()).isEqualTo(10_000);
+        assertThat(routingDataSource.getReplicaConnectionCount()).isEqualTo(2);
+        assertThat(routingDataSource.getPrimaryConnectionCount()).isEqualTo(primaryBefore);
+    }
+
+    @Test
+    @DisplayName("createStatement 로 실행하는 SQL 도 실행 시점의 SQL 로 라우팅하고, 쓰기만 window 를 연다")
+    void statement_routing_test() {
+        init(Duration.ofMinutes(1));
+        new JdbcTemplate(primary).update("insert into member(member_id, money) values ('memberA', 10000)");
+        replicator.replicate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routingDataSource);
+
+        // findAll 은 파라미터가 없으므로 createStatement 로 실행된다
+        assertThat(memberRepository.findAll()).hasSize(1);
+        assertThat(routingDataSource.getReplicaConnectionCount()).isEqualTo(1);
+        assertThat(routingDataSource.getPrimaryConnectionCount()).isZero();
+        assertThat(readYourWrites.isSticky()).isFalse();
+
+        jdbcTemplate.update("update member set money = 0");
+        assertThat(routingDataSource.getPrimaryConnectionCount()).isEqualTo(1);
+        assertThat(readYourWrites.isSticky()).isTrue();
+        assertThat(new JdbcTemplate(primary).queryForObject("select money from member", Integer.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("readOnly 트랜잭션은 replica, 그 외의 트랜잭션은 primary 에서 실행한다")
+    void transactional_routing_test() {
+        init(Duration.ZERO);
+        memberRepository.save(new Member("memberA", 10_000));
+        replicator.replicate();
+        TransactionTemplate readOnlyTx = new TransactionTemplate(new DataSourceTransactionManager(routingDataSource));
+        readOnlyTx.setReadOnly(true);
+        TransactionTemplate readWriteTx = new TransactionTemplate(new DataSourceTransactionManager(routingDataSource));
+
+        long replicaBefore = routingDataSource.getReplicaConnectionCount();
+        readOnlyTx.executeWithoutResult(status -> memberRepository.findById("memberA"));
+        assertThat(routingDataSource.getReplicaConnectionCount()).isEqualTo(replicaBefore + 1);
+
+        long primaryBefore = routingDataSource.getPrimaryConnectionCount();
+        readWriteTx.executeWithoutResult(status -> {
+            Member member = memberRepository.findById("memberA");
+            memberRepository.updateById("memberA", member.getMoney() - 1_000);
+        });
+        assertThat(routingDataSource.getPrimaryConnectionCount()).isEqualTo(primaryBefore + 1);
+        assertThat(new JdbcTemplate(primary).queryForObject(
+                "select money from member where member_id = 'memberA'", Integer.class)).isEqualTo(9_000);
+    }
+
+    @Test
+    @DisplayName("쓰기 이후 stickiness window 동안은 복제되지 않은 데이터도 primary 에서 읽을 수 있다")
+    void read_your_writes_test() {
+        init(Duration.ofMinutes(1));
+
+        memberRepository.save(new Member("memberA", 10_000));
+
+        // 아직 복제되지 않았지만 primary 에서 읽는다
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10_000);
+
+        // 요청이 끝나면 window 가 초기화되어 replica 에서 읽는다 -> 복제 전이므로 조회되지 않는다
+        readYourWrites.clear();
+        assertThatThrownBy(() -> memberRepository.findById("memberA"))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+
+        replicator.replicate();
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("TaskDecorator 로 등록하면 풀의 쓰레드를 재사용해도 이전 작업의 window 를 이어받지 않는다")
+    void pooled_thread_clear_test() throws Exception {
+        init(Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicBoolean stickyAfterWrite = new AtomicBoolean();
+            AtomicBoolean stickyInNextTask = new AtomicBoolean(true);
+            executor.submit(readYourWrites.decorate(() -> {
+                memberRepository.save(new Member("memberA", 10_000));
+                stickyAfterWrite.set(readYourWrites.isSticky());
+            })).get();
+            executor.submit(readYourWrites.decorate(() -> stickyInNextTask.set(readYourWrites.isSticky()))).get();
+
+            assertThat(stickyAfterWrite).isTrue();
+            assertThat(stickyInNextTask).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("username / password 로 얻은 커넥션도 같은 방식으로 라우팅한다")
+    void credential_connection_routing_test() throws SQLException {
+        init(Duration.ZERO);
+        long replicaBefore = routingDataSource.getReplicaConnectionCount();
+
+        try (Connection conn = routingDataSource.getConnection("sa", "");
+             PreparedStatement pstmt = conn.prepareStatement("select count(*) from member");
+             ResultSet rs = pstmt.executeQuery()) {
+            assertThat(rs.next()).isTrue();
+        }
+
+        assertThat(routingDataSource.getReplicaConnectionCount()).isEqualTo(replicaBefore + 1);
+    }
+
+    /**
+     * 읽기 90%, 쓰기 10% 의 요청을 처리할 때 primary 가 처리하는 커넥션 비율을 측정한다.
+     * -> 하나의 요청이 끝날 때마다 stickiness window 를 초기화한다.
+     */
+    @Test
+    @DisplayName("읽기 위주의 요청에서 primary 로 가는 부하 비율")
+    void read_heavy_offload_measure() {
+        init(Duration.ofSeconds(1));
+        int members = 100;
+        for (int i = 0; i < members; i++) {
+            memberRepository.save(new Member("m" + i, 10_000));
+        }
+        replicator.replicate();
+        readYourWrites.clear();
+        long primaryBefore = routingDataSource.getPrimaryConnectionCount();
+        long replicaBefore = routingDataSource.getReplicaConnectionCount();
+
+        int requests = 10_000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < requests; i++) {
+            String memberId = "m" + random.nextInt(members);
+            if (random.nextInt(10) == 0) {
+                memberRepository.updateById(memberId, random.nextInt(10_000));
+                // 같은 요청 안에서 방금 쓴 값을 다시 읽는다
+                memberRepository.findById(memberId);
+            } else {
+                memberRepository.findById(memberId);
+            }
+            readYourWrites.clear();
+        }
+
+        long primaryCount = routingDataSource.getPrimaryConnectionCount() - primaryBefore;
+        long replicaCount = routingDataSource.getReplicaConnectionCount() - replicaBefore;
+        double primaryShare = (double) primaryCount / (primaryCount + replicaCount);
+        log.info("connections -> primary = {}, replica = {}, primary share = {}%",
+                primaryCount, replicaCount, String.format("%.1f", primaryShare * 100));
+        assertThat(primaryShare).isLessThan(0.5);
+    }
+
+}
@@ -0,0 +1,331 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.shard.Shard;
+import hello.jdbc.shard.ShardedMemberRepository;
+import hello.jdbc.shard.ShardedMemberService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * shard 마다 별도의 메모리 모드 h2 DB 를 사용한다.
+ */
+@Slf4j
+class SagaMemberServiceTest {
+
+    ShardedMemberRepository memberRepository;
+    SagaMemberService memberService;
+    TransferRelay relay;
+
+    void init(String name) {
+        init(name, UnaryOperator.identity());
+    }
+
+    void init(String name, UnaryOperator<DataSource> decorator) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + name + "_" + i + ";DB_CLOSE_DELAY=-1", "sa", "");
+            new JdbcTemplate(dataSource).execute("create table if not exists member (" +
+                    "member_id varchar(10) primary key, money integer not null default 0)");
+            SagaTables.create(dataSource);
+            dataSources.add(decorator.apply(dataSource));
+        }
+        memberRepository = new ShardedMemberRepository(dataSources);
+        memberService = new SagaMemberService(memberRepository);
+        relay = new TransferRelay(memberRepository, 50, Duration.ofSeconds(30), 3);
+    }
+
+    @AfterEach
+    void clearAll() {
+        relay.close();
+        memberRepository.clearAll();
+        for (Shard shard : memberRepository.getShards()) {
+            shard.getJdbcTemplate().update("delete from transfer_outbox");
+            shard.getJdbcTemplate().update("delete from processed_transfer");
+        }
+        memberRepository.close();
+    }
+
+    @Test
+    @DisplayName("출금은 즉시 커밋되고, 입금은 relay 가 처리한다")
+    void saga_transfer_test() {
+        init("saga_transfer");
+        String fromId = memberOnOtherShard("m0");
+        String toId = "m0";
+        memberRepository.save(new Member(fromId, 10_000));
+        memberRepository.save(new Member(toId, 10_000));
+
+        memberService.accountTransfer(fromId, toId, 2_000);
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(8_000);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(10_000);
+
+        assertThat(relay.relayOnce()).isOne();
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(12_000);
+        assertThat(outbox(fromId).countByStatus("DONE")).isOne();
+        assertThat(relay.relayOnce()).isZero();
+    }
+
+    @Test
+    @DisplayName("입금이 실패하면 출금을 되돌리는 보상 트랜잭션을 실행한다")
+    void compensation_test() {
+        init("saga_compensation");
+        String fromId = memberOnOtherShard("ex");
+        memberRepository.save(new Member(fromId, 10_000));
+        memberRepository.save(new Member("ex", 10_000));
+
+        memberService.accountTransfer(fromId, "ex", 2_000);
+        relay.relayOnce();
+
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(10_000);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(10_000);
+        assertThat(outbox(fromId).countByStatus("COMPENSATED")).isOne();
+        assertThat(relay.getCompensated()).isOne();
+    }
+
+    @Test
+    @DisplayName("이미 입금된 transfer_id 는 다시 입금하지 않는다")
+    void idempotency_test() {
+        init("saga_idempotency");
+        String fromId = memberOnOtherShard("m0");
+        String toId = "m0";
+        memberRepository.save(new Member(fromId, 10_000));
+        memberRepository.save(new Member(toId, 12_000));
+
+        // 입금 커밋 이후 DONE 으로 변경하기 전에 relay 가 종료된 상황을 재현한다
+        String transferId = memberService.accountTransfer(fromId, toId, 2_000);
+        memberRepository.shardOf(toId).getJdbcTemplate()
+                .update("insert into processed_transfer(transfer_id) values (?)", transferId);
+
+        relay.relayOnce();
+
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(12_000);
+        assertThat(relay.getDuplicates()).isOne();
+        assertThat(outbox(fromId).countByStatus("DONE")).isOne();
+    }
+
+    @Test
+    @DisplayName("입금 커밋 이후 응답을 받지 못해 실패해도 processed_transfer 가 있으면 보상하지 않고 완료 처리한다")
+    void ambiguous_commit_test() {
+        AtomicBoolean loseCommitAck = new AtomicBoolean();
+        init("saga_ambiguous", dataSource -> new LostCommitAckDataSource(dataSource, loseCommitAck));
+        String fromId = memberOnOtherShard("m0");
+        String toId = "m0";
+        memberRepository.save(new Member(fromId, 10_000));
+        memberRepository.save(new Member(toId, 10_000));
+
+        memberService.accountTransfer(fromId, toId, 2_000);
+        loseCommitAck.set(true);
+        relay.relayOnce();
+
+        assertThat(loseCommitAck).isFalse();
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(8_000);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(12_000);
+        assertThat(outbox(fromId).countByStatus("DONE")).isOne();
+        assertThat(relay.getCompensated()).isZero();
+    }
+
+    @Test
+    @DisplayName("여러 relay 가 동시에 선점해도 같은 row 를 중복으로 가져가지 않는다 - SKIP_LOCKED / OPTIMISTIC")
+    void concurrent_claim_test() throws Exception {
+        init("saga_claim");
+        String fromId = "m0";
+        String toId = memberOnOtherShard(fromId);
+        memberRepository.save(new Member(fromId, 1_000_000));
+        memberRepository.save(new Member(toId, 0));
+        DataSource outboxDataSource = memberRepository.shardOf(fromId).getDataSource();
+
+        for (ClaimMode mode : ClaimMode.values()) {
+            int transfers = 500;
+            for (int i = 0; i < transfers; i++) {
+                memberService.accountTransfer(fromId, toId, 1);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                TransferOutboxRepository outbox = new TransferOutboxRepository(outboxDataSource, mode);
+                String relayId = "relay-" + r;
+                futures.add(executor.submit((Callable<List<Long>>) () -> {
+                    List<Long> ids = new ArrayList<>();
+                    List<OutboxMessage> claimed;
+                    while (!(claimed = outbox.claim(relayId, 20, Duration.ofMinutes(1))).isEmpty()) {
+                        for (OutboxMessage message : claimed) {
+                            ids.add(message.getId());
+                            outbox.markDone(message.getId(), relayId);
+                        }
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> unique = new HashSet<>();
+            int total = 0;
+            for (Future<List<Long>> future : futures) {
+                List<Long> ids = future.get();
+                total += ids.size();
+                unique.addAll(ids);
+            }
+            executor.shutdown();
+
+            log.info("claim mode = {}, claimed = {}", mode, total);
+            assertThat(total).isEqualTo(transfers);
+            assertThat(unique).hasSize(transfers);
+        }
+    }
+
+    /**
+     * 동기 방식(ShardedMemberService)과 saga 방식을 비교한다.
+     * 1. 호출 지연 시간 -> accountTransfer 가 반환될 때까지
+     * 2. end-to-end 지연 시간 -> accountTransfer 호출부터 relay 가 입금을 커밋(processed_transfer.processed_at)할 때까지
+     * 3. 입금 완료까지의 처리량
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("동기 이체 vs saga 이체 - 호출 / end-to-end 지연 시간과 처리량 비교")
+    void sync_vs_saga_benchmark() throws Exception {
+        init("saga_bench");
+        String fromId = "m0";
+        String toId = memberOnOtherShard(fromId);
+        memberRepository.save(new Member(fromId, 1_000_000_000));
+        memberRepository.save(new Member(toId, 0));
+        ShardedMemberService syncService = new ShardedMemberService(memberRepository);
+        int transfers = 2_000;
+
+        long syncStart = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            syncService.accountTransfer(fromId, toId, 1);
+        }
+        long syncElapsed = System.nanoTime() - syncStart;
+
+        relay.start(Duration.ofMillis(5));
+        Map<String, Instant> submittedAt = new HashMap<>();
+        long sagaStart = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            submittedAt.put(memberService.accountTransfer(fromId, toId, 1), Instant.now());
+        }
+        long sagaCallerElapsed = System.nanoTime() - sagaStart;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (memberRepository.findById(toId).getMoney() < transfers * 2) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("saga transfers did not complete in time. credited = %d / %d",
+                        memberRepository.findById(toId).getMoney() - transfers, transfers);
+            }
+            Thread.sleep(1);
+        }
+        long sagaEndToEndElapsed = System.nanoTime() - sagaStart;
+
+        // 반환된 transfer_id 가 입금 회원의 DB 에 기록된 시각으로 end-to-end 지연 시간을 구한다
+        List<Long> endToEndMicros = new ArrayList<>();
+        new JdbcTemplate(memberRepository.shardOf(toId).getDataSource())
+                .query("select transfer_id, processed_at from processed_transfer", rs -> {
+                    Instant submitted = submittedAt.get(rs.getString("transfer_id"));
+                    if (submitted != null) {
+                        Instant processed = rs.getTimestamp("processed_at").toInstant();
+                        endToEndMicros.add(Math.max(0, Duration.between(submitted, processed).toNanos() / 1_000));
+                    }
+                });
+        Collections.sort(endToEndMicros);
+
+        log.info("sync -> {} us/transfer, {} transfers/s", micros(syncElapsed, transfers), perSecond(syncElapsed, transfers));
+        log.info("saga -> caller {} us/transfer, end-to-end p50 = {} us, p99 = {} us, {} transfers/s",
+                micros(sagaCallerElapsed, transfers), percentile(endToEndMicros, 0.50), percentile(endToEndMicros, 0.99),
+                perSecond(sagaEndToEndElapsed, transfers));
+        assertThat(endToEndMicros).hasSize(transfers);
+        assertThat(memberRepository.totalMoney()).isEqualTo(1_000_000_000L);
+    }
+
+    private long percentile(List<Long> sorted, double quantile) {
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.round(quantile * (sorted.size() - 1))));
+    }
+
+    private long micros(long nanos, int count) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) / count;
+    }
+
+    private long perSecond(long nanos, int count) {
+        return count * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+
+    /**
+     * loseCommitAck 가 설정되어 있으면 processed_transfer 를 기록한 트랜잭션을 커밋한 뒤 한 번 예외를 던진다.
+     * -> 커밋은 되었지만 응답을 받지 못한 상황을 재현한다.
+     */
+    static class LostCommitAckDataSource extends DelegatingDataSource {
+
+        private final AtomicBoolean loseCommitAck;
+
+        LostCommitAckDataSource(DataSource targetDataSource, AtomicBoolean loseCommitAck) {
+            super(targetDataSource);
+            this.loseCommitAck = loseCommitAck;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = super.getConnection();
+            AtomicBoolean credit = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement")
+                                && ((String) args[0]).startsWith("insert into processed_transfer")) {
+                            credit.set(true);
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                        if (method.getName().equals("commit") && credit.getAndSet(false)
+                                && loseCommitAck.compareAndSet(true, false)) {
+                            throw new SQLTransientConnectionException("commit acknowledgement lost");
+                        }
+                        return result;
+                    });
+        }
+    }
+
+    private TransferOutboxRepository outbox(String fromId) {
+        return new TransferOutboxRepository(memberRepository.shardOf(fromId).getDataSource());
+    }
+
+    private String memberOnOtherShard(String memberId) {
+        Shard shard = memberRepository.shardOf(memberId);
+        for (int i = 1; ; i++) {
+            String candidate = "m" + i;
+            if (memberRepository.shardOf(candidate) != shard) {
+                return candidate;
+            }
+        }
+    }
+
+}
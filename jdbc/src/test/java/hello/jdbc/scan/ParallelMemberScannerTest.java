@@ -0,0 +1,144 @@
+package hello.jdbc.scan;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class ParallelMemberScannerTest {
+
+    static final String URL = "jdbc:h2:mem:scan;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    ParallelMemberScanner scanner;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        scanner = new ParallelMemberScanner(dataSource, new KeyRangePartitioner(dataSource, 1_000));
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("키가 한쪽에 몰려 있어도 표본 경계로 나눈 구간의 row 수는 비슷하다")
+    void partition_test() {
+        // a 로 시작하는 키 9,000 개, z 로 시작하는 키 1,000 개
+        jdbcTemplate.update("insert into member select 'a' || lpad(x, 6, '0'), 0 from system_range(1, 9000)");
+        jdbcTemplate.update("insert into member select 'z' || lpad(x, 6, '0'), 0 from system_range(1, 1000)");
+
+        List<KeyRange> ranges = scanner.partition(4);
+
+        assertThat(ranges).hasSize(4);
+        assertThat(ranges.get(0).getLowInclusive()).isNull();
+        assertThat(ranges.get(3).getHighExclusive()).isNull();
+        for (KeyRange range : ranges) {
+            long rows = jdbcTemplate.queryForList("select member_id from member", String.class).stream()
+                    .filter(range::contains).count();
+            log.info("{} -> {} rows", range, rows);
+            assertThat(rows).isBetween(1_500L, 3_500L);
+        }
+    }
+
+    @Test
+    @DisplayName("병렬 scan 은 모든 member 를 정확히 한 번씩 전달한다")
+    void parallel_stream_test() {
+        insertMembers(10_000);
+
+        Map<String, Long> counts = scanner.parallelStream(8)
+                .collect(Collectors.groupingByConcurrent(Member::getMemberId, Collectors.counting()));
+
+        assertThat(counts).hasSize(10_000);
+        assertThat(counts.values()).allMatch(count -> count == 1L);
+    }
+
+    @Test
+    @DisplayName("tryAdvance 로 일부를 읽은 뒤 나머지를 forEachRemaining 으로 읽어도 누락이나 중복이 없다")
+    void try_advance_then_for_each_remaining_test() {
+        insertMembers(2_500);
+        Spliterator<Member> spliterator = scanner.spliterator(scanner.partition(2));
+
+        List<String> first = StreamSupport.stream(spliterator, false).limit(1_500)
+                .map(Member::getMemberId).toList();
+        List<String> ids = new ArrayList<>(first);
+        spliterator.forEachRemaining(member -> ids.add(member.getMemberId()));
+
+        assertThat(ids).hasSize(2_500).doesNotHaveDuplicates().isSorted();
+    }
+
+    /**
+     * member 마다 CPU 를 사용하는 처리를 1개 ~ N개 스레드로 수행해 findAll() 대비 처리 시간을 비교한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("병렬 scan 처리 시간 비교 - findAll vs 1 ~ N 스레드")
+    void parallel_scan_benchmark() throws Exception {
+        insertMembers(20_000);
+        long expected = jdbcTemplate.query("select * from member", (rs, rowNum) -> rs.getInt("money"))
+                .stream().mapToLong(ParallelMemberScannerTest::work).sum();
+
+        long start = System.nanoTime();
+        long sequential = jdbcTemplate.query("select * from member", (rs, rowNum) -> rs.getInt("money"))
+                .stream().mapToLong(ParallelMemberScannerTest::work).sum();
+        long sequentialNanos = System.nanoTime() - start;
+        assertThat(sequential).isEqualTo(expected);
+        log.info("findAll            -> {} ms", TimeUnit.NANOSECONDS.toMillis(sequentialNanos));
+
+        int max = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= max; workers *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                int partitions = workers * 4;
+                start = System.nanoTime();
+                long sum = pool.submit(() -> scanner.parallelStream(partitions)
+                        .mapToLong(member -> work(member.getMoney())).sum()).get();
+                long elapsed = System.nanoTime() - start;
+                assertThat(sum).isEqualTo(expected);
+                log.info("parallel workers={} -> {} ms, speedup = {}", workers, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        String.format("%.2f", (double) sequentialNanos / elapsed));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private void insertMembers(int count) {
+        jdbcTemplate.update("insert into member select 'm' || lpad(x, 6, '0'), mod(x, 1000) from system_range(1, ?)",
+                count);
+    }
+
+    /**
+     * member 한 명을 처리하는 CPU 작업
+     */
+    private static long work(int money) {
+        long hash = money;
+        for (int i = 0; i < 20_000; i++) {
+            hash = hash * 31 + (hash >>> 7) + i;
+        }
+        return hash & 0xff;
+    }
+
+}
@@ -0,0 +1,122 @@
+package hello.jdbc.schema;
+
+import hello.jdbc.batch.MemberBatchJob;
+import hello.jdbc.outbox.MemberEventTables;
+import hello.jdbc.repository.querydsl.QuerydslMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class SchemaMigratorTest {
+
+    static final String URL = "jdbc:h2:mem:schema;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropAll() {
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    @Test
+    @DisplayName("적용되지 않은 버전만 적용하고, 선택 migration 은 나중에 켜도 적용된다")
+    void migrate_test() {
+        SchemaMigrator migrator = new SchemaMigrator(dataSource);
+
+        assertThat(migrator.migrate(MemberSchema.migrations(false))).isEqualTo(2);
+        assertThat(migrator.migrate(MemberSchema.migrations(false))).isZero();
+        assertThat(migrator.migrate(MemberSchema.migrations(true))).isEqualTo(1);
+
+        assertThat(migrator.installedVersions()).containsExactlyInAnyOrder(1, 2, MemberSchema.COVERING_INDEX_VERSION);
+        assertThat(jdbcTemplate.queryForList(
+                "select index_name from information_schema.indexes where table_name = 'MEMBER'", String.class))
+                .contains("IDX_MEMBER_MONEY", "IDX_MEMBER_ID_MONEY");
+    }
+
+    @Test
+    @DisplayName("수동으로 만든 member 테이블이 있어도 migration 은 실패하지 않는다")
+    void migrate_existing_table_test() {
+        jdbcTemplate.execute("create table member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+
+        assertThat(new SchemaMigrator(dataSource).migrate(MemberSchema.migrations(false))).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("수동으로 만든 member 테이블에 primary key 가 없으면 버전을 기록하지 않고 실패한다")
+    void migrate_existing_table_without_pk_test() {
+        jdbcTemplate.execute("create table member (member_id varchar(10), money integer not null default 0)");
+        SchemaMigrator migrator = new SchemaMigrator(dataSource);
+
+        assertThatThrownBy(() -> migrator.migrate(MemberSchema.migrations(false)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("create member");
+        assertThat(migrator.installedVersions()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Repository SQL 은 findAll, clearAll 을 제외하면 full scan 하지 않는다")
+    void verify_repository_sql_test() {
+        new SchemaMigrator(dataSource).migrate(MemberSchema.migrations(false));
+
+        Map<String, String> plans = new QueryPlanVerifier(dataSource)
+                .verify(MemberSchema.REPOSITORY_SQLS, MemberSchema.FULL_SCAN_ALLOWED);
+
+        plans.forEach((sql, plan) -> log.info("{} -> {}", sql, plan));
+        assertThat(plans).hasSize(MemberSchema.REPOSITORY_SQLS.size());
+        assertThat(QueryPlanVerifier.isFullScan(plans.get("select * from member"))).isTrue();
+        assertThat(QueryPlanVerifier.isFullScan(plans.get("select * from member where member_id = ?"))).isFalse();
+        assertThat(QueryPlanVerifier.isFullScan(plans.get(MemberBatchJob.ADD_MONEY))).isFalse();
+        assertThat(plans).containsKeys(QuerydslMemberRepository.searchSqls(true).toArray(String[]::new));
+        assertThat(QuerydslMemberRepository.searchSqls(true)).hasSize(18);
+        assertThat(QuerydslMemberRepository.searchSqls(false)).hasSize(6);
+    }
+
+    @Test
+    @DisplayName("outbox 의 선점 / 삭제 SQL 은 seq 로 row 를 찾는다")
+    void verify_outbox_sql_test() {
+        MemberEventTables.create(dataSource);
+
+        Map<String, String> plans = new QueryPlanVerifier(dataSource)
+                .verify(MemberSchema.OUTBOX_SQLS, MemberSchema.OUTBOX_FULL_SCAN_ALLOWED);
+
+        plans.forEach((sql, plan) -> log.info("{} -> {}", sql, plan));
+        assertThat(plans).hasSize(MemberSchema.OUTBOX_SQLS.size());
+    }
+
+    @Test
+    @DisplayName("money 인덱스가 삭제되면 money 범위 조회의 full scan 을 감지한다")
+    void detect_full_scan_test() {
+        new SchemaMigrator(dataSource).migrate(MemberSchema.migrations(false));
+        QueryPlanVerifier verifier = new QueryPlanVerifier(dataSource);
+        String rangeSql = "select * from member where money between ? and ?";
+
+        assertThat(verifier.verify(List.of(rangeSql), Set.of())).containsKey(rangeSql);
+
+        jdbcTemplate.execute("drop index idx_member_money");
+
+        assertThatThrownBy(() -> verifier.verify(List.of(rangeSql), Set.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(rangeSql);
+    }
+
+}
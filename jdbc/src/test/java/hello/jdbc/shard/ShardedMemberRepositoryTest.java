@@ -0,0 +1,187 @@
+package hello.jdbc.shard;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * shard 마다 별도의 메모리 모드 h2 DB 를 사용한다.
+ */
+@Slf4j
+class ShardedMemberRepositoryTest {
+
+    ShardedMemberRepository memberRepository;
+
+    @AfterEach
+    void clearAll() {
+        if (memberRepository != null) {
+            memberRepository.clearAll();
+            memberRepository.close();
+        }
+    }
+
+    @Test
+    @DisplayName("가상 노드를 사용하면 key 가 shard 에 고르게 분산되고, shard 추가 시 일부 key 만 이동한다")
+    void consistent_hash_distribution_test() {
+        ConsistentHashRing<Integer> four = new ConsistentHashRing<>(List.of(0, 1, 2, 3), ShardedMemberRepository.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing<Integer> five = new ConsistentHashRing<>(List.of(0, 1, 2, 3, 4), ShardedMemberRepository.DEFAULT_VIRTUAL_NODES);
+        int keys = 100_000;
+        int[] counts = new int[4];
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            String key = "m" + i;
+            int shard = four.route(key);
+            counts[shard]++;
+            if (five.route(key) != shard) {
+                moved++;
+            }
+        }
+
+        for (int count : counts) {
+            assertThat(count).isBetween(keys / 4 * 80 / 100, keys / 4 * 120 / 100);
+        }
+        // 이상적으로는 1/5 만 이동한다
+        assertThat(moved).isLessThan(keys * 30 / 100);
+        log.info("distribution = {}, moved after adding a shard = {}", counts, moved);
+    }
+
+    @Test
+    @DisplayName("findAll 과 합계는 모든 shard 의 결과를 합친다")
+    void fan_out_test() {
+        memberRepository = new ShardedMemberRepository(dataSources("fanout", 4));
+        for (int i = 0; i < 100; i++) {
+            memberRepository.save(new Member("m" + i, 1_000));
+        }
+
+        assertThat(memberRepository.findAll()).hasSize(100);
+        assertThat(memberRepository.totalMoney()).isEqualTo(100_000);
+        // 각 shard 에는 일부만 저장된다
+        for (Shard shard : memberRepository.getShards()) {
+            assertThat(shard.getMemberRepository().findAll().size()).isLessThan(100);
+        }
+    }
+
+    @Test
+    @DisplayName("updateAll 은 shard 별로 나누어 실행하고 결과를 전달받은 순서대로 반환한다")
+    void update_all_test() {
+        memberRepository = new ShardedMemberRepository(dataSources("updateall", 4));
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            memberRepository.save(new Member("m" + i, 10_000));
+            members.add(new Member("m" + i, i));
+        }
+        members.add(10, new Member("nobody", 0));
+
+        int[] updated = memberRepository.updateAll(members);
+
+        assertThat(updated).hasSize(21);
+        for (int i = 0; i < members.size(); i++) {
+            assertThat(updated[i]).isEqualTo(i == 10 ? 0 : 1);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertThat(memberRepository.findById("m" + i).getMoney()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    @DisplayName("서로 다른 shard 간의 이체 - 입금 실패 시 출금을 보상하여 잔액 합계가 유지된다")
+    void cross_shard_transfer_test() {
+        memberRepository = new ShardedMemberRepository(dataSources("transfer", 4));
+        ShardedMemberService memberService = new ShardedMemberService(memberRepository);
+        String fromId = memberOnOtherShard("ex");
+        String toId = memberOnOtherShard(fromId);
+        memberRepository.save(new Member(fromId, 10_000));
+        memberRepository.save(new Member(toId, 10_000));
+        memberRepository.save(new Member("ex", 10_000));
+
+        memberService.accountTransfer(fromId, toId, 2_000);
+        assertThatThrownBy(() -> memberService.accountTransfer(fromId, "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(8_000);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(12_000);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(10_000);
+        assertThat(memberRepository.totalMoney()).isEqualTo(30_000);
+    }
+
+    /**
+     * shard 수를 1 ~ 8 로 늘려가며 save / findById / updateById 처리량을 측정한다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("shard 수에 따른 처리량 비교")
+    void shard_scaling_benchmark() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        for (int shards = 1; shards <= 8; shards *= 2) {
+            memberRepository = new ShardedMemberRepository(dataSources("scale" + shards, shards));
+            long opsPerSecond = opsPerSecond(threads, perThread);
+            log.info("shards = {}, ops/s = {}", shards, opsPerSecond);
+            assertThat(memberRepository.findAll()).hasSize(threads * perThread);
+            memberRepository.clearAll();
+            memberRepository.close();
+        }
+        memberRepository = null;
+    }
+
+    private long opsPerSecond(int threads, int perThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "t" + t + "-";
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String memberId = prefix + i;
+                    memberRepository.save(new Member(memberId, 10_000));
+                    Member findMember = memberRepository.findById(memberId);
+                    memberRepository.updateById(memberId, findMember.getMoney() + 1_000);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return threads * perThread * 3L * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+    }
+
+    private String memberOnOtherShard(String memberId) {
+        Shard shard = memberRepository.shardOf(memberId);
+        for (int i = 0; ; i++) {
+            String candidate = "m" + i;
+            if (memberRepository.shardOf(candidate) != shard) {
+                return candidate;
+            }
+        }
+    }
+
+    private List<DataSource> dataSources(String name, int count) {
+        List<DataSource> dataSources = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + name + "_" + i + ";DB_CLOSE_DELAY=-1", "sa", "");
+            new JdbcTemplate(dataSource).execute("create table if not exists member (" +
+                    "member_id varchar(10) primary key, money integer not null default 0)");
+            dataSources.add(dataSource);
+        }
+        return dataSources;
+    }
+
+}
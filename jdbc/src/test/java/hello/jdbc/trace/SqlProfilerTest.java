@@ -0,0 +1,115 @@
+package hello.jdbc.trace;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class SqlProfilerTest {
+
+    static final String URL = "jdbc:h2:mem:profiler;DB_CLOSE_DELAY=-1";
+
+    DriverManagerDataSource pool;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        pool = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(pool);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("리터럴, 공백, 대소문자, 파라미터 목록 길이가 달라도 같은 fingerprint 로 묶는다")
+    void fingerprint_test() {
+        assertThat(SqlFingerprint.of("SELECT *  FROM member\n WHERE member_id = 'memberA'"))
+                .isEqualTo(SqlFingerprint.of("select * from member where member_id = ?"))
+                .isEqualTo("select * from member where member_id = ?");
+        assertThat(SqlFingerprint.of("update member set money = 1000 where member_id = 'it''s'"))
+                .isEqualTo("update member set money = ? where member_id = ?");
+        assertThat(SqlFingerprint.of("select * from member where member_id in (?, ?, ?)"))
+                .isEqualTo(SqlFingerprint.of("select * from member where member_id in (?,?)"));
+        assertThat(SqlFingerprint.of("select * from member2")).isEqualTo("select * from member2");
+    }
+
+    @Test
+    @DisplayName("한 트랜잭션에서 같은 fingerprint 가 반복 실행되면 배치 처리 후보로 기록한다")
+    void batching_candidate_test() throws SQLException {
+        SqlProfiler profiler = new SqlProfiler(1.0, 2);
+        MemberServiceV3_1 memberService = memberService(profiler);
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000), ('memberB', 10000)");
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+
+        assertThat(profiler.getBatchingCandidates())
+                .containsEntry("select * from member where member_id = ?", 1L)
+                .containsEntry("update member set money = ? where member_id = ?", 1L);
+        assertThat(profiler.topByTotalTime(10)).hasSize(2);
+        profiler.topByTotalTime(10).forEach(report -> log.info("{}", report));
+    }
+
+    @Test
+    @DisplayName("sampleRate 가 0 이면 아무것도 집계하지 않는다")
+    void sampling_test() throws SQLException {
+        SqlProfiler profiler = new SqlProfiler(0.0, 2);
+        MemberServiceV3_1 memberService = memberService(profiler);
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000), ('memberB', 10000)");
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+
+        assertThat(profiler.topByTotalTime(10)).isEmpty();
+        assertThat(profiler.getBatchingCandidates()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("REQUIRES_NEW 로 시작한 내부 트랜잭션의 SQL 은 외부 트랜잭션의 반복 실행으로 세지 않는다")
+    void requires_new_test() {
+        SqlProfiler profiler = new SqlProfiler(1.0, 3);
+        DataSource dataSource = new StatementInterceptingDataSource(pool, profiler);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000)");
+        String sql = "select money from member where member_id = ?";
+
+        outer.executeWithoutResult(status -> {
+            template.queryForObject(sql, Integer.class, "memberA");
+            inner.executeWithoutResult(innerStatus -> template.queryForObject(sql, Integer.class, "memberA"));
+            template.queryForObject(sql, Integer.class, "memberA");
+        });
+
+        // 외부 2회, 내부 1회 -> 어느 트랜잭션도 3회에 도달하지 않는다
+        assertThat(profiler.getBatchingCandidates()).isEmpty();
+        assertThat(profiler.topByTotalTime(1).get(0).getCount()).isEqualTo(3);
+    }
+
+    private MemberServiceV3_1 memberService(SqlProfiler profiler) {
+        DataSource dataSource = new StatementInterceptingDataSource(pool, profiler);
+        MemberRepositoryV3 memberRepository = new MemberRepositoryV3(dataSource);
+        return new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+    }
+
+}
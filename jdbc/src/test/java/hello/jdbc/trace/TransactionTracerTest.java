@@ -0,0 +1,98 @@
+package hello.jdbc.trace;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * PlatformTransactionManager 를 직접 사용하는 MemberServiceV3_1 에 트랜잭션 추적을 적용한다.
+ */
+@Slf4j
+class TransactionTracerTest {
+
+    static final String URL = "jdbc:h2:mem:tracer;DB_CLOSE_DELAY=-1";
+
+    TransactionTracer tracer;
+    MemberRepositoryV3 memberRepository;
+    MemberServiceV3_1 memberService;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource pool = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(pool);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+
+        // 모든 트랜잭션을 기록하도록 임계값을 0 으로 설정
+        tracer = new TransactionTracer(Duration.ZERO);
+        DataSource dataSource = new StatementInterceptingDataSource(pool, tracer);
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(new TracingTransactionManager(dataSource, tracer), memberRepository);
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+    }
+
+    @Test
+    @DisplayName("커밋된 트랜잭션의 SQL 실행 순서와 커넥션 점유 시간을 기록한다")
+    void commit_trace_test() throws SQLException {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("memberB", 10_000));
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+
+        assertThat(tracer.getCommitCount()).isEqualTo(1);
+        TransactionTrace trace = tracer.getRecentSlowTraces().get(0);
+        assertThat(trace.getOutcome()).isEqualTo(TransactionTrace.Outcome.COMMITTED);
+        assertThat(trace.getStatementCount()).isEqualTo(4);
+        assertThat(trace.getSqls()).containsExactly(
+                "select * from member where member_id = ?",
+                "select * from member where member_id = ?",
+                "update member set money = ? where member_id = ?",
+                "update member set money = ? where member_id = ?");
+        assertThat(trace.getConnectionHoldNanos()).isPositive();
+        assertThat(trace.getDurationNanos()).isGreaterThanOrEqualTo(trace.getConnectionAcquireNanos());
+    }
+
+    @Test
+    @DisplayName("롤백된 트랜잭션은 롤백 결과와 함께 롤백 전까지 실행한 SQL 을 기록한다")
+    void rollback_trace_test() throws SQLException {
+        memberRepository.save(new Member("memberA", 10_000));
+        memberRepository.save(new Member("ex", 10_000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(tracer.getRollbackCount()).isEqualTo(1);
+        TransactionTrace trace = tracer.getRecentSlowTraces().get(0);
+        assertThat(trace.getOutcome()).isEqualTo(TransactionTrace.Outcome.ROLLED_BACK);
+        assertThat(trace.getStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("트랜잭션 밖에서 실행한 SQL 은 기록하지 않는다")
+    void non_transactional_statement_test() throws SQLException {
+        memberRepository.save(new Member("memberA", 10_000));
+
+        assertThat(tracer.getRecentSlowTraces()).isEmpty();
+        assertThat(tracer.getDurationSnapshot().getCount()).isZero();
+    }
+
+}
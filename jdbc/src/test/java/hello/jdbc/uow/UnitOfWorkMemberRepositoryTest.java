@@ -0,0 +1,216 @@
+package hello.jdbc.uow;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.outbox.MemberEventTables;
+import hello.jdbc.outbox.OutboxMemberRepository;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.trace.StatementInterceptingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 스프링 컨텍스트 없이 @Transactional 을 적용하기 위해 TransactionInterceptor 로 직접 AOP 프록시를 만든다.
+ */
+class UnitOfWorkMemberRepositoryTest {
+
+    static final String URL = "jdbc:h2:mem:uow;DB_CLOSE_DELAY=-1";
+
+    List<String> executedSqls = new CopyOnWriteArrayList<>();
+    DataSource dataSource;
+    MemberRepository memberRepository;
+    TransactionTemplate transactionTemplate;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource pool = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(pool);
+        jdbcTemplate.execute("create table if not exists member (" +
+                "member_id varchar(10) primary key, money integer not null default 0)");
+        jdbcTemplate.update("insert into member(member_id, money) values ('memberA', 10000), " +
+                "('memberB', 10000), ('ex', 10000)");
+
+        MemberEventTables.create(pool);
+
+        dataSource = new StatementInterceptingDataSource(pool, (sql, elapsedNanos, failed) -> executedSqls.add(sql));
+        memberRepository = new UnitOfWorkMemberRepository(new MemberRepositoryV5(dataSource));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void clearAll() {
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from member_event");
+    }
+
+    @Test
+    @DisplayName("계좌이체는 조회 2번과 커밋 직전의 batch update 1번으로 처리된다")
+    void account_transfer_test() {
+        MemberServiceV4 memberService = memberService(memberRepository);
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+
+        assertThat(executedSqls).containsExactly(
+                "select * from member where member_id = ?",
+                "select * from member where member_id = ?",
+                "update member set money = ? where member_id = ?");
+        assertThat(money("memberA")).isEqualTo(8_000);
+        assertThat(money("memberB")).isEqualTo(12_000);
+    }
+
+    @Test
+    @DisplayName("롤백된 계좌이체는 update 를 실행하지 않는다")
+    void account_transfer_rollback_test() {
+        MemberServiceV4 memberService = memberService(memberRepository);
+
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(executedSqls).noneMatch(sql -> sql.startsWith("update"));
+        assertThat(money("memberA")).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("트랜잭션 안에서 같은 memberId 는 identity map 에서 같은 인스턴스를 반환하고, 여러 번 변경해도 update 는 한 번이다")
+    void identity_map_test() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member first = memberRepository.findById("memberA");
+            Member second = memberRepository.findById("memberA");
+            assertThat(second).isSameAs(first);
+
+            memberRepository.updateById("memberA", 9_000);
+            memberRepository.updateById("memberA", 8_000);
+            second.setMoney(7_000);
+        });
+
+        assertThat(executedSqls).containsExactly(
+                "select * from member where member_id = ?",
+                "update member set money = ? where member_id = ?");
+        assertThat(money("memberA")).isEqualTo(7_000);
+    }
+
+    @Test
+    @DisplayName("값이 원래대로 돌아온 Member 는 변경으로 보지 않는다")
+    void not_dirty_test() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.updateById("memberA", 9_000);
+            memberRepository.updateById("memberA", 10_000);
+            assertThat(memberRepository.updateById("none", 1_000)).isZero();
+        });
+
+        assertThat(executedSqls).noneMatch(sql -> sql.startsWith("update"));
+    }
+
+    @Test
+    @DisplayName("findAll 전에는 지연된 변경을 반영하고, 관리 중인 Member 는 같은 인스턴스로 반환한다")
+    void flush_before_find_all_test() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member memberA = memberRepository.findById("memberA");
+            memberRepository.updateById("memberA", 5_000);
+
+            List<Member> members = memberRepository.findAll();
+
+            assertThat(members).contains(memberA);
+            assertThat(members.stream().filter(member -> member == memberA)).hasSize(1);
+            assertThat(jdbcTemplate.queryForObject(
+                    "select count(*) from member where money = 5000", Integer.class)).isZero();
+        });
+
+        assertThat(money("memberA")).isEqualTo(5_000);
+    }
+
+    @Test
+    @DisplayName("커밋 직전의 반영은 target 을 거치므로 decorator 가 새로 등록한 이벤트 기록도 같은 트랜잭션에서 커밋된다")
+    void flush_through_target_test() {
+        MemberServiceV4 memberService = memberService(
+                new UnitOfWorkMemberRepository(new OutboxMemberRepository(new MemberRepositoryV5(dataSource), dataSource)));
+
+        memberService.accountTransfer("memberA", "memberB", 2_000);
+
+        assertThat(money("memberA")).isEqualTo(8_000);
+        assertThat(money("memberB")).isEqualTo(12_000);
+        assertThat(jdbcTemplate.queryForList("select member_id from member_event where event_type = 'UPDATED' order by seq",
+                String.class)).containsExactly("memberA", "memberB");
+    }
+
+    @Test
+    @DisplayName("읽기 전용 트랜잭션에서 변경한 Member 가 있으면 반영하지 않고 예외가 발생한다")
+    void read_only_test() {
+        transactionTemplate.setReadOnly(true);
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.findById("memberA"));
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(
+                status -> memberRepository.updateById("memberA", 1_000)))
+                .isInstanceOf(IllegalTransactionStateException.class);
+
+        assertThat(executedSqls).noneMatch(sql -> sql.startsWith("update"));
+        assertThat(money("memberA")).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("REQUIRES_NEW 트랜잭션은 바깥 트랜잭션의 identity map 을 보지 않고, 자신의 변경은 자신이 커밋한다")
+    void requires_new_test() {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Member outer = memberRepository.findById("memberA");
+            memberRepository.updateById("memberA", 5_000);
+
+            requiresNew.executeWithoutResult(innerStatus -> {
+                Member inner = memberRepository.findById("memberA");
+                assertThat(inner).isNotSameAs(outer);
+                assertThat(inner.getMoney()).isEqualTo(10_000);
+                memberRepository.updateById("memberB", 1_000);
+            });
+
+            assertThat(memberRepository.findById("memberA")).isSameAs(outer);
+            status.setRollbackOnly();
+        });
+
+        assertThat(money("memberA")).isEqualTo(10_000);
+        assertThat(money("memberB")).isEqualTo(1_000);
+    }
+
+    @Test
+    @DisplayName("트랜잭션이 없으면 바로 실행한다")
+    void no_transaction_test() {
+        memberRepository.updateById("memberA", 1_000);
+
+        assertThat(executedSqls).containsExactly("update member set money = ? where member_id = ?");
+        assertThat(money("memberA")).isEqualTo(1_000);
+    }
+
+    private MemberServiceV4 memberService(MemberRepository memberRepository) {
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+    private int money(String memberId) {
+        return jdbcTemplate.queryForObject("select money from member where member_id = ?", Integer.class, memberId);
+    }
+
+}
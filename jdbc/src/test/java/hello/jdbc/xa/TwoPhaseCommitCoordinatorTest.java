@@ -0,0 +1,228 @@
+package hello.jdbc.xa;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.shard.Shard;
+import hello.jdbc.shard.ShardedMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 이체는 메모리 모드의 h2 두 개, 복구는 재시작을 재현하기 위해 파일 모드의 h2 두 개를 사용한다.
+ */
+@Slf4j
+class TwoPhaseCommitCoordinatorTest {
+
+    static final String CREATE_TABLE = "create table if not exists member (" +
+            "member_id varchar(10) primary key, money integer not null default 0)";
+
+    @TempDir
+    Path tempDir;
+
+    ShardedMemberRepository shardedRepository;
+    DecisionLog decisionLog;
+
+    @AfterEach
+    void clearAll() throws Exception {
+        if (shardedRepository != null) {
+            shardedRepository.clearAll();
+            shardedRepository.close();
+        }
+        if (decisionLog != null) {
+            decisionLog.close();
+        }
+    }
+
+    @Test
+    @DisplayName("서로 다른 DB 의 회원 간 이체 - 정상 이체는 두 DB 모두 커밋, 예외 발생 시 두 DB 모두 롤백된다")
+    void cross_database_transfer_test() throws Exception {
+        TwoPhaseCommitMemberService memberService = memberService("xa_transfer");
+        String fromId = memberOnOtherShard("ex");
+        String toId = memberOnOtherShard(fromId);
+        shardedRepository.save(new Member(fromId, 10_000));
+        shardedRepository.save(new Member(toId, 10_000));
+        shardedRepository.save(new Member("ex", 10_000));
+
+        memberService.accountTransfer(fromId, toId, 2_000);
+        assertThatThrownBy(() -> memberService.accountTransfer(fromId, "ex", 2_000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(shardedRepository.findById(fromId).getMoney()).isEqualTo(8_000);
+        assertThat(shardedRepository.findById(toId).getMoney()).isEqualTo(12_000);
+        assertThat(shardedRepository.findById("ex").getMoney()).isEqualTo(10_000);
+        // 정상 완료된 트랜잭션은 미완료 결정으로 남지 않는다
+        assertThat(decisionLog.getPendingCommits()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("커밋 결정은 로그를 다시 열어도 유지된다")
+    void decision_log_durability_test() throws Exception {
+        Path path = tempDir.resolve("decision.log");
+        try (DecisionLog first = DecisionLog.open(path)) {
+            first.logCommit("GTX_A_1");
+            first.logCommit("GTX_A_2");
+            first.logEnd("GTX_A_1");
+        }
+
+        decisionLog = DecisionLog.open(path);
+
+        assertThat(decisionLog.getPendingCommits()).containsExactly("GTX_A_2");
+        assertThat(decisionLog.isCommitted("GTX_A_2")).isTrue();
+        assertThat(decisionLog.isCommitted("GTX_A_1")).isFalse();
+    }
+
+    /**
+     * prepare 이후 DB 가 종료된 상황을 재현한다.
+     * -> GTX_T_1 은 커밋 결정이 기록되었으므로 커밋, GTX_T_2 는 결정이 없으므로 롤백되어야 한다.
+     * -> GTX_U_1 은 다른 코디네이터(U)의 branch 이므로 그대로 남아야 한다.
+     */
+    @Test
+    @DisplayName("재시작 후 recover() 는 자신의 in-doubt branch 만 커밋 결정에 따라 커밋 또는 롤백한다")
+    void recovery_test() throws Exception {
+        DriverManagerDataSource dbA = fileDataSource("a");
+        DriverManagerDataSource dbB = fileDataSource("b");
+        Path logPath = tempDir.resolve("decision.log");
+        try (DecisionLog before = DecisionLog.open(logPath)) {
+            before.logCommit("GTX_T_1");
+        }
+        prepareAndCrash(dbA, "GTX_T_1_0", "insert into member(member_id, money) values ('memberA', 1000)");
+        prepareAndCrash(dbB, "GTX_T_1_1", "insert into member(member_id, money) values ('memberB', 1000)");
+        prepareAndCrash(dbA, "GTX_T_2_0", "insert into member(member_id, money) values ('memberC', 1000)");
+        prepareAndCrash(dbB, "GTX_U_1_0", "insert into member(member_id, money) values ('memberD', 1000)");
+
+        decisionLog = DecisionLog.open(logPath);
+        TwoPhaseCommitCoordinator coordinator = new TwoPhaseCommitCoordinator("T", decisionLog, List.of(dbA, dbB));
+
+        assertThat(coordinator.recover()).isEqualTo(3);
+        assertThat(count(dbA, "memberA")).isOne();
+        assertThat(count(dbB, "memberB")).isOne();
+        assertThat(count(dbA, "memberC")).isZero();
+        assertThat(decisionLog.getPendingCommits()).isEmpty();
+        assertThat(inDoubtBranches(dbB)).containsExactly("GTX_U_1_0");
+        assertThat(coordinator.recover()).isZero();
+
+        new JdbcTemplate(dbB).execute("ROLLBACK TRANSACTION GTX_U_1_0");
+    }
+
+    /**
+     * 같은 DB 의 회원 간 이체(one-phase commit)와 서로 다른 DB 의 회원 간 이체(2PC)의 평균 지연 시간을 비교한다.
+     * -> 2PC 는 DB 마다 prepare 요청이 추가되고, 커밋 결정을 디스크에 force 하는 비용이 더해진다.
+     * -> 정밀한 측정 도구(JMH)는 아니므로 상대적인 차이만 참고한다.
+     */
+    @Test
+    @DisplayName("2PC 지연 시간 비교 - 단일 DB 커밋 vs 2PC")
+    void two_phase_commit_overhead_benchmark() throws Exception {
+        TwoPhaseCommitMemberService memberService = memberService("xa_bench");
+        String fromId = "m0";
+        String sameShardId = memberOnSameShard(fromId);
+        String otherShardId = memberOnOtherShard(fromId);
+        shardedRepository.save(new Member(fromId, 1_000_000_000));
+        shardedRepository.save(new Member(sameShardId, 0));
+        shardedRepository.save(new Member(otherShardId, 0));
+
+        int iterations = 2_000;
+        long singleDb = averageMicros(iterations, () -> memberService.accountTransfer(fromId, sameShardId, 1));
+        long twoPhase = averageMicros(iterations, () -> memberService.accountTransfer(fromId, otherShardId, 1));
+
+        log.info("transfer latency -> single db commit = {} us, 2pc = {} us", singleDb, twoPhase);
+        assertThat(shardedRepository.findById(otherShardId).getMoney()).isEqualTo(iterations * 2);
+    }
+
+    private long averageMicros(int iterations, Transfer transfer) throws SQLException {
+        // warm-up
+        for (int i = 0; i < iterations; i++) {
+            transfer.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            transfer.run();
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / iterations;
+    }
+
+    interface Transfer {
+        void run() throws SQLException;
+    }
+
+    private TwoPhaseCommitMemberService memberService(String name) throws Exception {
+        DataSource first = memoryDataSource(name + "_0");
+        DataSource second = memoryDataSource(name + "_1");
+        shardedRepository = new ShardedMemberRepository(List.of(first, second));
+        decisionLog = DecisionLog.open(tempDir.resolve(name + ".log"));
+        TwoPhaseCommitCoordinator coordinator = new TwoPhaseCommitCoordinator("A", decisionLog, List.of(first, second));
+        return new TwoPhaseCommitMemberService(coordinator, shardedRepository);
+    }
+
+    private void prepareAndCrash(DataSource dataSource, String branchName, String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate(sql);
+            stmt.execute("PREPARE COMMIT " + branchName);
+            // 커밋 / 롤백 없이 DB 를 종료한다
+            stmt.execute("SHUTDOWN IMMEDIATELY");
+        } catch (SQLException e) {
+            log.debug("database closed", e);
+        }
+    }
+
+    private List<String> inDoubtBranches(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForList(
+                "select transaction_name from information_schema.in_doubt", String.class);
+    }
+
+    private int count(DataSource dataSource, String memberId) {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from member where member_id = ?", Integer.class, memberId);
+    }
+
+    private String memberOnSameShard(String memberId) {
+        Shard shard = shardedRepository.shardOf(memberId);
+        for (int i = 1; ; i++) {
+            String candidate = "m" + i;
+            if (shardedRepository.shardOf(candidate) == shard) {
+                return candidate;
+            }
+        }
+    }
+
+    private String memberOnOtherShard(String memberId) {
+        Shard shard = shardedRepository.shardOf(memberId);
+        for (int i = 0; ; i++) {
+            String candidate = "m" + i;
+            if (shardedRepository.shardOf(candidate) != shard) {
+                return candidate;
+            }
+        }
+    }
+
+    private DataSource memoryDataSource(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute(CREATE_TABLE);
+        return dataSource;
+    }
+
+    private DriverManagerDataSource fileDataSource(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:" + tempDir.resolve(name).toAbsolutePath() + ";WRITE_DELAY=0", "sa", "");
+        new JdbcTemplate(dataSource).execute(CREATE_TABLE);
+        return dataSource;
+    }
+
+}